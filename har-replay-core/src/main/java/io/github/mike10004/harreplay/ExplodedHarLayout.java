@@ -0,0 +1,43 @@
+package io.github.mike10004.harreplay;
+
+import java.nio.file.Path;
+
+/**
+ * Names of the files and directories of an exploded HAR, in which each entry
+ * is stored in its own directory. The entries directory contains one
+ * subdirectory per entry, named <i>index</i>-<i>method</i>-<i>url</i>. Each
+ * entry directory contains {@value #REQUEST_METADATA_FILENAME},
+ * {@value #RESPONSE_METADATA_FILENAME}, {@value #URL_FILENAME} and a response
+ * data file named <i>status</i>-<i>statusText</i>.
+ */
+public final class ExplodedHarLayout {
+
+    private ExplodedHarLayout() {}
+
+    /**
+     * Name of the file in each entry directory that contains the HAR request object.
+     */
+    public static final String REQUEST_METADATA_FILENAME = "request.json";
+
+    /**
+     * Name of the file in each entry directory that contains the HAR response
+     * object without the text of its content. The response data file contains
+     * the text encoded in UTF-8, or the decoded bytes if the content encoding is
+     * base-64.
+     */
+    public static final String RESPONSE_METADATA_FILENAME = "response.json";
+
+    /**
+     * Name of the file in each entry directory that contains the request URL.
+     */
+    public static final String URL_FILENAME = "url.txt";
+
+    /**
+     * Resolves the directory that contains the entry directories.
+     * @param root the root of the exploded HAR
+     * @return the entries directory
+     */
+    public static Path resolveEntriesDir(Path root) {
+        return root.resolve("log").resolve("entries");
+    }
+}
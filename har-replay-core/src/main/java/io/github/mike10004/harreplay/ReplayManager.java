@@ -1,6 +1,12 @@
 package io.github.mike10004.harreplay;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Interface that represents a manager of a server replay process.
@@ -14,4 +20,43 @@ public interface ReplayManager {
      * @throws IOException if starting fails due to I/O error
      */
     ReplaySessionControl start(ReplaySessionConfig sessionConfig) throws IOException;
+
+    /**
+     * Starts a server replay session asynchronously. The default implementation
+     * invokes {@link #start(ReplaySessionConfig)} on the given executor; implementations
+     * may override this to perform independent startup steps concurrently.
+     * If starting fails, the future completes exceptionally with the cause of failure.
+     * @param sessionConfig the configuration
+     * @param executor executor used to perform startup steps
+     * @return a future session control instance
+     */
+    default CompletableFuture<ReplaySessionControl> startAsync(ReplaySessionConfig sessionConfig, Executor executor) {
+        CompletableFuture<ReplaySessionControl> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(start(sessionConfig));
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Starts a server replay session asynchronously on a dedicated thread, which
+     * is released once startup completes. Startup blocks on I/O, so it is not
+     * performed on the common fork-join pool.
+     * @param sessionConfig the configuration
+     * @return a future session control instance
+     * @see #startAsync(ReplaySessionConfig, Executor)
+     */
+    default CompletableFuture<ReplaySessionControl> startAsync(ReplaySessionConfig sessionConfig) {
+        ExecutorService executorService = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("replay-startup-%d")
+                .build());
+        CompletableFuture<ReplaySessionControl> future = startAsync(sessionConfig, executorService);
+        future.whenComplete((ctrl, exception) -> executorService.shutdown());
+        return future;
+    }
 }
@@ -26,6 +26,7 @@ import javax.annotation.Nullable;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.net.URI;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
@@ -68,6 +69,14 @@ public class ReplayServerConfig {
     @JsonAdapter(ImmutableListTypeAdapterFactory.class)
     public final ImmutableList<ResponseHeaderTransform> responseHeaderTransforms;
 
+    /**
+     * Rules that exclude HAR entries when the HAR is loaded. Excluded entries are
+     * never indexed or served, so requests that would have matched them are
+     * answered as if the HAR did not contain them.
+     */
+    @JsonAdapter(ImmutableListTypeAdapterFactory.class)
+    public final ImmutableList<EntryFilter> entryFilters;
+
     private ReplayServerConfig() {
         this(1, ImmutableList.of(), ImmutableList.of(), ImmutableList.of());
     }
@@ -79,10 +88,23 @@ public class ReplayServerConfig {
      * @param replacements the replacements
      */
     public ReplayServerConfig(int version, Iterable<Mapping> mappings, Iterable<Replacement> replacements, Iterable<ResponseHeaderTransform> responseHeaderTransforms) {
+        this(version, mappings, replacements, responseHeaderTransforms, ImmutableList.of());
+    }
+
+    /**
+     * Constructs an instance of the class.
+     * @param version       the version
+     * @param mappings the mappings
+     * @param replacements the replacements
+     * @param responseHeaderTransforms the response header transforms
+     * @param entryFilters the entry filters
+     */
+    public ReplayServerConfig(int version, Iterable<Mapping> mappings, Iterable<Replacement> replacements, Iterable<ResponseHeaderTransform> responseHeaderTransforms, Iterable<EntryFilter> entryFilters) {
         this.version = version;
         this.mappings = ImmutableList.copyOf(mappings);
         this.replacements = ImmutableList.copyOf(replacements);
         this.responseHeaderTransforms = ImmutableList.copyOf(responseHeaderTransforms);
+        this.entryFilters = ImmutableList.copyOf(entryFilters);
     }
 
     /**
@@ -1021,6 +1043,210 @@ public class ReplayServerConfig {
         }
     }
 
+    /**
+     * Rule that excludes HAR entries when the HAR is loaded. An entry is excluded
+     * if it satisfies every criterion the rule specifies; unspecified criteria are
+     * ignored, and a rule that specifies no criteria excludes nothing.
+     */
+    public static final class EntryFilter {
+
+        /**
+         * Name of the rule, used when reporting how many entries it excluded.
+         */
+        @Nullable
+        public final String name;
+
+        /**
+         * Host of the request URL. An entry satisfies this criterion if its host
+         * is this host or a subdomain of it, ignoring case.
+         */
+        @Nullable
+        public final String host;
+
+        /**
+         * Matching strategy for the request URL.
+         */
+        @Nullable
+        public final MappingMatch url;
+
+        /**
+         * Prefix of the response content MIME type, such as {@code image/}.
+         * The comparison ignores case.
+         */
+        @Nullable
+        public final String mimeType;
+
+        /**
+         * Response status.
+         */
+        @Nullable
+        public final Integer status;
+
+        /**
+         * Minimum size in bytes of the response content. An entry satisfies this
+         * criterion if its content is at least this large.
+         */
+        @Nullable
+        public final Long minBodySize;
+
+        @SuppressWarnings("unused") // for deserialization
+        private EntryFilter() {
+            this(null, null, null, null, null, null);
+        }
+
+        private EntryFilter(@Nullable String name, @Nullable String host, @Nullable MappingMatch url, @Nullable String mimeType, @Nullable Integer status, @Nullable Long minBodySize) {
+            this.name = name;
+            this.host = host;
+            this.url = url;
+            this.mimeType = mimeType;
+            this.status = status;
+            this.minBodySize = minBodySize;
+        }
+
+        public static Builder builder() {
+            return new Builder();
+        }
+
+        /**
+         * Determines whether this rule specifies any criteria of the response.
+         * Evaluating such criteria requires the response of each entry.
+         * @return true if any response criterion is specified
+         */
+        public boolean hasResponseCriteria() {
+            return mimeType != null || status != null || minBodySize != null;
+        }
+
+        /**
+         * Evaluates whether the request of an entry satisfies this rule's request criteria.
+         * @param url the request URL
+         * @return true if the request criteria are satisfied
+         */
+        public boolean isMatchingRequest(String url) {
+            if (host != null) {
+                @Nullable String urlHost = parseHost(url);
+                if (urlHost == null || !(urlHost.equalsIgnoreCase(host) || urlHost.toLowerCase().endsWith("." + host.toLowerCase()))) {
+                    return false;
+                }
+            }
+            return this.url == null || this.url.evaluateUrlMatch(url);
+        }
+
+        /**
+         * Evaluates whether the response of an entry satisfies this rule's response criteria.
+         * @param mimeType the response content MIME type
+         * @param status the response status
+         * @param bodySize the response content size, or a negative value if unknown
+         * @return true if the response criteria are satisfied
+         */
+        public boolean isMatchingResponse(@Nullable String mimeType, int status, long bodySize) {
+            if (this.mimeType != null && (mimeType == null || !mimeType.toLowerCase().startsWith(this.mimeType.toLowerCase()))) {
+                return false;
+            }
+            if (this.status != null && this.status != status) {
+                return false;
+            }
+            return minBodySize == null || bodySize >= minBodySize;
+        }
+
+        /**
+         * Determines whether this rule specifies no criteria.
+         * @return true if the rule has no criteria
+         */
+        public boolean isEmpty() {
+            return host == null && url == null && !hasResponseCriteria();
+        }
+
+        @Nullable
+        private static String parseHost(String url) {
+            try {
+                return URI.create(url).getHost();
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper("EntryFilter")
+                    .omitNullValues()
+                    .add("name", name)
+                    .add("host", host)
+                    .add("url", url)
+                    .add("mimeType", mimeType)
+                    .add("status", status)
+                    .add("minBodySize", minBodySize)
+                    .toString();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            EntryFilter that = (EntryFilter) o;
+            return Objects.equals(name, that.name) &&
+                    Objects.equals(host, that.host) &&
+                    Objects.equals(url, that.url) &&
+                    Objects.equals(mimeType, that.mimeType) &&
+                    Objects.equals(status, that.status) &&
+                    Objects.equals(minBodySize, that.minBodySize);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(name, host, url, mimeType, status, minBodySize);
+        }
+
+        /**
+         * Builder of entry filter instances.
+         */
+        public static final class Builder {
+
+            private String name;
+            private String host;
+            private MappingMatch url;
+            private String mimeType;
+            private Integer status;
+            private Long minBodySize;
+
+            private Builder() {
+            }
+
+            public Builder name(String name) {
+                this.name = name;
+                return this;
+            }
+
+            public Builder host(String host) {
+                this.host = host;
+                return this;
+            }
+
+            public Builder url(MappingMatch url) {
+                this.url = url;
+                return this;
+            }
+
+            public Builder mimeType(String mimeTypePrefix) {
+                this.mimeType = mimeTypePrefix;
+                return this;
+            }
+
+            public Builder status(int status) {
+                this.status = status;
+                return this;
+            }
+
+            public Builder minBodySize(long minBodySize) {
+                this.minBodySize = minBodySize;
+                return this;
+            }
+
+            public EntryFilter build() {
+                return new EntryFilter(name, host, url, mimeType, status, minBodySize);
+            }
+        }
+    }
+
     /**
      * Builder of {@code ReplayServerConfig} instances.
      */
@@ -1030,6 +1256,7 @@ public class ReplayServerConfig {
         private final List<Mapping> mappings = new ArrayList<>();
         private final List<Replacement> replacements = new ArrayList<>();
         private final List<ResponseHeaderTransform> responseHeaderTransforms = new ArrayList<>();
+        private final List<EntryFilter> entryFilters = new ArrayList<>();
 
         private Builder() {
         }
@@ -1064,12 +1291,22 @@ public class ReplayServerConfig {
             return this;
         }
 
+        /**
+         * Adds an entry filter.
+         * @param entryFilter the filter
+         * @return this builder instance
+         */
+        public Builder exclude(EntryFilter entryFilter) {
+            entryFilters.add(requireNonNull(entryFilter));
+            return this;
+        }
+
         /**
          * Builds the config instance.
          * @return the immutable config instance
          */
         public ReplayServerConfig build() {
-            return new ReplayServerConfig(version, mappings, replacements, responseHeaderTransforms);
+            return new ReplayServerConfig(version, mappings, replacements, responseHeaderTransforms, entryFilters);
         }
     }
 
@@ -1081,12 +1318,13 @@ public class ReplayServerConfig {
         return version == that.version &&
                 Objects.equals(mappings, that.mappings) &&
                 Objects.equals(replacements, that.replacements) &&
-                Objects.equals(responseHeaderTransforms, that.responseHeaderTransforms);
+                Objects.equals(responseHeaderTransforms, that.responseHeaderTransforms) &&
+                Objects.equals(entryFilters, that.entryFilters);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(version, mappings, replacements, responseHeaderTransforms);
+        return Objects.hash(version, mappings, replacements, responseHeaderTransforms, entryFilters);
     }
 
     /**
@@ -34,6 +34,13 @@ public class ReplaySessionConfig {
      */
     public final File harFile;
 
+    /**
+     * HAR files containing responses to be served. The first element is
+     * the source for {@link #harFile}; others are added with
+     * {@link Builder#addHar(File, String, int)}.
+     */
+    public final ImmutableList<HarSource> harSources;
+
     /**
      * Configuration of the replay server.
      */
@@ -48,6 +55,10 @@ public class ReplaySessionConfig {
         scratchDir = builder.scratchDir;
         port = builder.port;
         harFile = builder.harFile;
+        harSources = ImmutableList.<HarSource>builder()
+                .add(new HarSource(builder.harFile, HarSource.DEFAULT_NAMESPACE, HarSource.DEFAULT_PRIORITY))
+                .addAll(builder.additionalHarSources)
+                .build();
         replayServerConfig = builder.replayServerConfig;
         serverTerminationCallbacks = ImmutableList.copyOf(builder.serverTerminationCallbacks);
     }
@@ -65,6 +76,58 @@ public class ReplaySessionConfig {
 
     }
 
+    /**
+     * Class that represents a HAR file whose entries are served in a session.
+     * When requests match entries from several HAR files equally well, the
+     * entry from the file with the highest priority wins; if priorities are
+     * equal, the entry from the file that was added first wins.
+     */
+    public static final class HarSource {
+
+        /**
+         * Namespace of the HAR file passed to {@link Builder#build(File)}.
+         */
+        public static final String DEFAULT_NAMESPACE = "";
+
+        /**
+         * Priority of the HAR file passed to {@link Builder#build(File)}.
+         */
+        public static final int DEFAULT_PRIORITY = 0;
+
+        /**
+         * The HAR file.
+         */
+        public final File file;
+
+        /**
+         * Name that identifies the source of entries loaded from the file. Entries
+         * loaded from a file with a nonempty namespace are tagged with it, so that
+         * listeners to the responses a session serves can tell which file each
+         * response came from.
+         */
+        public final String namespace;
+
+        /**
+         * Priority of entries loaded from the file.
+         */
+        public final int priority;
+
+        public HarSource(File file, String namespace, int priority) {
+            this.file = requireNonNull(file, "file");
+            this.namespace = requireNonNull(namespace, "namespace");
+            this.priority = priority;
+        }
+
+        @Override
+        public String toString() {
+            return "HarSource{" +
+                    "file=" + file +
+                    ", namespace='" + namespace + '\'' +
+                    ", priority=" + priority +
+                    '}';
+        }
+    }
+
     /**
      * Creates a builder instance that uses the system temp directory as the scratch directory.
      * @return the builder
@@ -110,6 +173,7 @@ public class ReplaySessionConfig {
         private File harFile;
         private ReplayServerConfig replayServerConfig = ReplayServerConfig.empty();
         private final List<ServerTerminationCallback> serverTerminationCallbacks = new ArrayList<>();
+        private final List<HarSource> additionalHarSources = new ArrayList<>();
 
         private Builder(Path scratchDir) {
             this.scratchDir = checkNotNull(scratchDir);
@@ -126,6 +190,20 @@ public class ReplaySessionConfig {
             return this;
         }
 
+        /**
+         * Adds a HAR file whose entries are served in addition to those of the
+         * HAR file passed to {@link #build(File)}.
+         * @param harFile the HAR file
+         * @param namespace name that identifies the source of the entries
+         * @param priority priority of the entries; the default HAR file has priority {@link HarSource#DEFAULT_PRIORITY}
+         * @return this builder
+         * @see HarSource
+         */
+        public Builder addHar(File harFile, String namespace, int priority) {
+            additionalHarSources.add(new HarSource(harFile, namespace, priority));
+            return this;
+        }
+
         public ReplaySessionConfig build(File harFile) {
             this.harFile = checkNotNull(harFile);
             return new ReplaySessionConfig(this);
@@ -3,6 +3,7 @@ package io.github.mike10004.harreplay;
 import com.google.common.net.HostAndPort;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Interface that defines methods to interrogate and control a replay server session.
@@ -29,6 +30,28 @@ public interface ReplaySessionControl extends java.io.Closeable {
      */
     boolean isAlive();
 
+    /**
+     * Checks whether the server has finished loading the HAR entries it serves.
+     * A server that loads entries before it starts listening is always ready.
+     * @return true iff all entries have been loaded
+     */
+    default boolean isReady() {
+        return true;
+    }
+
+    /**
+     * Waits for the server to finish loading the HAR entries it serves.
+     * @param timeout maximum duration to wait
+     * @param unit timeout unit
+     * @return true if the server is ready, false if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     * @throws IOException if loading failed
+     */
+    @SuppressWarnings("RedundantThrows")
+    default boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException, IOException {
+        return isReady();
+    }
+
     /**
      * Ends the session by stopping the proxy server.
      */
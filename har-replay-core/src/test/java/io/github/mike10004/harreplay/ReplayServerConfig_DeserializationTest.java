@@ -1,7 +1,10 @@
 package io.github.mike10004.harreplay;
 
+import com.google.common.collect.ImmutableList;
 import com.google.gson.Gson;
+import io.github.mike10004.harreplay.ReplayServerConfig.EntryFilter;
 import io.github.mike10004.harreplay.ReplayServerConfig.Mapping;
+import io.github.mike10004.harreplay.ReplayServerConfig.RegexHolder;
 import io.github.mike10004.harreplay.ReplayServerConfig.Replacement;
 import io.github.mike10004.harreplay.ReplayServerConfig.ResponseHeaderTransform;
 import io.github.mike10004.harreplay.ReplayServerConfig.StringLiteral;
@@ -36,6 +39,22 @@ public class ReplayServerConfig_DeserializationTest {
         confirmDeserializationIdentity(original);
     }
 
+    @Test
+    public void entryFilters() {
+        ReplayServerConfig original = ReplayServerConfig.builder()
+                .exclude(EntryFilter.builder().name("analytics").host("google-analytics.com").build())
+                .exclude(EntryFilter.builder().url(RegexHolder.of(".*\\.mp4$")).minBodySize(1024).build())
+                .exclude(EntryFilter.builder().mimeType("image/").status(200).build())
+                .build();
+        confirmDeserializationIdentity(original);
+    }
+
+    @Test
+    public void entryFilters_absent() {
+        ReplayServerConfig deserialized = serialist().fromJson("{\"version\": 1}", ReplayServerConfig.class);
+        assertEquals("entry filters", ImmutableList.of(), deserialized.entryFilters);
+    }
+
     private void confirmDeserializationIdentity(ReplayServerConfig original) {
         String json = serialist().toJson(original);
         ReplayServerConfig deserialized = serialist().fromJson(json, ReplayServerConfig.class);
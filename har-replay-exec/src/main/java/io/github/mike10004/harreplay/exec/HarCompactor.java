@@ -0,0 +1,322 @@
+package io.github.mike10004.harreplay.exec;
+
+import com.browserup.harreader.model.HarContent;
+import com.browserup.harreader.model.HarHeader;
+import com.browserup.harreader.model.HarResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Strings;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Multiset;
+import com.google.common.net.HttpHeaders;
+import com.google.common.net.MediaType;
+import io.github.mike10004.vhs.harbridge.ContentTypes;
+import io.github.mike10004.vhs.harbridge.Hars;
+import io.github.mike10004.vhs.harbridge.TypedContent;
+import io.github.mike10004.vhs.harbridge.sstoehr.SstoehrHarBridge;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Class that rewrites a HAR file in a form that is faster to load for replay.
+ * Fields that replay never reads, such as cache information, page timings,
+ * and custom fields whose names start with an underscore, are removed. Of each
+ * entry's timings, only the send, wait and receive phases are kept, because
+ * replay reads the wait and receive phases to simulate recorded latency and
+ * throughput, and the HAR format requires all three.
+ * Response bodies are decoded and stored once in a single representation:
+ * as text if the content type is text-like and the body is valid in its charset,
+ * and as base-64 otherwise. Entries whose request URLs are listed as never
+ * served are omitted.
+ *
+ * <p>A run of consecutive entries with identical requests and responses is
+ * collapsed into its first entry, but only if no other entry has the same
+ * request method and URL. The replay server serves entries that share a method
+ * and URL in the order they were recorded, so a request is answered by the entry
+ * at its position in that sequence; dropping entries from a sequence that holds
+ * other entries would shift which entry answers each request. Unlike the replay
+ * server's optional deduplication, which keeps the length of each run it
+ * collapses, the compacted HAR does not record how many entries were collapsed,
+ * so only sequences in which every entry is the same can be collapsed safely.
+ */
+class HarCompactor {
+
+    private static final Logger log = LoggerFactory.getLogger(HarCompactor.class);
+
+    private static final ImmutableSet<String> UNUSED_ENTRY_FIELDS = ImmutableSet.of("cache", "serverIPAddress", "connection");
+
+    private static final ImmutableSet<String> USED_TIMINGS_FIELDS = ImmutableSet.of("send", "wait", "receive");
+
+    private final ObjectMapper mapper;
+    private final Set<String> unservedUrls;
+    private final Charset defaultCharset;
+
+    /**
+     * Constructs an instance.
+     * @param mapper the mapper used to read and write HAR files
+     * @param unservedUrls request URLs of entries to omit
+     */
+    public HarCompactor(ObjectMapper mapper, Set<String> unservedUrls) {
+        this.mapper = requireNonNull(mapper, "mapper");
+        this.unservedUrls = ImmutableSet.copyOf(unservedUrls);
+        defaultCharset = SstoehrHarBridge.DEFAULT_EX_MACHINA_CHARSET;
+    }
+
+    /**
+     * Parses a list of URLs of entries that were never served. Each nonblank
+     * line that does not start with {@code #} is a URL.
+     * @param lines the lines
+     * @return the set of URLs
+     */
+    public static Set<String> parseUnservedUrls(List<String> lines) {
+        Set<String> urls = new HashSet<>();
+        for (String line : lines) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                urls.add(line);
+            }
+        }
+        return Collections.unmodifiableSet(urls);
+    }
+
+    /**
+     * Writes a compacted copy of a HAR file.
+     * @param input the HAR file to read
+     * @param output the file to write
+     * @return a report of what was omitted
+     * @throws IOException on I/O error or if the input is not a HAR
+     */
+    public Report compact(File input, File output) throws IOException {
+        JsonNode root = mapper.readTree(input);
+        JsonNode harLog = root == null ? null : root.path("log");
+        if (harLog == null || !harLog.path("entries").isArray()) {
+            throw new IOException("not a HAR: " + input);
+        }
+        for (JsonNode page : harLog.path("pages")) {
+            if (page instanceof ObjectNode) {
+                ((ObjectNode) page).remove("pageTimings");
+                removeCustomFields(page);
+            }
+        }
+        ArrayNode entries = (ArrayNode) harLog.get("entries");
+        int inputEntryCount = entries.size(), unservedCount = 0;
+        Multiset<String> sequenceLengths = HashMultiset.create();
+        for (Iterator<JsonNode> it = entries.iterator(); it.hasNext();) {
+            JsonNode entry = it.next();
+            if (unservedUrls.contains(entry.path("request").path("url").asText())) {
+                it.remove();
+                unservedCount++;
+                continue;
+            }
+            compactEntry(entry);
+            sequenceLengths.add(sequenceKey(entry));
+        }
+        int duplicateCount = collapseRuns(entries, sequenceLengths);
+        mapper.writeValue(output, root);
+        return new Report(inputEntryCount, duplicateCount, unservedCount, entries.size(), input.length(), output.length());
+    }
+
+    /**
+     * Collapses each run of identical entries that is the whole sequence of
+     * entries with its method and URL.
+     * @return the number of entries removed
+     */
+    private int collapseRuns(ArrayNode entries, Multiset<String> sequenceLengths) {
+        List<JsonNode> kept = new ArrayList<>(entries.size());
+        int runStart = 0;
+        while (runStart < entries.size()) {
+            JsonNode exchange = exchange(entries.get(runStart));
+            int runEnd = runStart + 1;
+            while (runEnd < entries.size() && exchange.equals(exchange(entries.get(runEnd)))) {
+                runEnd++;
+            }
+            if (sequenceLengths.count(sequenceKey(entries.get(runStart))) == runEnd - runStart) {
+                kept.add(entries.get(runStart));
+            } else {
+                for (int i = runStart; i < runEnd; i++) {
+                    kept.add(entries.get(i));
+                }
+            }
+            runStart = runEnd;
+        }
+        int duplicateCount = entries.size() - kept.size();
+        entries.removeAll();
+        entries.addAll(kept);
+        return duplicateCount;
+    }
+
+    private ObjectNode exchange(JsonNode entry) {
+        ObjectNode exchange = mapper.createObjectNode();
+        exchange.set("request", entry.get("request"));
+        exchange.set("response", entry.get("response"));
+        return exchange;
+    }
+
+    private static String sequenceKey(JsonNode entry) {
+        return entry.path("request").path("method").asText() + " " + entry.path("request").path("url").asText();
+    }
+
+    private void compactEntry(JsonNode entry) {
+        if (!(entry instanceof ObjectNode)) {
+            return;
+        }
+        ((ObjectNode) entry).remove(UNUSED_ENTRY_FIELDS);
+        removeCustomFields(entry);
+        JsonNode timings = entry.path("timings");
+        if (timings instanceof ObjectNode) {
+            ((ObjectNode) timings).retain(USED_TIMINGS_FIELDS);
+        }
+        removeCustomFields(entry.path("request"));
+        JsonNode response = entry.path("response");
+        if (response instanceof ObjectNode) {
+            removeCustomFields(response);
+            removeCustomFields(response.path("content"));
+            try {
+                normalizeContent((ObjectNode) response);
+            } catch (IOException | RuntimeException e) {
+                log.info("response content of {} left as is due to {}", entry.path("request").path("url").asText(), e.toString());
+            }
+        }
+    }
+
+    private static void removeCustomFields(JsonNode node) {
+        for (Iterator<String> it = node.fieldNames(); it.hasNext();) {
+            if (it.next().startsWith("_")) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Replaces the content of a response with its decoded body. The body is
+     * decoded the same way it would be decoded for replay, so the headers that
+     * describe how the body was encoded in transit are removed.
+     */
+    private void normalizeContent(ObjectNode response) throws IOException {
+        JsonNode contentNode = response.get("content");
+        if (!(contentNode instanceof ObjectNode) || !contentNode.hasNonNull("text")) {
+            return;
+        }
+        HarResponse harResponse = mapper.treeToValue(response, HarResponse.class);
+        TypedContent typedContent = translateResponseContent(harResponse);
+        byte[] body = typedContent.asByteSource().read();
+        MediaType contentType = typedContent.getContentType();
+        ObjectNode content = (ObjectNode) contentNode;
+        Charset charset = contentType.charset().or(defaultCharset);
+        @Nullable String text = ContentTypes.isTextLike(contentType.toString()) ? decodeStrictly(body, charset) : null;
+        if (text != null && !Hars.isBase64Encoded(contentType.toString(), text, null, (long) body.length)) {
+            content.put("text", text);
+            content.put("mimeType", contentType.withCharset(charset).toString());
+            content.remove("encoding");
+        } else {
+            content.put("text", Base64.getEncoder().encodeToString(body));
+            content.put("mimeType", contentType.toString());
+            content.put("encoding", "base64");
+        }
+        content.put("size", body.length);
+        content.remove("compression");
+        response.put("bodySize", body.length);
+        JsonNode headers = response.path("headers");
+        for (Iterator<JsonNode> it = headers.iterator(); it.hasNext();) {
+            if (HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(it.next().path("name").asText())) {
+                it.remove();
+            }
+        }
+    }
+
+    private TypedContent translateResponseContent(HarResponse response) {
+        HarContent content = requireNonNull(response.getContent(), "response.content");
+        @Nullable String contentEncodingHeaderValue = response.getHeaders() == null ? null : response.getHeaders().stream()
+                .filter(h -> HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(h.getName()))
+                .map(HarHeader::getValue)
+                .findFirst().orElse(null);
+        return Hars.translateResponseContent(content.getMimeType(), content.getText(),
+                nullIfNegative(response.getBodySize()), nullIfNegative(content.getSize()),
+                contentEncodingHeaderValue, Strings.emptyToNull(content.getEncoding()), content.getComment(), defaultCharset);
+    }
+
+    @Nullable
+    private static Long nullIfNegative(@Nullable Long value) {
+        return value == null || value < 0 ? null : value;
+    }
+
+    @Nullable
+    private static String decodeStrictly(byte[] bytes, Charset charset) {
+        try {
+            return charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(bytes))
+                    .toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Class that describes the outcome of compacting a HAR file.
+     */
+    public static final class Report {
+
+        public final int inputEntryCount;
+
+        /**
+         * Number of entries omitted because they repeated the entry before them
+         * and no other entry had the same request method and URL.
+         */
+        public final int duplicateCount;
+
+        /**
+         * Number of entries omitted because their request URLs were listed as never served.
+         */
+        public final int unservedCount;
+
+        public final int outputEntryCount;
+
+        public final long inputSize;
+
+        public final long outputSize;
+
+        Report(int inputEntryCount, int duplicateCount, int unservedCount, int outputEntryCount, long inputSize, long outputSize) {
+            this.inputEntryCount = inputEntryCount;
+            this.duplicateCount = duplicateCount;
+            this.unservedCount = unservedCount;
+            this.outputEntryCount = outputEntryCount;
+            this.inputSize = inputSize;
+            this.outputSize = outputSize;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("inputEntryCount", inputEntryCount)
+                    .add("duplicateCount", duplicateCount)
+                    .add("unservedCount", unservedCount)
+                    .add("outputEntryCount", outputEntryCount)
+                    .add("inputSize", inputSize)
+                    .add("outputSize", outputSize)
+                    .toString();
+        }
+    }
+}
@@ -3,7 +3,10 @@ package io.github.mike10004.harreplay.exec;
 import io.github.mike10004.subprocess.ProcessMonitor;
 import io.github.mike10004.subprocess.ScopedProcessTracker;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Ordering;
 import com.google.common.io.Files;
 import com.google.common.net.HostAndPort;
 import com.google.common.util.concurrent.Uninterruptibles;
@@ -14,6 +17,7 @@ import com.browserup.harreader.HarReaderException;
 import com.browserup.harreader.HarReaderMode;
 import com.browserup.harreader.model.Har;
 import com.browserup.harreader.model.HarEntry;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.mike10004.harreplay.ReplayManager;
 import io.github.mike10004.harreplay.ReplayServerConfig;
 import io.github.mike10004.harreplay.ReplaySessionConfig;
@@ -46,11 +50,14 @@ import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -75,7 +82,10 @@ public class HarReplayMain {
     static final String OPT_HELP = "help";
     static final String OPT_ONLY_PRINT = "only-print";
     static final String OPT_PRINT_WITH_CONTENT = "content-dir";
+    static final String OPT_COMPACT = "compact";
+    static final String OPT_UNSERVED_URLS = "unserved-urls";
     static final Charset NOTIFY_FILE_CHARSET = StandardCharsets.US_ASCII;
+    static final int LOAD_BENCHMARK_ROUNDS = 3;
 
     private final OptionParser parser;
     private final OptionSpec<File> notifySpec;
@@ -88,6 +98,8 @@ public class HarReplayMain {
     private final OptionSpec<File> replayConfigSpec;
     private final OptionSpec<HarReaderBehavior> harReaderBehaviorSpec;
     private final OptionSpec<HarReaderMode> harReaderModeSpec;
+    private final OptionSpec<File> compactSpec;
+    private final OptionSpec<File> unservedUrlsSpec;
 
     public HarReplayMain() {
         this(new OptionParser());
@@ -128,16 +140,23 @@ public class HarReplayMain {
                 .withRequiredArg().ofType(HarReaderBehavior.class).defaultsTo(HarReaderBehavior.DEFAULT);
         harReaderModeSpec = parser.accepts(OPT_HAR_READER_MODE, "set har reader mode (STRICT or LAX)")
                 .withRequiredArg().ofType(HarReaderMode.class).defaultsTo(HarReaderMode.STRICT);
+        compactSpec = parser.accepts(OPT_COMPACT, "write a copy of the har that is faster to load to FILE, compare load times, and exit")
+                .withRequiredArg().ofType(File.class).describedAs("FILE");
+        unservedUrlsSpec = parser.accepts(OPT_UNSERVED_URLS, "with --compact, omit entries whose request URLs are listed in FILE, one per line")
+                .withRequiredArg().ofType(File.class).describedAs("FILE");
     }
 
     private ReplayManager createReplayManager(OptionSet optionSet) {
+        return new VhsReplayManager(createReplayManagerConfig(optionSet));
+    }
+
+    private VhsReplayManagerConfig createReplayManagerConfig(OptionSet optionSet) {
         HarReaderBehavior behavior = (HarReaderBehavior) optionSet.valueOf(OPT_HAR_READER_BEHAVIOR);
         HarReaderMode mode = (HarReaderMode) optionSet.valueOf(OPT_HAR_READER_MODE);
         VhsReplayManagerConfig.Builder b = VhsReplayManagerConfig.builder()
                 .harReaderFactory(behavior.getFactory())
                 .harReaderMode(mode);
-        VhsReplayManagerConfig vhsConfig = b.build();
-        return new VhsReplayManager(vhsConfig);
+        return b.build();
     }
 
     protected Har readHarFile(OptionSet options, File harFile) throws IOException, HarReaderException {
@@ -193,6 +212,11 @@ public class HarReplayMain {
     protected void operate(OptionSet optionSet) throws IOException {
         try (CloseableWrapper<ReplaySessionConfig> sessionConfigWrapper = createReplaySessionConfig(optionSet)) {
             ReplaySessionConfig sessionConfig = sessionConfigWrapper.getWrapped();
+            File compactedHarFile = compactSpec.value(optionSet);
+            if (compactedHarFile != null) {
+                compact(optionSet, sessionConfig, compactedHarFile);
+                return;
+            }
             HarPrintStyle harDumpStyle = optionSet.valueOf(harDumpStyleSpec);
             try {
                 harDumpStyle.getDumper(optionSet).dump(readHarEntries(optionSet, sessionConfig.harFile), System.out);
@@ -207,6 +231,43 @@ public class HarReplayMain {
 
     }
 
+    /**
+     * Writes a compacted copy of the HAR file and prints how long each file
+     * takes to load. Load times are measured by building the entry matcher
+     * for each file as the replay manager would for a session.
+     * @param optionSet options
+     * @param sessionConfig session config whose HAR file is to be compacted
+     * @param compactedHarFile the file to write
+     * @throws IOException on I/O error
+     * @see HarCompactor
+     */
+    protected void compact(OptionSet optionSet, ReplaySessionConfig sessionConfig, File compactedHarFile) throws IOException {
+        if (compactedHarFile.getCanonicalFile().equals(sessionConfig.harFile.getCanonicalFile())) {
+            throw new UsageException("compacted har must be written to a different file");
+        }
+        File unservedUrlsFile = unservedUrlsSpec.value(optionSet);
+        Set<String> unservedUrls = ImmutableSet.of();
+        if (unservedUrlsFile != null) {
+            unservedUrls = HarCompactor.parseUnservedUrls(Files.asCharSource(unservedUrlsFile, StandardCharsets.UTF_8).readLines());
+        }
+        ObjectMapper mapper = harReaderBehaviorSpec.value(optionSet).getFactory().createMapper(harReaderModeSpec.value(optionSet));
+        HarCompactor.Report report = new HarCompactor(mapper, unservedUrls).compact(sessionConfig.harFile, compactedHarFile);
+        System.out.format("%d of %d entries written to %s (%d duplicate, %d never served)%n",
+                report.outputEntryCount, report.inputEntryCount, compactedHarFile, report.duplicateCount, report.unservedCount);
+        ReplaySessionConfig compactedSessionConfig = ReplaySessionConfig.builder(sessionConfig.scratchDir)
+                .config(sessionConfig.replayServerConfig)
+                .port(sessionConfig.port)
+                .build(compactedHarFile);
+        LoadTimingReplayManager manager = new LoadTimingReplayManager(createReplayManagerConfig(optionSet));
+        Duration original = ChronoUnit.FOREVER.getDuration(), compacted = ChronoUnit.FOREVER.getDuration();
+        for (int i = 0; i < LOAD_BENCHMARK_ROUNDS; i++) {
+            original = Ordering.natural().min(original, manager.timeLoad(sessionConfig));
+            compacted = Ordering.natural().min(compacted, manager.timeLoad(compactedSessionConfig));
+        }
+        System.out.format("%s: %d bytes, loaded in %d ms%n", sessionConfig.harFile, report.inputSize, original.toMillis());
+        System.out.format("%s: %d bytes, loaded in %d ms%n", compactedHarFile, report.outputSize, compacted.toMillis());
+    }
+
     int main0(String[] args) throws IOException {
         try {
             OptionSet optionSet = parser.parse(args);
@@ -411,6 +472,19 @@ public class HarReplayMain {
         }
     }
 
+    private static class LoadTimingReplayManager extends VhsReplayManager {
+
+        public LoadTimingReplayManager(VhsReplayManagerConfig config) {
+            super(config);
+        }
+
+        public Duration timeLoad(ReplaySessionConfig sessionConfig) throws IOException {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            buildHarEntryMatcher(sessionConfig);
+            return stopwatch.elapsed();
+        }
+    }
+
     private static class ProcessTrackerWithShutdownHook extends ScopedProcessTracker {
 
         public ProcessTrackerWithShutdownHook(Runtime runtime) {
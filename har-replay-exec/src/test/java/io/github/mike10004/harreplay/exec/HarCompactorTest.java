@@ -0,0 +1,140 @@
+package io.github.mike10004.harreplay.exec;
+
+import com.browserup.harreader.HarReader;
+import com.browserup.harreader.HarReaderMode;
+import com.browserup.harreader.model.HarContent;
+import com.browserup.harreader.model.HarEntry;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import io.github.mike10004.harreplay.vhsimpl.HarReaderFactory;
+import io.github.mike10004.vhs.harbridge.RecordedTiming;
+import io.github.mike10004.vhs.harbridge.sstoehr.SstoehrHarBridge;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class HarCompactorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void compact() throws Exception {
+        String gzippedHtml = Base64.getEncoder().encodeToString(gzip("<p>café</p>"));
+        String png = Base64.getEncoder().encodeToString(new byte[]{(byte) 0x89, 'P', 'N', 'G', 0, 1, 2, 3});
+        String har = "{\"log\": {\"version\": \"1.2\", " +
+                "\"pages\": [{\"startedDateTime\": \"2018-01-01T00:00:00.000Z\", \"id\": \"page_1\", \"title\": \"t\", \"pageTimings\": {\"onLoad\": 10}, \"_custom\": 1}], " +
+                "\"entries\": [" +
+                entry("2018-01-01T00:00:00.000Z", "http://example.com/", "text/html", gzippedHtml, "Content-Encoding", "gzip") + ", " +
+                entry("2018-01-01T00:00:01.000Z", "http://example.com/", "text/html", gzippedHtml, "Content-Encoding", "gzip") + ", " +
+                entry("2018-01-01T00:00:02.000Z", "http://example.com/unused", "text/plain", "aGVsbG8=", "X-Foo", "bar") + ", " +
+                entry("2018-01-01T00:00:03.000Z", "http://example.com/image.png", "image/png", png, "X-Foo", "bar") +
+                "]}}";
+        File input = temporaryFolder.newFile(), output = temporaryFolder.newFile();
+        Files.asCharSink(input, UTF_8).write(har);
+        ObjectMapper mapper = HarReaderFactory.easier().createMapper(HarReaderMode.STRICT);
+        HarCompactor.Report report = new HarCompactor(mapper, ImmutableSet.of("http://example.com/unused")).compact(input, output);
+        System.out.println(report);
+        assertEquals("input entries", 4, report.inputEntryCount);
+        assertEquals("duplicates", 1, report.duplicateCount);
+        assertEquals("unserved", 1, report.unservedCount);
+        assertEquals("output entries", 2, report.outputEntryCount);
+        JsonNode root = mapper.readTree(output);
+        JsonNode firstEntry = root.path("log").path("entries").path(0);
+        for (String fieldName : Arrays.asList("cache", "_initiator")) {
+            assertFalse(fieldName, firstEntry.has(fieldName));
+        }
+        assertFalse("optional timing", firstEntry.path("timings").has("dns"));
+        assertFalse("pageTimings", root.path("log").path("pages").path(0).has("pageTimings"));
+        assertFalse("page custom field", root.path("log").path("pages").path(0).has("_custom"));
+        List<HarEntry> entries = new HarReader().readFromFile(output).getLog().getEntries();
+        HarContent html = entries.get(0).getResponse().getContent();
+        assertEquals("html text", "<p>café</p>", html.getText());
+        assertNull("html encoding", html.getEncoding());
+        assertEquals("html size", "<p>café</p>".getBytes(UTF_8).length, html.getSize().longValue());
+        assertFalse("content-encoding header", entries.get(0).getResponse().getHeaders().stream().anyMatch(h -> "Content-Encoding".equalsIgnoreCase(h.getName())));
+        HarContent image = entries.get(1).getResponse().getContent();
+        assertEquals("image encoding", "base64", image.getEncoding());
+        assertArrayEquals("image bytes", Base64.getDecoder().decode(png), Base64.getDecoder().decode(image.getText()));
+        RecordedTiming timing = new SstoehrHarBridge().getRecordedTiming(entries.get(1));
+        assertNotNull("recorded timing", timing);
+        assertEquals("wait", 1, timing.waitMillis);
+        assertEquals("receive", 2, timing.receiveMillis);
+    }
+
+    @Test
+    public void compact_keepsNonConsecutiveDuplicates() throws Exception {
+        String har = "{\"log\": {\"version\": \"1.2\", \"entries\": [" +
+                entry("2018-01-01T00:00:00.000Z", "http://example.com/a", "text/plain", "YQ==", "X-Foo", "bar") + ", " +
+                entry("2018-01-01T00:00:01.000Z", "http://example.com/b", "text/plain", "Yg==", "X-Foo", "bar") + ", " +
+                entry("2018-01-01T00:00:02.000Z", "http://example.com/a", "text/plain", "YQ==", "X-Foo", "bar") + ", " +
+                entry("2018-01-01T00:00:03.000Z", "http://example.com/a", "text/plain", "YQ==", "X-Foo", "bar") +
+                "]}}";
+        File input = temporaryFolder.newFile(), output = temporaryFolder.newFile();
+        Files.asCharSink(input, UTF_8).write(har);
+        ObjectMapper mapper = HarReaderFactory.easier().createMapper(HarReaderMode.STRICT);
+        HarCompactor.Report report = new HarCompactor(mapper, ImmutableSet.of()).compact(input, output);
+        assertEquals("duplicates", 0, report.duplicateCount);
+        List<HarEntry> entries = new HarReader().readFromFile(output).getLog().getEntries();
+        assertEquals("urls", Arrays.asList("http://example.com/a", "http://example.com/b", "http://example.com/a", "http://example.com/a"),
+                entries.stream().map(e -> e.getRequest().getUrl()).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void compact_keepsRunsInLongerSequences() throws Exception {
+        String waiting = "d2FpdGluZw==", done = "ZG9uZQ==";
+        String har = "{\"log\": {\"version\": \"1.2\", \"entries\": [" +
+                entry("2018-01-01T00:00:00.000Z", "http://example.com/poll", "text/plain", waiting, "X-Foo", "bar") + ", " +
+                entry("2018-01-01T00:00:01.000Z", "http://example.com/poll", "text/plain", waiting, "X-Foo", "bar") + ", " +
+                entry("2018-01-01T00:00:02.000Z", "http://example.com/poll", "text/plain", done, "X-Foo", "bar") + ", " +
+                entry("2018-01-01T00:00:03.000Z", "http://example.com/status", "text/plain", done, "X-Foo", "bar") + ", " +
+                entry("2018-01-01T00:00:04.000Z", "http://example.com/status", "text/plain", waiting, "X-Foo", "bar") + ", " +
+                entry("2018-01-01T00:00:05.000Z", "http://example.com/status", "text/plain", waiting, "X-Foo", "bar") +
+                "]}}";
+        File input = temporaryFolder.newFile(), output = temporaryFolder.newFile();
+        Files.asCharSink(input, UTF_8).write(har);
+        ObjectMapper mapper = HarReaderFactory.easier().createMapper(HarReaderMode.STRICT);
+        HarCompactor.Report report = new HarCompactor(mapper, ImmutableSet.of()).compact(input, output);
+        assertEquals("duplicates", 0, report.duplicateCount);
+        assertEquals("output entries", 6, report.outputEntryCount);
+    }
+
+    @Test
+    public void parseUnservedUrls() {
+        assertEquals(ImmutableSet.of("http://example.com/a", "http://example.com/b"),
+                HarCompactor.parseUnservedUrls(Arrays.asList("# never served", "http://example.com/a", "", "  http://example.com/b  ")));
+    }
+
+    private static String entry(String startedDateTime, String url, String mimeType, String base64Text, String headerName, String headerValue) {
+        return "{\"startedDateTime\": \"" + startedDateTime + "\", \"time\": 1, " +
+                "\"request\": {\"method\": \"GET\", \"url\": \"" + url + "\", \"httpVersion\": \"HTTP/1.1\", \"headers\": [], \"queryString\": [], \"cookies\": [], \"headersSize\": -1, \"bodySize\": 0}, " +
+                "\"response\": {\"status\": 200, \"statusText\": \"OK\", \"httpVersion\": \"HTTP/1.1\", \"headers\": [{\"name\": \"" + headerName + "\", \"value\": \"" + headerValue + "\"}], \"cookies\": [], " +
+                "\"content\": {\"size\": -1, \"mimeType\": \"" + mimeType + "\", \"text\": \"" + base64Text + "\", \"encoding\": \"base64\"}, \"redirectURL\": \"\", \"headersSize\": -1, \"bodySize\": -1}, " +
+                "\"cache\": {}, \"timings\": {\"dns\": 3, \"send\": 0, \"wait\": 1, \"receive\": 2}, \"_initiator\": {\"type\": \"other\"}}";
+    }
+
+    private static byte[] gzip(String text) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(baos)) {
+            out.write(text.getBytes(UTF_8));
+        }
+        return baos.toByteArray();
+    }
+}
@@ -57,6 +57,18 @@ public class HarReplayMainTest {
         }
     }
 
+    @Test
+    public void compact() throws Exception {
+        File harFile = getBrowsermobGeneratedHarFile();
+        File compactedHarFile = new File(temporaryFolder.getRoot(), "compacted.har");
+        int exitCode = new NonSleepingHarReplayMain().main0(new String[]{
+                harFile.getAbsolutePath(),
+                "--compact", compactedHarFile.getAbsolutePath()
+        });
+        assertEquals("exit code", 0, exitCode);
+        assertTrue("compacted har smaller than original", compactedHarFile.length() < harFile.length());
+    }
+
     private File getBrowsermobGeneratedHarFile() throws IOException {
         return Fixtures.copyBrowsermobGeneratedHarFile(temporaryFolder.getRoot().toPath());
     }
@@ -12,6 +12,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
+import io.github.mike10004.harreplay.ExplodedHarLayout;
 import org.apache.commons.codec.binary.Base64InputStream;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -119,7 +120,7 @@ public class HarExploder {
     }
 
     protected void explode(IntermediateRep intermediateRep, Path outputRoot) throws IOException {
-        Path entriesRoot = outputRoot.resolve("log").resolve("entries");
+        Path entriesRoot = ExplodedHarLayout.resolveEntriesDir(outputRoot);
         //noinspection ResultOfMethodCallIgnored
         entriesRoot.toFile().mkdirs();
         if (!entriesRoot.toFile().isDirectory()) {
@@ -167,13 +168,28 @@ public class HarExploder {
         public final int status;
         public final String statusText;
         public final ByteSource responseContent;
+        @Nullable
+        public final JsonObject requestMetadata;
+        @Nullable
+        public final JsonObject responseMetadata;
 
         public CachedEntry(String method, String url, int status, String statusText, ByteSource responseContent) {
+            this(method, url, status, statusText, responseContent, null, null);
+        }
+
+        /**
+         * Constructs an instance.
+         * @param requestMetadata the HAR request object
+         * @param responseMetadata the HAR response object without the text of its content
+         */
+        public CachedEntry(String method, String url, int status, String statusText, ByteSource responseContent, @Nullable JsonObject requestMetadata, @Nullable JsonObject responseMetadata) {
             this.method = requireNonNull(method);
             this.url = requireNonNull(url);
             this.status = status;
             this.statusText = Strings.nullToEmpty(statusText);
             this.responseContent = requireNonNull(responseContent);
+            this.requestMetadata = requestMetadata;
+            this.responseMetadata = responseMetadata;
         }
 
 
@@ -187,11 +203,17 @@ public class HarExploder {
         }
 
         public void writeResponseFilesInDirectory(Path directory) throws IOException {
-            File urlFile = directory.resolve("url.txt").toFile();
+            File urlFile = directory.resolve(ExplodedHarLayout.URL_FILENAME).toFile();
             Files.asCharSink(urlFile, StandardCharsets.UTF_8).write(url);
             String dataFilename = constructResponseDataFilename();
             File dataFile = directory.resolve(dataFilename).toFile();
             responseContent.copyTo(Files.asByteSink(dataFile));
+            if (requestMetadata != null) {
+                Files.asCharSink(directory.resolve(ExplodedHarLayout.REQUEST_METADATA_FILENAME).toFile(), StandardCharsets.UTF_8).write(requestMetadata.toString());
+            }
+            if (responseMetadata != null) {
+                Files.asCharSink(directory.resolve(ExplodedHarLayout.RESPONSE_METADATA_FILENAME).toFile(), StandardCharsets.UTF_8).write(responseMetadata.toString());
+            }
         }
 
         @Nullable
@@ -208,12 +230,18 @@ public class HarExploder {
             int status = 0;
             String statusText = "Unknown";
             ByteSource responseContent = ByteSource.empty();
+            @Nullable JsonObject responseMetadata = null;
             if (response != null) {
                 status = response.get("status").getAsInt();
                 statusText = asStringOrNull(response.getAsJsonPrimitive("statusText"));
                 responseContent = prepareContent(response.getAsJsonObject("content"), scratchDir);
+                responseMetadata = response.deepCopy();
+                JsonObject content = responseMetadata.getAsJsonObject("content");
+                if (content != null) {
+                    content.remove("text");
+                }
             }
-            return new CachedEntry(method, url, status, statusText, responseContent);
+            return new CachedEntry(method, url, status, statusText, responseContent, request, responseMetadata);
         }
 
         protected static ByteSource prepareContent(@Nullable JsonObject content, Path scratchDir) throws IOException {
@@ -25,6 +25,6 @@ public class HarExploderTest {
         new HarExploder().explode(Files.asCharSource(harFile, StandardCharsets.UTF_8), outputRoot);
         Collection<File> exploded = FileUtils.listFiles(outputRoot.toFile(), null, true);
         exploded.forEach(System.out::println);
-        assertEquals("num files", 2 * 2, exploded.size());
+        assertEquals("num files", 2 * 4, exploded.size());
     }
 }
\ No newline at end of file
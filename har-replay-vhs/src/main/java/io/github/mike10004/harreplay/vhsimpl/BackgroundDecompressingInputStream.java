@@ -0,0 +1,101 @@
+package io.github.mike10004.harreplay.vhsimpl;
+
+import com.google.common.base.Throwables;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import javax.annotation.Nullable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+
+/**
+ * Input stream that decompresses data on a background thread, so that
+ * decompression overlaps with consumption of the decompressed data. If
+ * decompression fails for any reason, including an unchecked exception or
+ * error thrown by the decompressor, the failure is rethrown to the reader
+ * instead of the reader seeing a truncated stream.
+ */
+class BackgroundDecompressingInputStream extends FilterInputStream {
+
+    private static final int PIPE_SIZE = 256 * 1024;
+
+    private final InputStream compressed;
+    private final Thread worker;
+    @Nullable
+    private volatile Throwable failure;
+
+    private BackgroundDecompressingInputStream(PipedInputStream pipe, InputStream compressed, HarCompression compression) throws IOException {
+        super(pipe);
+        this.compressed = compressed;
+        PipedOutputStream sink = new PipedOutputStream(pipe);
+        worker = new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("har-decompressor-%d")
+                .build()
+                .newThread(() -> {
+                    try (InputStream decompressing = compression.decompress(compressed)) {
+                        ByteStreams.copy(decompressing, sink);
+                    } catch (Throwable e) {
+                        failure = e;
+                    } finally {
+                        try {
+                            sink.close();
+                        } catch (IOException ignore) {
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Opens a stream that supplies the decompressed content of a compressed stream.
+     * @param compressed the compressed stream; closed when the returned stream is closed
+     * @param compression the compression format
+     * @return the decompressed stream
+     * @throws IOException on I/O error
+     */
+    public static InputStream open(InputStream compressed, HarCompression compression) throws IOException {
+        BackgroundDecompressingInputStream stream = new BackgroundDecompressingInputStream(new PipedInputStream(PIPE_SIZE), compressed, compression);
+        stream.worker.start();
+        return stream;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return checkFailure(super.read());
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        return checkFailure(super.read(b, off, len));
+    }
+
+    private int checkFailure(int result) throws IOException {
+        if (result == -1) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for decompression to finish");
+            }
+            @Nullable Throwable failure = this.failure;
+            if (failure != null) {
+                Throwables.throwIfInstanceOf(failure, Error.class);
+                throw new IOException("decompression failed", failure);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            compressed.close();
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package io.github.mike10004.harreplay.vhsimpl;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Throwables;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import io.github.mike10004.vhs.EntryMatcher;
+import io.github.mike10004.vhs.HttpRespondable;
+import io.github.mike10004.vhs.harbridge.ParsedRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Cache of entry matchers built from HAR files, shared by replay sessions in
+ * the same JVM. Matchers do not hold per-session state, so sessions that replay
+ * the same HAR files with the same configuration can use the same matcher,
+ * and with it the entries and decoded response content it retains.
+ *
+ * <p>A session {@link #acquire(Object, Loader) acquires} a lease on a matcher
+ * and closes the lease when it stops. A matcher is built at most once for
+ * concurrent acquisitions of the same key. When no lease on a matcher remains,
+ * the matcher is kept idle so that a later session can reuse it; the least
+ * recently released idle matchers are evicted when there are more than a
+ * fixed number of them.
+ *
+ * <p>Keys must implement value equality and must change whenever anything that
+ * the matcher is built from changes; {@link HarFingerprint} identifies the
+ * content of a HAR file for this purpose.
+ */
+public final class CompiledHarCache {
+
+    private static final Logger log = LoggerFactory.getLogger(CompiledHarCache.class);
+
+    static final int DEFAULT_MAX_IDLE = 4;
+
+    private static final CompiledHarCache SHARED = new CompiledHarCache(DEFAULT_MAX_IDLE);
+
+    private final int maxIdle;
+    private final Map<Object, Slot> slots;
+    private final LinkedHashMap<Object, Slot> idle;
+
+    CompiledHarCache(int maxIdle) {
+        checkArgument(maxIdle >= 0, "maxIdle must be nonnegative: %s", maxIdle);
+        this.maxIdle = maxIdle;
+        slots = new HashMap<>();
+        idle = new LinkedHashMap<>();
+    }
+
+    /**
+     * Gets the instance shared by all managers in this JVM.
+     * @return the shared instance
+     */
+    public static CompiledHarCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Interface of a service that builds a matcher.
+     */
+    public interface Loader {
+
+        /**
+         * Builds the matcher.
+         * @return the matcher
+         * @throws IOException on I/O error
+         */
+        EntryMatcher<Object> load() throws IOException;
+    }
+
+    /**
+     * Acquires a lease on the matcher for a key, building the matcher if no
+     * matcher for the key is cached.
+     * @param key the key
+     * @param loader the loader that builds the matcher
+     * @return a lease, which must be closed when the matcher is no longer used
+     * @throws IOException if building the matcher fails
+     */
+    public Lease acquire(Object key, Loader loader) throws IOException {
+        requireNonNull(key, "key");
+        requireNonNull(loader, "loader");
+        Slot slot;
+        synchronized (this) {
+            slot = slots.computeIfAbsent(key, k -> new Slot(k, loader));
+            idle.remove(key);
+            slot.refCount++;
+        }
+        slot.task.run();
+        try {
+            return new Lease(slot, slot.task.get());
+        } catch (InterruptedException e) {
+            release(slot);
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while waiting for matcher", e);
+        } catch (ExecutionException e) {
+            synchronized (this) {
+                slots.remove(key, slot);
+            }
+            release(slot);
+            Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private synchronized void release(Slot slot) {
+        checkState(slot.refCount > 0, "not acquired: %s", slot.key);
+        slot.refCount--;
+        if (slot.refCount == 0 && slots.get(slot.key) == slot) {
+            idle.put(slot.key, slot);
+            Iterator<Slot> it = idle.values().iterator();
+            while (idle.size() > maxIdle) {
+                Slot eldest = it.next();
+                it.remove();
+                slots.remove(eldest.key);
+                log.debug("evicted idle matcher for {}", eldest.key);
+            }
+        }
+    }
+
+    /**
+     * Removes all matchers from this cache. Sessions that hold leases on them
+     * can continue to use them, but later acquisitions build new matchers, and
+     * the removed matchers are discarded when their leases are closed. Use this
+     * to free the memory retained by idle matchers, or to make sessions read HAR
+     * files again.
+     */
+    public synchronized void invalidateAll() {
+        log.debug("invalidating {} matchers ({} idle)", slots.size(), idle.size());
+        slots.clear();
+        idle.clear();
+    }
+
+    /**
+     * Gets the number of matchers cached, including those that are idle.
+     * @return the number of matchers
+     */
+    public synchronized int size() {
+        return slots.size();
+    }
+
+    /**
+     * Gets the number of matchers cached on which no lease is held.
+     * @return the number of idle matchers
+     */
+    public synchronized int idleCount() {
+        return idle.size();
+    }
+
+    private static class Slot {
+
+        public final Object key;
+        public final FutureTask<EntryMatcher<Object>> task;
+        public int refCount;
+
+        public Slot(Object key, Loader loader) {
+            this.key = key;
+            task = new FutureTask<>(loader::load);
+        }
+    }
+
+    /**
+     * Lease on a cached matcher. The lease is itself a matcher that delegates
+     * to the cached one, and it can be closed at most once.
+     */
+    public final class Lease implements EntryMatcher<Object>, AutoCloseable {
+
+        private final Slot slot;
+        private final EntryMatcher<Object> matcher;
+        private boolean closed;
+
+        private Lease(Slot slot, EntryMatcher<Object> matcher) {
+            this.slot = slot;
+            this.matcher = requireNonNull(matcher);
+        }
+
+        @Override
+        @Nullable
+        public HttpRespondable findTopEntry(Object state, ParsedRequest request) {
+            return matcher.findTopEntry(state, request);
+        }
+
+        @Override
+        public CompletableFuture<?> whenReady(ParsedRequest request) {
+            return matcher.whenReady(request);
+        }
+
+        /**
+         * Releases this lease.
+         */
+        @Override
+        public void close() {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            release(slot);
+        }
+    }
+
+    /**
+     * Identity of the content of a HAR file, comprising the file's canonical
+     * path, size, modification time, and a hash of its content. The content of
+     * an exploded HAR directory is represented by the relative paths, sizes, and
+     * modification times of the files in it.
+     */
+    public static final class HarFingerprint {
+
+        public final String path;
+        public final long size;
+        public final long lastModified;
+        public final HashCode contentHash;
+
+        private HarFingerprint(String path, long size, long lastModified, HashCode contentHash) {
+            this.path = requireNonNull(path);
+            this.size = size;
+            this.lastModified = lastModified;
+            this.contentHash = requireNonNull(contentHash);
+        }
+
+        /**
+         * Computes the fingerprint of a file.
+         * @param file the file
+         * @return the fingerprint
+         * @throws IOException if the file cannot be read
+         */
+        public static HarFingerprint of(File file) throws IOException {
+            long size = file.length(), lastModified = file.lastModified();
+            HashCode contentHash;
+            if (file.isDirectory()) {
+                contentHash = hashListing(file.toPath());
+            } else {
+                contentHash = Files.asByteSource(file).hash(Hashing.murmur3_128());
+            }
+            return new HarFingerprint(file.getCanonicalPath(), size, lastModified, contentHash);
+        }
+
+        private static HashCode hashListing(Path directory) throws IOException {
+            Hasher hasher = Hashing.murmur3_128().newHasher();
+            List<Path> files;
+            try (Stream<Path> stream = java.nio.file.Files.walk(directory)) {
+                files = stream.filter(java.nio.file.Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            for (Path file : files) {
+                hasher.putString(directory.relativize(file).toString(), StandardCharsets.UTF_8)
+                        .putLong(java.nio.file.Files.size(file))
+                        .putLong(java.nio.file.Files.getLastModifiedTime(file).toMillis());
+            }
+            return hasher.hash();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            HarFingerprint that = (HarFingerprint) o;
+            return size == that.size &&
+                    lastModified == that.lastModified &&
+                    path.equals(that.path) &&
+                    contentHash.equals(that.contentHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, lastModified, contentHash);
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("path", path)
+                    .add("size", size)
+                    .add("contentHash", contentHash)
+                    .toString();
+        }
+    }
+}
@@ -6,6 +6,7 @@ import io.github.mike10004.vhs.HttpRespondable;
 import io.github.mike10004.vhs.harbridge.ParsedRequest;
 
 import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
 
 public class CompositeEntryMatcher<S> implements EntryMatcher<S> {
 
@@ -27,4 +28,11 @@ public class CompositeEntryMatcher<S> implements EntryMatcher<S> {
         return null;
     }
 
+    @Override
+    public CompletableFuture<?> whenReady(ParsedRequest request) {
+        return CompletableFuture.allOf(components.stream()
+                .map(component -> component.whenReady(request))
+                .toArray(CompletableFuture[]::new));
+    }
+
 }
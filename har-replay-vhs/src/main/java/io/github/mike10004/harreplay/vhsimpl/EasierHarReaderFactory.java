@@ -16,6 +16,11 @@ public class EasierHarReaderFactory implements HarReaderFactory {
         return new HarReader(createMapperFactory());
     }
 
+    @Override
+    public ObjectMapper createMapper(HarReaderMode mode) {
+        return createMapperFactory().instance(mode);
+    }
+
     protected MapperFactory createMapperFactory() {
         return new MapperFactory() {
             @Override
@@ -0,0 +1,52 @@
+package io.github.mike10004.harreplay.vhsimpl;
+
+import com.browserup.harreader.model.HarEntry;
+import io.github.mike10004.vhs.harbridge.DecodedContentCache;
+import io.github.mike10004.vhs.harbridge.TypedContent;
+import io.github.mike10004.vhs.harbridge.sstoehr.SstoehrHarBridge;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+
+/**
+ * Bridge that supplies the response bodies of entries read from an exploded
+ * HAR directory from their data files, and those of other entries from their
+ * HAR content objects. Bodies from data files are retained in the content
+ * cache, keyed on the response content object, just as bodies decoded from
+ * HAR content objects are.
+ * @see ExplodedHarReader
+ */
+class ExplodedHarBridge extends SstoehrHarBridge {
+
+    @Nullable
+    private final DecodedContentCache contentCache;
+
+    public ExplodedHarBridge(Charset exMachinaCharset, @Nullable DecodedContentCache contentCache) {
+        super(exMachinaCharset, contentCache);
+        this.contentCache = contentCache;
+    }
+
+    @Override
+    protected TypedContent getResponseBody(HarEntry entry) throws IOException {
+        if (entry instanceof ExplodedHarReader.ExplodedHarEntry) {
+            ExplodedHarReader.ExplodedHarEntry explodedEntry = (ExplodedHarReader.ExplodedHarEntry) entry;
+            if (contentCache == null) {
+                return explodedEntry.getResponseBody();
+            }
+            try {
+                return contentCache.get(explodedEntry.getResponse().getContent(), () -> {
+                    try {
+                        return explodedEntry.getResponseBody();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return super.getResponseBody(entry);
+    }
+}
@@ -0,0 +1,288 @@
+package io.github.mike10004.harreplay.vhsimpl;
+
+import com.browserup.harreader.model.HarContent;
+import com.browserup.harreader.model.HarEntry;
+import com.browserup.harreader.model.HarHeader;
+import com.browserup.harreader.model.HarRequest;
+import com.browserup.harreader.model.HarResponse;
+import com.browserup.harreader.model.HttpMethod;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteSource;
+import com.google.common.io.CharSource;
+import com.google.common.io.MoreFiles;
+import com.google.common.net.HttpHeaders;
+import com.google.common.net.MediaType;
+import com.google.common.primitives.Ints;
+import io.github.mike10004.harreplay.ExplodedHarLayout;
+import io.github.mike10004.vhs.harbridge.HarBridge;
+import io.github.mike10004.vhs.harbridge.Hars;
+import io.github.mike10004.vhs.harbridge.TypedContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Class that reads entries from an exploded HAR directory, as written by the
+ * {@code HarExploder} in the test support module and laid out as described
+ * by {@link ExplodedHarLayout}. Entry directories written before the metadata
+ * files were added are read from the URL file and the directory and data file
+ * names alone, and their bodies are served as {@code application/octet-stream}.
+ *
+ * <p>Requests are bound when the directory is read. A response's metadata is
+ * bound the first time the entry's {@link HarEntry#getResponse() response} is
+ * requested, and its body is streamed from the data file each time it is
+ * served, unless the bridge retains the decoded body in its content cache.
+ * Text stored in UTF-8 and served in another charset is transcoded as it is
+ * streamed, so a large body is never held in memory whole. The files must not
+ * be modified while the entries are in use.
+ *
+ * <p>The data file is read with ordinary file reads rather than memory-mapped.
+ * A mapping cannot be released deterministically; it holds the file's pages,
+ * and on Windows locks the file, until the mapped buffer is garbage-collected,
+ * which would keep a reloaded or replaced directory from being deleted. For the
+ * same reason, bodies are not served zero-copy from a mapping of the data file;
+ * they are copied through the proxy's buffers like any other body, and bodies
+ * that fit the content cache's budget are served from memory after the first read.
+ * @see ExplodedHarBridge
+ */
+public class ExplodedHarReader {
+
+    private static final Logger log = LoggerFactory.getLogger(ExplodedHarReader.class);
+
+    private static final ImmutableSet<String> METADATA_FILENAMES = ImmutableSet.of(ExplodedHarLayout.REQUEST_METADATA_FILENAME, ExplodedHarLayout.RESPONSE_METADATA_FILENAME, ExplodedHarLayout.URL_FILENAME);
+    private static final Splitter NAME_SPLITTER = Splitter.on('-').limit(3);
+    private static final int TRANSCODE_BUFFER_SIZE = 8192;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Constructs an instance.
+     * @param objectMapper the mapper used to bind requests and responses
+     */
+    public ExplodedHarReader(ObjectMapper objectMapper) {
+        this.objectMapper = requireNonNull(objectMapper, "objectMapper");
+    }
+
+    /**
+     * Reads the entries of an exploded HAR directory, in the order of their indexes.
+     * @param directory the directory
+     * @return the entries
+     * @throws IOException if the directory cannot be read or is not an exploded HAR
+     */
+    public List<HarEntry> readEntries(File directory) throws IOException {
+        Path entriesRoot = ExplodedHarLayout.resolveEntriesDir(directory.toPath());
+        if (!Files.isDirectory(entriesRoot)) {
+            throw new IOException("not an exploded HAR: " + directory);
+        }
+        List<Path> entryDirs;
+        try (Stream<Path> children = Files.list(entriesRoot)) {
+            entryDirs = children.filter(Files::isDirectory)
+                    .sorted(Comparator.comparingInt(ExplodedHarReader::parseIndex).thenComparing(Path::getFileName))
+                    .collect(Collectors.toList());
+        }
+        List<HarEntry> entries = new ArrayList<>(entryDirs.size());
+        for (Path entryDir : entryDirs) {
+            @Nullable HarEntry entry = readEntry(entryDir);
+            if (entry != null) {
+                entries.add(entry);
+            }
+        }
+        log.debug("indexed {} entries in {}", entries.size(), directory);
+        return entries;
+    }
+
+    private static int parseIndex(Path entryDir) {
+        @Nullable Integer index = Ints.tryParse(NAME_SPLITTER.split(entryDir.getFileName().toString()).iterator().next());
+        return index == null ? Integer.MAX_VALUE : index;
+    }
+
+    @Nullable
+    private HarEntry readEntry(Path entryDir) throws IOException {
+        @Nullable Path dataFile;
+        try (Stream<Path> children = Files.list(entryDir)) {
+            dataFile = children.filter(Files::isRegularFile)
+                    .filter(p -> !METADATA_FILENAMES.contains(p.getFileName().toString()))
+                    .findFirst().orElse(null);
+        }
+        HarRequest request;
+        Path requestMetadataFile = entryDir.resolve(ExplodedHarLayout.REQUEST_METADATA_FILENAME);
+        if (Files.isRegularFile(requestMetadataFile)) {
+            request = objectMapper.readValue(requestMetadataFile.toFile(), HarRequest.class);
+        } else {
+            request = new HarRequest();
+            List<String> nameParts = NAME_SPLITTER.splitToList(entryDir.getFileName().toString());
+            try {
+                request.setMethod(HttpMethod.valueOf(nameParts.size() > 1 ? nameParts.get(1) : ""));
+            } catch (IllegalArgumentException e) {
+                log.info("skipping {} because request method is not recognized", entryDir);
+                return null;
+            }
+            request.setUrl(new String(Files.readAllBytes(entryDir.resolve(ExplodedHarLayout.URL_FILENAME)), StandardCharsets.UTF_8).trim());
+        }
+        ExplodedHarEntry entry = new ExplodedHarEntry(entryDir.resolve(ExplodedHarLayout.RESPONSE_METADATA_FILENAME), dataFile);
+        entry.setRequest(request);
+        return entry;
+    }
+
+    /**
+     * Entry whose response metadata is bound on first access and whose response
+     * body is read from a file.
+     */
+    class ExplodedHarEntry extends HarEntry {
+
+        private final Path responseMetadataFile;
+        @Nullable
+        private final Path dataFile;
+        private volatile boolean responseBound;
+
+        public ExplodedHarEntry(Path responseMetadataFile, @Nullable Path dataFile) {
+            this.responseMetadataFile = requireNonNull(responseMetadataFile);
+            this.dataFile = dataFile;
+        }
+
+        @Override
+        public HarResponse getResponse() {
+            if (!responseBound) {
+                synchronized (this) {
+                    if (!responseBound) {
+                        try {
+                            super.setResponse(bindResponse());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        responseBound = true;
+                    }
+                }
+            }
+            return super.getResponse();
+        }
+
+        @Override
+        public void setResponse(HarResponse response) {
+            synchronized (this) {
+                super.setResponse(response);
+                responseBound = true;
+            }
+        }
+
+        private HarResponse bindResponse() throws IOException {
+            HarResponse response;
+            if (Files.isRegularFile(responseMetadataFile)) {
+                response = objectMapper.readValue(responseMetadataFile.toFile(), HarResponse.class);
+            } else {
+                response = new HarResponse();
+                String dataFilename = dataFile == null ? "" : dataFile.getFileName().toString();
+                @Nullable Integer status = Ints.tryParse(NAME_SPLITTER.split(dataFilename).iterator().next());
+                response.setStatus(status == null ? 0 : status);
+                response.getContent().setMimeType(MediaType.OCTET_STREAM.toString());
+                response.getContent().setEncoding("base64");
+            }
+            HarContent content = response.getContent();
+            if (content.getSize() == null || content.getSize() < 0) {
+                content.setSize(dataFile == null ? 0L : Files.size(dataFile));
+            }
+            return response;
+        }
+
+        /**
+         * Gets the response body. Text content is stored in UTF-8 and is
+         * transcoded as it is read if the content type specifies another charset
+         * that can encode it; otherwise the body is read from the data file
+         * whenever it is opened. Deciding whether the text can be encoded reads
+         * the data file once, in chunks.
+         * @return the body and its content type
+         * @throws IOException on I/O error
+         */
+        public TypedContent getResponseBody() throws IOException {
+            HarResponse response = getResponse();
+            HarContent content = response.getContent();
+            MediaType contentType = parseContentType(content.getMimeType());
+            ByteSource data = dataFile == null ? ByteSource.empty() : MoreFiles.asByteSource(dataFile);
+            if ("base64".equalsIgnoreCase(content.getEncoding())) {
+                @Nullable String contentEncodingHeaderValue = response.getHeaders().stream()
+                        .filter(h -> HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(h.getName()))
+                        .map(HarHeader::getValue)
+                        .findFirst().orElse(null);
+                return TypedContent.identity(Hars.decodingSource(data, contentEncodingHeaderValue), contentType);
+            }
+            @Nullable Charset charset = contentType.charset().orNull();
+            if (charset == null) {
+                return TypedContent.identity(data, contentType.withCharset(StandardCharsets.UTF_8));
+            }
+            if (charset.equals(StandardCharsets.UTF_8)) {
+                return TypedContent.identity(data, contentType);
+            }
+            CharSource text = data.asCharSource(StandardCharsets.UTF_8);
+            if (!canEncode(text, charset)) {
+                return TypedContent.identity(data, contentType.withCharset(StandardCharsets.UTF_8));
+            }
+            return TypedContent.identity(text.asByteSource(charset), contentType);
+        }
+    }
+
+    /**
+     * Checks whether text can be encoded in a charset, reading it in chunks.
+     * A surrogate pair split between chunks is carried over to the next chunk.
+     */
+    private static boolean canEncode(CharSource text, Charset charset) throws IOException {
+        CharsetEncoder encoder = charset.newEncoder();
+        CharBuffer in = CharBuffer.allocate(TRANSCODE_BUFFER_SIZE);
+        ByteBuffer out = ByteBuffer.allocate((int) Math.ceil(TRANSCODE_BUFFER_SIZE * encoder.maxBytesPerChar()));
+        try (Reader reader = text.openStream()) {
+            boolean endOfInput = false;
+            while (!endOfInput) {
+                endOfInput = reader.read(in) < 0;
+                in.flip();
+                CoderResult result;
+                do {
+                    out.clear();
+                    result = encoder.encode(in, out, endOfInput);
+                    if (result.isError()) {
+                        return false;
+                    }
+                } while (result.isOverflow());
+                in.compact();
+            }
+        }
+        CoderResult result;
+        do {
+            out.clear();
+            result = encoder.flush(out);
+        } while (result.isOverflow());
+        return true;
+    }
+
+    private static MediaType parseContentType(@Nullable String mimeType) {
+        if (!Strings.isNullOrEmpty(mimeType)) {
+            try {
+                return MediaType.parse(mimeType);
+            } catch (IllegalArgumentException e) {
+                log.debug("failed to parse content type {}", mimeType);
+            }
+        }
+        return HarBridge.getContentTypeDefaultValue();
+    }
+}
@@ -0,0 +1,101 @@
+package io.github.mike10004.harreplay.vhsimpl;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Enumeration of compression formats in which a HAR file may be stored.
+ * Zstandard decompression requires {@code com.github.luben:zstd-jni}
+ * on the classpath.
+ */
+public enum HarCompression {
+
+    NONE(new byte[0]),
+    GZIP(new byte[]{(byte) 0x1f, (byte) 0x8b}),
+    ZSTD(new byte[]{(byte) 0x28, (byte) 0xb5, (byte) 0x2f, (byte) 0xfd});
+
+    private static final String ZSTD_INPUT_STREAM_CLASS_NAME = "com.github.luben.zstd.ZstdInputStream";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_MAGIC_LENGTH = 4;
+
+    private final byte[] magic;
+
+    HarCompression(byte[] magic) {
+        this.magic = magic;
+    }
+
+    /**
+     * Detects the compression format of a file by examining its first bytes.
+     * @param file the file
+     * @return the compression format, or {@link #NONE} if the file is not compressed
+     * @throws IOException on I/O error
+     */
+    public static HarCompression detect(File file) throws IOException {
+        byte[] head = new byte[MAX_MAGIC_LENGTH];
+        int length;
+        try (InputStream in = new FileInputStream(file)) {
+            length = ByteStreams.read(in, head, 0, head.length);
+        }
+        for (HarCompression compression : new HarCompression[]{GZIP, ZSTD}) {
+            if (length >= compression.magic.length && Arrays.equals(compression.magic, Arrays.copyOf(head, compression.magic.length))) {
+                return compression;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Wraps a stream of compressed data in a stream that decompresses it.
+     * @param compressed the compressed stream
+     * @return the decompressing stream
+     * @throws IOException on I/O error, or if the format is not supported in this environment
+     */
+    public InputStream decompress(InputStream compressed) throws IOException {
+        switch (this) {
+            case NONE:
+                return compressed;
+            case GZIP:
+                return new GZIPInputStream(compressed, BUFFER_SIZE);
+            case ZSTD:
+                return openZstdInputStream(compressed);
+            default:
+                throw new IllegalStateException("unhandled: " + this);
+        }
+    }
+
+    /**
+     * Checks whether Zstandard decompression is supported in this environment.
+     * @return true iff zstd-jni is on the classpath
+     */
+    public static boolean isZstdAvailable() {
+        try {
+            Class.forName(ZSTD_INPUT_STREAM_CLASS_NAME);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static InputStream openZstdInputStream(InputStream compressed) throws IOException {
+        try {
+            Class<?> streamClass = Class.forName(ZSTD_INPUT_STREAM_CLASS_NAME);
+            return (InputStream) streamClass.getConstructor(InputStream.class).newInstance(compressed);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("reading a zstd-compressed HAR requires com.github.luben:zstd-jni on the classpath", e);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IOException(e);
+        }
+    }
+}
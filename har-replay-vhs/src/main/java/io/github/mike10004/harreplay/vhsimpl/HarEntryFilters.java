@@ -0,0 +1,121 @@
+package io.github.mike10004.harreplay.vhsimpl;
+
+import com.browserup.harreader.model.HarContent;
+import com.browserup.harreader.model.HarEntry;
+import com.browserup.harreader.model.HarRequest;
+import com.browserup.harreader.model.HarResponse;
+import io.github.mike10004.harreplay.ReplayServerConfig.EntryFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Static utility methods that apply {@link EntryFilter entry filters} to HAR entries.
+ */
+final class HarEntryFilters {
+
+    private static final Logger log = LoggerFactory.getLogger(HarEntryFilters.class);
+
+    private HarEntryFilters() {}
+
+    /**
+     * Removes the entries that are excluded by any of a list of filters, and logs
+     * how many entries each filter excluded. An entry excluded by more than one
+     * filter is counted against the first. The response of an entry is examined
+     * only if a filter with response criteria has matched its request.
+     * @param entries the entries
+     * @param filters the filters
+     * @return the entries that are not excluded
+     */
+    public static List<HarEntry> apply(List<HarEntry> entries, List<EntryFilter> filters) {
+        if (filters.stream().allMatch(EntryFilter::isEmpty)) {
+            return entries;
+        }
+        List<HarEntry> retained = new ArrayList<>(entries.size());
+        FilteringConsumer filtering = new FilteringConsumer(filters, retained::add);
+        entries.forEach(filtering);
+        filtering.logExclusions();
+        return retained;
+    }
+
+    /**
+     * Consumer that passes on the entries that are not excluded by any of a list
+     * of filters, for use when entries are streamed rather than read into a list.
+     * Invoke {@link #logExclusions()} once all entries have been accepted.
+     */
+    public static class FilteringConsumer implements Consumer<HarEntry> {
+
+        private final List<EntryFilter> effectiveFilters;
+        private final Consumer<? super HarEntry> downstream;
+        private final int[] exclusionCounts;
+        private int numEntries;
+
+        public FilteringConsumer(List<EntryFilter> filters, Consumer<? super HarEntry> downstream) {
+            this.effectiveFilters = filters.stream().filter(f -> !f.isEmpty()).collect(Collectors.toList());
+            this.downstream = requireNonNull(downstream);
+            exclusionCounts = new int[effectiveFilters.size()];
+        }
+
+        @Override
+        public void accept(HarEntry entry) {
+            numEntries++;
+            int excludingIndex = findExcludingFilter(entry, effectiveFilters);
+            if (excludingIndex < 0) {
+                downstream.accept(entry);
+            } else {
+                exclusionCounts[excludingIndex]++;
+            }
+        }
+
+        /**
+         * Logs how many of the entries accepted so far each filter excluded.
+         */
+        public void logExclusions() {
+            for (int i = 0; i < exclusionCounts.length; i++) {
+                if (exclusionCounts[i] > 0) {
+                    log.info("{} of {} entries excluded by {}", exclusionCounts[i], numEntries, effectiveFilters.get(i));
+                } else {
+                    log.debug("no entries excluded by {}", effectiveFilters.get(i));
+                }
+            }
+        }
+    }
+
+    private static int findExcludingFilter(HarEntry entry, List<EntryFilter> filters) {
+        @Nullable HarRequest request = entry.getRequest();
+        if (request == null || request.getUrl() == null) {
+            return -1;
+        }
+        for (int i = 0; i < filters.size(); i++) {
+            EntryFilter filter = filters.get(i);
+            if (filter.isMatchingRequest(request.getUrl())) {
+                if (!filter.hasResponseCriteria() || isMatchingResponse(filter, entry.getResponse())) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isMatchingResponse(EntryFilter filter, @Nullable HarResponse response) {
+        if (response == null) {
+            return false;
+        }
+        @Nullable HarContent content = response.getContent();
+        @Nullable String mimeType = content == null ? null : content.getMimeType();
+        long bodySize = -1;
+        if (content != null && content.getSize() != null && content.getSize() >= 0) {
+            bodySize = content.getSize();
+        } else if (response.getBodySize() != null) {
+            bodySize = response.getBodySize();
+        }
+        return filter.isMatchingResponse(mimeType, response.getStatus(), bodySize);
+    }
+}
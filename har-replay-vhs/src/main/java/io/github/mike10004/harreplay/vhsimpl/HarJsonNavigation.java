@@ -0,0 +1,46 @@
+package io.github.mike10004.harreplay.vhsimpl;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+
+/**
+ * Static methods that position a streaming parser within a HAR.
+ */
+final class HarJsonNavigation {
+
+    private HarJsonNavigation() {}
+
+    /**
+     * Advances the parser to the start of the entries array of a HAR.
+     * @param parser a parser positioned before the root object
+     * @return true if the parser is positioned on the start of the array, false if the HAR has no entries array
+     * @throws IOException on I/O error or if the content is not valid JSON
+     */
+    public static boolean advanceToEntries(JsonParser parser) throws IOException {
+        return parser.nextToken() == JsonToken.START_OBJECT
+                && advanceToField(parser, "log")
+                && parser.nextToken() == JsonToken.START_OBJECT
+                && advanceToField(parser, "entries")
+                && parser.nextToken() == JsonToken.START_ARRAY;
+    }
+
+    /**
+     * Advances the parser to the named field of the current object.
+     * @param parser a parser positioned at the start of an object or on one of its field values
+     * @param fieldName the field name
+     * @return true if the parser is positioned on the field name, false if the object has no such field
+     * @throws IOException on I/O error or if the content is not valid JSON
+     */
+    public static boolean advanceToField(JsonParser parser, String fieldName) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (fieldName.equals(parser.getCurrentName())) {
+                return true;
+            }
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        return false;
+    }
+}
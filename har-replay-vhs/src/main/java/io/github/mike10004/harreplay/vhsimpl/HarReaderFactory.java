@@ -1,11 +1,23 @@
 package io.github.mike10004.harreplay.vhsimpl;
 
 import com.browserup.harreader.HarReader;
+import com.browserup.harreader.HarReaderMode;
+import com.browserup.harreader.jackson.DefaultMapperFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 public interface HarReaderFactory {
 
     HarReader createReader();
 
+    /**
+     * Creates an object mapper configured like the mapper used by readers this factory creates.
+     * @param mode the reader mode
+     * @return a new object mapper
+     */
+    default ObjectMapper createMapper(HarReaderMode mode) {
+        return new DefaultMapperFactory().instance(mode);
+    }
+
     static HarReaderFactory easier() {
         return new EasierHarReaderFactory();
     }
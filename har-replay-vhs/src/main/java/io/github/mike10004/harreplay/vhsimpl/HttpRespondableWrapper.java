@@ -2,11 +2,16 @@ package io.github.mike10004.harreplay.vhsimpl;
 
 import com.google.common.net.MediaType;
 import io.github.mike10004.vhs.HttpRespondable;
+import io.github.mike10004.vhs.harbridge.RecordedTiming;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.Map.Entry;
+import java.util.OptionalLong;
 import java.util.stream.Stream;
 
 import static java.util.Objects.requireNonNull;
@@ -39,4 +44,36 @@ public class HttpRespondableWrapper implements HttpRespondable {
     public MediaType previewContentType() {
         return delegate.previewContentType();
     }
+
+    @Override
+    public OptionalLong getBodyLengthIfKnown() {
+        return delegate.getBodyLengthIfKnown();
+    }
+
+    @Override
+    public ByteBuffer viewBody() throws IOException {
+        return delegate.viewBody();
+    }
+
+    @Override
+    public InputStream openBodyStream() throws IOException {
+        return delegate.openBodyStream();
+    }
+
+    @Override
+    public long transferBody(WritableByteChannel channel) throws IOException {
+        return delegate.transferBody(channel);
+    }
+
+    @Override
+    @Nullable
+    public RecordedTiming getRecordedTiming() {
+        return delegate.getRecordedTiming();
+    }
+
+    @Override
+    @Nullable
+    public String getNamespace() {
+        return delegate.getNamespace();
+    }
 }
@@ -0,0 +1,165 @@
+package io.github.mike10004.harreplay.vhsimpl;
+
+import com.browserup.harreader.model.HarEntry;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Class that reads entries from a HAR file that grows while it is being read,
+ * as happens when another process is capturing traffic to the file. Each
+ * invocation of {@link #readNewEntries()} returns only the entries that were
+ * appended since the previous invocation. The reader remembers the byte offset
+ * at which the last complete entry ended and resumes parsing from there, so the
+ * cost of an invocation depends on how much was appended rather than on the
+ * size of the file. An entry that is not completely written yet is left for a
+ * later invocation.
+ *
+ * <p>Instances assume that entries are only ever appended to the file. If the
+ * file is found to be shorter than the offset at which reading would resume, or
+ * the bytes just before that offset have changed, the file is assumed to have been
+ * replaced and no entries are returned. Instances are not thread-safe.
+ */
+public class IncrementalHarEntryReader {
+
+    private static final Logger log = LoggerFactory.getLogger(IncrementalHarEntryReader.class);
+
+    /**
+     * Number of bytes preceding the resume offset that are compared to detect
+     * that the file has been replaced.
+     */
+    private static final int RESUME_CHECK_LENGTH = 64;
+
+    private final File harFile;
+    private final ObjectMapper objectMapper;
+    private int numEntriesRead;
+    private long resumeOffset = -1;
+    private byte[] resumeCheck = new byte[0];
+
+    /**
+     * Constructs an instance.
+     * @param harFile the HAR file
+     * @param objectMapper the mapper used to bind entries
+     */
+    public IncrementalHarEntryReader(File harFile, ObjectMapper objectMapper) {
+        this.harFile = requireNonNull(harFile, "harFile");
+        this.objectMapper = requireNonNull(objectMapper, "objectMapper");
+    }
+
+    /**
+     * Reads entries that were appended since the last invocation.
+     * @return a list of new entries, possibly empty
+     * @throws IOException if the file cannot be read or is not a HAR
+     */
+    public List<HarEntry> readNewEntries() throws IOException {
+        if (resumeOffset < 0) {
+            return readInitialEntries();
+        }
+        try (FileChannel channel = FileChannel.open(harFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < resumeOffset || !Arrays.equals(resumeCheck, read(channel, resumeOffset - resumeCheck.length, resumeCheck.length))) {
+                log.warn("{} no longer contains the {} entries previously read; was it replaced?", harFile, numEntriesRead);
+                return Collections.emptyList();
+            }
+            channel.position(resumeOffset);
+            // the remainder of the array is either "{...}, {...}]" or ", {...}]", so a
+            // prefix that makes it a complete array is prepended
+            byte[] prefix = (numEntriesRead == 0 ? "[" : "[null").getBytes(StandardCharsets.US_ASCII);
+            InputStream in = new SequenceInputStream(new ByteArrayInputStream(prefix), Channels.newInputStream(channel));
+            try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+                List<HarEntry> newEntries = new ArrayList<>();
+                try {
+                    if (parser.nextToken() == JsonToken.START_ARRAY && (numEntriesRead == 0 || parser.nextToken() == JsonToken.VALUE_NULL)) {
+                        readEntries(parser, resumeOffset - prefix.length, newEntries);
+                    }
+                } catch (JsonProcessingException e) {
+                    logIncomplete(e);
+                }
+                return finish(newEntries);
+            }
+        }
+    }
+
+    private List<HarEntry> readInitialEntries() throws IOException {
+        List<HarEntry> newEntries = new ArrayList<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(harFile)) {
+            if (!HarJsonNavigation.advanceToEntries(parser)) {
+                log.debug("entries array not found in {}", harFile);
+                return Collections.emptyList();
+            }
+            resumeOffset = parser.getCurrentLocation().getByteOffset();
+            readEntries(parser, 0, newEntries);
+        } catch (JsonProcessingException e) {
+            logIncomplete(e);
+        }
+        return finish(newEntries);
+    }
+
+    /**
+     * Reads complete entries until the end of the array, advancing the resume
+     * offset past each.
+     * @param parser the parser
+     * @param base offset in the file of the first byte that the parser reads
+     * @param newEntries list to which entries are added
+     */
+    private void readEntries(JsonParser parser, long base, List<HarEntry> newEntries) throws IOException {
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            HarEntry entry = objectMapper.readValue(parser, HarEntry.class);
+            newEntries.add(entry);
+            resumeOffset = base + parser.getCurrentLocation().getByteOffset();
+        }
+    }
+
+    private List<HarEntry> finish(List<HarEntry> newEntries) throws IOException {
+        if (resumeOffset >= 0 && (!newEntries.isEmpty() || resumeCheck.length == 0)) {
+            try (FileChannel channel = FileChannel.open(harFile.toPath(), StandardOpenOption.READ)) {
+                int checkLength = (int) Math.min(RESUME_CHECK_LENGTH, resumeOffset);
+                resumeCheck = read(channel, resumeOffset - checkLength, checkLength);
+            }
+        }
+        numEntriesRead += newEntries.size();
+        return newEntries;
+    }
+
+    private void logIncomplete(JsonProcessingException e) {
+        // the writer has not finished writing the file; keep what was complete
+        log.debug("stopped reading at incomplete entry {} in {}: {}", numEntriesRead, harFile, e.toString());
+    }
+
+    private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * Gets the number of entries read so far.
+     * @return the number of entries
+     */
+    public int getNumEntriesRead() {
+        return numEntriesRead;
+    }
+}
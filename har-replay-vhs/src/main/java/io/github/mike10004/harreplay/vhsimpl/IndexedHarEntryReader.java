@@ -0,0 +1,231 @@
+package io.github.mike10004.harreplay.vhsimpl;
+
+import com.browserup.harreader.model.HarEntry;
+import com.browserup.harreader.model.HarRequest;
+import com.browserup.harreader.model.HarResponse;
+import com.browserup.harreader.model.HarTiming;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Class that reads entries from a HAR file without binding their responses
+ * until they are needed. The file is scanned once with the streaming parser;
+ * the request of each entry is bound eagerly, because requests are needed to
+ * match entries, and the byte range of the response is recorded. The response
+ * is read from that range of the file and bound the first time the entry's
+ * {@link HarEntry#getResponse() response} is requested, which normally happens
+ * only when the entry is the best match for a request. The timings of an entry
+ * are bound eagerly, as they are small; other fields, such as cache information,
+ * are not bound at all.
+ *
+ * <p>Responses are read with positional {@link FileChannel} reads rather than
+ * through a memory mapping. A mapping cannot be unmapped deterministically, so
+ * it would hold the file's pages, and on Windows would keep the file locked,
+ * until it happened to be garbage-collected; a locked file cannot be replaced,
+ * which interferes with {@link VhsReplayManagerConfig#reloadOnHarChange}.
+ *
+ * <p>The file must not be modified while its entries are in use. If the file
+ * has been modified when a response is bound, an {@link UncheckedIOException}
+ * is thrown.
+ *
+ * <p>Byte offsets are unavailable if the file is not encoded in UTF-8; in that
+ * case, entries are bound eagerly.
+ */
+public class IndexedHarEntryReader {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexedHarEntryReader.class);
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Constructs an instance.
+     * @param objectMapper the mapper used to bind requests and responses
+     */
+    public IndexedHarEntryReader(ObjectMapper objectMapper) {
+        this.objectMapper = requireNonNull(objectMapper, "objectMapper");
+    }
+
+    /**
+     * Reads the entries of a HAR file.
+     * @param harFile the HAR file
+     * @return the entries
+     * @throws IOException if the file cannot be read or is not a HAR
+     */
+    public List<HarEntry> readEntries(File harFile) throws IOException {
+        List<HarEntry> entries = new ArrayList<>();
+        readEntries(harFile, entries::add);
+        return entries;
+    }
+
+    /**
+     * Reads the entries of a HAR file, passing each to a consumer as soon as
+     * it has been scanned.
+     * @param harFile the HAR file
+     * @param consumer the consumer
+     * @throws IOException if the file cannot be read or is not a HAR
+     */
+    public void readEntries(File harFile, Consumer<? super HarEntry> consumer) throws IOException {
+        FileSnapshot snapshot = new FileSnapshot(harFile);
+        int numEntries = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(harFile)) {
+            if (!HarJsonNavigation.advanceToEntries(parser)) {
+                throw new IOException("not a HAR: " + harFile);
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                if (parser.getTokenLocation().getByteOffset() < 0) {
+                    consumer.accept(objectMapper.readValue(parser, HarEntry.class));
+                } else {
+                    consumer.accept(readIndexedEntry(parser, snapshot));
+                }
+                numEntries++;
+            }
+        }
+        log.debug("indexed {} entries in {}", numEntries, harFile);
+    }
+
+    /**
+     * Reads the entries of a HAR file, binding each completely, and passes each
+     * to a consumer as soon as it has been bound.
+     * @param objectMapper the mapper used to bind entries
+     * @param harFile the HAR file
+     * @param consumer the consumer
+     * @throws IOException if the file cannot be read or is not a HAR
+     */
+    static void streamEntries(ObjectMapper objectMapper, File harFile, Consumer<? super HarEntry> consumer) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(harFile)) {
+            if (!HarJsonNavigation.advanceToEntries(parser)) {
+                throw new IOException("not a HAR: " + harFile);
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                consumer.accept(objectMapper.readValue(parser, HarEntry.class));
+            }
+        }
+    }
+
+    private HarEntry readIndexedEntry(JsonParser parser, FileSnapshot snapshot) throws IOException {
+        @Nullable HarRequest request = null;
+        @Nullable HarTiming timings = null;
+        long responseStart = -1, responseEnd = -1;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken valueToken = parser.nextToken();
+            if ("request".equals(fieldName)) {
+                request = objectMapper.readValue(parser, HarRequest.class);
+            } else if ("response".equals(fieldName) && valueToken == JsonToken.START_OBJECT) {
+                responseStart = parser.getTokenLocation().getByteOffset();
+                parser.skipChildren();
+                responseEnd = parser.getCurrentLocation().getByteOffset();
+            } else if ("timings".equals(fieldName) && valueToken == JsonToken.START_OBJECT) {
+                timings = objectMapper.readValue(parser, HarTiming.class);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        IndexedHarEntry entry = responseStart < 0 ? new IndexedHarEntry(null, 0, 0) : new IndexedHarEntry(snapshot, responseStart, responseEnd);
+        entry.setRequest(request);
+        if (timings != null) {
+            entry.setTimings(timings);
+        }
+        return entry;
+    }
+
+    /**
+     * Identity of the file as it was when it was scanned.
+     */
+    private static class FileSnapshot {
+
+        public final File file;
+        private final long length;
+        private final long lastModified;
+
+        public FileSnapshot(File file) {
+            this.file = file;
+            length = file.length();
+            lastModified = file.lastModified();
+        }
+
+        public byte[] read(long position, int length) throws IOException {
+            if (file.length() != this.length || file.lastModified() != lastModified) {
+                throw new IOException("HAR file modified since it was indexed: " + file);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer, position + buffer.position()) < 0) {
+                        throw new EOFException("HAR file truncated: " + file);
+                    }
+                }
+            }
+            return buffer.array();
+        }
+    }
+
+    /**
+     * Entry whose response is bound from the file on first access.
+     */
+    private class IndexedHarEntry extends HarEntry {
+
+        @Nullable
+        private final FileSnapshot snapshot;
+        private final long responseStart;
+        private final long responseEnd;
+        private volatile boolean responseBound;
+
+        public IndexedHarEntry(@Nullable FileSnapshot snapshot, long responseStart, long responseEnd) {
+            this.snapshot = snapshot;
+            this.responseStart = responseStart;
+            this.responseEnd = responseEnd;
+        }
+
+        @Override
+        public HarResponse getResponse() {
+            if (!responseBound) {
+                synchronized (this) {
+                    if (!responseBound) {
+                        super.setResponse(bindResponse());
+                        responseBound = true;
+                    }
+                }
+            }
+            return super.getResponse();
+        }
+
+        @Override
+        public void setResponse(HarResponse response) {
+            synchronized (this) {
+                super.setResponse(response);
+                responseBound = true;
+            }
+        }
+
+        @Nullable
+        private HarResponse bindResponse() {
+            if (snapshot == null) {
+                return null;
+            }
+            try {
+                byte[] json = snapshot.read(responseStart, Math.toIntExact(responseEnd - responseStart));
+                return objectMapper.readValue(json, HarResponse.class);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
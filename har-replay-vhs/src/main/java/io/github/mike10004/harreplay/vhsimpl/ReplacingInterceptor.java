@@ -104,9 +104,9 @@ public class ReplacingInterceptor implements ResponseInterceptor {
 
     private static class FlushedContent {
         public final MediaType contentType;
-        public final byte[] data;
+        public final ByteBuffer data;
 
-        private FlushedContent(MediaType contentType, byte[] data) {
+        private FlushedContent(MediaType contentType, ByteBuffer data) {
             this.contentType = contentType;
             this.data = data;
         }
@@ -138,16 +138,25 @@ public class ReplacingInterceptor implements ResponseInterceptor {
         StringMapEntryList hlist = StringMapEntryList.caseInsensitive(respondable.streamHeaders().collect(ImmutableList.toImmutableList()));
         String contentEncodingHeaderValue = hlist.getFirstValue(HttpHeaders.CONTENT_ENCODING);
         List<String> contentEncodings = HttpContentCodecs.parseEncodings(contentEncodingHeaderValue);
-        WritingActionResult<MediaType> writeResult = writeByteArray(respondable::writeBody, 256);
-        byte[] data = writeResult.byteArray;
+        @Nullable MediaType contentType = respondable.previewContentType();
+        ByteBuffer data;
+        if (contentType != null) {
+            data = respondable.viewBody();
+        } else {
+            WritingActionResult<MediaType> writeResult = writeByteArray(respondable::writeBody, 256);
+            contentType = writeResult.actionReturnValue;
+            data = ByteBuffer.wrap(writeResult.byteArray);
+        }
         for (String encoding : contentEncodings) {
             HttpContentCodec codec = HttpContentCodecs.getCodec(encoding);
             if (codec == null) {
                 throw new IOException("can't decompress with codec " + encoding);
             }
-            data = codec.decompress(data);
+            byte[] encoded = new byte[data.remaining()];
+            data.get(encoded);
+            data = ByteBuffer.wrap(codec.decompress(encoded));
         }
-        return new FlushedContent(writeResult.actionReturnValue, data);
+        return new FlushedContent(contentType, data);
     }
 
     private static final Charset DEFAULT_INTERNET_TEXT_CHARSET = StandardCharsets.ISO_8859_1;
@@ -155,7 +164,7 @@ public class ReplacingInterceptor implements ResponseInterceptor {
     protected static String collectText(HttpRespondable respondable) throws IOException {
         FlushedContent content = toByteArray(respondable);
         Charset charset = content.contentType.charset().or(DEFAULT_INTERNET_TEXT_CHARSET);
-        return charset.newDecoder().decode(ByteBuffer.wrap(content.data)).toString();
+        return charset.newDecoder().decode(content.data).toString();
     }
 
     protected static boolean isTextType(@Nullable MediaType contentType) {
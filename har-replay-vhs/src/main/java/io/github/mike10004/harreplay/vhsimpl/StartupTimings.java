@@ -0,0 +1,62 @@
+package io.github.mike10004.harreplay.vhsimpl;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Class that records how long each phase of replay session startup took.
+ * Phases are listed in the order in which they finished.
+ */
+public final class StartupTimings {
+
+    public static final String PHASE_HAR = "har";
+    public static final String PHASE_KEYSTORE = "keystore";
+    public static final String PHASE_TLS_ENDPOINT = "tls-endpoint";
+    public static final String PHASE_PROXY = "proxy";
+
+    private final long startTime;
+    private final Map<String, Duration> durations;
+    private volatile Duration total;
+
+    StartupTimings() {
+        startTime = System.nanoTime();
+        durations = new LinkedHashMap<>();
+        total = Duration.ZERO;
+    }
+
+    synchronized void record(String phase, Duration duration) {
+        durations.put(phase, duration);
+    }
+
+    void finish() {
+        total = Duration.ofNanos(System.nanoTime() - startTime);
+    }
+
+    /**
+     * Gets the duration of each phase.
+     * @return a map of phase name to duration
+     */
+    public synchronized ImmutableMap<String, Duration> asMap() {
+        return ImmutableMap.copyOf(durations);
+    }
+
+    /**
+     * Gets the wall-clock duration of startup. Because phases run concurrently,
+     * this is usually less than the sum of the phase durations.
+     * @return the total duration
+     */
+    public Duration getTotal() {
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        return asMap().entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + entry.getValue().toMillis() + "ms")
+                .collect(Collectors.joining(", ", "StartupTimings{", ", total=" + total.toMillis() + "ms}"));
+    }
+}
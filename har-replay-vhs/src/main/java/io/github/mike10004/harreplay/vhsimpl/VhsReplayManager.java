@@ -1,117 +1,715 @@
 package io.github.mike10004.harreplay.vhsimpl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.browserup.harreader.HarReader;
 import com.browserup.harreader.HarReaderException;
+import com.browserup.harreader.model.Har;
 import com.browserup.harreader.model.HarEntry;
 import io.github.mike10004.harreplay.ReplayManager;
 import io.github.mike10004.harreplay.ReplayServerConfig;
 import io.github.mike10004.harreplay.ReplayServerConfig.Replacement;
 import io.github.mike10004.harreplay.ReplayServerConfig.ResponseHeaderTransform;
 import io.github.mike10004.harreplay.ReplaySessionConfig;
+import io.github.mike10004.harreplay.ReplaySessionConfig.HarSource;
 import io.github.mike10004.harreplay.ReplaySessionControl;
 import io.github.mike10004.vhs.BasicHeuristic;
 import io.github.mike10004.vhs.EntryMatcher;
 import io.github.mike10004.vhs.EntryMatcherFactory;
 import io.github.mike10004.vhs.EntryParser;
 import io.github.mike10004.vhs.HarBridgeEntryParser;
+import io.github.mike10004.vhs.HarFileWatcher;
 import io.github.mike10004.vhs.HarResponseEncoderFactory;
 import io.github.mike10004.vhs.HeuristicEntryMatcher;
+import io.github.mike10004.vhs.HttpRespondable;
+import io.github.mike10004.vhs.IncrementalEntryMatcherFactory;
+import io.github.mike10004.vhs.LoadingEntryMatcher;
+import io.github.mike10004.vhs.ReloadingEntryMatcher;
+import io.github.mike10004.vhs.ReplaySessionState;
 import io.github.mike10004.vhs.ResponseInterceptor;
 import io.github.mike10004.vhs.VirtualHarServer;
 import io.github.mike10004.vhs.VirtualHarServerControl;
 import io.github.mike10004.vhs.bmp.BmpResponseListener;
 import io.github.mike10004.vhs.bmp.BmpResponseManufacturer;
 import io.github.mike10004.vhs.bmp.BrowsermobVhsConfig;
+import io.github.mike10004.vhs.bmp.BrowsermobVhsConfig.TlsEndpointFactory;
+import io.github.mike10004.vhs.bmp.LatencySimulator;
+import io.github.mike10004.vhs.bmp.ThroughputLimiter;
 import io.github.mike10004.vhs.bmp.BrowsermobVirtualHarServer;
 import io.github.mike10004.vhs.bmp.HarReplayManufacturer;
 import io.github.mike10004.vhs.bmp.KeystoreData;
 import io.github.mike10004.vhs.bmp.NanohttpdTlsEndpointFactory;
 import io.github.mike10004.vhs.bmp.ScratchDirProvider;
+import io.github.mike10004.vhs.harbridge.DecodedContentCache;
+import io.github.mike10004.vhs.harbridge.ParsedRequest;
 import io.github.mike10004.vhs.harbridge.sstoehr.SstoehrHarBridge;
+import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.security.GeneralSecurityException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static java.util.Objects.requireNonNull;
 
 public class VhsReplayManager implements ReplayManager {
 
+    private static final Logger log = LoggerFactory.getLogger(VhsReplayManager.class);
+
     private VhsReplayManagerConfig config;
     private final EntryMatcherFactory entryMatcherFactory;
+    private final DecodedContentCache contentCache;
 
     public VhsReplayManager() {
         this(VhsReplayManagerConfig.getDefault());
     }
 
     public VhsReplayManager(VhsReplayManagerConfig config) {
-        this(config, HeuristicEntryMatcher.factory(new BasicHeuristic(), BasicHeuristic.DEFAULT_THRESHOLD_EXCLUSIVE));
+        this(config, createDefaultEntryMatcherFactory(config));
     }
 
     protected VhsReplayManager(VhsReplayManagerConfig config, EntryMatcherFactory entryMatcherFactory) {
         this.config = requireNonNull(config, "config");
         this.entryMatcherFactory = requireNonNull(entryMatcherFactory, "entryMatcherFactory");
+        contentCache = DecodedContentCache.create(config.decodedContentBudget);
+    }
+
+    /*
+     * The default factories are stateless, so all managers use the same instances;
+     * that lets managers with equal configurations share compiled HARs.
+     */
+    private static final EntryMatcherFactory DEFAULT_ENTRY_MATCHER_FACTORY = HeuristicEntryMatcher.factory(new BasicHeuristic(), BasicHeuristic.DEFAULT_THRESHOLD_EXCLUSIVE);
+    private static final EntryMatcherFactory DEFAULT_DEDUPLICATING_ENTRY_MATCHER_FACTORY = HeuristicEntryMatcher.deduplicatingFactory(new BasicHeuristic(), BasicHeuristic.DEFAULT_THRESHOLD_EXCLUSIVE);
+
+    private static EntryMatcherFactory createDefaultEntryMatcherFactory(VhsReplayManagerConfig config) {
+        return config.deduplicateEntries ? DEFAULT_DEDUPLICATING_ENTRY_MATCHER_FACTORY : DEFAULT_ENTRY_MATCHER_FACTORY;
     }
 
     protected EntryParser<HarEntry> createHarEntryParser() {
         HarResponseEncoderFactory<HarEntry> responseEncoderFactory = HarResponseEncoderFactory.alwaysIdentityEncoding();
-        return new HarBridgeEntryParser<>(new SstoehrHarBridge(), responseEncoderFactory);
+        return new HarBridgeEntryParser<>(new ExplodedHarBridge(SstoehrHarBridge.DEFAULT_EX_MACHINA_CHARSET, contentCache), responseEncoderFactory);
     }
 
-    protected EntryMatcher buildHarEntryMatcher(ReplaySessionConfig sessionConfig) throws IOException {
+    /**
+     * Gets statistics of the cache of decoded response content, which is shared by
+     * all servers started by this manager. Use them to size the
+     * {@link VhsReplayManagerConfig#decodedContentBudget budget}: a high miss count
+     * together with a high eviction count means the budget is too small for the
+     * content being served.
+     * @return a snapshot of the statistics
+     */
+    public DecodedContentCache.Stats getDecodedContentStats() {
+        return contentCache.getStats();
+    }
+
+    /**
+     * Reads the entries of all HAR files in a session. If there are multiple
+     * files, they are read in parallel, and the entries are ordered by the
+     * priority of their source, so that a higher-priority entry wins when
+     * entries match a request equally well. Entries excluded by the
+     * {@link ReplayServerConfig#entryFilters entry filters} are omitted.
+     * A HAR file that is a directory is read as an exploded HAR.
+     * @param sessionConfig session config
+     * @return the list of entries
+     * @throws IOException on I/O error
+     * @see ReplaySessionConfig.HarSource
+     */
+    protected List<HarEntry> readHarEntries(ReplaySessionConfig sessionConfig) throws IOException {
+        return HarEntryFilters.apply(readUnfilteredHarEntries(sessionConfig), sessionConfig.replayServerConfig.entryFilters);
+    }
+
+    private List<HarEntry> readUnfilteredHarEntries(ReplaySessionConfig sessionConfig) throws IOException {
+        if (sessionConfig.harSources.size() == 1) {
+            return readHarEntries(sessionConfig.harFile);
+        }
+        List<HarSource> sources = sessionConfig.harSources.stream()
+                .sorted(Comparator.comparingInt((HarSource source) -> source.priority).reversed())
+                .collect(Collectors.toList());
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(sources.size(), Runtime.getRuntime().availableProcessors()), new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("har-reader-%d")
+                .build());
+        try {
+            List<Future<List<HarEntry>>> futures = new ArrayList<>(sources.size());
+            for (HarSource source : sources) {
+                futures.add(executorService.submit(() -> readHarEntries(source.file)));
+            }
+            List<HarEntry> entries = new ArrayList<>();
+            for (int i = 0; i < sources.size(); i++) {
+                List<HarEntry> sourceEntries = Futures.getChecked(futures.get(i), IOException.class);
+                HarSource source = sources.get(i);
+                log.debug("read {} entries from namespace '{}' ({})", sourceEntries.size(), source.namespace, source.file);
+                if (!source.namespace.isEmpty()) {
+                    sourceEntries.forEach(entry -> entry.setAdditionalField(SstoehrHarBridge.NAMESPACE_FIELD, source.namespace));
+                }
+                entries.addAll(sourceEntries);
+            }
+            return entries;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private List<HarEntry> readHarEntries(File harFile) throws IOException {
+        if (harFile.isDirectory()) {
+            return new ExplodedHarReader(config.harReaderFactory.createMapper(config.harReaderMode)).readEntries(harFile);
+        }
+        HarCompression compression = HarCompression.detect(harFile);
+        if (compression != HarCompression.NONE) {
+            return readCompressedHarEntries(harFile, compression);
+        }
+        if (config.bindResponsesLazily) {
+            return new IndexedHarEntryReader(config.harReaderFactory.createMapper(config.harReaderMode)).readEntries(harFile);
+        }
         HarReader harReader = config.harReaderFactory.createReader();
-        List<HarEntry> entries;
         try {
-            entries = harReader.readFromFile(sessionConfig.harFile).getLog().getEntries();
+            return harReader.readFromFile(harFile).getLog().getEntries();
         } catch (HarReaderException e) {
             throw new IOException(e);
         }
+    }
+
+    /**
+     * Reads entries from a compressed HAR file. The decompressed content is streamed
+     * into the parser from a background thread rather than written to disk.
+     * @param harFile the HAR file
+     * @param compression the compression format
+     * @return the list of entries
+     * @throws IOException on I/O error
+     */
+    protected List<HarEntry> readCompressedHarEntries(File harFile, HarCompression compression) throws IOException {
+        ObjectMapper mapper = config.harReaderFactory.createMapper(config.harReaderMode);
+        try (InputStream in = BackgroundDecompressingInputStream.open(new FileInputStream(harFile), compression)) {
+            Har har = mapper.readValue(in, Har.class);
+            if (har == null || har.getLog() == null) {
+                throw new IOException("not a HAR: " + harFile);
+            }
+            return har.getLog().getEntries();
+        }
+    }
+
+    protected EntryMatcher buildHarEntryMatcher(ReplaySessionConfig sessionConfig) throws IOException {
+        List<HarEntry> entries = readHarEntries(sessionConfig);
         EntryParser<HarEntry> parser = createHarEntryParser();
         EntryMatcher harEntryMatcher = entryMatcherFactory.createEntryMatcher(entries, parser);
+        maybeWarmUpResponses(entries, parser);
         return harEntryMatcher;
     }
 
+    private void maybeWarmUpResponses(List<HarEntry> entries, EntryParser<HarEntry> parser) {
+        if (config.warmUpResponses) {
+            reportWarmUp(warmUpResponses(entries, parser));
+        }
+    }
+
+    /**
+     * Prepares the responses of HAR entries so that the first request for each
+     * entry does not pay for decoding its content. Entries are prepared in parallel
+     * and in order, and preparation stops once the decoded content budget is
+     * exhausted, because content prepared beyond that point would only evict
+     * content prepared earlier.
+     * @param entries the entries
+     * @param parser the parser that the entry matcher uses
+     * @return the report
+     * @see VhsReplayManagerConfig#warmUpResponses
+     */
+    protected WarmUpReport warmUpResponses(List<HarEntry> entries, EntryParser<HarEntry> parser) {
+        long startTime = System.nanoTime();
+        long evictionCountBefore = contentCache.getStats().evictionCount;
+        AtomicInteger preparedCount = new AtomicInteger();
+        AtomicBoolean budgetExhausted = new AtomicBoolean();
+        ExecutorService executorService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("response-warmer-%d")
+                .build());
+        try {
+            List<Future<?>> futures = new ArrayList<>(entries.size());
+            for (HarEntry entry : entries) {
+                futures.add(executorService.submit(() -> {
+                    if (budgetExhausted.get()) {
+                        return;
+                    }
+                    try {
+                        parser.parseResponse(parser.parseRequest(entry), entry);
+                        preparedCount.incrementAndGet();
+                    } catch (IOException | RuntimeException e) {
+                        log.debug("failed to prepare response for entry {}: {}", entry.getRequest() == null ? null : entry.getRequest().getUrl(), e.toString());
+                    }
+                    if (contentCache.getStats().evictionCount > evictionCountBefore) {
+                        budgetExhausted.set(true);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                Futures.getUnchecked(future);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        Duration duration = Duration.ofNanos(System.nanoTime() - startTime);
+        return new WarmUpReport(entries.size(), preparedCount.get(), budgetExhausted.get(), duration, contentCache.getDecodedBytes());
+    }
+
+    /**
+     * Reports the outcome of warming up responses. This implementation logs it.
+     * @param report the report
+     */
+    protected void reportWarmUp(WarmUpReport report) {
+        log.info("responses warmed up: {}", report);
+    }
+
+    /**
+     * Builds a matcher that is extended with entries appended to the HAR file
+     * after the matcher is built.
+     * @param sessionConfig session config
+     * @return the matcher
+     * @throws IOException on I/O error
+     * @see VhsReplayManagerConfig#ingestHarIncrementally
+     */
+    @SuppressWarnings("unchecked")
+    protected EntryMatcher buildIncrementalHarEntryMatcher(ReplaySessionConfig sessionConfig) throws IOException {
+        if (sessionConfig.harSources.size() > 1) {
+            throw new IllegalStateException("incremental ingestion is not supported with multiple HAR files");
+        }
+        if (sessionConfig.harFile.isDirectory()) {
+            throw new IllegalStateException("incremental ingestion is not supported with exploded HAR directories");
+        }
+        if (!(entryMatcherFactory instanceof IncrementalEntryMatcherFactory)) {
+            throw new IllegalStateException("entry matcher factory does not support incremental ingestion: " + entryMatcherFactory);
+        }
+        IncrementalEntryMatcherFactory<Object> incrementalFactory = (IncrementalEntryMatcherFactory<Object>) entryMatcherFactory;
+        IncrementalHarEntryReader reader = new IncrementalHarEntryReader(sessionConfig.harFile, config.harReaderFactory.createMapper(config.harReaderMode));
+        EntryParser<HarEntry> parser = createHarEntryParser();
+        List<HarEntry> initialEntries = HarEntryFilters.apply(reader.readNewEntries(), sessionConfig.replayServerConfig.entryFilters);
+        EntryMatcher<Object> initial = incrementalFactory.createEntryMatcher(initialEntries, parser);
+        maybeWarmUpResponses(initialEntries, parser);
+        return new ReloadingEntryMatcher<>(initial, current -> {
+            List<HarEntry> newEntries = HarEntryFilters.apply(reader.readNewEntries(), sessionConfig.replayServerConfig.entryFilters);
+            if (newEntries.isEmpty()) {
+                return current;
+            }
+            log.debug("appending {} new entries from {}", newEntries.size(), sessionConfig.harFile);
+            return incrementalFactory.appendEntries(current, newEntries, parser);
+        });
+    }
+
+    private boolean isLoadingEntriesInBackground() {
+        return config.loadEntriesInBackground && !config.ingestHarIncrementally;
+    }
+
+    @SuppressWarnings("unchecked")
+    private EntryMatcher buildInitialHarEntryMatcher(ReplaySessionConfig sessionConfig) throws IOException {
+        if (config.ingestHarIncrementally) {
+            return buildIncrementalHarEntryMatcher(sessionConfig);
+        }
+        if (config.shareCompiledHars && !config.reloadOnHarChange) {
+            return CompiledHarCache.shared().acquire(createCompiledHarKey(sessionConfig), () -> buildHarEntryMatcher(sessionConfig));
+        }
+        return buildHarEntryMatcher(sessionConfig);
+    }
+
+    /**
+     * Creates the key that identifies the matcher for a session in the
+     * {@link CompiledHarCache}. The key comprises the fingerprints of the HAR
+     * files and everything else in the session and manager configuration that
+     * affects how the matcher is built, including the entry matcher factory
+     * instance and the class of this manager, which may override how entries are
+     * parsed.
+     *
+     * <p>A shared matcher keeps the entry parser of the manager that built it,
+     * and with it that manager's {@link #getDecodedContentStats() decoded content
+     * cache}. Decoded content of responses served from a shared matcher is
+     * therefore retained in, and counted by, the builder's cache, which is why the
+     * {@link VhsReplayManagerConfig#decodedContentBudget budget} is part of the key:
+     * a session never uses a cache with a budget other than the one it was
+     * configured with. Likewise, responses of a shared matcher are
+     * {@link VhsReplayManagerConfig#warmUpResponses warmed up} only if the builder
+     * was configured to warm them up, so that setting is part of the key too.
+     * @param sessionConfig session config
+     * @return the key
+     * @throws IOException if a HAR file cannot be read
+     */
+    protected Object createCompiledHarKey(ReplaySessionConfig sessionConfig) throws IOException {
+        List<Object> key = new ArrayList<>();
+        for (HarSource source : sessionConfig.harSources) {
+            key.add(Arrays.asList(CompiledHarCache.HarFingerprint.of(source.file), source.namespace, source.priority));
+        }
+        key.add(sessionConfig.replayServerConfig.entryFilters);
+        key.add(Arrays.asList(config.deduplicateEntries, config.bindResponsesLazily, config.harReaderMode, config.harReaderFactory.getClass()));
+        key.add(Arrays.asList(config.decodedContentBudget, config.warmUpResponses));
+        key.add(Arrays.asList(entryMatcherFactory, getClass()));
+        return key;
+    }
+
+    private static void releaseIfLeased(EntryMatcher<?> harEntryMatcher) {
+        if (harEntryMatcher instanceof CompiledHarCache.Lease) {
+            ((CompiledHarCache.Lease) harEntryMatcher).close();
+        }
+    }
+
+    /**
+     * Starts loading HAR entries on a background thread.
+     * @param sessionConfig session config
+     * @param loadingEntryMatcher the matcher to be populated
+     * @return a future whose cancellation interrupts loading
+     */
+    @SuppressWarnings("unchecked")
+    protected Future<?> startLoadingHarEntries(ReplaySessionConfig sessionConfig, LoadingEntryMatcher<Object> loadingEntryMatcher) {
+        ExecutorService executorService = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("har-entry-loader-%d")
+                .build());
+        try {
+            EntryParser<HarEntry> parser = createHarEntryParser();
+            return executorService.submit(() -> {
+                List<HarEntry> entries = new ArrayList<>();
+                loadingEntryMatcher.load(consumer -> streamHarEntries(sessionConfig, entry -> {
+                    entries.add(entry);
+                    consumer.accept(entry);
+                }), parser, entryMatcherFactory);
+                maybeWarmUpResponses(entries, parser);
+            });
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    /**
+     * Reads the entries of all HAR files in a session, passing each to a consumer.
+     * The entries of a single uncompressed HAR file are passed on as they are parsed,
+     * so that the consumer can process them while the rest of the file is read;
+     * otherwise the entries are {@link #readHarEntries(ReplaySessionConfig) read}
+     * first and then passed on.
+     * @param sessionConfig session config
+     * @param consumer the consumer
+     * @throws IOException on I/O error
+     */
+    protected void streamHarEntries(ReplaySessionConfig sessionConfig, Consumer<? super HarEntry> consumer) throws IOException {
+        File harFile = sessionConfig.harFile;
+        if (sessionConfig.harSources.size() != 1 || harFile.isDirectory() || HarCompression.detect(harFile) != HarCompression.NONE) {
+            readHarEntries(sessionConfig).forEach(consumer);
+            return;
+        }
+        HarEntryFilters.FilteringConsumer filtering = new HarEntryFilters.FilteringConsumer(sessionConfig.replayServerConfig.entryFilters, consumer);
+        ObjectMapper objectMapper = config.harReaderFactory.createMapper(config.harReaderMode);
+        if (config.bindResponsesLazily) {
+            new IndexedHarEntryReader(objectMapper).readEntries(harFile, filtering);
+        } else {
+            IndexedHarEntryReader.streamEntries(objectMapper, harFile, filtering);
+        }
+        filtering.logExclusions();
+    }
+
     @Override
     public ReplaySessionControl start(ReplaySessionConfig sessionConfig) throws IOException {
-        EntryMatcher harEntryMatcher = buildHarEntryMatcher(sessionConfig);
+        @Nullable LoadingEntryMatcher<Object> loadingEntryMatcher = null;
+        @Nullable Future<?> loadingFuture = null;
+        EntryMatcher harEntryMatcher;
+        if (isLoadingEntriesInBackground()) {
+            loadingEntryMatcher = new LoadingEntryMatcher<>(config.entryLoadingTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            loadingFuture = startLoadingHarEntries(sessionConfig, loadingEntryMatcher);
+            harEntryMatcher = loadingEntryMatcher;
+        } else {
+            harEntryMatcher = buildInitialHarEntryMatcher(sessionConfig);
+        }
+        harEntryMatcher = maybeReloading(sessionConfig, harEntryMatcher);
         EntryMatcher compositeEntryMatcher = enhanceEntryMatcherFromConfig(harEntryMatcher, sessionConfig.replayServerConfig);
-        List<ResponseInterceptor> interceptors = new ArrayList<>();
-        interceptors.addAll(buildInterceptorsForReplacements(sessionConfig.replayServerConfig.replacements));
-        interceptors.addAll(buildInterceptorsForTransforms(sessionConfig.replayServerConfig.responseHeaderTransforms));
+        List<ResponseInterceptor> interceptors = buildInterceptors(sessionConfig.replayServerConfig);
         int port = sessionConfig.port;
-        VirtualHarServer vhs = createVirtualHarServer(port, sessionConfig.scratchDir, compositeEntryMatcher, interceptors, config.bmpResponseListener);
-        VirtualHarServerControl ctrl = vhs.start();
-        Runnable stopListener = () -> {
+        VirtualHarServerControl ctrl;
+        @Nullable HarFileWatcher harFileWatcher = null;
+        try {
+            harFileWatcher = maybeWatchHarFile(sessionConfig, harEntryMatcher);
+            ResponsePacing pacing = createResponsePacing(sessionConfig);
+            TlsEndpointFactory tlsEndpointFactory = createTlsEndpointFactory(generateKeystore());
+            VirtualHarServer vhs = createVirtualHarServer(port, sessionConfig.scratchDir, compositeEntryMatcher, interceptors, config.bmpResponseListener, tlsEndpointFactory, pacing);
+            ctrl = vhs.start();
+        } catch (IOException | RuntimeException e) {
+            if (loadingFuture != null) {
+                loadingFuture.cancel(true);
+            }
+            if (harFileWatcher != null) {
+                harFileWatcher.close();
+            }
+            releaseIfLeased(harEntryMatcher);
+            throw e;
+        }
+        return new VhsReplaySessionControl(ctrl, true, createStopListener(sessionConfig, loadingFuture, harFileWatcher, harEntryMatcher), loadingEntryMatcher);
+    }
+
+    /**
+     * Wraps a matcher in a matcher that reloads the HAR file when it changes,
+     * if so configured.
+     * @param sessionConfig session config
+     * @param harEntryMatcher the initial matcher
+     * @return the matcher to use
+     * @see VhsReplayManagerConfig#reloadOnHarChange
+     */
+    @SuppressWarnings("unchecked")
+    protected EntryMatcher maybeReloading(ReplaySessionConfig sessionConfig, EntryMatcher harEntryMatcher) {
+        if (config.reloadOnHarChange && !(harEntryMatcher instanceof ReloadingEntryMatcher)) {
+            return new ReloadingEntryMatcher<Object>(harEntryMatcher, current -> buildHarEntryMatcher(sessionConfig));
+        }
+        return harEntryMatcher;
+    }
+
+    @Nullable
+    private static HarFileWatcher maybeWatchHarFile(ReplaySessionConfig sessionConfig, EntryMatcher harEntryMatcher) throws IOException {
+        if (harEntryMatcher instanceof ReloadingEntryMatcher) {
+            List<Path> harFiles = sessionConfig.harSources.stream().map(source -> source.file.toPath()).collect(Collectors.toList());
+            return HarFileWatcher.start(harFiles, HarFileWatcher.DEFAULT_QUIET_PERIOD, ((ReloadingEntryMatcher<?>) harEntryMatcher)::reload);
+        }
+        return null;
+    }
+
+    /**
+     * Starts a replay session, performing independent startup steps concurrently.
+     * HAR loading proceeds in parallel with keystore generation, TLS endpoint
+     * setup, and proxy startup, which depend on one another and therefore run
+     * in sequence. The proxy is started before the HAR is loaded, but the
+     * returned future is not completed until both are done, unless entries are
+     * {@link VhsReplayManagerConfig#loadEntriesInBackground loaded in the background}.
+     * Phase durations are passed to {@link #reportStartupTimings(StartupTimings)}.
+     * @param sessionConfig the configuration
+     * @param executor executor used to perform startup steps
+     * @return a future session control instance
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public CompletableFuture<ReplaySessionControl> startAsync(ReplaySessionConfig sessionConfig, Executor executor) {
+        StartupTimings timings = new StartupTimings();
+        @Nullable LoadingEntryMatcher<Object> loadingEntryMatcher = null;
+        @Nullable Future<?> loadingFuture = null;
+        CompletableFuture<EntryMatcher> harEntryMatcherFuture;
+        if (isLoadingEntriesInBackground()) {
+            loadingEntryMatcher = new LoadingEntryMatcher<>(config.entryLoadingTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            loadingFuture = startLoadingHarEntries(sessionConfig, loadingEntryMatcher);
+            harEntryMatcherFuture = CompletableFuture.completedFuture(loadingEntryMatcher);
+        } else {
+            harEntryMatcherFuture = runPhase(StartupTimings.PHASE_HAR, timings, executor, () -> buildInitialHarEntryMatcher(sessionConfig));
+        }
+        harEntryMatcherFuture = harEntryMatcherFuture.thenApply(harEntryMatcher -> maybeReloading(sessionConfig, harEntryMatcher));
+        // requests that arrive before the HAR is loaded wait for it without blocking the event loop
+        CompletableFuture<EntryMatcher> harEntryMatcherFuture_ = harEntryMatcherFuture;
+        EntryMatcher deferredEntryMatcher = new EntryMatcher<Object>() {
+            @Nullable
+            @Override
+            @SuppressWarnings("unchecked")
+            public HttpRespondable findTopEntry(Object state, ParsedRequest request) {
+                return harEntryMatcherFuture_.join().findTopEntry(state, request);
+            }
+
+            @Override
+            public CompletableFuture<?> whenReady(ParsedRequest request) {
+                return harEntryMatcherFuture_.thenCompose(harEntryMatcher -> harEntryMatcher.whenReady(request));
+            }
+        };
+        EntryMatcher compositeEntryMatcher = enhanceEntryMatcherFromConfig(deferredEntryMatcher, sessionConfig.replayServerConfig);
+        List<ResponseInterceptor> interceptors = buildInterceptors(sessionConfig.replayServerConfig);
+        ResponsePacing pacing = createResponsePacing(sessionConfig);
+        CompletableFuture<VirtualHarServerControl> serverFuture = runPhase(StartupTimings.PHASE_KEYSTORE, timings, executor, this::generateKeystore)
+                .thenCompose(keystoreData -> runPhase(StartupTimings.PHASE_TLS_ENDPOINT, timings, executor, () -> createTlsEndpointFactory(keystoreData)))
+                .thenCompose(tlsEndpointFactory -> runPhase(StartupTimings.PHASE_PROXY, timings, executor, () -> {
+                    VirtualHarServer vhs = createVirtualHarServer(sessionConfig.port, sessionConfig.scratchDir, compositeEntryMatcher, interceptors, config.bmpResponseListener, tlsEndpointFactory, pacing);
+                    return vhs.start();
+                }));
+        @Nullable Future<?> loadingFuture_ = loadingFuture;
+        @Nullable LoadingEntryMatcher<Object> loadingEntryMatcher_ = loadingEntryMatcher;
+        CompletableFuture<ReplaySessionControl> ctrlFuture = serverFuture.thenCombine(harEntryMatcherFuture, (ctrl, harEntryMatcher) -> {
+            @Nullable HarFileWatcher harFileWatcher;
+            try {
+                harFileWatcher = maybeWatchHarFile(sessionConfig, harEntryMatcher);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+            VhsReplaySessionControl sessionControl = new VhsReplaySessionControl(ctrl, true, createStopListener(sessionConfig, loadingFuture_, harFileWatcher, harEntryMatcher), loadingEntryMatcher_);
+            // report before the future completes, so that timings are reported by the time a caller gets the control
+            timings.finish();
+            reportStartupTimings(timings);
+            return sessionControl;
+        });
+        ctrlFuture.whenComplete((ctrl, exception) -> {
+            if (exception != null) {
+                if (loadingFuture_ != null) {
+                    loadingFuture_.cancel(true);
+                }
+                // the server may have started even though HAR loading failed
+                serverFuture.thenAccept(VhsReplayManager::closeQuietly);
+                // and vice versa
+                harEntryMatcherFuture_.thenAccept(VhsReplayManager::releaseIfLeased);
+            }
+        });
+        return ctrlFuture;
+    }
+
+    /**
+     * Starts a replay session asynchronously on a thread pool that is dedicated
+     * to startup and shut down once startup completes.
+     * @param sessionConfig the configuration
+     * @return a future session control instance
+     * @see #startAsync(ReplaySessionConfig, Executor)
+     */
+    @Override
+    public CompletableFuture<ReplaySessionControl> startAsync(ReplaySessionConfig sessionConfig) {
+        ExecutorService executorService = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("replay-startup-%d")
+                .build());
+        CompletableFuture<ReplaySessionControl> future = startAsync(sessionConfig, executorService);
+        future.whenComplete((ctrl, exception) -> executorService.shutdown());
+        return future;
+    }
+
+    /**
+     * Reports the timings of an asynchronous startup. This implementation logs them.
+     * @param timings the timings
+     */
+    protected void reportStartupTimings(StartupTimings timings) {
+        log.info("replay session started: {}", timings);
+    }
+
+    private interface StartupPhase<T> {
+        T perform() throws IOException;
+    }
+
+    private static <T> CompletableFuture<T> runPhase(String phaseName, StartupTimings timings, Executor executor, StartupPhase<T> phase) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                T result = phase.perform();
+                timings.record(phaseName, Duration.ofNanos(System.nanoTime() - start));
+                return result;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private static void closeQuietly(VirtualHarServerControl ctrl) {
+        try {
+            ctrl.close();
+        } catch (IOException e) {
+            log.warn("failed to close server after startup failure", e);
+        }
+    }
+
+    private List<ResponseInterceptor> buildInterceptors(ReplayServerConfig serverConfig) {
+        List<ResponseInterceptor> interceptors = new ArrayList<>();
+        interceptors.addAll(buildInterceptorsForReplacements(serverConfig.replacements));
+        interceptors.addAll(buildInterceptorsForTransforms(serverConfig.responseHeaderTransforms));
+        return interceptors;
+    }
+
+    private static Runnable createStopListener(ReplaySessionConfig sessionConfig, @Nullable Future<?> loadingFuture, @Nullable HarFileWatcher harFileWatcher, EntryMatcher<?> harEntryMatcher) {
+        return () -> {
+            if (loadingFuture != null) {
+                loadingFuture.cancel(true);
+            }
+            releaseIfLeased(harEntryMatcher);
+            if (harFileWatcher != null) {
+                try {
+                    harFileWatcher.close();
+                } catch (IOException e) {
+                    log.warn("failed to stop watching HAR file", e);
+                }
+            }
             sessionConfig.serverTerminationCallbacks.forEach(c -> {
                 c.terminated(null);
             });
         };
-        return new VhsReplaySessionControl(ctrl, true, stopListener);
+    }
+
+    /**
+     * Value class that holds how responses are delayed and how fast they are written.
+     */
+    protected static final class ResponsePacing {
+
+        public final LatencySimulator latencySimulator;
+        public final ThroughputLimiter throughputLimiter;
+
+        public ResponsePacing(LatencySimulator latencySimulator, ThroughputLimiter throughputLimiter) {
+            this.latencySimulator = requireNonNull(latencySimulator);
+            this.throughputLimiter = requireNonNull(throughputLimiter);
+        }
+    }
+
+    /**
+     * Creates the simulators that decide how long to delay each response and how
+     * fast to write it. Recorded timings are taken from the entry each request
+     * matches.
+     * @param sessionConfig the session config
+     * @return the pacing
+     */
+    protected ResponsePacing createResponsePacing(ReplaySessionConfig sessionConfig) {
+        return new ResponsePacing(config.simulateRecordedLatency ? LatencySimulator.recorded(config.latencySimulator) : config.latencySimulator,
+                config.simulateRecordedThroughput ? ThroughputLimiter.recorded(config.throughputLimiter) : config.throughputLimiter);
     }
 
     protected BmpResponseManufacturer createResponseManufacturer(EntryMatcher entryMatcher, Iterable<ResponseInterceptor> responseInterceptors) {
-        return new HarReplayManufacturer(entryMatcher, responseInterceptors);
+        return new HarReplayManufacturer(entryMatcher, responseInterceptors, ReplaySessionState::countingUrlMethodPairs, config.encodedResponseCacheBudget);
     }
 
     protected VirtualHarServer createVirtualHarServer(int port, Path scratchParentDir, EntryMatcher entryMatcher, Iterable<ResponseInterceptor> responseInterceptors, BmpResponseListener bmpResponseListener) throws IOException {
+        KeystoreData keystoreData = generateKeystore();
+        TlsEndpointFactory tlsEndpointFactory = createTlsEndpointFactory(keystoreData);
+        return createVirtualHarServer(port, scratchParentDir, entryMatcher, responseInterceptors, bmpResponseListener, tlsEndpointFactory);
+    }
+
+    protected VirtualHarServer createVirtualHarServer(int port, Path scratchParentDir, EntryMatcher entryMatcher, Iterable<ResponseInterceptor> responseInterceptors, BmpResponseListener bmpResponseListener, TlsEndpointFactory tlsEndpointFactory) {
+        return createVirtualHarServer(port, scratchParentDir, entryMatcher, responseInterceptors, bmpResponseListener, tlsEndpointFactory, new ResponsePacing(config.latencySimulator, config.throughputLimiter));
+    }
+
+    protected VirtualHarServer createVirtualHarServer(int port, Path scratchParentDir, EntryMatcher entryMatcher, Iterable<ResponseInterceptor> responseInterceptors, BmpResponseListener bmpResponseListener, TlsEndpointFactory tlsEndpointFactory, ResponsePacing pacing) {
+        BmpResponseManufacturer responseManufacturer = createResponseManufacturer(entryMatcher, responseInterceptors);
+        BrowsermobVhsConfig.Builder configBuilder = BrowsermobVhsConfig.builder(responseManufacturer)
+                .port(port)
+                .responseListener(bmpResponseListener)
+                .latencySimulator(pacing.latencySimulator)
+                .globalBandwidthLimit(this.config.globalBandwidthLimit)
+                .throughputLimiter(pacing.throughputLimiter)
+                .manufacturingExecutorFactory(this.config.manufacturingExecutorFactory)
+                .harCapture(this.config.harCapture)
+                .tlsEndpointFactory(tlsEndpointFactory)
+                .scratchDirProvider(ScratchDirProvider.under(scratchParentDir));
+        BrowsermobVhsConfig config = configBuilder.build();
+        return new BrowsermobVirtualHarServer(config);
+    }
+
+    protected KeystoreData generateKeystore() throws IOException {
+        try {
+            return config.keystoreGenerator.generate("localhost");
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    protected TlsEndpointFactory createTlsEndpointFactory(KeystoreData keystoreData) throws IOException {
         try {
-            KeystoreData keystoreData = config.keystoreGenerator.generate("localhost");
-            BmpResponseManufacturer responseManufacturer = createResponseManufacturer(entryMatcher, responseInterceptors);
-            BrowsermobVhsConfig.Builder configBuilder = BrowsermobVhsConfig.builder(responseManufacturer)
-                    .port(port)
-                    .responseListener(bmpResponseListener)
-                    .tlsEndpointFactory(NanohttpdTlsEndpointFactory.create(keystoreData, null))
-                    .scratchDirProvider(ScratchDirProvider.under(scratchParentDir));
-            BrowsermobVhsConfig config = configBuilder.build();
-            return new BrowsermobVirtualHarServer(config);
+            return NanohttpdTlsEndpointFactory.create(keystoreData, null);
         } catch (GeneralSecurityException e) {
             throw new IOException(e);
         }
@@ -135,11 +733,32 @@ public class VhsReplayManager implements ReplayManager {
         private final VirtualHarServerControl ctrl;
         private volatile boolean alive;
         private final Runnable stopListener;
+        @Nullable
+        private final LoadingEntryMatcher<?> loadingEntryMatcher;
 
-        private VhsReplaySessionControl(VirtualHarServerControl ctrl, boolean alive, Runnable stopListener) {
+        private VhsReplaySessionControl(VirtualHarServerControl ctrl, boolean alive, Runnable stopListener, @Nullable LoadingEntryMatcher<?> loadingEntryMatcher) {
             this.ctrl = ctrl;
             this.alive = alive;
             this.stopListener = stopListener;
+            this.loadingEntryMatcher = loadingEntryMatcher;
+        }
+
+        @Override
+        public boolean isReady() {
+            return loadingEntryMatcher == null || loadingEntryMatcher.isReady();
+        }
+
+        @Override
+        public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException, IOException {
+            if (loadingEntryMatcher == null) {
+                return true;
+            }
+            boolean loaded = loadingEntryMatcher.awaitLoaded(timeout, unit);
+            @Nullable Throwable loadFailure = loadingEntryMatcher.getLoadFailure();
+            if (loadFailure != null) {
+                throw new IOException("failed to load HAR entries", loadFailure);
+            }
+            return loaded;
         }
 
         @Override
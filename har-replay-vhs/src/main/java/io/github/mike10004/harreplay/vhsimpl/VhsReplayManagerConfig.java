@@ -2,16 +2,29 @@ package io.github.mike10004.harreplay.vhsimpl;
 
 import com.browserup.harreader.HarReaderMode;
 import io.github.mike10004.vhs.bmp.BmpResponseListener;
+import io.github.mike10004.vhs.bmp.HarCapture;
+import io.github.mike10004.vhs.bmp.HarReplayManufacturer;
 import io.github.mike10004.vhs.bmp.KeystoreGenerator;
 import io.github.mike10004.vhs.bmp.KeystoreType;
+import io.github.mike10004.vhs.bmp.LatencySimulator;
+import io.github.mike10004.vhs.bmp.ThroughputLimiter;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
 public class VhsReplayManagerConfig {
 
+    private static final Duration DEFAULT_ENTRY_LOADING_TIMEOUT = Duration.ofMinutes(2);
+
+    private static final long DEFAULT_DECODED_CONTENT_BUDGET = 64 * 1024 * 1024;
+
     private static final VhsReplayManagerConfig DEFAULT = builder().build();
 
     public final Path mappedFileResolutionRoot;
@@ -20,12 +33,180 @@ public class VhsReplayManagerConfig {
     public final HarReaderFactory harReaderFactory;
     public final HarReaderMode harReaderMode;
 
+    /**
+     * Flag that specifies whether runs of identical HAR entries are collapsed
+     * into a single entry when the HAR is loaded.
+     */
+    public final boolean deduplicateEntries;
+
+    /**
+     * Flag that specifies whether HAR entries are loaded in the background after the
+     * proxy starts listening. In this mode, a request that arrives before the entries
+     * are loaded waits for them, without occupying a proxy thread, until they are
+     * loaded or {@link #entryLoadingTimeout} has elapsed since the session started.
+     */
+    public final boolean loadEntriesInBackground;
+
+    /**
+     * Maximum duration, measured from the start of the session, that requests wait
+     * for entries to be loaded. Requests that arrive after it has elapsed are
+     * unmatched until loading finishes.
+     * @see #loadEntriesInBackground
+     */
+    public final Duration entryLoadingTimeout;
+
+    /**
+     * Flag that specifies whether the HAR file is watched for changes. When the file
+     * changes, entries are reloaded in the background and swapped in once loaded.
+     */
+    public final boolean reloadOnHarChange;
+
+    /**
+     * Flag that specifies whether the HAR file is watched for appended entries,
+     * as when another process is still capturing to it. New entries are added to
+     * the existing index rather than rebuilding it. This takes precedence over
+     * {@link #reloadOnHarChange} and {@link #loadEntriesInBackground}. Sessions
+     * with multiple HAR files do not support incremental ingestion.
+     */
+    public final boolean ingestHarIncrementally;
+
+    /**
+     * Maximum total size in bytes of decoded response content retained for reuse.
+     * Each response body is decoded from base-64 and decompressed once, and the
+     * decoded bytes are kept while they fit in this budget. When the budget is
+     * exceeded, the least recently served bodies are evicted and decoded again
+     * from the HAR if they are served later; a body larger than the whole budget
+     * is decoded each time it is served. If zero, no decoded content is retained,
+     * but whether each body can be decompressed is still decided only once.
+     * @see VhsReplayManager#getDecodedContentStats()
+     */
+    public final long decodedContentBudget;
+
+    /**
+     * Maximum total size in bytes of the bodies of encoded responses retained
+     * for reuse. A response that is served repeatedly is encoded once, and later
+     * requests for it are answered with a duplicate that shares its body. This
+     * budget is separate from the {@link #decodedContentBudget}, and a body may
+     * be retained in both. If zero, no encoded responses are retained.
+     */
+    public final long encodedResponseCacheBudget;
+
+    /**
+     * Flag that specifies whether the responses of all HAR entries are prepared
+     * when the entries are loaded, rather than when each is first requested.
+     * Preparation runs in parallel and stops once the {@link #decodedContentBudget}
+     * is exhausted. How long it took and how much decoded content it left resident
+     * are passed to {@link VhsReplayManager#reportWarmUp(WarmUpReport)}. Response
+     * interceptors still run on each request.
+     */
+    public final boolean warmUpResponses;
+
+    /**
+     * Flag that specifies whether the response of each HAR entry is parsed from
+     * the file only when it is first needed, rather than when the HAR is loaded.
+     * Loading then binds only requests, which reduces load time and memory use
+     * for large HARs of which only a few entries are requested. The HAR file
+     * must not be modified while the session is running, unless
+     * {@link #reloadOnHarChange} is set. Compressed HAR files are always parsed
+     * entirely when loaded.
+     * @see IndexedHarEntryReader
+     */
+    public final boolean bindResponsesLazily;
+
+    /**
+     * Flag that specifies whether entry matchers are shared with other sessions
+     * in the same JVM that replay the same HAR files with the same configuration.
+     * A session then reuses the parsed entries and decoded content of a matcher
+     * that another session built, rather than reading the HAR files again. Only
+     * the state of each session, such as which requests it has already seen,
+     * is private. This has no effect if entries are {@link #loadEntriesInBackground
+     * loaded in the background}, {@link #reloadOnHarChange reloaded} or
+     * {@link #ingestHarIncrementally ingested incrementally}.
+     * @see CompiledHarCache
+     */
+    public final boolean shareCompiledHars;
+
+    /**
+     * Simulator that decides how long to delay each response. Delayed responses
+     * are held without blocking a thread. The default simulator does not delay
+     * responses.
+     * @see #simulateRecordedLatency
+     */
+    public final LatencySimulator latencySimulator;
+
+    /**
+     * Flag that specifies whether each response is delayed by the {@code wait}
+     * timing recorded in its HAR entry. Requests that match no entry with a
+     * recorded timing are delayed as the {@link #latencySimulator} prescribes.
+     * The timing is taken from the entry the request matched, so it reflects
+     * reloaded and incrementally ingested entries; exploded HAR directories and
+     * HARs written by the {@code --compact} option of the executable have no
+     * timings.
+     */
+    public final boolean simulateRecordedLatency;
+
+    /**
+     * Maximum rate in bytes per second at which responses are written to all
+     * clients together. Zero, the default, means no limit.
+     */
+    public final long globalBandwidthLimit;
+
+    /**
+     * Limiter that decides how fast each response is written to its client.
+     * Writes that exceed the limit are held without blocking a thread. The
+     * default limiter does not limit responses, and if there is no
+     * {@link #globalBandwidthLimit} either, responses are not shaped at all.
+     * @see #simulateRecordedThroughput
+     */
+    public final ThroughputLimiter throughputLimiter;
+
+    /**
+     * Flag that specifies whether each response is written at the rate that
+     * transfers its body in the {@code receive} time recorded in its HAR entry.
+     * Requests that match no entry with a recorded timing are limited as the
+     * {@link #throughputLimiter} prescribes. Timings are taken as described
+     * for {@link #simulateRecordedLatency}.
+     */
+    public final boolean simulateRecordedThroughput;
+
+    /**
+     * Factory of the executor on which responses are manufactured, keeping the
+     * proxy's event loops free while entries are matched and response bodies are
+     * read. Null, the default, means responses are manufactured on the event loops.
+     * @see io.github.mike10004.vhs.bmp.ManufacturingExecutors
+     */
+    @Nullable
+    public final Supplier<ExecutorService> manufacturingExecutorFactory;
+
+    /**
+     * Capture of replayed traffic by the proxy into a HAR. The default does not
+     * capture traffic, so that memory use stays flat over long sessions.
+     */
+    public final HarCapture harCapture;
+
     private VhsReplayManagerConfig(Builder builder) {
         mappedFileResolutionRoot = builder.mappedFileResolutionRoot;
         keystoreGenerator = builder.keystoreGenerator;
         bmpResponseListener = builder.bmpResponseListener;
         harReaderFactory = builder.harReaderFactory;
         harReaderMode = builder.harReaderMode;
+        deduplicateEntries = builder.deduplicateEntries;
+        loadEntriesInBackground = builder.loadEntriesInBackground;
+        entryLoadingTimeout = builder.entryLoadingTimeout;
+        reloadOnHarChange = builder.reloadOnHarChange;
+        ingestHarIncrementally = builder.ingestHarIncrementally;
+        decodedContentBudget = builder.decodedContentBudget;
+        encodedResponseCacheBudget = builder.encodedResponseCacheBudget;
+        warmUpResponses = builder.warmUpResponses;
+        bindResponsesLazily = builder.bindResponsesLazily;
+        shareCompiledHars = builder.shareCompiledHars;
+        latencySimulator = builder.latencySimulator;
+        simulateRecordedLatency = builder.simulateRecordedLatency;
+        globalBandwidthLimit = builder.globalBandwidthLimit;
+        throughputLimiter = builder.throughputLimiter;
+        simulateRecordedThroughput = builder.simulateRecordedThroughput;
+        manufacturingExecutorFactory = builder.manufacturingExecutorFactory;
+        harCapture = builder.harCapture;
     }
 
     public static VhsReplayManagerConfig getDefault() {
@@ -44,6 +225,24 @@ public class VhsReplayManagerConfig {
         private BmpResponseListener bmpResponseListener;
         private HarReaderFactory harReaderFactory;
         private HarReaderMode harReaderMode;
+        private boolean deduplicateEntries;
+        private boolean loadEntriesInBackground;
+        private Duration entryLoadingTimeout;
+        private boolean reloadOnHarChange;
+        private boolean ingestHarIncrementally;
+        private long decodedContentBudget;
+        private long encodedResponseCacheBudget;
+        private boolean warmUpResponses;
+        private boolean bindResponsesLazily;
+        private boolean shareCompiledHars;
+        private LatencySimulator latencySimulator;
+        private boolean simulateRecordedLatency;
+        private long globalBandwidthLimit;
+        private ThroughputLimiter throughputLimiter;
+        private boolean simulateRecordedThroughput;
+        @Nullable
+        private Supplier<ExecutorService> manufacturingExecutorFactory;
+        private HarCapture harCapture;
 
         private Builder() {
             mappedFileResolutionRoot = new File(System.getProperty("user.dir")).toPath();
@@ -51,6 +250,12 @@ public class VhsReplayManagerConfig {
             keystoreGenerator = KeystoreGenerator.createJreGenerator(KeystoreType.PKCS12);
             harReaderFactory = HarReaderFactory.easier();
             harReaderMode = HarReaderMode.STRICT;
+            entryLoadingTimeout = DEFAULT_ENTRY_LOADING_TIMEOUT;
+            decodedContentBudget = DEFAULT_DECODED_CONTENT_BUDGET;
+            encodedResponseCacheBudget = HarReplayManufacturer.DEFAULT_ENCODED_RESPONSE_CACHE_BUDGET;
+            latencySimulator = LatencySimulator.none();
+            throughputLimiter = ThroughputLimiter.none();
+            harCapture = HarCapture.disabled();
         }
 
         public Builder mappedFileResolutionRoot(Path val) {
@@ -78,6 +283,94 @@ public class VhsReplayManagerConfig {
             return this;
         }
 
+        public Builder deduplicateEntries(boolean deduplicateEntries) {
+            this.deduplicateEntries = deduplicateEntries;
+            return this;
+        }
+
+        public Builder loadEntriesInBackground(boolean loadEntriesInBackground) {
+            this.loadEntriesInBackground = loadEntriesInBackground;
+            return this;
+        }
+
+        public Builder entryLoadingTimeout(Duration entryLoadingTimeout) {
+            this.entryLoadingTimeout = requireNonNull(entryLoadingTimeout);
+            return this;
+        }
+
+        public Builder reloadOnHarChange(boolean reloadOnHarChange) {
+            this.reloadOnHarChange = reloadOnHarChange;
+            return this;
+        }
+
+        public Builder ingestHarIncrementally(boolean ingestHarIncrementally) {
+            this.ingestHarIncrementally = ingestHarIncrementally;
+            return this;
+        }
+
+        public Builder decodedContentBudget(long decodedContentBudget) {
+            checkArgument(decodedContentBudget >= 0, "budget must be nonnegative: %s", decodedContentBudget);
+            this.decodedContentBudget = decodedContentBudget;
+            return this;
+        }
+
+        public Builder encodedResponseCacheBudget(long encodedResponseCacheBudget) {
+            checkArgument(encodedResponseCacheBudget >= 0, "budget must be nonnegative: %s", encodedResponseCacheBudget);
+            this.encodedResponseCacheBudget = encodedResponseCacheBudget;
+            return this;
+        }
+
+        public Builder warmUpResponses(boolean warmUpResponses) {
+            this.warmUpResponses = warmUpResponses;
+            return this;
+        }
+
+        public Builder bindResponsesLazily(boolean bindResponsesLazily) {
+            this.bindResponsesLazily = bindResponsesLazily;
+            return this;
+        }
+
+        public Builder shareCompiledHars(boolean shareCompiledHars) {
+            this.shareCompiledHars = shareCompiledHars;
+            return this;
+        }
+
+        public Builder latencySimulator(LatencySimulator latencySimulator) {
+            this.latencySimulator = requireNonNull(latencySimulator);
+            return this;
+        }
+
+        public Builder simulateRecordedLatency(boolean simulateRecordedLatency) {
+            this.simulateRecordedLatency = simulateRecordedLatency;
+            return this;
+        }
+
+        public Builder globalBandwidthLimit(long bytesPerSecond) {
+            checkArgument(bytesPerSecond >= 0, "limit must be nonnegative: %s", bytesPerSecond);
+            this.globalBandwidthLimit = bytesPerSecond;
+            return this;
+        }
+
+        public Builder throughputLimiter(ThroughputLimiter throughputLimiter) {
+            this.throughputLimiter = requireNonNull(throughputLimiter);
+            return this;
+        }
+
+        public Builder simulateRecordedThroughput(boolean simulateRecordedThroughput) {
+            this.simulateRecordedThroughput = simulateRecordedThroughput;
+            return this;
+        }
+
+        public Builder manufacturingExecutorFactory(@Nullable Supplier<ExecutorService> manufacturingExecutorFactory) {
+            this.manufacturingExecutorFactory = manufacturingExecutorFactory;
+            return this;
+        }
+
+        public Builder harCapture(HarCapture harCapture) {
+            this.harCapture = requireNonNull(harCapture);
+            return this;
+        }
+
         public VhsReplayManagerConfig build() {
             return new VhsReplayManagerConfig(this);
         }
@@ -0,0 +1,61 @@
+package io.github.mike10004.harreplay.vhsimpl;
+
+import com.google.common.base.MoreObjects;
+
+import java.time.Duration;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Class that describes the outcome of preparing responses ahead of requests.
+ * @see VhsReplayManagerConfig#warmUpResponses
+ */
+public final class WarmUpReport {
+
+    /**
+     * Number of entries whose responses were to be prepared.
+     */
+    public final int entryCount;
+
+    /**
+     * Number of entries whose responses were prepared. This is less than
+     * {@link #entryCount} if the decoded content budget was exhausted or
+     * some responses could not be prepared.
+     */
+    public final int preparedCount;
+
+    /**
+     * Flag that indicates whether warm-up stopped early because the decoded
+     * content budget was exhausted.
+     */
+    public final boolean budgetExhausted;
+
+    public final Duration duration;
+
+    /**
+     * Total size of the decoded content resident after warm-up. The decoded
+     * content cache is the only place that warm-up retains decoded bytes, so
+     * this is all the memory that warm-up added for response bodies. Content
+     * larger than the budget is not retained and does not count.
+     */
+    public final long residentBytes;
+
+    WarmUpReport(int entryCount, int preparedCount, boolean budgetExhausted, Duration duration, long residentBytes) {
+        this.entryCount = entryCount;
+        this.preparedCount = preparedCount;
+        this.budgetExhausted = budgetExhausted;
+        this.duration = requireNonNull(duration);
+        this.residentBytes = residentBytes;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("entryCount", entryCount)
+                .add("preparedCount", preparedCount)
+                .add("budgetExhausted", budgetExhausted)
+                .add("duration", duration.toMillis() + "ms")
+                .add("residentBytes", residentBytes)
+                .toString();
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.mike10004.harreplay.vhsimpl;
+
+import io.github.mike10004.vhs.EntryMatcher;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class CompiledHarCacheTest {
+
+    @Test
+    public void acquire_buildsOnce() throws Exception {
+        CompiledHarCache cache = new CompiledHarCache(1);
+        AtomicInteger loads = new AtomicInteger();
+        EntryMatcher<Object> matcher = (state, request) -> null;
+        CompiledHarCache.Lease first = cache.acquire("a", () -> {
+            loads.incrementAndGet();
+            return matcher;
+        });
+        CompiledHarCache.Lease second = cache.acquire("a", () -> {
+            throw new AssertionError("built again");
+        });
+        assertEquals("loads", 1, loads.get());
+        first.close();
+        first.close();
+        assertEquals("idle while leased", 0, cache.idleCount());
+        second.close();
+        assertEquals("idle after release", 1, cache.idleCount());
+        cache.acquire("a", () -> {
+            throw new AssertionError("built again");
+        }).close();
+        assertEquals("size", 1, cache.size());
+    }
+
+    @Test
+    public void release_evictsIdle() throws Exception {
+        CompiledHarCache cache = new CompiledHarCache(1);
+        AtomicInteger loads = new AtomicInteger();
+        CompiledHarCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            return (state, request) -> null;
+        };
+        cache.acquire("a", loader).close();
+        cache.acquire("b", loader).close();
+        assertEquals("size", 1, cache.size());
+        cache.acquire("a", loader).close();
+        assertEquals("loads", 3, loads.get());
+    }
+
+    @Test
+    public void acquire_loadFails() throws Exception {
+        CompiledHarCache cache = new CompiledHarCache(1);
+        try {
+            cache.acquire("a", () -> {
+                throw new IOException("purposeful failure");
+            });
+            fail("should have thrown");
+        } catch (IOException ignore) {
+        }
+        assertEquals("size", 0, cache.size());
+        cache.acquire("a", () -> (state, request) -> null).close();
+        assertEquals("size", 1, cache.size());
+    }
+
+    @Test
+    public void invalidateAll() throws Exception {
+        CompiledHarCache cache = new CompiledHarCache(2);
+        AtomicInteger loads = new AtomicInteger();
+        CompiledHarCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            return (state, request) -> null;
+        };
+        cache.acquire("a", loader).close();
+        CompiledHarCache.Lease leased = cache.acquire("b", loader);
+        cache.invalidateAll();
+        assertEquals("size", 0, cache.size());
+        assertEquals("idle", 0, cache.idleCount());
+        leased.close();
+        assertEquals("idle after release of invalidated", 0, cache.idleCount());
+        cache.acquire("a", loader).close();
+        assertEquals("loads", 3, loads.get());
+    }
+}
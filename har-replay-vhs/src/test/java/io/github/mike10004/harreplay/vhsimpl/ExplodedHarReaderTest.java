@@ -0,0 +1,94 @@
+package io.github.mike10004.harreplay.vhsimpl;
+
+import com.browserup.harreader.HarReaderMode;
+import com.browserup.harreader.model.HarEntry;
+import com.browserup.harreader.model.HttpMethod;
+import com.google.common.base.Strings;
+import com.google.common.io.CharSource;
+import com.google.common.io.Files;
+import com.google.common.net.MediaType;
+import io.github.mike10004.harreplay.ExplodedHarLayout;
+import io.github.mike10004.harreplay.tests.HarExploder;
+import io.github.mike10004.vhs.harbridge.ByteBufferSource;
+import io.github.mike10004.vhs.harbridge.TypedContent;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ExplodedHarReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readEntries() throws Exception {
+        String har = "{\"log\": {\"version\": \"1.2\", \"entries\": [" +
+                entry("http://example.com/1", "text/plain; charset=ISO-8859-1", "café", null) + ", " +
+                entry("http://example.com/2", "image/gif", "R0lGODlhAQABAAAAACw=", "base64") + "]}}";
+        Path explodedDir = temporaryFolder.newFolder().toPath();
+        new HarExploder().explode(CharSource.wrap(har), explodedDir);
+        List<HarEntry> entries = newReader().readEntries(explodedDir.toFile());
+        assertEquals("num entries", 2, entries.size());
+        assertEquals("url", "http://example.com/1", entries.get(0).getRequest().getUrl());
+        assertEquals("url", "http://example.com/2", entries.get(1).getRequest().getUrl());
+        TypedContent text = ((ExplodedHarReader.ExplodedHarEntry) entries.get(0)).getResponseBody();
+        assertEquals("text", "café", text.asByteSource().asCharSource(StandardCharsets.ISO_8859_1).read());
+        TypedContent image = ((ExplodedHarReader.ExplodedHarEntry) entries.get(1)).getResponseBody();
+        assertEquals("content type", MediaType.GIF, image.getContentType());
+        assertNull("not mapped", ByteBufferSource.viewIfInMemory(image.asByteSource()));
+        assertEquals("image size", 14, image.asByteSource().size());
+    }
+
+    @Test
+    public void getResponseBody_transcodesLargeTextAsStreamed() throws Exception {
+        String text = Strings.repeat("café ", 10000);
+        // a character that ISO-8859-1 cannot encode, split across chunks of the encodability check
+        String unencodable = Strings.repeat("a", 8191) + "\uD83D\uDE00" + "b";
+        String har = "{\"log\": {\"version\": \"1.2\", \"entries\": [" +
+                entry("http://example.com/1", "text/plain; charset=ISO-8859-1", text, null) + ", " +
+                entry("http://example.com/2", "text/plain; charset=ISO-8859-1", unencodable, null) + "]}}";
+        Path explodedDir = temporaryFolder.newFolder().toPath();
+        new HarExploder().explode(CharSource.wrap(har), explodedDir);
+        List<HarEntry> entries = newReader().readEntries(explodedDir.toFile());
+        TypedContent transcoded = ((ExplodedHarReader.ExplodedHarEntry) entries.get(0)).getResponseBody();
+        assertNull("not buffered", ByteBufferSource.viewIfInMemory(transcoded.asByteSource()));
+        assertEquals("charset", StandardCharsets.ISO_8859_1, transcoded.getContentType().charset().orNull());
+        assertArrayEquals("bytes", text.getBytes(StandardCharsets.ISO_8859_1), transcoded.asByteSource().read());
+        TypedContent fallback = ((ExplodedHarReader.ExplodedHarEntry) entries.get(1)).getResponseBody();
+        assertEquals("charset", StandardCharsets.UTF_8, fallback.getContentType().charset().orNull());
+        assertEquals("text", unencodable, fallback.asByteSource().asCharSource(StandardCharsets.UTF_8).read());
+    }
+
+    @Test
+    public void readEntries_urlAndDataFilesOnly() throws Exception {
+        File entryDir = temporaryFolder.getRoot().toPath().resolve("log").resolve("entries").resolve("0-POST-example.com_").toFile();
+        assertTrue(entryDir.mkdirs());
+        Files.asCharSink(new File(entryDir, ExplodedHarLayout.URL_FILENAME), StandardCharsets.UTF_8).write("http://example.com/");
+        Files.asCharSink(new File(entryDir, "201-Created"), StandardCharsets.UTF_8).write("hello");
+        List<HarEntry> entries = newReader().readEntries(temporaryFolder.getRoot());
+        assertEquals("num entries", 1, entries.size());
+        assertEquals("method", HttpMethod.POST, entries.get(0).getRequest().getMethod());
+        assertEquals("status", 201, entries.get(0).getResponse().getStatus());
+        TypedContent body = ((ExplodedHarReader.ExplodedHarEntry) entries.get(0)).getResponseBody();
+        assertEquals("content type", MediaType.OCTET_STREAM, body.getContentType());
+        assertEquals("body", "hello", body.asByteSource().asCharSource(StandardCharsets.UTF_8).read());
+    }
+
+    private static ExplodedHarReader newReader() {
+        return new ExplodedHarReader(HarReaderFactory.easier().createMapper(HarReaderMode.STRICT));
+    }
+
+    private static String entry(String url, String mimeType, String text, String encoding) {
+        return "{\"startedDateTime\": \"2018-01-01T00:00:00.000Z\", \"time\": 1, " +
+                "\"request\": {\"method\": \"GET\", \"url\": \"" + url + "\", \"httpVersion\": \"HTTP/1.1\", \"headers\": [], \"queryString\": [], \"cookies\": [], \"headersSize\": -1, \"bodySize\": 0}, " +
+                "\"response\": {\"status\": 200, \"statusText\": \"OK\", \"httpVersion\": \"HTTP/1.1\", \"headers\": [], \"cookies\": [], \"content\": {\"size\": -1, \"mimeType\": \"" + mimeType + "\", \"text\": \"" + text + "\"" + (encoding == null ? "" : ", \"encoding\": \"" + encoding + "\"") + "}, \"redirectURL\": \"\", \"headersSize\": -1, \"bodySize\": -1}, " +
+                "\"cache\": {}, \"timings\": {\"send\": 0, \"wait\": 1, \"receive\": 0}}";
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.mike10004.harreplay.vhsimpl;
+
+import com.browserup.harreader.model.HarEntry;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import io.github.mike10004.harreplay.ReplaySessionConfig;
+import io.github.mike10004.harreplay.tests.Fixtures;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class HarCompressionTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void detect() throws Exception {
+        File uncompressed = Fixtures.copyBrowsermobGeneratedHarFile(temporaryFolder.getRoot().toPath());
+        assertEquals("uncompressed", HarCompression.NONE, HarCompression.detect(uncompressed));
+        assertEquals("gzipped", HarCompression.GZIP, HarCompression.detect(gzip(uncompressed)));
+        assertEquals("empty", HarCompression.NONE, HarCompression.detect(temporaryFolder.newFile()));
+    }
+
+    @Test
+    public void backgroundDecompression() throws Exception {
+        byte[] data = new byte[1024 * 1024];
+        new Random(12345).nextBytes(data);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(data);
+        }
+        byte[] decompressed;
+        try (InputStream in = BackgroundDecompressingInputStream.open(new ByteArrayInputStream(compressed.toByteArray()), HarCompression.GZIP)) {
+            decompressed = ByteStreams.toByteArray(in);
+        }
+        assertArrayEquals("decompressed", data, decompressed);
+    }
+
+    @Test(expected = IOException.class)
+    public void backgroundDecompression_truncated() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(new byte[100_000]);
+        }
+        byte[] truncated = Arrays.copyOf(compressed.toByteArray(), compressed.size() / 2);
+        try (InputStream in = BackgroundDecompressingInputStream.open(new ByteArrayInputStream(truncated), HarCompression.GZIP)) {
+            ByteStreams.exhaust(in);
+        }
+    }
+
+    @Test
+    public void backgroundDecompression_uncheckedFailure() throws Exception {
+        IllegalStateException cause = new IllegalStateException("corrupt");
+        InputStream failing = new InputStream() {
+            @Override
+            public int read() {
+                throw cause;
+            }
+        };
+        try (InputStream in = BackgroundDecompressingInputStream.open(failing, HarCompression.NONE)) {
+            ByteStreams.exhaust(in);
+            fail("should have thrown");
+        } catch (IOException e) {
+            assertSame("cause", cause, e.getCause());
+        }
+    }
+
+    @Test
+    public void readGzippedHar() throws Exception {
+        File uncompressed = Fixtures.copyBrowsermobGeneratedHarFile(temporaryFolder.getRoot().toPath());
+        File gzipped = gzip(uncompressed);
+        VhsReplayManager replayManager = new VhsReplayManager();
+        List<HarEntry> expected = replayManager.readHarEntries(ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath()).build(uncompressed));
+        List<HarEntry> actual = replayManager.readHarEntries(ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath()).build(gzipped));
+        assertFalse("expect nonempty", expected.isEmpty());
+        assertEquals("urls", urls(expected), urls(actual));
+    }
+
+    private File gzip(File file) throws IOException {
+        File gzipped = new File(temporaryFolder.getRoot(), file.getName() + ".gz");
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(gzipped))) {
+            Files.asByteSource(file).copyTo(out);
+        }
+        return gzipped;
+    }
+
+    private static List<String> urls(List<HarEntry> entries) {
+        return entries.stream().map(e -> e.getRequest().getUrl()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.mike10004.harreplay.vhsimpl;
+
+import com.browserup.harreader.model.HarContent;
+import com.browserup.harreader.model.HarEntry;
+import com.browserup.harreader.model.HarRequest;
+import com.browserup.harreader.model.HarResponse;
+import com.google.common.collect.ImmutableList;
+import io.github.mike10004.harreplay.ReplayServerConfig.EntryFilter;
+import io.github.mike10004.harreplay.ReplayServerConfig.RegexHolder;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class HarEntryFiltersTest {
+
+    @Test
+    public void apply() {
+        List<HarEntry> entries = ImmutableList.of(
+                entry("http://example.com/", 200, "text/html", 1000),
+                entry("http://www.google-analytics.com/collect", 204, "text/plain", 0),
+                entry("http://cdn.example.com/logo.png", 200, "image/png", 5000),
+                entry("http://cdn.example.com/missing.png", 404, "image/png", 10),
+                entry("http://example.com/movie.mp4", 200, "video/mp4", 1_000_000),
+                entry("http://example.com/small.mp4", 200, "video/mp4", 100));
+        List<EntryFilter> filters = ImmutableList.of(
+                EntryFilter.builder().host("google-analytics.com").build(),
+                EntryFilter.builder().mimeType("IMAGE/").status(200).build(),
+                EntryFilter.builder().url(RegexHolder.of(".*\\.mp4$")).minBodySize(1024).build(),
+                EntryFilter.builder().name("empty").build());
+        List<HarEntry> retained = HarEntryFilters.apply(entries, filters);
+        assertEquals("retained", ImmutableList.of("http://example.com/", "http://cdn.example.com/missing.png", "http://example.com/small.mp4"),
+                retained.stream().map(e -> e.getRequest().getUrl()).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void apply_noFilters() {
+        List<HarEntry> entries = ImmutableList.of(entry("http://example.com/", 200, "text/html", 1000));
+        assertSame("entries", entries, HarEntryFilters.apply(entries, ImmutableList.of()));
+    }
+
+    private static HarEntry entry(String url, int status, String mimeType, long size) {
+        HarEntry entry = new HarEntry();
+        HarRequest request = new HarRequest();
+        request.setUrl(url);
+        entry.setRequest(request);
+        HarResponse response = new HarResponse();
+        response.setStatus(status);
+        HarContent content = new HarContent();
+        content.setMimeType(mimeType);
+        content.setSize(size);
+        response.setContent(content);
+        entry.setResponse(response);
+        return entry;
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.mike10004.harreplay.vhsimpl;
+
+import com.browserup.harreader.HarReaderMode;
+import com.browserup.harreader.model.HarEntry;
+import com.google.common.base.Strings;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class IncrementalHarEntryReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readNewEntries() throws Exception {
+        File harFile = temporaryFolder.newFile();
+        IncrementalHarEntryReader reader = new IncrementalHarEntryReader(harFile, HarReaderFactory.easier().createMapper(HarReaderMode.STRICT));
+        String first = entry("http://example.com/1"), second = entry("http://example.com/2"), third = entry("http://example.com/3");
+        write(harFile, "{\"log\": {\"version\": \"1.2\", \"entries\": [" + first + ", " + second + "]}}");
+        assertEquals("first read", "[http://example.com/1, http://example.com/2]", urls(reader.readNewEntries()));
+        write(harFile, "{\"log\": {\"version\": \"1.2\", \"entries\": [" + first + ", " + second + ", " + third.substring(0, third.length() / 2));
+        assertEquals("read with incomplete entry", "[]", urls(reader.readNewEntries()));
+        write(harFile, "{\"log\": {\"version\": \"1.2\", \"entries\": [" + first + ", " + second + ", " + third + "]}}");
+        assertEquals("read after entry completed", "[http://example.com/3]", urls(reader.readNewEntries()));
+        assertEquals("read with no change", "[]", urls(reader.readNewEntries()));
+        assertEquals("num entries read", 3, reader.getNumEntriesRead());
+    }
+
+    @Test
+    public void readNewEntries_resumesAfterLastEntry() throws Exception {
+        File harFile = temporaryFolder.newFile();
+        IncrementalHarEntryReader reader = new IncrementalHarEntryReader(harFile, HarReaderFactory.easier().createMapper(HarReaderMode.STRICT));
+        String first = entry("http://example.com/1"), second = entry("http://example.com/2"), third = entry("http://example.com/3");
+        write(harFile, "{\"log\": {\"version\": \"1.2\", \"entries\": [");
+        assertEquals("read with no entries", "[]", urls(reader.readNewEntries()));
+        write(harFile, "{\"log\": {\"version\": \"1.2\", \"entries\": [" + first + ", " + second + "]}}");
+        assertEquals("first read", "[http://example.com/1, http://example.com/2]", urls(reader.readNewEntries()));
+        // entries already read are not parsed again, so the reader does not notice that the first is now garbage
+        write(harFile, "{\"log\": {\"version\": \"1.2\", \"entries\": [" + Strings.repeat("x", first.length()) + ", " + second + ", " + third + "]}}");
+        assertEquals("read after append", "[http://example.com/3]", urls(reader.readNewEntries()));
+        assertEquals("num entries read", 3, reader.getNumEntriesRead());
+    }
+
+    @Test
+    public void readNewEntries_replaced() throws Exception {
+        File harFile = temporaryFolder.newFile();
+        IncrementalHarEntryReader reader = new IncrementalHarEntryReader(harFile, HarReaderFactory.easier().createMapper(HarReaderMode.STRICT));
+        String first = entry("http://example.com/1"), second = entry("http://example.com/2");
+        write(harFile, "{\"log\": {\"version\": \"1.2\", \"entries\": [" + first + "]}}");
+        assertEquals("first read", "[http://example.com/1]", urls(reader.readNewEntries()));
+        write(harFile, "{\"log\": {\"version\": \"1.2\", \"entries\": []}}");
+        assertEquals("read after truncation", "[]", urls(reader.readNewEntries()));
+        write(harFile, "{\"log\": {\"version\": \"1.2\", \"entries\": [" + Strings.repeat(" ", first.length()) + ", " + second + "]}}");
+        assertEquals("read after replacement", "[]", urls(reader.readNewEntries()));
+    }
+
+    private static String entry(String url) {
+        return "{\"startedDateTime\": \"2018-01-01T00:00:00.000Z\", \"time\": 1, " +
+                "\"request\": {\"method\": \"GET\", \"url\": \"" + url + "\", \"httpVersion\": \"HTTP/1.1\", \"headers\": [], \"queryString\": [], \"cookies\": [], \"headersSize\": -1, \"bodySize\": 0}, " +
+                "\"response\": {\"status\": 200, \"statusText\": \"OK\", \"httpVersion\": \"HTTP/1.1\", \"headers\": [], \"cookies\": [], \"content\": {\"size\": 0, \"mimeType\": \"text/plain\", \"text\": \"\"}, \"redirectURL\": \"\", \"headersSize\": -1, \"bodySize\": 0}, " +
+                "\"cache\": {}, \"timings\": {\"send\": 0, \"wait\": 1, \"receive\": 0}}";
+    }
+
+    private static void write(File file, String content) throws Exception {
+        Files.asCharSink(file, StandardCharsets.UTF_8).write(content);
+    }
+
+    private static String urls(List<HarEntry> entries) {
+        return entries.stream().map(e -> e.getRequest().getUrl()).collect(Collectors.toList()).toString();
+    }
+}
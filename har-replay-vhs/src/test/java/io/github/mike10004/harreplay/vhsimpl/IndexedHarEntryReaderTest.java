@@ -0,0 +1,60 @@
+package io.github.mike10004.harreplay.vhsimpl;
+
+import com.browserup.harreader.HarReaderMode;
+import com.browserup.harreader.model.HarEntry;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IndexedHarEntryReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void readEntries() throws Exception {
+        File harFile = temporaryFolder.newFile();
+        write(harFile, "{\"log\": {\"version\": \"1.2\", \"entries\": [" + entry("http://example.com/1", "café") + ", " + entry("http://example.com/2", "{\\\"a\\\": [1, 2]}") + "]}}");
+        List<HarEntry> entries = new IndexedHarEntryReader(HarReaderFactory.easier().createMapper(HarReaderMode.STRICT)).readEntries(harFile);
+        assertEquals("num entries", 2, entries.size());
+        assertEquals("url", "http://example.com/1", entries.get(0).getRequest().getUrl());
+        assertEquals("url", "http://example.com/2", entries.get(1).getRequest().getUrl());
+        assertEquals("text", "café", entries.get(0).getResponse().getContent().getText());
+        assertEquals("status", 200, entries.get(0).getResponse().getStatus());
+        assertEquals("text", "{\"a\": [1, 2]}", entries.get(1).getResponse().getContent().getText());        assertEquals("wait", 1, entries.get(0).getTimings().getWait());
+    }
+
+    @Test
+    public void readEntries_fileModified() throws Exception {
+        File harFile = temporaryFolder.newFile();
+        write(harFile, "{\"log\": {\"version\": \"1.2\", \"entries\": [" + entry("http://example.com/1", "one") + ", " + entry("http://example.com/2", "two") + "]}}");
+        List<HarEntry> entries = new IndexedHarEntryReader(HarReaderFactory.easier().createMapper(HarReaderMode.STRICT)).readEntries(harFile);
+        assertEquals("text", "one", entries.get(0).getResponse().getContent().getText());
+        write(harFile, "{\"log\": {\"version\": \"1.2\", \"entries\": []}}");
+        assertEquals("text of response bound before modification", "one", entries.get(0).getResponse().getContent().getText());
+        try {
+            entries.get(1).getResponse();
+            fail("should have thrown");
+        } catch (UncheckedIOException ignore) {
+        }
+    }
+
+    private static String entry(String url, String text) {
+        return "{\"startedDateTime\": \"2018-01-01T00:00:00.000Z\", \"time\": 1, " +
+                "\"request\": {\"method\": \"GET\", \"url\": \"" + url + "\", \"httpVersion\": \"HTTP/1.1\", \"headers\": [], \"queryString\": [], \"cookies\": [], \"headersSize\": -1, \"bodySize\": 0}, " +
+                "\"response\": {\"status\": 200, \"statusText\": \"OK\", \"httpVersion\": \"HTTP/1.1\", \"headers\": [], \"cookies\": [], \"content\": {\"size\": 0, \"mimeType\": \"text/plain\", \"text\": \"" + text + "\"}, \"redirectURL\": \"\", \"headersSize\": -1, \"bodySize\": 0}, " +
+                "\"cache\": {}, \"timings\": {\"send\": 0, \"wait\": 1, \"receive\": 0}, \"_initiator\": {\"type\": \"other\"}}";
+    }
+
+    private static void write(File file, String content) throws Exception {
+        Files.asCharSink(file, StandardCharsets.UTF_8).write(content);
+    }
+}
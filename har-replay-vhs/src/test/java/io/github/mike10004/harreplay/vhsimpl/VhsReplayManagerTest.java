@@ -1,6 +1,10 @@
 package io.github.mike10004.harreplay.vhsimpl;
 
+import com.browserup.harreader.model.HarEntry;
 import com.google.common.base.CharMatcher;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.BaseEncoding;
 import com.google.common.io.Files;
 import com.google.common.io.Resources;
 import com.google.common.net.HostAndPort;
@@ -9,18 +13,37 @@ import io.github.mike10004.harreplay.ReplayServerConfig;
 import io.github.mike10004.harreplay.ReplaySessionConfig;
 import io.github.mike10004.harreplay.ReplaySessionControl;
 import io.github.mike10004.harreplay.tests.Fixtures.Fixture;
+import io.github.mike10004.harreplay.tests.HarExploder;
 import io.github.mike10004.harreplay.tests.ImmutableHttpResponse;
 import io.github.mike10004.harreplay.tests.ReplayManagerTestBase;
 import io.github.mike10004.harreplay.tests.ReplayManagerTester;
 import io.github.mike10004.harreplay.tests.Tests;
+import io.github.mike10004.vhs.bmp.LatencySimulator;
+import io.github.mike10004.vhs.bmp.ManufacturingExecutors;
+import io.github.mike10004.vhs.bmp.ThroughputLimiter;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.StringEscapeUtils;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static org.junit.Assert.*;
 
@@ -80,6 +103,368 @@ public class VhsReplayManagerTest extends ReplayManagerTestBase {
         }
     }
 
+    @Test
+    public void loadEntriesInBackground() throws Exception {
+        ReplayManager replayManager = new VhsReplayManager(VhsReplayManagerConfig.builder()
+                .loadEntriesInBackground(true)
+                .build());
+        Fixture fixture = fixturesRule.getFixtures().http();
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .build(fixture.harFile());
+        URI url = fixture.startUrl();
+        try (ReplaySessionControl ctrl = replayManager.start(config)) {
+            HostAndPort proxyAddress = ctrl.getSocketAddress();
+            ImmutableHttpResponse rsp = Tests.fetch(proxyAddress, url);
+            assertEquals("status", 200, rsp.status);
+            assertTrue("ready", ctrl.awaitReady(5, TimeUnit.SECONDS));
+            assertTrue("ready", ctrl.isReady());
+        }
+    }
+
+    @Test
+    public void loadEntriesInBackground_requestWhileLoading() throws Exception {
+        CountDownLatch loadingLatch = new CountDownLatch(1);
+        ReplayManager replayManager = new VhsReplayManager(VhsReplayManagerConfig.builder()
+                .loadEntriesInBackground(true)
+                .build()) {
+            @Override
+            protected void streamHarEntries(ReplaySessionConfig sessionConfig, Consumer<? super HarEntry> consumer) throws IOException {
+                try {
+                    loadingLatch.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                super.streamHarEntries(sessionConfig, consumer);
+            }
+        };
+        Fixture fixture = fixturesRule.getFixtures().http();
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .build(fixture.harFile());
+        URI url = fixture.startUrl();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ReplaySessionControl ctrl = replayManager.start(config)) {
+            Future<ImmutableHttpResponse> response = executor.submit(() -> Tests.fetch(ctrl.getSocketAddress(), url));
+            try {
+                response.get(250, TimeUnit.MILLISECONDS);
+                fail("response before entries loaded");
+            } catch (TimeoutException expected) {
+            }
+            loadingLatch.countDown();
+            assertEquals("status", 200, response.get(10, TimeUnit.SECONDS).status);
+            assertTrue("ready", ctrl.awaitReady(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void startAsync() throws Exception {
+        List<StartupTimings> reported = Collections.synchronizedList(new ArrayList<>());
+        ReplayManager replayManager = new VhsReplayManager() {
+            @Override
+            protected void reportStartupTimings(StartupTimings timings) {
+                reported.add(timings);
+            }
+        };
+        Fixture fixture = fixturesRule.getFixtures().http();
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .build(fixture.harFile());
+        URI url = fixture.startUrl();
+        try (ReplaySessionControl ctrl = replayManager.startAsync(config).get(60, TimeUnit.SECONDS)) {
+            ImmutableHttpResponse rsp = Tests.fetch(ctrl.getSocketAddress(), url);
+            assertEquals("status", 200, rsp.status);
+        }
+        assertEquals("num reported", 1, reported.size());
+        assertEquals("phases", ImmutableSet.of(StartupTimings.PHASE_HAR, StartupTimings.PHASE_KEYSTORE, StartupTimings.PHASE_TLS_ENDPOINT, StartupTimings.PHASE_PROXY), reported.get(0).asMap().keySet());
+    }
+
+    @Test
+    public void warmUpResponses_base64OverBudget() throws Exception {
+        List<WarmUpReport> reported = Collections.synchronizedList(new ArrayList<>());
+        VhsReplayManager replayManager = new VhsReplayManager(VhsReplayManagerConfig.builder()
+                .warmUpResponses(true)
+                .decodedContentBudget(16)
+                .build()) {
+            @Override
+            protected void reportWarmUp(WarmUpReport report) {
+                reported.add(report);
+            }
+        };
+        String body = Strings.repeat("0123456789", 10);
+        String base64 = BaseEncoding.base64().encode(body.getBytes(StandardCharsets.US_ASCII));
+        File harFile = writeHar("http://example.com/", "first", "http://example.com/second", base64);
+        String json = Files.asCharSource(harFile, StandardCharsets.UTF_8).read();
+        Files.asCharSink(harFile, StandardCharsets.UTF_8).write(json.replace("\"text\": \"" + base64 + "\"", "\"text\": \"" + base64 + "\", \"encoding\": \"base64\""));
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .build(harFile);
+        try (ReplaySessionControl ctrl = replayManager.start(config)) {
+            WarmUpReport report = reported.get(0);
+            assertEquals("resident", "first".length(), report.residentBytes);
+            assertEquals("resident per cache", report.residentBytes, replayManager.getDecodedContentStats().residentBytes);
+            ImmutableHttpResponse rsp = Tests.fetch(ctrl.getSocketAddress(), URI.create("http://example.com/second"));
+            assertEquals("text", body, rsp.data.asCharSource(StandardCharsets.US_ASCII).read());
+        }
+    }
+
+    @Test
+    public void encodedResponseCacheDisabled() throws Exception {
+        VhsReplayManager replayManager = new VhsReplayManager(VhsReplayManagerConfig.builder()
+                .encodedResponseCacheBudget(0)
+                .build());
+        File harFile = writeHar("http://example.com/", "first", "http://example.com/second", "second");
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .build(harFile);
+        try (ReplaySessionControl ctrl = replayManager.start(config)) {
+            for (int i = 0; i < 3; i++) {
+                ImmutableHttpResponse rsp = Tests.fetch(ctrl.getSocketAddress(), URI.create("http://example.com/"));
+                assertEquals("text on fetch " + i, "first", rsp.data.asCharSource(StandardCharsets.UTF_8).read());
+            }
+        }
+    }
+
+    @Test
+    public void warmUpResponses() throws Exception {
+        List<WarmUpReport> reported = Collections.synchronizedList(new ArrayList<>());
+        VhsReplayManager replayManager = new VhsReplayManager(VhsReplayManagerConfig.builder()
+                .warmUpResponses(true)
+                .build()) {
+            @Override
+            protected void reportWarmUp(WarmUpReport report) {
+                reported.add(report);
+            }
+        };
+        File harFile = writeHar("http://example.com/", "first", "http://example.com/second", "second");
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .build(harFile);
+        try (ReplaySessionControl ctrl = replayManager.start(config)) {
+            assertEquals("num reported", 1, reported.size());
+            WarmUpReport report = reported.get(0);
+            assertEquals("entries", 2, report.entryCount);
+            assertEquals("prepared", 2, report.preparedCount);
+            assertEquals("resident", "firstsecond".length(), report.residentBytes);
+            long missesBefore = replayManager.getDecodedContentStats().missCount;
+            ImmutableHttpResponse rsp = Tests.fetch(ctrl.getSocketAddress(), URI.create("http://example.com/second"));
+            assertEquals("text", "second", rsp.data.asCharSource(StandardCharsets.UTF_8).read());
+            assertEquals("misses", missesBefore, replayManager.getDecodedContentStats().missCount);
+        }
+    }
+
+    @Test
+    public void bindResponsesLazily() throws Exception {
+        File harFile = writeHar("http://example.com/", "first", "http://example.com/second", "second");
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .build(harFile);
+        ReplayManager replayManager = new VhsReplayManager(VhsReplayManagerConfig.builder()
+                .bindResponsesLazily(true)
+                .build());
+        try (ReplaySessionControl ctrl = replayManager.start(config)) {
+            ImmutableHttpResponse rsp = Tests.fetch(ctrl.getSocketAddress(), URI.create("http://example.com/second"));
+            assertEquals("text", "second", rsp.data.asCharSource(StandardCharsets.UTF_8).read());
+        }
+    }
+
+    @Test
+    public void explodedHarDirectory() throws Exception {
+        File harFile = writeHar("http://example.com/", "first", "http://example.com/second", "second");
+        Path explodedDir = temporaryFolder.newFolder().toPath();
+        new HarExploder().explode(Files.asCharSource(harFile, StandardCharsets.UTF_8), explodedDir);
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .build(explodedDir.toFile());
+        VhsReplayManager replayManager = new VhsReplayManager();
+        try (ReplaySessionControl ctrl = replayManager.start(config)) {
+            ImmutableHttpResponse rsp = Tests.fetch(ctrl.getSocketAddress(), URI.create("http://example.com/second"));
+            assertEquals("status", 200, rsp.status);
+            assertEquals("text", "second", rsp.data.asCharSource(StandardCharsets.UTF_8).read());
+        }
+        assertEquals("resident", "second".length(), replayManager.getDecodedContentStats().residentBytes);
+    }
+
+    @Test
+    public void shareCompiledHars() throws Exception {
+        File harFile = writeHar("http://example.com/", "first", "http://example.com/second", "second");
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .build(harFile);
+        AtomicInteger reads = new AtomicInteger();
+        VhsReplayManagerConfig managerConfig = VhsReplayManagerConfig.builder()
+                .shareCompiledHars(true)
+                .build();
+        for (int i = 0; i < 2; i++) {
+            ReplayManager replayManager = new VhsReplayManager(managerConfig) {
+                @Override
+                protected List<HarEntry> readHarEntries(ReplaySessionConfig sessionConfig) throws IOException {
+                    reads.incrementAndGet();
+                    return super.readHarEntries(sessionConfig);
+                }
+            };
+            try (ReplaySessionControl ctrl = replayManager.start(config)) {
+                ImmutableHttpResponse rsp = Tests.fetch(ctrl.getSocketAddress(), URI.create("http://example.com/second"));
+                assertEquals("text", "second", rsp.data.asCharSource(StandardCharsets.UTF_8).read());
+            }
+        }
+        assertEquals("reads", 1, reads.get());
+    }
+
+    @Test
+    public void createCompiledHarKey() throws Exception {
+        File harFile = writeHar("http://example.com/", "first", "http://example.com/second", "second");
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .build(harFile);
+        Object key = new VhsReplayManager(VhsReplayManagerConfig.builder().build()).createCompiledHarKey(config);
+        assertEquals("same config", key, new VhsReplayManager(VhsReplayManagerConfig.builder().build()).createCompiledHarKey(config));
+        assertNotEquals("different budget", key, new VhsReplayManager(VhsReplayManagerConfig.builder().decodedContentBudget(16).build()).createCompiledHarKey(config));
+        assertNotEquals("different warm-up", key, new VhsReplayManager(VhsReplayManagerConfig.builder().warmUpResponses(true).build()).createCompiledHarKey(config));
+    }
+
+    @Test
+    public void latencySimulator() throws Exception {
+        File harFile = writeHar("http://example.com/", "first", "http://example.com/second", "second");
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .build(harFile);
+        ReplayManager replayManager = new VhsReplayManager(VhsReplayManagerConfig.builder()
+                .latencySimulator(LatencySimulator.fixed(Duration.ofMillis(400)))
+                .build());
+        assertFetchDelayed(replayManager, config, 400);
+    }
+
+    @Test
+    public void simulateRecordedLatency() throws Exception {
+        File harFile = writeHar("http://example.com/", "first", "http://example.com/second", "second");
+        Files.asCharSink(harFile, StandardCharsets.UTF_8).write(Files.asCharSource(harFile, StandardCharsets.UTF_8).read().replace("\"wait\": 1", "\"wait\": 400"));
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .build(harFile);
+        ReplayManager replayManager = new VhsReplayManager(VhsReplayManagerConfig.builder()
+                .simulateRecordedLatency(true)
+                .bindResponsesLazily(true)
+                .build());
+        assertFetchDelayed(replayManager, config, 400);
+    }
+
+    @Test
+    public void throughputLimiter() throws Exception {
+        File harFile = writeHar("http://example.com/", "first", "http://example.com/second", Strings.repeat("x", 4000));
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .build(harFile);
+        ReplayManager replayManager = new VhsReplayManager(VhsReplayManagerConfig.builder()
+                .throughputLimiter(ThroughputLimiter.fixed(8000))
+                .build());
+        assertFetchDelayed(replayManager, config, 400);
+    }
+
+    @Test
+    public void simulateRecordedThroughput() throws Exception {
+        File harFile = writeHar("http://example.com/", "first", "http://example.com/second", Strings.repeat("x", 4000));
+        Files.asCharSink(harFile, StandardCharsets.UTF_8).write(Files.asCharSource(harFile, StandardCharsets.UTF_8).read().replace("\"receive\": 0", "\"receive\": 500"));
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .build(harFile);
+        ReplayManager replayManager = new VhsReplayManager(VhsReplayManagerConfig.builder()
+                .simulateRecordedThroughput(true)
+                .build());
+        assertFetchDelayed(replayManager, config, 400);
+    }
+
+    @Test
+    public void manufacturingExecutor() throws Exception {
+        File harFile = writeHar("http://example.com/", "first", "http://example.com/second", "second");
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .build(harFile);
+        ReplayManager replayManager = new VhsReplayManager(VhsReplayManagerConfig.builder()
+                .manufacturingExecutorFactory(ManufacturingExecutors.bounded(2, 16))
+                .latencySimulator(LatencySimulator.fixed(Duration.ofMillis(100)))
+                .build());
+        try (ReplaySessionControl ctrl = replayManager.start(config)) {
+            for (String url : Arrays.asList("http://example.com/second", "http://example.com/", "http://example.com/second")) {
+                ImmutableHttpResponse rsp = Tests.fetch(ctrl.getSocketAddress(), URI.create(url));
+                assertEquals("status", 200, rsp.status);
+                assertEquals("text", url.endsWith("second") ? "second" : "first", rsp.data.asCharSource(StandardCharsets.UTF_8).read());
+            }
+        }
+    }
+
+    private static void assertFetchDelayed(ReplayManager replayManager, ReplaySessionConfig config, long minimumMillis) throws Exception {
+        try (ReplaySessionControl ctrl = replayManager.start(config)) {
+            long start = System.nanoTime();
+            ImmutableHttpResponse rsp = Tests.fetch(ctrl.getSocketAddress(), URI.create("http://example.com/second"));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertEquals("status", 200, rsp.status);
+            assertTrue("elapsed " + elapsedMillis + "ms", elapsedMillis >= minimumMillis);
+        }
+    }
+
+    @Test
+    public void startAsync_harFileNotFound() throws Exception {
+        ReplayManager replayManager = new VhsReplayManager();
+        File harFile = new File(temporaryFolder.getRoot(), "nonexistent.har");
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .build(harFile);
+        try {
+            replayManager.startAsync(config).get(60, TimeUnit.SECONDS).close();
+            fail("should have failed");
+        } catch (ExecutionException e) {
+            assertTrue("cause is IOException: " + e.getCause(), e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void multipleHarFiles_higherPriorityWins() throws Exception {
+        File primaryHarFile = writeHar("http://example.com/", "primary", "http://example.com/primary-only", "primary-only");
+        File secondaryHarFile = writeHar("http://example.com/", "secondary", "http://example.com/secondary-only", "secondary-only");
+        assertEquals("responses", Arrays.asList("secondary", "primary-only"), fetchFromMultipleHars(primaryHarFile, secondaryHarFile, 1, "http://example.com/", "http://example.com/primary-only"));
+    }
+
+    @Test
+    public void multipleHarFiles_equalPriorityFirstAddedWins() throws Exception {
+        File primaryHarFile = writeHar("http://example.com/", "primary", "http://example.com/primary-only", "primary-only");
+        File secondaryHarFile = writeHar("http://example.com/", "secondary", "http://example.com/secondary-only", "secondary-only");
+        assertEquals("responses", Arrays.asList("primary", "secondary-only"), fetchFromMultipleHars(primaryHarFile, secondaryHarFile, 0, "http://example.com/", "http://example.com/secondary-only"));
+    }
+
+    @Test
+    public void multipleHarFiles_namespaceReported() throws Exception {
+        File primaryHarFile = writeHar("http://example.com/", "primary", "http://example.com/primary-only", "primary-only");
+        File secondaryHarFile = writeHar("http://example.com/", "secondary", "http://example.com/secondary-only", "secondary-only");
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .addHar(secondaryHarFile, "secondary", 0)
+                .build(primaryHarFile);
+        List<String> namespaces = Collections.synchronizedList(new ArrayList<>());
+        VhsReplayManager replayManager = new VhsReplayManager(VhsReplayManagerConfig.builder()
+                .bmpResponseListener((request, response) -> namespaces.add(String.valueOf(response.namespace)))
+                .build());
+        try (ReplaySessionControl ctrl = replayManager.start(config)) {
+            for (String url : Arrays.asList("http://example.com/primary-only", "http://example.com/secondary-only")) {
+                assertEquals("status", 200, Tests.fetch(ctrl.getSocketAddress(), URI.create(url)).status);
+            }
+        }
+        assertEquals("namespaces", Arrays.asList("null", "secondary"), namespaces);
+    }
+
+    private List<String> fetchFromMultipleHars(File primaryHarFile, File secondaryHarFile, int secondaryPriority, String...urls) throws Exception {
+        ReplaySessionConfig config = ReplaySessionConfig.builder(temporaryFolder.getRoot().toPath())
+                .addHar(secondaryHarFile, "secondary", secondaryPriority)
+                .build(primaryHarFile);
+        List<String> responses = new ArrayList<>();
+        try (ReplaySessionControl ctrl = new VhsReplayManager().start(config)) {
+            for (String url : urls) {
+                ImmutableHttpResponse rsp = Tests.fetch(ctrl.getSocketAddress(), URI.create(url));
+                responses.add(rsp.data.asCharSource(StandardCharsets.UTF_8).read());
+            }
+        }
+        return responses;
+    }
+
+    private File writeHar(String url1, String text1, String url2, String text2) throws IOException {
+        File harFile = temporaryFolder.newFile();
+        String json = "{\"log\": {\"version\": \"1.2\", \"creator\": {\"name\": \"test\", \"version\": \"1\"}, \"entries\": [" + harEntry(url1, text1) + ", " + harEntry(url2, text2) + "]}}";
+        Files.asCharSink(harFile, StandardCharsets.UTF_8).write(json);
+        return harFile;
+    }
+
+    private static String harEntry(String url, String text) {
+        return "{\"startedDateTime\": \"2018-01-01T00:00:00.000Z\", \"time\": 1, " +
+                "\"request\": {\"method\": \"GET\", \"url\": \"" + url + "\", \"httpVersion\": \"HTTP/1.1\", \"headers\": [], \"queryString\": [], \"cookies\": [], \"headersSize\": -1, \"bodySize\": 0}, " +
+                "\"response\": {\"status\": 200, \"statusText\": \"OK\", \"httpVersion\": \"HTTP/1.1\", \"headers\": [{\"name\": \"Content-Type\", \"value\": \"text/plain\"}], \"cookies\": [], \"content\": {\"size\": " + text.length() + ", \"mimeType\": \"text/plain\", \"text\": \"" + text + "\"}, \"redirectURL\": \"\", \"headersSize\": -1, \"bodySize\": " + text.length() + "}, " +
+                "\"cache\": {}, \"timings\": {\"send\": 0, \"wait\": 1, \"receive\": 0}}";
+    }
+
     private static final CharMatcher ASCII = CharMatcher.ascii();
 
     @Test
@@ -0,0 +1,103 @@
+package io.github.mike10004.vhs;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.RandomAccess;
+
+import static com.google.common.base.Preconditions.checkElementIndex;
+
+/**
+ * Unmodifiable list that can be extended without copying its elements.
+ * Appending returns a new list; the new list shares its storage with the list
+ * it was appended to, whose contents are unaffected, so that appending batch
+ * after batch costs time proportional to the size of the batches rather than
+ * the size of the list. If a list is appended to more than once, the second
+ * and later appends copy the list, because the storage already holds the
+ * elements of the first.
+ *
+ * <p>Lists are safe for use by multiple threads, provided that each list is
+ * published safely, as by assignment to a volatile field or a final field of
+ * an object that is itself published safely.
+ * @param <E> element type
+ */
+final class AppendOnlyList<E> extends AbstractList<E> implements RandomAccess {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private final Storage storage;
+    private final Object[] elements;
+    private final int size;
+
+    private AppendOnlyList(Storage storage, Object[] elements, int size) {
+        this.storage = storage;
+        this.elements = elements;
+        this.size = size;
+    }
+
+    /**
+     * Creates a list that contains the elements of a collection.
+     * @param elements the elements
+     * @param <E> element type
+     * @return a new list
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> AppendOnlyList<E> copyOf(Collection<? extends E> elements) {
+        if (elements instanceof AppendOnlyList) {
+            return (AppendOnlyList<E>) elements;
+        }
+        return new AppendOnlyList<E>(new Storage(), new Object[0], 0).append(elements);
+    }
+
+    /**
+     * Creates a list that contains the elements of this list followed by more elements.
+     * @param additionalElements the elements to append
+     * @return a new list
+     */
+    public AppendOnlyList<E> append(Collection<? extends E> additionalElements) {
+        Object[] additional = additionalElements.toArray();
+        synchronized (storage) {
+            if (storage.size == size) {
+                storage.append(additional);
+                return new AppendOnlyList<>(storage, storage.elements, storage.size);
+            }
+        }
+        Storage branch = new Storage();
+        branch.elements = Arrays.copyOf(elements, size + additional.length);
+        branch.size = size;
+        branch.append(additional);
+        return new AppendOnlyList<>(branch, branch.elements, branch.size);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        checkElementIndex(index, size);
+        return (E) elements[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Storage shared by lists appended to one another. Elements beyond the size
+     * of a list are never read through that list, so storage can be written
+     * beyond that size while the list is in use.
+     */
+    private static class Storage {
+
+        private Object[] elements = new Object[0];
+        private int size;
+
+        public void append(Object[] additional) {
+            int newSize = size + additional.length;
+            if (newSize > elements.length) {
+                elements = Arrays.copyOf(elements, Math.max(MIN_CAPACITY, Math.max(newSize, elements.length * 2)));
+            }
+            System.arraycopy(additional, 0, elements, size, additional.length);
+            size = newSize;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package io.github.mike10004.vhs;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.net.MediaType;
+import io.github.mike10004.vhs.HeuristicEntryMatcher.ParsedEntry;
+import io.github.mike10004.vhs.harbridge.HttpMethod;
+import io.github.mike10004.vhs.harbridge.ParsedRequest;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Class that collapses runs of identical entries into a single entry whose
+ * multiplicity is the length of the run. Two entries are merged only if their
+ * requests and responses are identical and they are adjacent in the sequence of
+ * entries that share a request method and URL; this keeps the merged entry
+ * compatible with the sequence positions assigned by {@link StatefulHeuristicEntryMatcher},
+ * because the merged entry covers a contiguous range of positions.
+ */
+class EntryDeduplicator {
+
+    private static final Logger log = LoggerFactory.getLogger(EntryDeduplicator.class);
+
+    /**
+     * Returns a list of entries where each run of identical entries is replaced
+     * by a single entry. Order of the remaining entries is preserved.
+     * @param entries the entries
+     * @return a list of deduplicated entries
+     */
+    public List<ParsedEntry> deduplicate(List<ParsedEntry> entries) {
+        List<ParsedEntry> deduplicated = new ArrayList<>(entries.size());
+        Map<ImmutablePair<HttpMethod, URI>, RunHead> runHeads = new HashMap<>();
+        for (ParsedEntry entry : entries) {
+            ImmutablePair<HttpMethod, URI> key = ImmutablePair.of(entry.request.method, entry.request.url);
+            @Nullable RunHead head = runHeads.get(key);
+            if (head != null && head.isDuplicate(entry)) {
+                ParsedEntry merged = new ParsedEntry(head.entry.request, head.entry.responseCreator, head.entry.multiplicity + entry.multiplicity);
+                deduplicated.set(head.position, merged);
+                head.entry = merged;
+            } else {
+                runHeads.put(key, new RunHead(deduplicated.size(), entry));
+                deduplicated.add(entry);
+            }
+        }
+        if (deduplicated.size() < entries.size()) {
+            log.debug("collapsed {} entries into {}", entries.size(), deduplicated.size());
+        }
+        return deduplicated;
+    }
+
+    /**
+     * Most recently added entry among those that share a method and URL.
+     * Fingerprints are computed lazily, so that entries with unique
+     * method-URL pairs are never decoded.
+     */
+    private static class RunHead {
+
+        public final int position;
+        public ParsedEntry entry;
+        private Fingerprint requestFingerprint, responseFingerprint;
+
+        public RunHead(int position, ParsedEntry entry) {
+            this.position = position;
+            this.entry = requireNonNull(entry);
+        }
+
+        public boolean isDuplicate(ParsedEntry other) {
+            try {
+                if (requestFingerprint == null) {
+                    requestFingerprint = Fingerprint.ofRequest(entry.request);
+                }
+                if (!requestFingerprint.equals(Fingerprint.ofRequest(other.request))) {
+                    return false;
+                }
+                if (responseFingerprint == null) {
+                    responseFingerprint = Fingerprint.ofResponse(entry.responseCreator.createRespondable(entry.request));
+                }
+                return responseFingerprint.equals(Fingerprint.ofResponse(other.responseCreator.createRespondable(other.request)));
+            } catch (IOException | RuntimeException e) {
+                log.debug("not merging entries because comparison failed: {}", e.toString());
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Value class that identifies the content of a request or response. The body is
+     * represented by its length and a hash so that bodies need not be retained.
+     */
+    private static final class Fingerprint {
+
+        private final Object metadata;
+        private final long bodyLength;
+        private final HashCode bodyHash;
+
+        private Fingerprint(Object metadata, long bodyLength, HashCode bodyHash) {
+            this.metadata = requireNonNull(metadata);
+            this.bodyLength = bodyLength;
+            this.bodyHash = requireNonNull(bodyHash);
+        }
+
+        public static Fingerprint ofRequest(ParsedRequest request) throws IOException {
+            @Nullable ImmutableMultimap<String, Optional<String>> query = request.query;
+            List<Object> metadata = new ArrayList<>(5);
+            metadata.add(request.method);
+            metadata.add(request.url);
+            metadata.add(Optional.ofNullable(query));
+            metadata.add(request.indexedHeaders);
+            metadata.add(request.isBodyPresent());
+            HashingOutputStream out = newHashingStream();
+            long length;
+            try (InputStream in = request.openBodyStream()) {
+                length = ByteStreams.copy(in, out);
+            }
+            return new Fingerprint(metadata, length, out.hash());
+        }
+
+        public static Fingerprint ofResponse(HttpRespondable respondable) throws IOException {
+            HashingOutputStream hashingOut = newHashingStream();
+            CountingOutputStream out = new CountingOutputStream(hashingOut);
+            MediaType contentType = respondable.writeBody(out);
+            List<Object> metadata = new ArrayList<>(3);
+            metadata.add(respondable.getStatus());
+            metadata.add(respondable.streamHeaders()
+                    .map(header -> ImmutablePair.of(header.getKey(), header.getValue()))
+                    .collect(ImmutableList.toImmutableList()));
+            metadata.add(Optional.ofNullable(contentType));
+            return new Fingerprint(metadata, out.getCount(), hashingOut.hash());
+        }
+
+        private static HashingOutputStream newHashingStream() {
+            return new HashingOutputStream(Hashing.sha256(), ByteStreams.nullOutputStream());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Fingerprint)) return false;
+            Fingerprint that = (Fingerprint) o;
+            return bodyLength == that.bodyLength &&
+                    metadata.equals(that.metadata) &&
+                    bodyHash.equals(that.bodyHash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(metadata, bodyLength, bodyHash);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package io.github.mike10004.vhs;
 import io.github.mike10004.vhs.harbridge.ParsedRequest;
 
 import javax.annotation.Nullable;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Interface that defines a method to determine how to respond to
@@ -18,4 +19,17 @@ public interface EntryMatcher<S> {
     @Nullable
     HttpRespondable findTopEntry(S state, ParsedRequest request);
 
+    /**
+     * Gets a future that is completed when {@link #findTopEntry(Object, ParsedRequest)}
+     * can answer a request without waiting, as for entries to be loaded. Callers
+     * that must not block, such as the proxy's event loop, wait for this future
+     * before asking for the top entry. The default implementation returns a
+     * completed future.
+     * @param request the request
+     * @return a future
+     */
+    default CompletableFuture<?> whenReady(ParsedRequest request) {
+        return CompletableFuture.completedFuture(null);
+    }
+
 }
@@ -1,5 +1,7 @@
 package io.github.mike10004.vhs;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.io.ByteSource;
@@ -10,6 +12,7 @@ import io.github.mike10004.vhs.harbridge.HarResponseData;
 import io.github.mike10004.vhs.harbridge.HarResponseEncoding;
 import io.github.mike10004.vhs.harbridge.HttpMethod;
 import io.github.mike10004.vhs.harbridge.ParsedRequest;
+import io.github.mike10004.vhs.harbridge.RecordedTiming;
 
 import javax.annotation.Nullable;
 import java.io.IOException;
@@ -33,10 +36,12 @@ public class HarBridgeEntryParser<E> implements EntryParser<E> {
 
     private final HarBridge<E> bridge;
     private final HarResponseEncoderFactory<E> responseEncoderFactory;
+    private final Cache<E, ResponseTemplate> templates;
 
     public HarBridgeEntryParser(HarBridge<E> bridge, HarResponseEncoderFactory<E> responseEncoderFactory) {
         this.bridge = requireNonNull(bridge);
         this.responseEncoderFactory = requireNonNull(responseEncoderFactory);
+        templates = CacheBuilder.newBuilder().weakKeys().build();
     }
 
     public static <E> HarBridgeEntryParser<E> withPlainEncoder(HarBridge<E> bridge) {
@@ -90,7 +95,7 @@ public class HarBridgeEntryParser<E> implements EntryParser<E> {
         Multimap<String, String> indexedHeaders = indexHeaders(bridge.getRequestHeaders(harEntry));
         ByteSource bodySource = bridge.getRequestPostData(harEntry);
         byte[] body = bodySource.read();
-        return ParsedRequest.inMemory(method, parsedUrl, query, indexedHeaders, body);
+        return ParsedRequest.compact(method, parsedUrl, query, indexedHeaders, body);
     }
 
     /**
@@ -112,12 +117,38 @@ public class HarBridgeEntryParser<E> implements EntryParser<E> {
         return HttpRequests.parseQuery(uri);
     }
 
+    /**
+     * Creates a respondable from an entry's response. The unencoded response data and the
+     * respondable constructed from it are computed on the first call for a given entry and
+     * reused thereafter, so that serving an entry again only costs applying the encoding
+     * strategy; if the strategy leaves the data unchanged, the same respondable is returned.
+     * @param request the request
+     * @param entry the HAR entry
+     * @return the respondable
+     * @throws IOException on I/O error
+     */
     @Override
     public HttpRespondable parseResponse(ParsedRequest request, E entry) throws IOException {
-        int status = bridge.getResponseStatus(entry);
+        ResponseTemplate template = getTemplate(request, entry);
         HarResponseEncoding responseEncoder = responseEncoderFactory.getEncoder(request, entry);
-        HarResponseData responseData = bridge.getResponseData(request, entry, responseEncoder);
-        return constructRespondable(status, responseData);
+        HarResponseData responseData = responseEncoder.transformUnencoded(template.unencoded);
+        if (responseData == template.unencoded) {
+            return template.respondable;
+        }
+        return constructRespondable(template.status, responseData, template.recordedTiming, template.namespace);
+    }
+
+    private ResponseTemplate getTemplate(ParsedRequest request, E entry) throws IOException {
+        @Nullable ResponseTemplate template = templates.getIfPresent(entry);
+        if (template == null) {
+            int status = bridge.getResponseStatus(entry);
+            HarResponseData unencoded = bridge.getResponseData(request, entry, HarResponseEncoding.unencoded());
+            @Nullable RecordedTiming recordedTiming = bridge.getRecordedTiming(entry);
+            @Nullable String namespace = bridge.getNamespace(entry);
+            template = new ResponseTemplate(status, unencoded, recordedTiming, namespace, constructRespondable(status, unencoded, recordedTiming, namespace));
+            templates.put(entry, template);
+        }
+        return template;
     }
 
     /**
@@ -158,12 +189,44 @@ public class HarBridgeEntryParser<E> implements EntryParser<E> {
     }
 
     protected static HttpRespondable constructRespondable(int status, HarResponseData responseData) throws IOException {
+        return constructRespondable(status, responseData, null, null);
+    }
+
+    protected static HttpRespondable constructRespondable(int status, HarResponseData responseData, @Nullable RecordedTiming recordedTiming, @Nullable String namespace) throws IOException {
         Multimap<String, String> headers = ArrayListMultimap.create();
         responseData.headers().forEach(header -> {
             headers.put(header.getKey(), header.getValue());
         });
         replaceContentLength(headers, responseData.getBody().size());
-        return HttpRespondable.inMemory(status, headers, responseData.getContentType(), responseData.getBody());
+        return ImmutableHttpRespondable.builder(status)
+                .headers(headers)
+                .contentType(responseData.getContentType())
+                .bodySource(responseData.getBody())
+                .recordedTiming(recordedTiming)
+                .namespace(namespace)
+                .build();
+    }
+
+    /**
+     * Response of an entry, precomputed before any encoding strategy is applied.
+     */
+    private static class ResponseTemplate {
+
+        public final int status;
+        public final HarResponseData unencoded;
+        @Nullable
+        public final RecordedTiming recordedTiming;
+        @Nullable
+        public final String namespace;
+        public final HttpRespondable respondable;
+
+        public ResponseTemplate(int status, HarResponseData unencoded, @Nullable RecordedTiming recordedTiming, @Nullable String namespace, HttpRespondable respondable) {
+            this.status = status;
+            this.unencoded = requireNonNull(unencoded);
+            this.recordedTiming = recordedTiming;
+            this.namespace = namespace;
+            this.respondable = requireNonNull(respondable);
+        }
     }
 
 }
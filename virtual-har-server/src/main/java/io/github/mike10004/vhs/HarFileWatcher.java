@@ -0,0 +1,150 @@
+package io.github.mike10004.vhs;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Class that watches HAR files for changes and invokes a callback on a
+ * background thread when any of them changes. Because a file is often written
+ * in several steps, the callback is not invoked until the files have been quiet
+ * for a specified period, so changes to several files in quick succession
+ * result in a single invocation. The callback is never invoked concurrently
+ * with itself.
+ */
+public class HarFileWatcher implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(HarFileWatcher.class);
+
+    /**
+     * Default period of inactivity that must elapse after a change before the callback is invoked.
+     */
+    public static final Duration DEFAULT_QUIET_PERIOD = Duration.ofMillis(250);
+
+    private final ImmutableSet<Path> harFiles;
+    private final Duration quietPeriod;
+    private final Runnable changeListener;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    private HarFileWatcher(Set<Path> harFiles, Duration quietPeriod, Runnable changeListener, WatchService watchService) {
+        this.harFiles = ImmutableSet.copyOf(harFiles);
+        this.quietPeriod = requireNonNull(quietPeriod);
+        this.changeListener = requireNonNull(changeListener);
+        this.watchService = requireNonNull(watchService);
+        thread = new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("har-file-watcher-%d")
+                .build()
+                .newThread(this::watch);
+    }
+
+    /**
+     * Starts watching a file.
+     * @param harFile the file
+     * @param quietPeriod period of inactivity that must elapse after a change before the listener is notified
+     * @param changeListener the listener
+     * @return a watcher that must be closed to stop watching
+     * @throws IOException if the watch service could not be created
+     */
+    public static HarFileWatcher start(Path harFile, Duration quietPeriod, Runnable changeListener) throws IOException {
+        return start(Collections.singleton(harFile), quietPeriod, changeListener);
+    }
+
+    /**
+     * Starts watching several files.
+     * @param harFiles the files
+     * @param quietPeriod period of inactivity that must elapse after a change before the listener is notified
+     * @param changeListener the listener, which is notified when any of the files changes
+     * @return a watcher that must be closed to stop watching
+     * @throws IOException if the watch service could not be created
+     */
+    public static HarFileWatcher start(Collection<Path> harFiles, Duration quietPeriod, Runnable changeListener) throws IOException {
+        checkArgument(!quietPeriod.isNegative(), "quiet period must be nonnegative: %s", quietPeriod);
+        checkArgument(!harFiles.isEmpty(), "no files to watch");
+        Set<Path> absoluteHarFiles = new LinkedHashSet<>();
+        harFiles.forEach(harFile -> absoluteHarFiles.add(harFile.toAbsolutePath()));
+        Set<Path> parents = new LinkedHashSet<>();
+        absoluteHarFiles.forEach(harFile -> parents.add(requireNonNull(harFile.getParent(), "parent")));
+        WatchService watchService = parents.iterator().next().getFileSystem().newWatchService();
+        try {
+            for (Path parent : parents) {
+                parent.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        } catch (IOException | RuntimeException e) {
+            watchService.close();
+            throw e;
+        }
+        HarFileWatcher watcher = new HarFileWatcher(absoluteHarFiles, quietPeriod, changeListener, watchService);
+        watcher.thread.start();
+        return watcher;
+    }
+
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                boolean changed = pollEvents(key);
+                // wait until the file has been quiet for a while
+                while (true) {
+                    WatchKey next = watchService.poll(quietPeriod.toNanos(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    changed |= pollEvents(next);
+                }
+                if (changed) {
+                    log.debug("{} changed", harFiles);
+                    try {
+                        changeListener.run();
+                    } catch (RuntimeException e) {
+                        log.warn("change listener failed", e);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            log.debug("stopped watching {}", harFiles);
+        }
+    }
+
+    private boolean pollEvents(WatchKey key) {
+        Path directory = (Path) key.watchable();
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || harFiles.contains(directory.resolve((Path) event.context()))) {
+                changed = true;
+            }
+        }
+        key.reset();
+        return changed;
+    }
+
+    /**
+     * Stops watching the files.
+     * @throws IOException if closing the watch service fails
+     */
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        watchService.close();
+    }
+}
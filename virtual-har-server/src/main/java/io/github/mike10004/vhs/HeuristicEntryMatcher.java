@@ -1,6 +1,5 @@
 package io.github.mike10004.vhs;
 
-import com.google.common.collect.ImmutableList;
 import io.github.mike10004.vhs.harbridge.ParsedRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,19 +14,24 @@ import java.util.Optional;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
 public class HeuristicEntryMatcher<S> implements EntryMatcher<S> {
 
     private static final Logger log = LoggerFactory.getLogger(HeuristicEntryMatcher.class);
 
-    protected final ImmutableList<ParsedEntry> entries;
+    /**
+     * Entries of this matcher. The list is unmodifiable, and it can be extended
+     * by {@link #appendEntries(List)} without copying.
+     */
+    protected final List<ParsedEntry> entries;
     protected final Heuristic heuristic;
-    private final int thresholdExclusive;
+    protected final int thresholdExclusive;
     private final Predicate<RatedEntry> ratedEntryFilter;
 
     protected HeuristicEntryMatcher(Heuristic heuristic, int thresholdExclusive, Collection<ParsedEntry> entries) {
-        this.entries = ImmutableList.copyOf(entries);
+        this.entries = AppendOnlyList.copyOf(entries);
         this.thresholdExclusive = thresholdExclusive;
         this.heuristic = requireNonNull(heuristic);
         ratedEntryFilter = new RatedEntryFilter();
@@ -37,6 +41,19 @@ public class HeuristicEntryMatcher<S> implements EntryMatcher<S> {
         return new Factory<>(heuristic, thresholdExclusive);
     }
 
+    /**
+     * Creates a factory that produces matchers where runs of identical entries
+     * are collapsed at load time.
+     * @param heuristic the heuristic
+     * @param thresholdExclusive the rating threshold
+     * @param <T> state type
+     * @return the factory
+     * @see EntryDeduplicator
+     */
+    public static <T> EntryMatcherFactory<T> deduplicatingFactory(Heuristic heuristic, int thresholdExclusive) {
+        return new Factory<>(heuristic, thresholdExclusive, true);
+    }
+
     /**
      * Interface that maps a request to a response.
      */
@@ -50,16 +67,44 @@ public class HeuristicEntryMatcher<S> implements EntryMatcher<S> {
         HttpRespondable createRespondable(ParsedRequest request) throws IOException;
     }
 
-    protected static class Factory<S> implements EntryMatcherFactory<S> {
+    /**
+     * Creates a matcher that contains this matcher's entries followed by additional entries.
+     * Subclasses that index entries should override this to extend the index.
+     * @param additionalEntries the entries to append
+     * @return a new matcher
+     */
+    protected HeuristicEntryMatcher<S> withAdditionalEntries(List<ParsedEntry> additionalEntries) {
+        return new HeuristicEntryMatcher<>(heuristic, thresholdExclusive, appendEntries(additionalEntries));
+    }
+
+    /**
+     * Creates a list of this matcher's entries followed by additional entries.
+     * The entries of this matcher are not copied unless another list has already
+     * been appended to them, so extending a matcher batch by batch costs time
+     * proportional to the size of the batches.
+     * @param additionalEntries the entries to append
+     * @return a new list, which this matcher's constructor accepts without copying
+     */
+    protected final List<ParsedEntry> appendEntries(List<ParsedEntry> additionalEntries) {
+        return ((AppendOnlyList<ParsedEntry>) entries).append(additionalEntries);
+    }
+
+    protected static class Factory<S> implements IncrementalEntryMatcherFactory<S> {
 
         private static final Logger log = LoggerFactory.getLogger(Factory.class);
 
         protected final Heuristic heuristic;
         protected final int thresholdExclusive;
+        protected final boolean deduplicate;
 
         protected Factory(Heuristic heuristic, int thresholdExclusive) {
+            this(heuristic, thresholdExclusive, false);
+        }
+
+        protected Factory(Heuristic heuristic, int thresholdExclusive, boolean deduplicate) {
             this.thresholdExclusive = thresholdExclusive;
             this.heuristic = requireNonNull(heuristic);
+            this.deduplicate = deduplicate;
         }
 
         protected <E> List<ParsedEntry> parseEntries(List<E> entries, EntryParser<E> requestParser) throws IOException {
@@ -70,6 +115,9 @@ public class HeuristicEntryMatcher<S> implements EntryMatcher<S> {
                 ParsedEntry parsedEntry = new ParsedEntry(request, respondableCreator);
                 parsedEntries.add(parsedEntry);
             }
+            if (deduplicate) {
+                parsedEntries = new EntryDeduplicator().deduplicate(parsedEntries);
+            }
             return parsedEntries;
         }
 
@@ -80,6 +128,14 @@ public class HeuristicEntryMatcher<S> implements EntryMatcher<S> {
             List<ParsedEntry> parsedEntries = parseEntries(entries, requestParser);
             return new HeuristicEntryMatcher<>(heuristic, thresholdExclusive, parsedEntries);
         }
+
+        @Override
+        public <E> EntryMatcher<S> appendEntries(EntryMatcher<S> matcher, List<E> entries, EntryParser<E> requestParser) throws IOException {
+            checkArgument(matcher instanceof HeuristicEntryMatcher, "not a heuristic entry matcher: %s", matcher);
+            log.trace("appending {} har entries", entries.size());
+            List<ParsedEntry> parsedEntries = parseEntries(entries, requestParser);
+            return ((HeuristicEntryMatcher<S>) matcher).withAdditionalEntries(parsedEntries);
+        }
     }
 
     private static class EntryRespondableCreator<E> implements HttpRespondableCreator {
@@ -182,9 +238,20 @@ public class HeuristicEntryMatcher<S> implements EntryMatcher<S> {
 
         public final HttpRespondableCreator responseCreator;
 
+        /**
+         * Number of identical consecutive HAR entries this entry represents.
+         */
+        public final int multiplicity;
+
         public ParsedEntry(ParsedRequest request, HttpRespondableCreator responseCreator) {
+            this(request, responseCreator, 1);
+        }
+
+        public ParsedEntry(ParsedRequest request, HttpRespondableCreator responseCreator, int multiplicity) {
             this.responseCreator = requireNonNull(responseCreator);
             this.request = requireNonNull(request);
+            checkArgument(multiplicity > 0, "multiplicity must be positive: %s", multiplicity);
+            this.multiplicity = multiplicity;
         }
 
     }
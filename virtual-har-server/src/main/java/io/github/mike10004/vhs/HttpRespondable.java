@@ -3,11 +3,18 @@ package io.github.mike10004.vhs;
 import com.google.common.collect.Multimap;
 import com.google.common.io.ByteSource;
 import com.google.common.net.MediaType;
+import io.github.mike10004.vhs.harbridge.ByteBufferSource;
+import io.github.mike10004.vhs.harbridge.RecordedTiming;
 
 import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.util.Map.Entry;
+import java.util.OptionalLong;
 import java.util.stream.Stream;
 
 import static java.util.Objects.requireNonNull;
@@ -44,6 +51,72 @@ public interface HttpRespondable {
     @Nullable
     MediaType previewContentType();
 
+    /**
+     * Gets the length of the response body, if it is known without reading the body.
+     * @return the length in bytes, or empty if unknown
+     */
+    default OptionalLong getBodyLengthIfKnown() {
+        return OptionalLong.empty();
+    }
+
+    /**
+     * Gets the response body as a read-only buffer. The default implementation
+     * writes the body to a new array; implementations that hold the body in memory
+     * should return a view of it instead.
+     * @return a buffer whose remaining bytes are the response body
+     * @throws IOException if thrown by a stream-writing method
+     */
+    default ByteBuffer viewBody() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+        writeBody(baos);
+        return ByteBuffer.wrap(baos.toByteArray()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Opens a stream that supplies the response body. Implementations whose body
+     * is produced lazily, as by decompressing it, should produce it as the stream
+     * is read, so that a large body can be sent without holding all of it in memory.
+     * @return an input stream
+     * @throws IOException on I/O error
+     */
+    default InputStream openBodyStream() throws IOException {
+        return ByteBufferSource.wrap(viewBody()).openStream();
+    }
+
+    /**
+     * Writes the response body to a channel.
+     * @param channel the channel
+     * @return the number of bytes written
+     * @throws IOException on I/O error
+     */
+    default long transferBody(WritableByteChannel channel) throws IOException {
+        ByteBuffer body = viewBody();
+        long count = body.remaining();
+        while (body.hasRemaining()) {
+            channel.write(body);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the timings recorded for the HAR entry this response was created from.
+     * @return the timings, or null if none were recorded
+     */
+    @Nullable
+    default RecordedTiming getRecordedTiming() {
+        return null;
+    }
+
+    /**
+     * Gets the namespace of the HAR file this response was loaded from.
+     * @return the namespace, or null if unknown
+     * @see io.github.mike10004.vhs.harbridge.HarBridge#getNamespace(Object)
+     */
+    @Nullable
+    default String getNamespace() {
+        return null;
+    }
+
     /**
      * Creates an instance whose content is held in memory.
      * @param status HTTP status code
@@ -53,7 +126,7 @@ public interface HttpRespondable {
      * @return the new instance
      */
     static HttpRespondable inMemory(int status, Multimap<String, String> headers, MediaType contentType, byte[] body) {
-        return inMemory(status, headers, contentType, ByteSource.wrap(body));
+        return inMemory(status, headers, contentType, ByteBufferSource.wrap(body));
     }
 
     static HttpRespondable inMemory(int status, Multimap<String, String> headers, MediaType contentType, ByteSource body) {
@@ -1,15 +1,22 @@
 package io.github.mike10004.vhs;
 
+import com.google.common.base.Optional;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.Multimap;
 import com.google.common.io.ByteSource;
 import com.google.common.net.MediaType;
+import io.github.mike10004.vhs.harbridge.ByteBufferSource;
+import io.github.mike10004.vhs.harbridge.RecordedTiming;
 
+import javax.annotation.Nullable;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Map.Entry;
+import java.util.OptionalLong;
 import java.util.stream.Stream;
 
 import static java.util.Objects.requireNonNull;
@@ -23,16 +30,24 @@ public class ImmutableHttpRespondable implements HttpRespondable {
     private final MediaType contentType;
     private final ImmutableMultimap<String, String> headers;
     private final ByteSource bodySource;
+    @Nullable
+    private final RecordedTiming recordedTiming;
+    @Nullable
+    private final String namespace;
 
     private ImmutableHttpRespondable(Builder builder) {
         status = builder.status;
         contentType = builder.contentType;
         headers = ImmutableMultimap.copyOf(builder.headers);
         bodySource = builder.bodySource;
+        recordedTiming = builder.recordedTiming;
+        namespace = builder.namespace;
     }
 
     public static Builder builder(HttpRespondable source) throws IOException {
-        Builder b = builder(source.getStatus());
+        Builder b = builder(source.getStatus())
+                .recordedTiming(source.getRecordedTiming())
+                .namespace(source.getNamespace());
         if (source instanceof io.github.mike10004.vhs.ImmutableHttpRespondable) {
             io.github.mike10004.vhs.ImmutableHttpRespondable src = (io.github.mike10004.vhs.ImmutableHttpRespondable) source;
             return b.bodySource(src.bodySource)
@@ -40,10 +55,16 @@ public class ImmutableHttpRespondable implements HttpRespondable {
                     .headers(src.headers);
         } else {
             source.streamHeaders().forEach(b::header);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
-            MediaType contentType = source.writeBody(baos);
-            b.contentType(contentType);
-            b.bodySource(ByteSource.wrap(baos.toByteArray()));
+            @Nullable MediaType contentType = source.previewContentType();
+            if (contentType != null) {
+                b.contentType(contentType);
+                b.bodySource(ByteBufferSource.wrap(source.viewBody()));
+            } else {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream(256);
+                contentType = source.writeBody(baos);
+                b.contentType(contentType);
+                b.bodySource(ByteBufferSource.wrap(baos.toByteArray()));
+            }
         }
         return b;
     }
@@ -73,11 +94,55 @@ public class ImmutableHttpRespondable implements HttpRespondable {
         return contentType;
     }
 
+    @Override
+    public OptionalLong getBodyLengthIfKnown() {
+        Optional<Long> size = bodySource.sizeIfKnown();
+        return size.isPresent() ? OptionalLong.of(size.get()) : OptionalLong.empty();
+    }
+
+    @Override
+    public InputStream openBodyStream() throws IOException {
+        return bodySource.openStream();
+    }
+
+    @Nullable
+    @Override
+    public RecordedTiming getRecordedTiming() {
+        return recordedTiming;
+    }
+
+    @Nullable
+    @Override
+    public String getNamespace() {
+        return namespace;
+    }
+
+    /**
+     * Gets the response body as a read-only buffer. If the body source holds
+     * its bytes in memory, the buffer is a view of the source's bytes;
+     * otherwise the body is read into a new array.
+     * @return a buffer whose remaining bytes are the response body
+     * @throws IOException if reading the body source fails
+     * @see ByteBufferSource#viewIfInMemory(ByteSource)
+     */
+    @Override
+    public ByteBuffer viewBody() throws IOException {
+        @Nullable ByteBuffer view = ByteBufferSource.viewIfInMemory(bodySource);
+        if (view != null) {
+            return view;
+        }
+        return ByteBuffer.wrap(bodySource.read()).asReadOnlyBuffer();
+    }
+
     public static final class Builder {
         private final int status;
         private MediaType contentType = MediaType.OCTET_STREAM;
         private Multimap<String, String> headers = ArrayListMultimap.create();
         private ByteSource bodySource = ByteSource.empty();
+        @Nullable
+        private RecordedTiming recordedTiming;
+        @Nullable
+        private String namespace;
 
         private Builder(int status) {
             this.status = status;
@@ -108,6 +173,16 @@ public class ImmutableHttpRespondable implements HttpRespondable {
 
         }
 
+        public Builder recordedTiming(@Nullable RecordedTiming recordedTiming) {
+            this.recordedTiming = recordedTiming;
+            return this;
+        }
+
+        public Builder namespace(@Nullable String namespace) {
+            this.namespace = namespace;
+            return this;
+        }
+
         public io.github.mike10004.vhs.ImmutableHttpRespondable build() {
             return new io.github.mike10004.vhs.ImmutableHttpRespondable(this);
         }
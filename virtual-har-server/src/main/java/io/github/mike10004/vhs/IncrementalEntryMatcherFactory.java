@@ -0,0 +1,26 @@
+package io.github.mike10004.vhs;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Interface for a factory that can also extend a matcher it created with
+ * additional HAR entries, without re-parsing the entries already indexed.
+ * @param <S> state type
+ */
+public interface IncrementalEntryMatcherFactory<S> extends EntryMatcherFactory<S> {
+
+    /**
+     * Creates a matcher that contains the entries of an existing matcher followed
+     * by the given entries. The existing matcher is not modified.
+     * @param matcher a matcher previously created by this factory
+     * @param harEntries list of har entries to append
+     * @param requestParser request parser
+     * @param <E> HAR entry type
+     * @return an entry matcher instance
+     * @throws IOException on I/O error
+     * @throws IllegalArgumentException if the matcher was not created by this factory
+     */
+    <E> EntryMatcher<S> appendEntries(EntryMatcher<S> matcher, List<E> harEntries, EntryParser<E> requestParser) throws IOException;
+
+}
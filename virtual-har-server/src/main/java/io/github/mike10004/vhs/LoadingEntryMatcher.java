@@ -0,0 +1,258 @@
+package io.github.mike10004.vhs;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.mike10004.vhs.harbridge.ParsedRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Entry matcher that can accept requests while HAR entries are still being loaded.
+ * Entries are streamed from their source, and the matcher is extended batch by
+ * batch while the rest of the source is read, so that little work remains once
+ * reading ends. Any entry in a HAR may be the best match for a request, so
+ * requests are answered once the whole source has been read, or unmatched once
+ * the readiness timeout has elapsed since this instance was constructed,
+ * whichever comes first.
+ *
+ * <p>Requests on threads that must not block should wait for the future returned
+ * by {@link #whenReady(ParsedRequest)} before asking for the top entry; other
+ * callers may ask directly, and {@link #findTopEntry(Object, ParsedRequest)}
+ * blocks until the entries are loaded or the timeout elapses.
+ * @param <S> state type
+ */
+public class LoadingEntryMatcher<S> implements EntryMatcher<S> {
+
+    private static final Logger log = LoggerFactory.getLogger(LoadingEntryMatcher.class);
+
+    /**
+     * Number of entries that are added to the matcher at a time, if the matcher
+     * factory can extend matchers.
+     */
+    static final int BATCH_SIZE = 64;
+
+    private final long deadlineNanos;
+    private final CountDownLatch loadedLatch;
+    private final CompletableFuture<Void> loadedFuture;
+    @Nullable
+    private volatile EntryMatcher<S> matcher;
+    @Nullable
+    private volatile Throwable loadFailure;
+    @Nullable
+    private CompletableFuture<Void> deadlineFuture;
+
+    /**
+     * Constructs a new instance.
+     * @param readinessTimeout maximum duration, from construction, that requests wait for entries to be loaded
+     * @param unit timeout unit
+     */
+    public LoadingEntryMatcher(long readinessTimeout, TimeUnit unit) {
+        checkArgument(readinessTimeout >= 0, "timeout must be nonnegative: %s", readinessTimeout);
+        deadlineNanos = System.nanoTime() + unit.toNanos(readinessTimeout);
+        loadedLatch = new CountDownLatch(1);
+        loadedFuture = new CompletableFuture<>();
+    }
+
+    /**
+     * Interface that defines a method to supply the HAR entries to be loaded.
+     * @param <E> HAR entry type
+     */
+    public interface EntrySource<E> {
+
+        /**
+         * Reads the entries, passing each to a consumer as soon as it is parsed.
+         * @param consumer the consumer
+         * @throws IOException on I/O error
+         */
+        void readEntries(Consumer<? super E> consumer) throws IOException;
+    }
+
+    /**
+     * Reads entries and builds the matcher. This method blocks until loading is
+     * complete, so it is normally invoked on a background thread. If the thread
+     * is interrupted, loading stops and all requests are unmatched.
+     * @param entrySource the entry source
+     * @param entryParser the entry parser
+     * @param entryMatcherFactory factory used to create the matcher
+     * @param <E> HAR entry type
+     */
+    public <E> void load(EntrySource<E> entrySource, EntryParser<E> entryParser, EntryMatcherFactory<S> entryMatcherFactory) {
+        BatchingBuilder<S, E> builder = new BatchingBuilder<>(entryMatcherFactory, entryParser);
+        try {
+            entrySource.readEntries(entry -> {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new LoadingInterruptedException();
+                }
+                builder.add(entry);
+            });
+            matcher = builder.finish();
+            log.debug("loaded {} entries", builder.numEntries);
+        } catch (LoadingInterruptedException e) {
+            log.debug("entry loading interrupted");
+        } catch (UncheckedIOException e) {
+            log.error("failed to load HAR entries", e.getCause());
+            loadFailure = e.getCause();
+        } catch (IOException | RuntimeException e) {
+            log.error("failed to load HAR entries", e);
+            loadFailure = e;
+        } finally {
+            loadedLatch.countDown();
+            loadedFuture.complete(null);
+        }
+    }
+
+    @Nullable
+    @Override
+    public HttpRespondable findTopEntry(S state, ParsedRequest request) {
+        try {
+            if (!loadedLatch.await(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                log.warn("timed out waiting for HAR entries to be loaded; unmatched: {}", request);
+                return null;
+            }
+        } catch (InterruptedException e) {
+            log.info("interrupted while waiting for entries to be loaded");
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        @Nullable EntryMatcher<S> matcher = this.matcher;
+        if (matcher == null) {
+            return null;
+        }
+        return matcher.findTopEntry(state, request);
+    }
+
+    /**
+     * Gets a future that is completed when loading finishes or when the
+     * readiness timeout elapses, whichever comes first.
+     * @param request the request
+     * @return a future
+     */
+    @Override
+    public CompletableFuture<?> whenReady(ParsedRequest request) {
+        if (loadedFuture.isDone()) {
+            return loadedFuture;
+        }
+        return CompletableFuture.anyOf(loadedFuture, getDeadlineFuture());
+    }
+
+    private synchronized CompletableFuture<Void> getDeadlineFuture() {
+        if (deadlineFuture == null) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            ScheduledFuture<?> timeout = Timeouts.EXECUTOR.schedule(() -> future.complete(null), Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            loadedFuture.whenComplete((ignore, e) -> timeout.cancel(false));
+            deadlineFuture = future;
+        }
+        return deadlineFuture;
+    }
+
+    /**
+     * Checks whether loading completed successfully.
+     * @return true iff all entries have been loaded
+     */
+    public boolean isReady() {
+        return loadedLatch.getCount() == 0 && loadFailure == null;
+    }
+
+    /**
+     * Waits for loading to finish, successfully or not.
+     * @param timeout maximum duration to wait
+     * @param unit timeout unit
+     * @return true if loading finished before the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     * @see #getLoadFailure()
+     */
+    public boolean awaitLoaded(long timeout, TimeUnit unit) throws InterruptedException {
+        return loadedLatch.await(timeout, unit);
+    }
+
+    /**
+     * Gets the exception that caused loading to fail, if any.
+     * @return the exception, or null if loading has not failed
+     */
+    @Nullable
+    public Throwable getLoadFailure() {
+        return loadFailure;
+    }
+
+    /**
+     * Builder of a matcher that is extended with entries a batch at a time.
+     */
+    private static class BatchingBuilder<S, E> {
+
+        private final EntryMatcherFactory<S> factory;
+        private final EntryParser<E> entryParser;
+        private List<E> pending;
+        @Nullable
+        private EntryMatcher<S> matcher;
+        private int numEntries;
+
+        public BatchingBuilder(EntryMatcherFactory<S> factory, EntryParser<E> entryParser) {
+            this.factory = factory;
+            this.entryParser = entryParser;
+            pending = new ArrayList<>();
+        }
+
+        public void add(E entry) {
+            pending.add(entry);
+            numEntries++;
+            if (pending.size() >= BATCH_SIZE && factory instanceof IncrementalEntryMatcherFactory) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private void flush() throws IOException {
+            if (matcher == null) {
+                matcher = factory.createEntryMatcher(pending, entryParser);
+            } else {
+                matcher = ((IncrementalEntryMatcherFactory<S>) factory).appendEntries(matcher, pending, entryParser);
+            }
+            pending = new ArrayList<>();
+        }
+
+        public EntryMatcher<S> finish() throws IOException {
+            if (matcher == null || !pending.isEmpty()) {
+                flush();
+            }
+            return matcher;
+        }
+    }
+
+    private static class LoadingInterruptedException extends RuntimeException {
+    }
+
+    /**
+     * Holder of the executor that completes readiness futures when the timeout elapses.
+     */
+    private static class Timeouts {
+
+        public static final ScheduledExecutorService EXECUTOR = createExecutor();
+
+        private static ScheduledExecutorService createExecutor() {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+                    .setDaemon(true)
+                    .setNameFormat("entry-loading-timeout-%d")
+                    .build());
+            executor.setRemoveOnCancelPolicy(true);
+            return Executors.unconfigurableScheduledExecutorService(executor);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.mike10004.vhs;
+
+import io.github.mike10004.vhs.harbridge.ParsedRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Entry matcher that delegates to a matcher that can be replaced while the
+ * server is running. Each request is answered by whichever matcher was current
+ * when the request arrived, so requests in flight during a reload finish on the
+ * old matcher, and no request waits for a reload to complete.
+ * @param <S> state type
+ */
+public class ReloadingEntryMatcher<S> implements EntryMatcher<S> {
+
+    private static final Logger log = LoggerFactory.getLogger(ReloadingEntryMatcher.class);
+
+    private final AtomicReference<EntryMatcher<S>> current;
+    private final Loader<S> loader;
+
+    /**
+     * Constructs an instance.
+     * @param initial the initial matcher
+     * @param loader the loader used to build a replacement matcher
+     */
+    public ReloadingEntryMatcher(EntryMatcher<S> initial, Loader<S> loader) {
+        this.current = new AtomicReference<>(requireNonNull(initial, "initial"));
+        this.loader = requireNonNull(loader, "loader");
+    }
+
+    /**
+     * Interface that defines a method to build a replacement matcher.
+     * @param <S> state type
+     */
+    public interface Loader<S> {
+
+        /**
+         * Builds a matcher. The current matcher is provided so that a loader may
+         * derive the replacement from it rather than building it from scratch.
+         * @param current the current matcher
+         * @return the new matcher
+         * @throws IOException on I/O error
+         */
+        EntryMatcher<S> load(EntryMatcher<S> current) throws IOException;
+    }
+
+    @Nullable
+    @Override
+    public HttpRespondable findTopEntry(S state, ParsedRequest request) {
+        return current.get().findTopEntry(state, request);
+    }
+
+    @Override
+    public CompletableFuture<?> whenReady(ParsedRequest request) {
+        return current.get().whenReady(request);
+    }
+
+    /**
+     * Builds a replacement matcher and swaps it in. If building the matcher fails,
+     * the current matcher is retained. This method is not meant to be invoked
+     * concurrently with itself.
+     * @return true if the matcher was replaced
+     */
+    public boolean reload() {
+        EntryMatcher<S> replacement;
+        try {
+            replacement = loader.load(current.get());
+        } catch (IOException | RuntimeException e) {
+            log.warn("reload failed; continuing to serve from previously loaded entries", e);
+            return false;
+        }
+        current.set(requireNonNull(replacement, "replacement"));
+        log.debug("entry matcher reloaded");
+        return true;
+    }
+
+    /**
+     * Gets the current matcher.
+     * @return the current matcher
+     */
+    public EntryMatcher<S> getCurrent() {
+        return current.get();
+    }
+}
@@ -1,6 +1,5 @@
 package io.github.mike10004.vhs;
 
-import com.google.common.collect.ImmutableMap;
 import com.google.common.primitives.Ints;
 import com.google.common.util.concurrent.AtomicLongMap;
 import io.github.mike10004.vhs.harbridge.HttpMethod;
@@ -13,27 +12,81 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 public class StatefulHeuristicEntryMatcher extends HeuristicEntryMatcher<ReplaySessionState> {
 
     private static final int SEQUENCE_MATCH_BOOST = BasicHeuristic.DEFAULT_INCREMENT;
 
-    private final ImmutableMap<ParsedEntry, Integer> entrySequencePositions;
+    /*
+     * Sequence positions are shared by a matcher and the matchers created from it
+     * by appending entries, so that appending does not copy them. Entries are
+     * never removed, so a matcher only ever looks up positions of its own
+     * entries, which were assigned before it was constructed.
+     */
+    private final Map<ParsedEntry, Integer> entrySequencePositions;
+    private final SequenceCounter sequenceCounter;
 
     public StatefulHeuristicEntryMatcher(Heuristic heuristic, int thresholdExclusive, Collection<ParsedEntry> entries) {
+        this(heuristic, thresholdExclusive, entries, new ConcurrentHashMap<>(), new SequenceCounter());
+        sequenceCounter.assign(this.entries, entrySequencePositions);
+    }
+
+    private StatefulHeuristicEntryMatcher(Heuristic heuristic, int thresholdExclusive, Collection<ParsedEntry> entries,
+                                          Map<ParsedEntry, Integer> entrySequencePositions, SequenceCounter sequenceCounter) {
         super(heuristic, thresholdExclusive, entries);
-        this.entrySequencePositions = findSequencePositions(entries);
+        this.entrySequencePositions = entrySequencePositions;
+        this.sequenceCounter = sequenceCounter;
+    }
+
+    /**
+     * Creates a matcher with additional entries. Sequence positions of the
+     * existing entries are retained, and those of the additional entries
+     * continue from where the existing sequences end. Neither the existing
+     * entries nor their positions are copied.
+     * @param additionalEntries the entries to append
+     * @return a new matcher
+     */
+    @Override
+    protected StatefulHeuristicEntryMatcher withAdditionalEntries(List<ParsedEntry> additionalEntries) {
+        SequenceCounter counter;
+        List<ParsedEntry> allEntries;
+        synchronized (sequenceCounter) {
+            // if entries were already appended to this matcher, the counter is past them, so count afresh
+            counter = sequenceCounter.numEntries == entries.size() ? sequenceCounter : SequenceCounter.of(entries);
+            counter.assign(additionalEntries, entrySequencePositions);
+            allEntries = appendEntries(additionalEntries);
+        }
+        return new StatefulHeuristicEntryMatcher(heuristic, thresholdExclusive, allEntries, entrySequencePositions, counter);
     }
 
-    private static ImmutableMap<ParsedEntry, Integer> findSequencePositions(Iterable<ParsedEntry> entries) {
-        ImmutableMap.Builder<ParsedEntry, Integer> b = ImmutableMap.builder();
-        AtomicLongMap<Pair<HttpMethod, URI>> counter = AtomicLongMap.create();
-        for (ParsedEntry entry : entries) {
-            int sequencePosition = Ints.saturatedCast(counter.getAndIncrement(ImmutablePair.of(entry.request.method, entry.request.url)));
-            b.put(entry, sequencePosition);
+    /**
+     * Counter of the number of entries with each method and URL.
+     */
+    private static class SequenceCounter {
+
+        private final AtomicLongMap<Pair<HttpMethod, URI>> sequenceLengths = AtomicLongMap.create();
+        private int numEntries;
+
+        public static SequenceCounter of(List<ParsedEntry> entries) {
+            SequenceCounter counter = new SequenceCounter();
+            for (ParsedEntry entry : entries) {
+                counter.sequenceLengths.addAndGet(ImmutablePair.of(entry.request.method, entry.request.url), entry.multiplicity);
+            }
+            counter.numEntries = entries.size();
+            return counter;
+        }
+
+        public void assign(List<ParsedEntry> entries, Map<ParsedEntry, Integer> entrySequencePositions) {
+            for (ParsedEntry entry : entries) {
+                // an entry that stands for a run of identical entries occupies the positions of the whole run
+                int sequencePosition = Ints.saturatedCast(sequenceLengths.getAndAdd(ImmutablePair.of(entry.request.method, entry.request.url), entry.multiplicity));
+                entrySequencePositions.put(entry, sequencePosition);
+            }
+            numEntries += entries.size();
         }
-        return b.build();
     }
 
     @Override
@@ -44,7 +97,9 @@ public class StatefulHeuristicEntryMatcher extends HeuristicEntryMatcher<ReplayS
             if (rating > 0) {
                 int entrySequencePosition = entrySequencePositions.get(entry);
                 int requestSequencePosition = state.query(request);
-                boost = entrySequencePosition == requestSequencePosition ? SEQUENCE_MATCH_BOOST : 0;
+                boolean inSequence = requestSequencePosition >= entrySequencePosition
+                        && requestSequencePosition - entrySequencePosition < entry.multiplicity;
+                boost = inSequence ? SEQUENCE_MATCH_BOOST : 0;
             }
             return new RatedEntry(entry, rating + boost);
         };
@@ -54,12 +109,28 @@ public class StatefulHeuristicEntryMatcher extends HeuristicEntryMatcher<ReplayS
         return new MyFactory(heuristic, thresholdExclusive);
     }
 
+    /**
+     * Creates a factory that produces matchers where runs of identical entries
+     * are collapsed at load time.
+     * @param heuristic the heuristic
+     * @param thresholdExclusive the rating threshold
+     * @return the factory
+     * @see EntryDeduplicator
+     */
+    public static EntryMatcherFactory<ReplaySessionState> deduplicatingFactory(Heuristic heuristic, int thresholdExclusive) {
+        return new MyFactory(heuristic, thresholdExclusive, true);
+    }
+
     protected static class MyFactory extends Factory<ReplaySessionState> {
 
         public MyFactory(Heuristic heuristic, int thresholdExclusive) {
             super(heuristic, thresholdExclusive);
         }
 
+        public MyFactory(Heuristic heuristic, int thresholdExclusive, boolean deduplicate) {
+            super(heuristic, thresholdExclusive, deduplicate);
+        }
+
         @Override
         public <E> EntryMatcher<ReplaySessionState> createEntryMatcher(List<E> entries, EntryParser<E> requestParser) throws IOException {
             List<ParsedEntry> parsedEntries = parseEntries(entries, requestParser);
@@ -0,0 +1,70 @@
+package io.github.mike10004.vhs.bmp;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPipeline;
+
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Class that limits the rate at which responses are written to clients. A
+ * global limit is shared by all connections of a server, and a limit for each
+ * response applies to its connection. Both are metered by token buckets, and
+ * a {@link ShapingWriteHandler} splits responses into slices and holds the
+ * slices that exceed them until tasks scheduled on the channel's event loop
+ * release them. The handler is added to
+ * a channel's pipeline when the first response on the channel is shaped,
+ * nearer the socket than the {@link DelayingWriteHandler}, so that the time a
+ * response is held for simulated latency does not count toward its transfer.
+ */
+class BandwidthShaper {
+
+    static final String HANDLER_NAME = "vhs-shaping-write-handler";
+
+    @Nullable
+    private final TokenBucket globalBucket;
+    private final ThroughputLimiter throughputLimiter;
+
+    private BandwidthShaper(long globalBytesPerSecond, ThroughputLimiter throughputLimiter) {
+        this.globalBucket = globalBytesPerSecond > 0 ? new TokenBucket(globalBytesPerSecond) : null;
+        this.throughputLimiter = requireNonNull(throughputLimiter);
+    }
+
+    /**
+     * Creates a shaper, unless no limits are set.
+     * @param globalBytesPerSecond limit shared by all connections; zero means no limit
+     * @param throughputLimiter limiter of each response
+     * @return a new shaper, or null if neither limit is set
+     */
+    @Nullable
+    public static BandwidthShaper create(long globalBytesPerSecond, ThroughputLimiter throughputLimiter) {
+        checkArgument(globalBytesPerSecond >= 0, "global limit must be nonnegative: %s", globalBytesPerSecond);
+        if (globalBytesPerSecond == 0 && throughputLimiter == ThroughputLimiter.UNLIMITED) {
+            return null;
+        }
+        return new BandwidthShaper(globalBytesPerSecond, throughputLimiter);
+    }
+
+    /**
+     * Applies the limits to the writes of a response. This method must be invoked
+     * on the channel's event loop, before the response is written.
+     * @param channel the client channel
+     * @param request the request
+     * @param response the response
+     */
+    public void shape(Channel channel, RequestCapture request, ResponseCapture response) {
+        checkState(channel.eventLoop().inEventLoop(), "not on event loop of %s", channel);
+        long bytesPerSecond = Math.max(0, throughputLimiter.getBytesPerSecond(request, response));
+        ChannelPipeline pipeline = channel.pipeline();
+        ShapingWriteHandler handler = (ShapingWriteHandler) pipeline.get(HANDLER_NAME);
+        if (handler != null) {
+            handler.setRate(bytesPerSecond);
+        } else if (bytesPerSecond > 0 || globalBucket != null) {
+            handler = new ShapingWriteHandler(bytesPerSecond, globalBucket);
+            ClientPipelineHandlers.add(pipeline, HANDLER_NAME, handler);
+        }
+    }
+}
@@ -6,23 +6,48 @@ import io.github.mike10004.vhs.harbridge.ParsedRequest;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.Map.Entry;
+import java.util.OptionalLong;
 import java.util.stream.Stream;
 
 class BmpHttpAssistant implements HttpAssistant<RequestCapture, HttpResponse> {
 
     private static final Logger log = LoggerFactory.getLogger(BmpHttpAssistant.class);
 
+    static final long DEFAULT_MAX_CACHED_BODY_BYTES = 32 * 1024 * 1024;
+
+    static final long DEFAULT_STREAMING_THRESHOLD = 8 * 1024 * 1024;
+
+    @Nullable
+    private final EncodedResponseCache responseCache;
+    private final long streamingThreshold;
+
+    public BmpHttpAssistant() {
+        this(new EncodedResponseCache(DEFAULT_MAX_CACHED_BODY_BYTES), DEFAULT_STREAMING_THRESHOLD);
+    }
+
+    /**
+     * Constructs an instance.
+     * @param responseCache cache of responses for respondables served repeatedly; null disables caching
+     * @param streamingThreshold body length above which a response is sent as a {@link StreamingHttpResponse}
+     */
+    public BmpHttpAssistant(@Nullable EncodedResponseCache responseCache, long streamingThreshold) {
+        this.responseCache = responseCache;
+        this.streamingThreshold = streamingThreshold;
+    }
+
     @Override
     public ParsedRequest parseRequest(RequestCapture capture) throws IOException {
         return capture.request;
@@ -33,11 +58,6 @@ class BmpHttpAssistant implements HttpAssistant<RequestCapture, HttpResponse> {
         return transformRespondable(incomingRequest.httpVersion, respondable);
     }
 
-    @SuppressWarnings({"SameParameterValue", "unused"})
-    protected int maybeGetLength(HttpRespondable respondable, int defaultValue) {
-        return defaultValue; // TODO get length from Content-Length
-    }
-
     @Override
     public HttpResponse constructResponse(RequestCapture incomingRequest, ImmutableHttpResponse httpResponse) {
         byte[] body;
@@ -53,16 +73,74 @@ class BmpHttpAssistant implements HttpAssistant<RequestCapture, HttpResponse> {
 
     private HttpResponse transformRespondable(HttpVersion httpVersion,
                                               HttpRespondable respondable) throws IOException {
+        @Nullable StreamingHttpResponse streaming = maybeConstructStreamingResponse(httpVersion, respondable);
+        if (streaming != null) {
+            return streaming;
+        }
+        if (responseCache != null) {
+            @Nullable HttpResponse cached = responseCache.get(respondable, httpVersion, () -> constructFullResponse(httpVersion, respondable));
+            if (cached != null) {
+                return cached;
+            }
+        }
+        return constructFullResponse(httpVersion, respondable);
+    }
+
+    /**
+     * Constructs a streaming response if the body is larger than the streaming threshold.
+     * If the body length is not known from the respondable itself, the length declared
+     * by its headers decides whether to stream, and the body is sent with chunked
+     * transfer encoding, which requires HTTP/1.1.
+     */
+    @Nullable
+    private StreamingHttpResponse maybeConstructStreamingResponse(HttpVersion httpVersion, HttpRespondable respondable) {
+        OptionalLong knownLength = respondable.getBodyLengthIfKnown();
+        long length = knownLength.isPresent() ? knownLength.getAsLong() : getDeclaredContentLength(respondable);
+        if (length <= streamingThreshold) {
+            return null;
+        }
+        if (!knownLength.isPresent() && !HttpVersion.HTTP_1_1.equals(httpVersion)) {
+            return null;
+        }
         HttpResponseStatus status = HttpResponseStatus.valueOf(respondable.getStatus());
-        ByteArrayOutputStream baos = new ByteArrayOutputStream(maybeGetLength(respondable, 256));
-        byte[] responseData;
-        respondable.writeBody(baos);
-        responseData = baos.toByteArray();
-        return constructResponseFromParts(httpVersion, status, respondable.streamHeaders(), responseData);
+        DefaultHttpResponse headersOnly = new DefaultHttpResponse(httpVersion, status);
+        respondable.streamHeaders().forEach(header -> headersOnly.headers().add(header.getKey(), header.getValue()));
+        boolean closeAfterBody = !HttpUtil.isKeepAlive(headersOnly);
+        StreamingHttpResponse response = new StreamingHttpResponse(httpVersion, status, respondable, closeAfterBody);
+        response.headers().set(headersOnly.headers());
+        if (knownLength.isPresent()) {
+            HttpUtil.setTransferEncodingChunked(response, false);
+            HttpUtil.setContentLength(response, knownLength.getAsLong());
+        } else {
+            HttpUtil.setTransferEncodingChunked(response, true);
+        }
+        HttpUtil.setKeepAlive(response, !closeAfterBody);
+        log.debug("streaming response body of length {}", length);
+        return response;
     }
 
-    private HttpResponse constructResponseFromParts(HttpVersion httpVersion, HttpResponseStatus status, Stream<? extends Entry<String, String>> headerStream, byte[] responseData) {
-        ByteBuf content = Unpooled.wrappedBuffer(responseData);
+    private static long getDeclaredContentLength(HttpRespondable respondable) {
+        return respondable.streamHeaders()
+                .filter(header -> com.google.common.net.HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(header.getKey()))
+                .map(Entry::getValue)
+                .mapToLong(value -> {
+                    try {
+                        return Long.parseLong(value.trim());
+                    } catch (NumberFormatException e) {
+                        return -1;
+                    }
+                })
+                .findFirst().orElse(-1);
+    }
+
+    private FullHttpResponse constructFullResponse(HttpVersion httpVersion,
+                                                   HttpRespondable respondable) throws IOException {
+        HttpResponseStatus status = HttpResponseStatus.valueOf(respondable.getStatus());
+        ByteBuf content = Unpooled.wrappedBuffer(respondable.viewBody());
+        return constructResponseFromParts(httpVersion, status, respondable.streamHeaders(), content);
+    }
+
+    private FullHttpResponse constructResponseFromParts(HttpVersion httpVersion, HttpResponseStatus status, Stream<? extends Entry<String, String>> headerStream, ByteBuf content) {
         DefaultFullHttpResponse response = new DefaultFullHttpResponse(httpVersion, status, content);
         HttpHeaders headers = response.headers();
         headerStream.forEach(header -> {
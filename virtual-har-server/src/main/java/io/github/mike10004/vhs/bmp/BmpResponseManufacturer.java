@@ -1,5 +1,7 @@
 package io.github.mike10004.vhs.bmp;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Interface that defines a method to manufacture responses that the proxy
  * will send to the client.
@@ -15,17 +17,49 @@ public interface BmpResponseManufacturer<S> {
 
     S createFreshState();
 
+    /**
+     * Gets a future that is completed when a response to a request can be
+     * manufactured without waiting, as for HAR entries to be loaded. The proxy
+     * waits for this future before manufacturing a response, without blocking
+     * its event loop. The default implementation returns a completed future.
+     * @param capture the request
+     * @return a future
+     */
+    default CompletableFuture<?> whenReady(RequestCapture capture) {
+        return CompletableFuture.completedFuture(null);
+    }
+
     default WithState<S> withFreshState() {
         return withState(createFreshState());
     }
 
     default WithState<S> withState(S state) {
-        return request -> {
-            return manufacture(state, request);
+        return new WithState<S>() {
+            @Override
+            public ResponseCapture invoke(RequestCapture request) {
+                return manufacture(state, request);
+            }
+
+            @Override
+            public CompletableFuture<?> whenReady(RequestCapture request) {
+                return BmpResponseManufacturer.this.whenReady(request);
+            }
         };
     }
 
     interface WithState<S> {
+
         ResponseCapture invoke(RequestCapture request);
+
+        /**
+         * Gets a future that is completed when a response to a request can be
+         * manufactured without waiting.
+         * @param request the request
+         * @return a future
+         * @see BmpResponseManufacturer#whenReady(RequestCapture)
+         */
+        default CompletableFuture<?> whenReady(RequestCapture request) {
+            return CompletableFuture.completedFuture(null);
+        }
     }
 }
@@ -0,0 +1,114 @@
+package io.github.mike10004.vhs.bmp;
+
+import com.browserup.harreader.model.HarEntry;
+import com.google.common.collect.ImmutableList;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * List of HAR entries that evicts its oldest entry when an entry is added to
+ * a full list. Entries are held in a ring buffer of fixed capacity, so adding
+ * an entry, and evicting one, takes constant time however large the bound.
+ * The proxy's capture filters add entries only by {@link #add(HarEntry)}, so
+ * that is the only method that enforces the bound, and the list does not
+ * otherwise support modification, except to be cleared.
+ *
+ * <p>Readers may iterate over the list while entries are added. An iterator
+ * traverses a snapshot of the list taken when the iterator was created, so
+ * creating one takes time proportional to the size of the list.
+ */
+class BoundedHarEntryList extends AbstractList<HarEntry> {
+
+    private final HarEntry[] ring;
+    private final Consumer<? super HarEntry> evictionListener;
+    private int head;
+    private int size;
+
+    public BoundedHarEntryList(int maxSize) {
+        this(maxSize, entry -> {});
+    }
+
+    public BoundedHarEntryList(int maxSize, Consumer<? super HarEntry> evictionListener) {
+        checkArgument(maxSize > 0, "maxSize must be positive: %s", maxSize);
+        this.ring = new HarEntry[maxSize];
+        this.evictionListener = requireNonNull(evictionListener);
+    }
+
+    @Override
+    public synchronized boolean add(HarEntry entry) {
+        requireNonNull(entry, "entry");
+        if (size < ring.length) {
+            ring[(head + size) % ring.length] = entry;
+            size++;
+        } else {
+            HarEntry evicted = ring[head];
+            ring[head] = entry;
+            head = (head + 1) % ring.length;
+            evictionListener.accept(evicted);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized HarEntry get(int index) {
+        checkElementIndex(index, size);
+        return ring[(head + index) % ring.length];
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<HarEntry> iterator() {
+        return snapshot().iterator();
+    }
+
+    @Override
+    public ListIterator<HarEntry> listIterator(int index) {
+        return snapshot().listIterator(index);
+    }
+
+    /**
+     * Removes all entries without passing them to the eviction listener.
+     */
+    @Override
+    public synchronized void clear() {
+        while (size > 0) {
+            removeOldest();
+        }
+    }
+
+    /**
+     * Removes all entries, passing each one to the eviction listener.
+     */
+    public synchronized void evictAll() {
+        while (size > 0) {
+            evictionListener.accept(removeOldest());
+        }
+    }
+
+    private HarEntry removeOldest() {
+        HarEntry oldest = ring[head];
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        size--;
+        return oldest;
+    }
+
+    private synchronized ImmutableList<HarEntry> snapshot() {
+        ImmutableList.Builder<HarEntry> b = ImmutableList.builderWithExpectedSize(size);
+        for (int i = 0; i < size; i++) {
+            b.add(ring[(head + i) % ring.length]);
+        }
+        return b.build();
+    }
+}
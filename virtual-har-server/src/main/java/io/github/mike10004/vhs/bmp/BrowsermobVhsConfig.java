@@ -6,7 +6,10 @@ import org.apache.commons.io.FileUtils;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
 public class BrowsermobVhsConfig {
@@ -21,6 +24,43 @@ public class BrowsermobVhsConfig {
     public final CertificateAndKeySourceFactory certificateAndKeySourceFactory;
     public final BmpResponseListener bmpResponseListener;
 
+    /**
+     * Simulator that decides how long to delay each response. The default
+     * simulator does not delay responses.
+     */
+    public final LatencySimulator latencySimulator;
+
+    /**
+     * Maximum rate in bytes per second at which responses are written to all
+     * clients together. Zero, the default, means no limit.
+     */
+    public final long globalBandwidthLimit;
+
+    /**
+     * Limiter that decides how fast each response is written to its client.
+     * The default limiter does not limit responses. If neither this nor the
+     * {@link #globalBandwidthLimit} is set, responses are not shaped at all.
+     */
+    public final ThroughputLimiter throughputLimiter;
+
+    /**
+     * Factory of the executor on which responses are manufactured, so that the
+     * proxy's event loops are not occupied while response bodies are read and
+     * decoded. The chunks of streamed response bodies are also read on this
+     * executor. A new executor is created each time the server starts and is shut
+     * down when the server stops. If null, the default, responses are
+     * manufactured, and streamed bodies read, on the event loops.
+     * @see ManufacturingExecutors
+     */
+    @Nullable
+    public final Supplier<ExecutorService> manufacturingExecutorFactory;
+
+    /**
+     * Capture of traffic by the proxy into a HAR. The default does not capture
+     * traffic.
+     */
+    public final HarCapture harCapture;
+
     private BrowsermobVhsConfig(Builder builder) {
         port = builder.port;
         scratchDirProvider = builder.scratchDirProvider;
@@ -28,6 +68,11 @@ public class BrowsermobVhsConfig {
         tlsEndpointFactory = builder.tlsEndpointFactory;
         certificateAndKeySourceFactory = builder.certificateAndKeySourceFactory;
         bmpResponseListener = builder.bmpResponseListener;
+        latencySimulator = builder.latencySimulator;
+        globalBandwidthLimit = builder.globalBandwidthLimit;
+        throughputLimiter = builder.throughputLimiter;
+        manufacturingExecutorFactory = builder.manufacturingExecutorFactory;
+        harCapture = builder.harCapture;
     }
 
     public static Builder builder(BmpResponseManufacturer bmanufacturer) {
@@ -63,6 +108,12 @@ public class BrowsermobVhsConfig {
         private TlsEndpointFactory tlsEndpointFactory;
         private CertificateAndKeySourceFactory certificateAndKeySourceFactory;
         private BmpResponseListener bmpResponseListener = BmpResponseListener.inactive();
+        private LatencySimulator latencySimulator = LatencySimulator.none();
+        private long globalBandwidthLimit;
+        private ThroughputLimiter throughputLimiter = ThroughputLimiter.none();
+        @Nullable
+        private Supplier<ExecutorService> manufacturingExecutorFactory;
+        private HarCapture harCapture = HarCapture.disabled();
 
         private Builder(BmpResponseManufacturer bmpResponseManufacturer) {
             this.bmpResponseManufacturer = requireNonNull(bmpResponseManufacturer);
@@ -100,6 +151,32 @@ public class BrowsermobVhsConfig {
             return this;
         }
 
+        public Builder latencySimulator(LatencySimulator latencySimulator) {
+            this.latencySimulator = requireNonNull(latencySimulator);
+            return this;
+        }
+
+        public Builder globalBandwidthLimit(long bytesPerSecond) {
+            checkArgument(bytesPerSecond >= 0, "limit must be nonnegative: %s", bytesPerSecond);
+            this.globalBandwidthLimit = bytesPerSecond;
+            return this;
+        }
+
+        public Builder throughputLimiter(ThroughputLimiter throughputLimiter) {
+            this.throughputLimiter = requireNonNull(throughputLimiter);
+            return this;
+        }
+
+        public Builder manufacturingExecutorFactory(@Nullable Supplier<ExecutorService> manufacturingExecutorFactory) {
+            this.manufacturingExecutorFactory = manufacturingExecutorFactory;
+            return this;
+        }
+
+        public Builder harCapture(HarCapture harCapture) {
+            this.harCapture = requireNonNull(harCapture);
+            return this;
+        }
+
         public BrowsermobVhsConfig build() {
             return new BrowsermobVhsConfig(this);
         }
@@ -17,6 +17,7 @@ import org.littleshoot.proxy.MitmManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.Closeable;
 import java.io.IOException;
 import java.nio.file.Path;
@@ -24,6 +25,7 @@ import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 
 import static java.util.Objects.requireNonNull;
@@ -36,6 +38,9 @@ public class BrowsermobVirtualHarServer implements VirtualHarServer {
 
     private final BrowsermobVhsConfig config;
 
+    @Nullable
+    private ExecutorService manufacturingExecutor;
+
     public BrowsermobVirtualHarServer(BrowsermobVhsConfig config) {
         this.config = requireNonNull(config);
     }
@@ -49,11 +54,22 @@ public class BrowsermobVirtualHarServer implements VirtualHarServer {
         BrowserUpProxy proxy;
         Path scratchPath = scratch.getRoot();
         try {
+            if (config.manufacturingExecutorFactory != null) {
+                ExecutorService executor = config.manufacturingExecutorFactory.get();
+                closeables.add(executor::shutdownNow);
+                manufacturingExecutor = executor;
+            }
             certificateAndKeySource = config.certificateAndKeySourceFactory.produce(config, scratchPath);
             TlsEndpoint httpsInterceptionServer = config.tlsEndpointFactory.produce(config, scratchPath);
             closeables.add(httpsInterceptionServer);
             TrustSource trustSource = httpsInterceptionServer.getTrustSource();
             proxy = startProxy(config.bmpResponseManufacturer.withFreshState(), httpsInterceptionServer.getSocketAddress(), certificateAndKeySource, trustSource);
+            try {
+                closeables.add(config.harCapture.configure(proxy, getCaptureTypes()));
+            } catch (RuntimeException | IOException e) {
+                proxy.stop();
+                throw e;
+            }
         } catch (RuntimeException | IOException e) {
             closeAll(closeables, true);
             throw e;
@@ -77,8 +93,6 @@ public class BrowsermobVirtualHarServer implements VirtualHarServer {
                                       TrustSource trustSource) throws IOException {
         BrowserUpProxy bmp = instantiateProxy();
         configureProxy(bmp, responseManufacturer, httpsHostRewriteDestination, certificateAndKeySource, config.bmpResponseListener, trustSource);
-        bmp.enableHarCaptureTypes(getCaptureTypes());
-        bmp.newHar();
         if (config.port == null) {
             bmp.start();
         } else {
@@ -118,7 +132,7 @@ public class BrowsermobVirtualHarServer implements VirtualHarServer {
     }
 
     /* package */ ResponseManufacturingFiltersSource createFirstFiltersSource(BmpResponseManufacturer.WithState<?> responseManufacturer, HostRewriter hostRewriter, BmpResponseListener bmpResponseListener, PassthruPredicate passthruPredicate) {
-        return new ResponseManufacturingFiltersSource(responseManufacturer, hostRewriter, bmpResponseListener, passthruPredicate);
+        return new ResponseManufacturingFiltersSource(responseManufacturer, hostRewriter, bmpResponseListener, passthruPredicate, config.latencySimulator, BandwidthShaper.create(config.globalBandwidthLimit, config.throughputLimiter), manufacturingExecutor);
     }
 
     static class BrowsermobVhsControl implements VirtualHarServerControl {
@@ -0,0 +1,150 @@
+package io.github.mike10004.vhs.bmp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Writer of a streaming response body to a channel. The body is read one chunk
+ * at a time, and the next chunk is read only after the previous one has been
+ * written to the socket, so at most one chunk per connection is held in memory
+ * no matter how large the body is or how slowly the client reads it. If reading
+ * or writing fails after the headers have been sent, the connection is closed,
+ * because the response cannot be completed.
+ *
+ * <p>If a reading executor is given, the body is opened and each chunk is read
+ * on that executor, so that a slow body source does not block the event loop;
+ * otherwise, or if the executor rejects a read, chunks are read on the event loop.
+ */
+class ChunkedBodyWriter implements ChannelFutureListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ChunkedBodyWriter.class);
+
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final Channel channel;
+    private final StreamingHttpResponse response;
+    private final int chunkSize;
+    @Nullable
+    private final Executor readingExecutor;
+    @Nullable
+    private InputStream body;
+
+    private ChunkedBodyWriter(Channel channel, StreamingHttpResponse response, int chunkSize, @Nullable Executor readingExecutor) {
+        this.channel = requireNonNull(channel);
+        this.response = requireNonNull(response);
+        checkArgument(chunkSize > 0, "chunk size must be positive: %s", chunkSize);
+        this.chunkSize = chunkSize;
+        this.readingExecutor = readingExecutor;
+    }
+
+    /**
+     * Starts writing the body of a response whose headers have been written,
+     * reading the body on the event loop.
+     * This method must be invoked on the channel's event loop.
+     * @param channel the channel
+     * @param response the response
+     * @param chunkSize maximum number of bytes per chunk
+     */
+    public static void start(Channel channel, StreamingHttpResponse response, int chunkSize) {
+        start(channel, response, chunkSize, null);
+    }
+
+    /**
+     * Starts writing the body of a response whose headers have been written.
+     * This method must be invoked on the channel's event loop.
+     * @param channel the channel
+     * @param response the response
+     * @param chunkSize maximum number of bytes per chunk
+     * @param readingExecutor executor on which the body is read; null means the event loop
+     */
+    public static void start(Channel channel, StreamingHttpResponse response, int chunkSize, @Nullable Executor readingExecutor) {
+        new ChunkedBodyWriter(channel, response, chunkSize, readingExecutor).readNextChunk();
+    }
+
+    private void readNextChunk() {
+        if (readingExecutor != null) {
+            try {
+                readingExecutor.execute(this::writeNextChunk);
+                return;
+            } catch (RejectedExecutionException e) {
+                log.debug("reading executor rejected response body chunk; reading on event loop");
+            }
+        }
+        writeNextChunk();
+    }
+
+    private void writeNextChunk() {
+        if (!channel.isActive()) {
+            log.debug("channel closed before response body was sent");
+            closeBody();
+            return;
+        }
+        if (body == null) {
+            try {
+                body = response.openBodyStream();
+            } catch (IOException e) {
+                log.warn("failed to open response body; closing connection", e);
+                channel.close();
+                return;
+            }
+        }
+        ByteBuf chunk = channel.alloc().buffer(chunkSize);
+        int numRead;
+        try {
+            numRead = chunk.writeBytes(body, chunkSize);
+        } catch (IOException e) {
+            chunk.release();
+            log.warn("failed to read response body; closing connection", e);
+            closeBody();
+            channel.close();
+            return;
+        }
+        if (numRead < 0) {
+            chunk.release();
+            closeBody();
+            ChannelFuture future = channel.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
+            if (response.isCloseAfterBody()) {
+                future.addListener(ChannelFutureListener.CLOSE);
+            }
+            return;
+        }
+        channel.writeAndFlush(new DefaultHttpContent(chunk)).addListener(this);
+    }
+
+    @Override
+    public void operationComplete(ChannelFuture future) {
+        if (future.isSuccess()) {
+            readNextChunk();
+        } else {
+            log.debug("failed to write response body chunk: {}", String.valueOf(future.cause()));
+            closeBody();
+            channel.close();
+        }
+    }
+
+    private void closeBody() {
+        if (body == null) {
+            return;
+        }
+        try {
+            body.close();
+        } catch (IOException e) {
+            log.debug("failed to close response body stream: {}", e.toString());
+        }
+    }
+}
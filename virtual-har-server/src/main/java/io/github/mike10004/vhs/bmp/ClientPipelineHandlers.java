@@ -0,0 +1,47 @@
+package io.github.mike10004.vhs.bmp;
+
+import com.google.common.collect.ImmutableList;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelPipeline;
+
+/**
+ * Static utility methods that add the handlers of this package to a client
+ * channel's pipeline. The handlers are added on demand, so the order in which
+ * they are added varies, but outbound messages must pass through them in a
+ * fixed order: a deferred response is resolved first, then held for simulated
+ * latency, and then shaped.
+ */
+final class ClientPipelineHandlers {
+
+    /**
+     * Handler names in order from the head of the pipeline, nearest the socket,
+     * toward the tail.
+     */
+    private static final ImmutableList<String> ORDER = ImmutableList.of(
+            BandwidthShaper.HANDLER_NAME,
+            DelayingWriteHandler.NAME,
+            DeferredResponseHandler.NAME);
+
+    private ClientPipelineHandlers() {}
+
+    /**
+     * Adds a handler to a pipeline in its place relative to the other handlers
+     * of this package.
+     * @param pipeline the pipeline
+     * @param name the handler name; must be one of the names known to this class
+     * @param handler the handler
+     */
+    public static void add(ChannelPipeline pipeline, String name, ChannelHandler handler) {
+        int index = ORDER.indexOf(name);
+        if (index < 0) {
+            throw new IllegalArgumentException("unknown handler name: " + name);
+        }
+        for (String following : ORDER.subList(index + 1, ORDER.size())) {
+            if (pipeline.get(following) != null) {
+                pipeline.addBefore(following, name, handler);
+                return;
+            }
+        }
+        pipeline.addLast(name, handler);
+    }
+}
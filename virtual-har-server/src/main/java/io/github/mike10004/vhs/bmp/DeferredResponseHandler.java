@@ -0,0 +1,169 @@
+package io.github.mike10004.vhs.bmp;
+
+import com.google.common.net.HttpHeaders;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.ReferenceCountUtil;
+
+import javax.annotation.Nullable;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Handler that stands in the real response for a placeholder that was
+ * returned to the proxy while the response was being manufactured on another
+ * thread. When the proxy writes a placeholder that has not been resolved, the
+ * handler holds it and all writes, flushes, and closes that follow it, until
+ * the placeholder is resolved; it then writes the real response in the
+ * placeholder's place and releases the held operations in order.
+ */
+class DeferredResponseHandler extends ChannelDuplexHandler {
+
+    static final String NAME = "vhs-deferred-response-handler";
+
+    private ChannelHandlerContext ctx;
+    private final Queue<PendingOperation> pendingOperations = new ArrayDeque<>();
+
+    /**
+     * Response returned to the proxy in place of a response that is not ready.
+     */
+    static class Placeholder extends DefaultHttpResponse {
+
+        @Nullable
+        private HttpResponse resolution;
+
+        public Placeholder(HttpVersion version) {
+            super(version, HttpResponseStatus.OK);
+        }
+    }
+
+    private static class PendingOperation {
+
+        @Nullable
+        public final Object msg;
+        @Nullable
+        public final ChannelPromise promise;
+        public final boolean close;
+
+        private PendingOperation(@Nullable Object msg, @Nullable ChannelPromise promise, boolean close) {
+            this.msg = msg;
+            this.promise = promise;
+            this.close = close;
+        }
+    }
+
+    /**
+     * Gets the handler of a channel, adding it to the channel's pipeline if necessary.
+     * This method must be invoked on the channel's event loop.
+     * @param channel the channel
+     * @return the handler
+     */
+    public static DeferredResponseHandler install(Channel channel) {
+        checkState(channel.eventLoop().inEventLoop(), "not on event loop of %s", channel);
+        ChannelPipeline pipeline = channel.pipeline();
+        DeferredResponseHandler handler = pipeline.get(DeferredResponseHandler.class);
+        if (handler == null) {
+            handler = new DeferredResponseHandler();
+            ClientPipelineHandlers.add(pipeline, NAME, handler);
+        }
+        return handler;
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    /**
+     * Resolves a placeholder. The response takes the keep-alive setting and the
+     * {@code Via} and {@code Date} headers that the proxy gave the placeholder. This method must be
+     * invoked on the channel's event loop, after the placeholder has been written.
+     * @param placeholder the placeholder
+     * @param response the real response
+     */
+    public void resolve(Placeholder placeholder, HttpResponse response) {
+        checkState(ctx.executor().inEventLoop(), "not on event loop");
+        HttpUtil.setKeepAlive(response, HttpUtil.isKeepAlive(placeholder));
+        for (String via : placeholder.headers().getAll(HttpHeaders.VIA)) {
+            response.headers().add(HttpHeaders.VIA, via);
+        }
+        @Nullable String date = placeholder.headers().get(HttpHeaders.DATE);
+        if (date != null && !response.headers().contains(HttpHeaders.DATE)) {
+            response.headers().set(HttpHeaders.DATE, date);
+        }
+        placeholder.resolution = requireNonNull(response);
+        drain();
+    }
+
+    private static boolean isUnresolved(@Nullable Object msg) {
+        return msg instanceof Placeholder && ((Placeholder) msg).resolution == null;
+    }
+
+    private void drain() {
+        while (!pendingOperations.isEmpty() && !isUnresolved(pendingOperations.element().msg)) {
+            PendingOperation operation = pendingOperations.remove();
+            if (operation.close) {
+                ctx.close(operation.promise);
+            } else if (operation.msg == null) {
+                ctx.flush();
+            } else if (operation.msg instanceof Placeholder) {
+                ctx.write(((Placeholder) operation.msg).resolution, operation.promise);
+            } else {
+                ctx.write(operation.msg, operation.promise);
+            }
+        }
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (pendingOperations.isEmpty() && !isUnresolved(msg)) {
+            ctx.write(msg instanceof Placeholder ? ((Placeholder) msg).resolution : msg, promise);
+        } else {
+            pendingOperations.add(new PendingOperation(msg, promise, false));
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        if (pendingOperations.isEmpty()) {
+            ctx.flush();
+        } else {
+            pendingOperations.add(new PendingOperation(null, null, false));
+        }
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        if (pendingOperations.isEmpty()) {
+            ctx.close(promise);
+        } else {
+            pendingOperations.add(new PendingOperation(null, promise, true));
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        while (!pendingOperations.isEmpty()) {
+            PendingOperation operation = pendingOperations.remove();
+            if (operation.close) {
+                ctx.close(operation.promise);
+            } else if (operation.msg != null) {
+                ReferenceCountUtil.safeRelease(operation.msg);
+                operation.promise.tryFailure(new ClosedChannelException());
+            }
+        }
+        super.channelInactive(ctx);
+    }
+}
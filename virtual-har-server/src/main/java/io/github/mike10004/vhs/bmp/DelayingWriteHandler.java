@@ -0,0 +1,134 @@
+package io.github.mike10004.vhs.bmp;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.PendingWriteQueue;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Handler that holds the writes, flushes, and closes requested on a client
+ * channel until a deadline passes, and then performs them in order. This is
+ * how responses are delayed without blocking the event loop: the proxy writes
+ * a response as usual, and the bytes leave the handler only when a task
+ * scheduled on the channel's event loop releases them. The handler is added to
+ * a channel's pipeline the first time a response on the channel is delayed.
+ */
+class DelayingWriteHandler extends ChannelDuplexHandler {
+
+    static final String NAME = "vhs-delaying-write-handler";
+
+    private ChannelHandlerContext ctx;
+    private PendingWriteQueue pendingWrites;
+    private long releaseAtNanos;
+    private ScheduledFuture<?> releaseTask;
+    private boolean flushRequested;
+    private final List<ChannelPromise> closePromises = new ArrayList<>(1);
+
+    /**
+     * Holds the writes on a channel until a delay has elapsed. If writes are
+     * already held until a later time, they continue to be held until then.
+     * This method must be invoked on the channel's event loop.
+     * @param channel the channel
+     * @param delayMillis the delay in milliseconds
+     */
+    public static void delay(Channel channel, long delayMillis) {
+        checkState(channel.eventLoop().inEventLoop(), "not on event loop of %s", channel);
+        ChannelPipeline pipeline = channel.pipeline();
+        DelayingWriteHandler handler = pipeline.get(DelayingWriteHandler.class);
+        if (handler == null) {
+            handler = new DelayingWriteHandler();
+            ClientPipelineHandlers.add(pipeline, NAME, handler);
+        }
+        handler.hold(delayMillis);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+        pendingWrites = new PendingWriteQueue(ctx);
+    }
+
+    private void hold(long delayMillis) {
+        releaseAtNanos = Math.max(releaseAtNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        if (releaseTask == null) {
+            scheduleRelease();
+        }
+    }
+
+    private void scheduleRelease() {
+        releaseTask = ctx.executor().schedule(this::release, releaseAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    private boolean isHolding() {
+        return releaseTask != null;
+    }
+
+    private void release() {
+        if (releaseAtNanos - System.nanoTime() > 0) {
+            scheduleRelease();
+            return;
+        }
+        releaseTask = null;
+        pendingWrites.removeAndWriteAll();
+        if (flushRequested) {
+            flushRequested = false;
+            ctx.flush();
+        }
+        for (ChannelPromise closePromise : closePromises) {
+            ctx.close(closePromise);
+        }
+        closePromises.clear();
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        if (isHolding()) {
+            pendingWrites.add(msg, promise);
+        } else {
+            ctx.write(msg, promise);
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        if (isHolding()) {
+            flushRequested = true;
+        } else {
+            ctx.flush();
+        }
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        if (isHolding()) {
+            closePromises.add(promise);
+        } else {
+            ctx.close(promise);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (releaseTask != null) {
+            releaseTask.cancel(false);
+            releaseTask = null;
+        }
+        pendingWrites.removeAndFailAll(new ClosedChannelException());
+        flushRequested = false;
+        for (ChannelPromise closePromise : closePromises) {
+            ctx.close(closePromise);
+        }
+        closePromises.clear();
+        super.channelInactive(ctx);
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.mike10004.vhs.bmp;
+
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.github.mike10004.vhs.HttpRespondable;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpVersion;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Cache of Netty responses constructed from respondables that are served repeatedly.
+ * A respondable is admitted the second time it is served, so that respondables
+ * produced afresh for each request, as by response interceptors, do not displace
+ * those shared across requests. A cached response is served as a retained duplicate,
+ * which shares the body buffer, so serving it again does not copy the body.
+ *
+ * <p>Respondables are compared by identity and held weakly. The total size of the
+ * cached bodies is bounded, and the least recently used responses are evicted
+ * first. Body buffers are unpooled heap buffers, because nothing releases the
+ * cache when the server stops and such buffers are reclaimed by garbage collection.
+ */
+class EncodedResponseCache {
+
+    private final Cache<HttpRespondable, Boolean> seen;
+    private final Cache<HttpRespondable, FullHttpResponse> encoded;
+
+    /**
+     * Constructs a new instance.
+     * @param maxBodyBytes maximum total size of cached response bodies
+     */
+    public EncodedResponseCache(long maxBodyBytes) {
+        checkArgument(maxBodyBytes >= 0, "maximum must be nonnegative: %s", maxBodyBytes);
+        seen = CacheBuilder.newBuilder()
+                .weakKeys()
+                .build();
+        encoded = CacheBuilder.newBuilder()
+                .weakKeys()
+                .maximumWeight(maxBodyBytes)
+                .weigher((HttpRespondable respondable, FullHttpResponse response) -> response.content().readableBytes())
+                .build();
+    }
+
+    /**
+     * Gets a response for a respondable if the respondable has been served before.
+     * @param respondable the respondable
+     * @param httpVersion protocol version of the response
+     * @param encoder callable that constructs the response if it is not cached
+     * @return a response that the caller must release, or null if the respondable is served for the first time
+     * @throws IOException if the encoder throws it
+     */
+    @Nullable
+    public FullHttpResponse get(HttpRespondable respondable, HttpVersion httpVersion, Callable<FullHttpResponse> encoder) throws IOException {
+        @Nullable FullHttpResponse template = encoded.getIfPresent(respondable);
+        if (template == null) {
+            if (seen.asMap().putIfAbsent(respondable, Boolean.TRUE) == null) {
+                return null;
+            }
+            try {
+                template = encoded.get(respondable, encoder);
+            } catch (ExecutionException e) {
+                Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+                Throwables.throwIfUnchecked(e.getCause());
+                throw new IOException(e.getCause());
+            }
+        }
+        FullHttpResponse response = template.retainedDuplicate();
+        response.setProtocolVersion(httpVersion);
+        return response;
+    }
+
+    /**
+     * Gets the number of cached responses.
+     * @return the number of responses
+     */
+    public long size() {
+        return encoded.size();
+    }
+}
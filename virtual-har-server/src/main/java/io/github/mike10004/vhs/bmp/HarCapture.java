@@ -0,0 +1,78 @@
+package io.github.mike10004.vhs.bmp;
+
+import com.browserup.bup.BrowserUpProxy;
+import com.browserup.bup.proxy.CaptureType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Interface of a service that configures the proxy's capture of traffic into a
+ * HAR. Only requests that reach the proxy's own capture filter are captured,
+ * which excludes requests whose responses are manufactured. In long sessions,
+ * an unbounded capture grows without limit, so capture is disabled by default.
+ * @see BrowsermobVhsConfig#harCapture
+ */
+public interface HarCapture {
+
+    /**
+     * Configures capture on a proxy that has just started.
+     * @param proxy the proxy
+     * @param captureTypes the types of data to capture
+     * @return a closeable that ends the capture when the server stops
+     * @throws IOException if capture cannot be configured
+     */
+    Closeable configure(BrowserUpProxy proxy, Set<CaptureType> captureTypes) throws IOException;
+
+    /**
+     * Returns an instance that does not capture traffic.
+     * @return a capture instance
+     */
+    static HarCapture disabled() {
+        return (proxy, captureTypes) -> () -> {};
+    }
+
+    /**
+     * Returns an instance that keeps only the most recent entries in the
+     * proxy's HAR. Capturing an entry takes constant time, but each read of
+     * the HAR copies the list of entries.
+     * @param maxEntries the maximum number of entries
+     * @return a capture instance
+     */
+    static HarCapture bounded(int maxEntries) {
+        checkArgument(maxEntries > 0, "maxEntries must be positive: %s", maxEntries);
+        return (proxy, captureTypes) -> {
+            proxy.enableHarCaptureTypes(captureTypes);
+            proxy.newHar();
+            proxy.getHar().getLog().setEntries(new BoundedHarEntryList(maxEntries));
+            return () -> {};
+        };
+    }
+
+    /**
+     * Returns an instance that writes captured entries to a HAR file. Only a
+     * few of the most recent entries are held in memory; an entry is written
+     * once enough newer entries have been captured that its exchange is
+     * presumed complete. The remaining entries are written when the server
+     * stops. The file is not written in the server's scratch directory,
+     * because that directory is deleted when the server stops.
+     * @param outputFile the pathname of the HAR file
+     * @return a capture instance
+     */
+    static HarCapture streaming(Path outputFile) {
+        requireNonNull(outputFile, "outputFile");
+        return (proxy, captureTypes) -> {
+            proxy.enableHarCaptureTypes(captureTypes);
+            proxy.newHar();
+            StreamingHarWriter writer = StreamingHarWriter.open(outputFile, proxy.getHar().getLog());
+            BoundedHarEntryList entries = new BoundedHarEntryList(StreamingHarWriter.DEFAULT_WINDOW_SIZE, writer::write);
+            proxy.getHar().getLog().setEntries(entries);
+            return () -> writer.finish(entries);
+        };
+    }
+}
@@ -8,6 +8,7 @@ import io.github.mike10004.vhs.HttpRespondable;
 import io.github.mike10004.vhs.ReplaySessionState;
 import io.github.mike10004.vhs.ResponseInterceptor;
 import io.github.mike10004.vhs.harbridge.ParsedRequest;
+import io.github.mike10004.vhs.harbridge.RecordedTiming;
 import io.netty.handler.codec.http.HttpResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,8 +17,10 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
 /**
@@ -29,6 +32,12 @@ public class HarReplayManufacturer implements BmpResponseManufacturer<ReplaySess
     private static final Logger log = LoggerFactory.getLogger(HarReplayManufacturer.class);
     private static final Charset OUTGOING_CHARSET = StandardCharsets.UTF_8;
 
+    /**
+     * Default maximum total size in bytes of the bodies of encoded responses
+     * retained for respondables that are served repeatedly.
+     */
+    public static final long DEFAULT_ENCODED_RESPONSE_CACHE_BUDGET = BmpHttpAssistant.DEFAULT_MAX_CACHED_BODY_BYTES;
+
     private final Supplier<? extends ReplaySessionState> sessionStateFactory;
     private final EntryMatcher<? super ReplaySessionState> entryMatcher;
     private final ImmutableList<ResponseInterceptor> responseInterceptors;
@@ -44,7 +53,19 @@ public class HarReplayManufacturer implements BmpResponseManufacturer<ReplaySess
     }
 
     public HarReplayManufacturer(EntryMatcher<? super ReplaySessionState> entryMatcher, Iterable<ResponseInterceptor> responseInterceptors, Supplier<? extends ReplaySessionState> sessionStateFactory) {
-        this(entryMatcher, responseInterceptors, new BmpHttpAssistant(), sessionStateFactory);
+        this(entryMatcher, responseInterceptors, sessionStateFactory, DEFAULT_ENCODED_RESPONSE_CACHE_BUDGET);
+    }
+
+    /**
+     * Constructs an instance.
+     * @param entryMatcher the entry matcher
+     * @param responseInterceptors a list of response interceptors
+     * @param sessionStateFactory supplier of session state
+     * @param encodedResponseCacheBudget maximum total size in bytes of the bodies of encoded
+     *        responses retained for respondables that are served repeatedly; zero disables the cache
+     */
+    public HarReplayManufacturer(EntryMatcher<? super ReplaySessionState> entryMatcher, Iterable<ResponseInterceptor> responseInterceptors, Supplier<? extends ReplaySessionState> sessionStateFactory, long encodedResponseCacheBudget) {
+        this(entryMatcher, responseInterceptors, createAssistant(encodedResponseCacheBudget), sessionStateFactory);
     }
 
     protected HarReplayManufacturer(EntryMatcher<? super ReplaySessionState> entryMatcher, Iterable<ResponseInterceptor> responseInterceptors, HttpAssistant<RequestCapture, HttpResponse> bmpAssistant, Supplier<? extends ReplaySessionState> sessionStateFactory) {
@@ -54,6 +75,12 @@ public class HarReplayManufacturer implements BmpResponseManufacturer<ReplaySess
         this.sessionStateFactory = requireNonNull(sessionStateFactory);
     }
 
+    private static BmpHttpAssistant createAssistant(long encodedResponseCacheBudget) {
+        checkArgument(encodedResponseCacheBudget >= 0, "budget must be nonnegative: %s", encodedResponseCacheBudget);
+        @Nullable EncodedResponseCache responseCache = encodedResponseCacheBudget > 0 ? new EncodedResponseCache(encodedResponseCacheBudget) : null;
+        return new BmpHttpAssistant(responseCache, BmpHttpAssistant.DEFAULT_STREAMING_THRESHOLD);
+    }
+
     @Override
     public ReplaySessionState createFreshState() {
         return sessionStateFactory.get();
@@ -65,6 +92,25 @@ public class HarReplayManufacturer implements BmpResponseManufacturer<ReplaySess
         return manufacture(state, bmpAssistant, capture);
     }
 
+    /**
+     * Gets a future that is completed when the entry matcher is ready to answer
+     * the request. If the request cannot be parsed, the future is already
+     * completed, because manufacturing the error response needs no entries.
+     * @param capture the request
+     * @return a future
+     * @see EntryMatcher#whenReady(ParsedRequest)
+     */
+    @Override
+    public CompletableFuture<?> whenReady(RequestCapture capture) {
+        ParsedRequest request;
+        try {
+            request = bmpAssistant.parseRequest(capture);
+        } catch (IOException e) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return entryMatcher.whenReady(request);
+    }
+
     protected ImmutableHttpResponse createNotFoundResponse() {
         MediaType contentType = MediaType.PLAIN_TEXT_UTF_8.withCharset(OUTGOING_CHARSET);
         return ImmutableHttpResponse.builder(404)
@@ -90,6 +136,9 @@ public class HarReplayManufacturer implements BmpResponseManufacturer<ReplaySess
             return ResponseCapture.error(netty);
         }
         @Nullable HttpRespondable bestEntry = entryMatcher.findTopEntry(sessionState, request);
+        // interceptors may replace the respondable, so take the timing and namespace from the matched entry
+        @Nullable RecordedTiming recordedTiming = bestEntry == null ? null : bestEntry.getRecordedTiming();
+        @Nullable String namespace = bestEntry == null ? null : bestEntry.getNamespace();
         if (bestEntry != null) {
             for (ResponseInterceptor interceptor : responseInterceptors) {
                 bestEntry = interceptor.intercept(request, bestEntry);
@@ -100,7 +149,7 @@ public class HarReplayManufacturer implements BmpResponseManufacturer<ReplaySess
             return ResponseCapture.unmatched(assistant.constructResponse(incoming, response));
         } else {
             try {
-                return ResponseCapture.matched(assistant.transformRespondable(incoming, bestEntry));
+                return ResponseCapture.matched(assistant.transformRespondable(incoming, bestEntry), recordedTiming, namespace);
             } catch (IOException e) {
                 log.warn("failed to construct response", e);
                 ImmutableHttpResponse response = HttpAssistant.standardServerErrorResponse();
@@ -0,0 +1,100 @@
+package io.github.mike10004.vhs.bmp;
+
+import com.google.common.collect.ImmutableMap;
+import io.github.mike10004.vhs.harbridge.RecordedTiming;
+
+import javax.annotation.Nullable;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Interface of a service that decides how long to delay each response, in order
+ * to simulate the latency of the servers whose responses are replayed. A delayed
+ * response is held on the client channel's event loop until the delay elapses,
+ * so no thread is blocked while it waits.
+ * @see BrowsermobVhsConfig#latencySimulator
+ */
+public interface LatencySimulator {
+
+    /**
+     * Gets the delay to apply to a response.
+     * @param request the request
+     * @param response the response that is to be sent
+     * @return the delay in milliseconds; zero or negative means no delay
+     */
+    long getDelayMillis(RequestCapture request, ResponseCapture response);
+
+    /**
+     * Returns a simulator that never delays responses.
+     * @return a simulator
+     */
+    static LatencySimulator none() {
+        return (request, response) -> 0;
+    }
+
+    /**
+     * Returns a simulator that delays every response by the same amount.
+     * @param delay the delay
+     * @return a simulator
+     */
+    static LatencySimulator fixed(Duration delay) {
+        long delayMillis = delay.toMillis();
+        checkArgument(delayMillis >= 0, "delay must be nonnegative: %s", delay);
+        return (request, response) -> delayMillis;
+    }
+
+    /**
+     * Returns a simulator that delays each response by an amount chosen uniformly
+     * at random from a range.
+     * @param min the minimum delay
+     * @param max the maximum delay
+     * @return a simulator
+     */
+    static LatencySimulator uniform(Duration min, Duration max) {
+        long minMillis = min.toMillis(), maxMillis = max.toMillis();
+        checkArgument(minMillis >= 0 && minMillis <= maxMillis, "invalid range: %s to %s", min, max);
+        return (request, response) -> ThreadLocalRandom.current().nextLong(minMillis, maxMillis + 1);
+    }
+
+    /**
+     * Returns a simulator that delays each response by the {@code wait} timing
+     * recorded in the HAR entry that matched its request.
+     * @param fallback simulator used for responses with no recorded {@code wait} timing
+     * @return a simulator
+     * @see ResponseCapture#recordedTiming
+     */
+    static LatencySimulator recorded(LatencySimulator fallback) {
+        requireNonNull(fallback, "fallback");
+        return (request, response) -> {
+            @Nullable RecordedTiming timing = response.recordedTiming;
+            if (timing == null || timing.waitMillis <= 0) {
+                return fallback.getDelayMillis(request, response);
+            }
+            return timing.waitMillis;
+        };
+    }
+
+    /**
+     * Returns a simulator that delegates to a simulator chosen by the host of the
+     * request URL. Host names are compared case-insensitively.
+     * @param simulatorsByHost map of host to simulator
+     * @param fallback the simulator used for requests to other hosts
+     * @return a simulator
+     */
+    static LatencySimulator byHost(Map<String, LatencySimulator> simulatorsByHost, LatencySimulator fallback) {
+        requireNonNull(fallback, "fallback");
+        ImmutableMap.Builder<String, LatencySimulator> b = ImmutableMap.builder();
+        simulatorsByHost.forEach((host, simulator) -> b.put(host.toLowerCase(Locale.ROOT), requireNonNull(simulator)));
+        Map<String, LatencySimulator> simulators = b.build();
+        return (request, response) -> {
+            @Nullable String host = request.request.url.getHost();
+            LatencySimulator simulator = host == null ? null : simulators.get(host.toLowerCase(Locale.ROOT));
+            return (simulator == null ? fallback : simulator).getDelayMillis(request, response);
+        };
+    }
+}
@@ -0,0 +1,57 @@
+package io.github.mike10004.vhs.bmp;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Static factory methods for suppliers of executors on which responses are
+ * manufactured away from the proxy's event loops.
+ * @see BrowsermobVhsConfig#manufacturingExecutorFactory
+ */
+public final class ManufacturingExecutors {
+
+    private ManufacturingExecutors() {}
+
+    /**
+     * Returns a supplier of thread pools with a fixed number of threads and a
+     * bounded queue. If the queue is full when a request arrives, the response
+     * is manufactured on the event loop, as if no executor were configured.
+     * @param numThreads the number of threads
+     * @param queueCapacity the maximum number of requests waiting for a thread
+     * @return a supplier of new executors
+     */
+    public static Supplier<ExecutorService> bounded(int numThreads, int queueCapacity) {
+        checkArgument(numThreads > 0, "numThreads must be positive: %s", numThreads);
+        checkArgument(queueCapacity > 0, "queueCapacity must be positive: %s", queueCapacity);
+        return () -> new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("vhs-manufacturing-%d").build(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Returns a supplier of executors that run each task on a new virtual thread.
+     * Virtual threads are available on JDK 21 and later; on earlier JDKs, the
+     * supplier throws {@link UnsupportedOperationException}.
+     * @return a supplier of new executors
+     */
+    public static Supplier<ExecutorService> virtualThreads() {
+        return () -> {
+            try {
+                return (ExecutorService) java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (NoSuchMethodException e) {
+                throw new UnsupportedOperationException("virtual threads require JDK 21 or later", e);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("failed to create virtual thread executor", e);
+            }
+        };
+    }
+}
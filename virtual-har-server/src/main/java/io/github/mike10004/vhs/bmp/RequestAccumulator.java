@@ -1,7 +1,7 @@
 package io.github.mike10004.vhs.bmp;
 
 import com.browserup.harreader.model.HarHeader;
-import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.Multimap;
 import io.github.mike10004.vhs.harbridge.Hars;
 import io.github.mike10004.vhs.harbridge.HttpMethod;
@@ -93,19 +93,19 @@ class RequestAccumulator {
     }
 
     protected static Multimap<String, Optional<String>> toMultimapOfOptionals(Iterable<Map.Entry<String, String>> nameValuePairs) {
-        Multimap<String, Optional<String>> mm = ArrayListMultimap.create();
+        ImmutableListMultimap.Builder<String, Optional<String>> mm = ImmutableListMultimap.builder();
         nameValuePairs.forEach(pair -> {
             mm.put(pair.getKey(), Optional.ofNullable(pair.getValue()));
         });
-        return mm;
+        return mm.build();
     }
 
     protected Multimap<String, String> toMultimap(Iterable<? extends HarHeader> nameValuePairs) {
-        Multimap<String, String> mm = ArrayListMultimap.create();
+        ImmutableListMultimap.Builder<String, String> mm = ImmutableListMultimap.builder();
         nameValuePairs.forEach(pair -> {
             mm.put(pair.getName(), pair.getValue());
         });
-        return mm;
+        return mm.build();
     }
 
 }
@@ -1,6 +1,11 @@
 package io.github.mike10004.vhs.bmp;
 
+import io.github.mike10004.vhs.harbridge.RecordedTiming;
+import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+
+import javax.annotation.Nullable;
 
 import static java.util.Objects.requireNonNull;
 
@@ -9,13 +14,52 @@ public class ResponseCapture {
     public final HttpResponse response;
     public final ResponseOrigin origin;
 
+    /**
+     * Timings recorded for the HAR entry that matched the request, if any.
+     */
+    @Nullable
+    public final RecordedTiming recordedTiming;
+
+    /**
+     * Namespace of the HAR file that the entry that matched the request was
+     * loaded from, if known.
+     */
+    @Nullable
+    public final String namespace;
+
     public ResponseCapture(HttpResponse response, ResponseOrigin origin) {
+        this(response, origin, null, null);
+    }
+
+    public ResponseCapture(HttpResponse response, ResponseOrigin origin, @Nullable RecordedTiming recordedTiming, @Nullable String namespace) {
         this.response = requireNonNull(response);
         this.origin = requireNonNull(origin);
+        this.recordedTiming = recordedTiming;
+        this.namespace = namespace;
+    }
+
+    /**
+     * Gets the length of the response body. The length of a streaming body is
+     * taken from the {@code Content-Length} header.
+     * @return the length in bytes, or -1 if unknown
+     */
+    public long getBodyLength() {
+        if (response instanceof FullHttpResponse) {
+            return ((FullHttpResponse) response).content().readableBytes();
+        }
+        return HttpUtil.getContentLength(response, -1L);
     }
 
     public static ResponseCapture matched(HttpResponse response) {
-        return new ResponseCapture(response, ResponseOrigin.MATCHED_ENTRY);
+        return matched(response, null);
+    }
+
+    public static ResponseCapture matched(HttpResponse response, @Nullable RecordedTiming recordedTiming) {
+        return matched(response, recordedTiming, null);
+    }
+
+    public static ResponseCapture matched(HttpResponse response, @Nullable RecordedTiming recordedTiming, @Nullable String namespace) {
+        return new ResponseCapture(response, ResponseOrigin.MATCHED_ENTRY, recordedTiming, namespace);
     }
 
     public static ResponseCapture unmatched(HttpResponse response) {
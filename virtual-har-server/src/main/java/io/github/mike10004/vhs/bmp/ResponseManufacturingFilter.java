@@ -4,11 +4,14 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.net.HostAndPort;
 import io.github.mike10004.vhs.repackaged.org.apache.http.client.utils.URIBuilder;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.HttpHeaders;
 import io.netty.handler.codec.http.HttpObject;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.netty.handler.codec.http.LastHttpContent;
 import com.browserup.bup.filters.ClientRequestCaptureFilter;
 import com.browserup.bup.filters.HttpsAwareFiltersAdapter;
@@ -19,10 +22,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.google.common.base.Preconditions.checkState;
@@ -44,6 +51,11 @@ class ResponseManufacturingFilter extends HttpsAwareFiltersAdapter {
     private volatile boolean responseSent;
     private final RequestAccumulator requestAccumulator;
     private final BmpResponseListener responseListener;
+    private final LatencySimulator latencySimulator;
+    @Nullable
+    private final BandwidthShaper bandwidthShaper;
+    @Nullable
+    private final Executor manufacturingExecutor;
 
     /**
      * The requestCaptureFilter captures all request content, including headers, trailing headers, and content. This filter
@@ -61,6 +73,30 @@ class ResponseManufacturingFilter extends HttpsAwareFiltersAdapter {
      * @throws IllegalArgumentException if request method is {@code CONNECT}
      */
     public <S> ResponseManufacturingFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, BmpResponseManufacturer.WithState<S> responseManufacturer, BmpResponseListener responseListener) {
+        this(originalRequest, ctx, responseManufacturer, responseListener, LatencySimulator.none());
+    }
+
+    /**
+     * Create a new instance that delays responses.
+     * @param originalRequest the original HttpRequest from the HttpFiltersSource factory
+     * @param ctx channel handler context
+     * @param latencySimulator simulator that decides how long to delay each response
+     * @throws IllegalArgumentException if request method is {@code CONNECT}
+     */
+    public <S> ResponseManufacturingFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, BmpResponseManufacturer.WithState<S> responseManufacturer, BmpResponseListener responseListener, LatencySimulator latencySimulator) {
+        this(originalRequest, ctx, responseManufacturer, responseListener, latencySimulator, null, null);
+    }
+
+    /**
+     * Create a new instance that delays responses and limits their throughput.
+     * @param originalRequest the original HttpRequest from the HttpFiltersSource factory
+     * @param ctx channel handler context
+     * @param latencySimulator simulator that decides how long to delay each response
+     * @param bandwidthShaper shaper that limits the throughput of responses; null means no limit
+     * @param manufacturingExecutor executor on which responses are manufactured; null means the event loop
+     * @throws IllegalArgumentException if request method is {@code CONNECT}
+     */
+    <S> ResponseManufacturingFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, BmpResponseManufacturer.WithState<S> responseManufacturer, BmpResponseListener responseListener, LatencySimulator latencySimulator, @Nullable BandwidthShaper bandwidthShaper, @Nullable Executor manufacturingExecutor) {
         super(originalRequest, ctx);
         if (ProxyUtils.isCONNECT(originalRequest)) {
             throw new IllegalArgumentException("HTTP CONNECT requests not supported by these filters");
@@ -69,6 +105,9 @@ class ResponseManufacturingFilter extends HttpsAwareFiltersAdapter {
         requestCaptureFilter = new ClientRequestCaptureFilter(originalRequest);
         this.responseManufacturer = requireNonNull(responseManufacturer);
         this.responseListener = requireNonNull(responseListener);
+        this.latencySimulator = requireNonNull(latencySimulator);
+        this.bandwidthShaper = bandwidthShaper;
+        this.manufacturingExecutor = manufacturingExecutor;
     }
 
     private static class StateAndManufacturer<S> {
@@ -87,11 +126,6 @@ class ResponseManufacturingFilter extends HttpsAwareFiltersAdapter {
 
     @Override
     public HttpResponse clientToProxyRequest(HttpObject httpObject) {
-        try {
-            Thread.sleep(230);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
         return interceptRequest(httpObject);
     }
 
@@ -118,7 +152,17 @@ class ResponseManufacturingFilter extends HttpsAwareFiltersAdapter {
             log.debug("producing response for {}", describe(httpObject));
             responseSent = true;
         }
-        HttpResponse response = produceResponse(freezeRequestCapture());
+        RequestCapture requestCapture = freezeRequestCapture();
+        if (ctx != null) {
+            CompletableFuture<?> readiness = responseManufacturer.whenReady(requestCapture);
+            if (!readiness.isDone()) {
+                return produceResponseWhenReady(requestCapture, readiness);
+            }
+            if (manufacturingExecutor != null) {
+                return produceResponseAsync(requestCapture, manufacturingExecutor);
+            }
+        }
+        HttpResponse response = produceResponse(requestCapture);
         return response;
     }
 
@@ -141,8 +185,128 @@ class ResponseManufacturingFilter extends HttpsAwareFiltersAdapter {
 
     protected HttpResponse produceResponse(RequestCapture bmpRequest) {
         ResponseCapture responseCapture = responseManufacturer.invoke(bmpRequest);
+        return respond(bmpRequest, responseCapture);
+    }
+
+    /**
+     * Manufactures the response on an executor, so that the event loop is free
+     * to serve other connections in the meantime. A placeholder is returned to
+     * the proxy, and the {@link DeferredResponseHandler} writes the real response
+     * in its place when manufacturing completes. Because the request is
+     * short-circuited, filters after this one, including the proxy's HAR capture
+     * filter, see neither the placeholder nor the real response; see
+     * {@link HarCapture}. If the executor rejects the task, the response is
+     * manufactured on the event loop.
+     */
+    private HttpResponse produceResponseAsync(RequestCapture bmpRequest, Executor executor) {
+        DeferredResponseHandler.Placeholder placeholder = new DeferredResponseHandler.Placeholder(originalRequest.protocolVersion());
+        CompletableFuture<ResponseCapture> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> responseManufacturer.invoke(bmpRequest), executor);
+        } catch (RejectedExecutionException e) {
+            log.debug("manufacturing executor rejected {} {}; manufacturing on event loop", bmpRequest.request.method, bmpRequest.request.url);
+            return produceResponse(bmpRequest);
+        }
+        resolveWhenManufactured(bmpRequest, placeholder, future);
+        return placeholder;
+    }
+
+    /**
+     * Returns a placeholder for a response that cannot be manufactured yet, for
+     * example because HAR entries are still being loaded, so that the event loop is not
+     * blocked while the manufacturer gets ready. Once it is ready, the response
+     * is manufactured on the manufacturing executor, if there is one, or else on
+     * the event loop.
+     */
+    private HttpResponse produceResponseWhenReady(RequestCapture bmpRequest, CompletableFuture<?> readiness) {
+        log.debug("deferring response to {} {} until manufacturer is ready", bmpRequest.request.method, bmpRequest.request.url);
+        DeferredResponseHandler.Placeholder placeholder = new DeferredResponseHandler.Placeholder(originalRequest.protocolVersion());
+        Executor eventLoop = ctx.channel().eventLoop();
+        CompletableFuture<ResponseCapture> future = new CompletableFuture<>();
+        readiness.whenComplete((ignore, readinessError) -> {
+            Runnable task = () -> {
+                try {
+                    future.complete(responseManufacturer.invoke(bmpRequest));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            };
+            if (manufacturingExecutor != null) {
+                try {
+                    manufacturingExecutor.execute(task);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    log.debug("manufacturing executor rejected {} {}; manufacturing on event loop", bmpRequest.request.method, bmpRequest.request.url);
+                }
+            }
+            eventLoop.execute(task);
+        });
+        resolveWhenManufactured(bmpRequest, placeholder, future);
+        return placeholder;
+    }
+
+    /**
+     * Arranges for a placeholder to be resolved with the response once it has
+     * been manufactured. The placeholder is resolved on the event loop.
+     */
+    private void resolveWhenManufactured(RequestCapture bmpRequest, DeferredResponseHandler.Placeholder placeholder, CompletableFuture<ResponseCapture> future) {
+        Channel channel = ctx.channel();
+        DeferredResponseHandler handler = DeferredResponseHandler.install(channel);
+        future.whenComplete((manufactured, error) -> channel.eventLoop().execute(() -> {
+            ResponseCapture responseCapture = manufactured;
+            if (error != null) {
+                log.error("failed to manufacture response to {} {}", bmpRequest.request.method, bmpRequest.request.url, error);
+                responseCapture = ResponseCapture.error(new DefaultFullHttpResponse(placeholder.protocolVersion(), HttpResponseStatus.INTERNAL_SERVER_ERROR));
+            }
+            handler.resolve(placeholder, respond(bmpRequest, responseCapture));
+        }));
+    }
+
+    private HttpResponse respond(RequestCapture bmpRequest, ResponseCapture responseCapture) {
         responseListener.responding(bmpRequest, responseCapture);
-        return responseCapture.response;
+        if (bandwidthShaper != null && ctx != null) {
+            bandwidthShaper.shape(ctx.channel(), bmpRequest, responseCapture);
+        }
+        delayResponse(bmpRequest, responseCapture);
+        HttpResponse response = responseCapture.response;
+        if (response instanceof StreamingHttpResponse) {
+            return prepareStreaming((StreamingHttpResponse) response);
+        }
+        return response;
+    }
+
+    /**
+     * Holds the writes on the client channel for as long as the latency simulator
+     * prescribes. The response is written as usual, but it is released to the
+     * client by a task scheduled on the channel's event loop, so the event loop
+     * is free to serve other connections in the meantime.
+     */
+    private void delayResponse(RequestCapture request, ResponseCapture response) {
+        long delayMillis = latencySimulator.getDelayMillis(request, response);
+        if (delayMillis > 0 && ctx != null) {
+            log.debug("delaying response to {} {} by {} ms", request.request.method, request.request.url, delayMillis);
+            DelayingWriteHandler.delay(ctx.channel(), delayMillis);
+        }
+    }
+
+    /**
+     * Arranges for the body of a streaming response to be written after the proxy
+     * writes the response headers, which it does before the current event loop task
+     * ends. The body is read on the manufacturing executor, if there is one.
+     * If there is no channel to write to, the full response is returned instead.
+     */
+    private HttpResponse prepareStreaming(StreamingHttpResponse response) {
+        if (ctx == null) {
+            try {
+                return response.toFullResponse();
+            } catch (IOException e) {
+                log.warn("failed to read response body", e);
+                return new DefaultFullHttpResponse(response.protocolVersion(), HttpResponseStatus.INTERNAL_SERVER_ERROR);
+            }
+        }
+        Channel channel = ctx.channel();
+        channel.eventLoop().execute(() -> ChunkedBodyWriter.start(channel, response, ChunkedBodyWriter.DEFAULT_CHUNK_SIZE, manufacturingExecutor));
+        return response;
     }
 
     @Override
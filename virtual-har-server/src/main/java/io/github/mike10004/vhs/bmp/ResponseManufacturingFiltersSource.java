@@ -13,6 +13,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
+import java.util.concurrent.Executor;
 
 import static java.util.Objects.requireNonNull;
 
@@ -24,12 +25,28 @@ class ResponseManufacturingFiltersSource extends HttpFiltersSourceAdapter {
     private final HostRewriter hostRewriter;
     private final BmpResponseListener bmpResponseListener;
     private final PassthruPredicate passthruPredicate;
+    private final LatencySimulator latencySimulator;
+    @Nullable
+    private final BandwidthShaper bandwidthShaper;
+    @Nullable
+    private final Executor manufacturingExecutor;
 
     public ResponseManufacturingFiltersSource(BmpResponseManufacturer.WithState<?> responseManufacturer, HostRewriter hostRewriter, BmpResponseListener bmpResponseListener, PassthruPredicate passthruPredicate) {
+        this(responseManufacturer, hostRewriter, bmpResponseListener, passthruPredicate, LatencySimulator.none());
+    }
+
+    public ResponseManufacturingFiltersSource(BmpResponseManufacturer.WithState<?> responseManufacturer, HostRewriter hostRewriter, BmpResponseListener bmpResponseListener, PassthruPredicate passthruPredicate, LatencySimulator latencySimulator) {
+        this(responseManufacturer, hostRewriter, bmpResponseListener, passthruPredicate, latencySimulator, null, null);
+    }
+
+    ResponseManufacturingFiltersSource(BmpResponseManufacturer.WithState<?> responseManufacturer, HostRewriter hostRewriter, BmpResponseListener bmpResponseListener, PassthruPredicate passthruPredicate, LatencySimulator latencySimulator, @Nullable BandwidthShaper bandwidthShaper, @Nullable Executor manufacturingExecutor) {
         this.responseManufacturer = requireNonNull(responseManufacturer);
         this.hostRewriter = requireNonNull(hostRewriter);
         this.bmpResponseListener = requireNonNull(bmpResponseListener);
         this.passthruPredicate = requireNonNull(passthruPredicate);
+        this.latencySimulator = requireNonNull(latencySimulator);
+        this.bandwidthShaper = bandwidthShaper;
+        this.manufacturingExecutor = manufacturingExecutor;
     }
 
     public interface PassthruPredicate {
@@ -63,7 +80,7 @@ class ResponseManufacturingFiltersSource extends HttpFiltersSourceAdapter {
     }
 
     /* package */ ResponseManufacturingFilter createResponseManufacturingFilter(HttpRequest originalRequest, ChannelHandlerContext ctx, BmpResponseManufacturer.WithState<?> responseManufacturer, BmpResponseListener bmpResponseListener) {
-        return new ResponseManufacturingFilter(originalRequest, ctx, responseManufacturer, bmpResponseListener);
+        return new ResponseManufacturingFilter(originalRequest, ctx, responseManufacturer, bmpResponseListener, latencySimulator, bandwidthShaper, manufacturingExecutor);
     }
 
     @VisibleForTesting
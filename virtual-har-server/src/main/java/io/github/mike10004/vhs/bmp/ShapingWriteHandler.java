@@ -0,0 +1,255 @@
+package io.github.mike10004.vhs.bmp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufHolder;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.FileRegion;
+import io.netty.handler.codec.http.DefaultHttpContent;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.DefaultLastHttpContent;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.ScheduledFuture;
+
+import javax.annotation.Nullable;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handler that splits each write on a client channel into slices of content
+ * and holds each slice until it can be taken from the channel's token bucket
+ * and, if there is one, the global token bucket shared by all channels. A
+ * slice holds as many bytes as the lower of the two rates allows in
+ * {@link #SLICE_MILLIS} milliseconds, so a response's bytes reach the client
+ * over time rather than in one burst. The global bucket is only consulted for
+ * a slice once the channel's bucket admits it, so a channel that waits on its
+ * own limit does not hold capacity that other channels could use. Writes,
+ * flushes, and closes keep their order; held slices are released by tasks
+ * scheduled on the channel's event loop.
+ * @see BandwidthShaper
+ */
+class ShapingWriteHandler extends ChannelDuplexHandler {
+
+    /**
+     * Duration of the bytes in one slice at the metered rate.
+     */
+    static final long SLICE_MILLIS = 50;
+
+    private final TokenBucket channelBucket;
+    @Nullable
+    private final TokenBucket globalBucket;
+    private final Queue<PendingWrite> pendingWrites = new ArrayDeque<>();
+    private final List<ChannelPromise> closePromises = new ArrayList<>(1);
+    private boolean flushRequested;
+    private ChannelHandlerContext ctx;
+    private ScheduledFuture<?> releaseTask;
+
+    public ShapingWriteHandler(long bytesPerSecond, @Nullable TokenBucket globalBucket) {
+        this.channelBucket = new TokenBucket(bytesPerSecond);
+        this.globalBucket = globalBucket;
+    }
+
+    private static class PendingWrite {
+
+        public final Object msg;
+        public final ChannelPromise promise;
+        public final long size;
+
+        private PendingWrite(Object msg, ChannelPromise promise, long size) {
+            this.msg = msg;
+            this.promise = promise;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Sets the rate of this channel's token bucket.
+     * @param bytesPerSecond the rate; zero means no limit
+     */
+    public void setRate(long bytesPerSecond) {
+        channelBucket.setRate(bytesPerSecond);
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) {
+        this.ctx = ctx;
+    }
+
+    static long sizeOf(Object msg) {
+        if (msg instanceof ByteBuf) {
+            return ((ByteBuf) msg).readableBytes();
+        }
+        if (msg instanceof ByteBufHolder) {
+            return ((ByteBufHolder) msg).content().readableBytes();
+        }
+        if (msg instanceof FileRegion) {
+            return ((FileRegion) msg).count();
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the number of bytes in a slice, or zero if writes are not metered.
+     */
+    private long getSliceSize() {
+        long rate = channelBucket.getRate();
+        if (globalBucket != null && globalBucket.getRate() > 0) {
+            rate = rate > 0 ? Math.min(rate, globalBucket.getRate()) : globalBucket.getRate();
+        }
+        if (rate <= 0) {
+            return 0;
+        }
+        return Math.max(1, rate * SLICE_MILLIS / 1000);
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+        long sliceSize = getSliceSize();
+        long size = sizeOf(msg);
+        if (sliceSize > 0 && size > sliceSize && (msg instanceof ByteBuf || msg instanceof HttpContent)) {
+            enqueueSlices(msg, promise, (int) sliceSize);
+        } else {
+            pendingWrites.add(new PendingWrite(msg, promise, size));
+        }
+        if (releaseTask == null) {
+            release();
+        }
+    }
+
+    /**
+     * Enqueues the slices of a buffer or of HTTP content. A full response is
+     * sliced into its head and pieces of content, which an HTTP encoder writes
+     * as the same bytes as the full response. The promise of the write is
+     * completed by the write of the last slice, or failed by the first slice
+     * that fails.
+     */
+    private void enqueueSlices(Object msg, ChannelPromise promise, int sliceSize) {
+        ByteBuf content = msg instanceof ByteBuf ? (ByteBuf) msg : ((HttpContent) msg).content();
+        if (msg instanceof FullHttpResponse) {
+            FullHttpResponse response = (FullHttpResponse) msg;
+            DefaultHttpResponse head = new DefaultHttpResponse(response.protocolVersion(), response.status(), response.headers());
+            pendingWrites.add(new PendingWrite(head, newSlicePromise(promise), 0));
+        }
+        int index = content.readerIndex(), end = content.writerIndex();
+        while (index < end) {
+            int length = Math.min(sliceSize, end - index);
+            ByteBuf slice = content.retainedSlice(index, length);
+            index += length;
+            boolean last = index == end;
+            Object sliceMsg;
+            if (msg instanceof ByteBuf) {
+                sliceMsg = slice;
+            } else if (last && msg instanceof LastHttpContent) {
+                DefaultLastHttpContent lastContent = new DefaultLastHttpContent(slice);
+                lastContent.trailingHeaders().set(((LastHttpContent) msg).trailingHeaders());
+                sliceMsg = lastContent;
+            } else {
+                sliceMsg = new DefaultHttpContent(slice);
+            }
+            pendingWrites.add(new PendingWrite(sliceMsg, last ? promise : newSlicePromise(promise), length));
+        }
+        ReferenceCountUtil.release(msg);
+    }
+
+    private ChannelPromise newSlicePromise(ChannelPromise promise) {
+        ChannelPromise slicePromise = ctx.newPromise();
+        slicePromise.addListener((ChannelFuture f) -> {
+            if (!f.isSuccess()) {
+                promise.tryFailure(f.cause());
+            }
+        });
+        return slicePromise;
+    }
+
+    /**
+     * Gets how long the next slice must wait, taking its bytes from the buckets
+     * if it need not wait.
+     */
+    private long take(long size, long now) {
+        if (size == 0) {
+            return 0;
+        }
+        long waitNanos = channelBucket.getWaitNanos(now);
+        if (waitNanos > 0) {
+            return waitNanos;
+        }
+        if (globalBucket != null) {
+            waitNanos = globalBucket.tryTake(size, now);
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+        }
+        return channelBucket.tryTake(size, now);
+    }
+
+    private void release() {
+        releaseTask = null;
+        boolean released = false;
+        while (!pendingWrites.isEmpty()) {
+            PendingWrite pendingWrite = pendingWrites.element();
+            long waitNanos = take(pendingWrite.size, System.nanoTime());
+            if (waitNanos > 0) {
+                releaseTask = ctx.executor().schedule(this::release, waitNanos, TimeUnit.NANOSECONDS);
+                break;
+            }
+            pendingWrites.remove();
+            ctx.write(pendingWrite.msg, pendingWrite.promise);
+            released = true;
+        }
+        if (released && flushRequested) {
+            flushRequested = !pendingWrites.isEmpty();
+            ctx.flush();
+        }
+        if (pendingWrites.isEmpty()) {
+            for (ChannelPromise closePromise : closePromises) {
+                ctx.close(closePromise);
+            }
+            closePromises.clear();
+        }
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) {
+        if (!pendingWrites.isEmpty()) {
+            flushRequested = true;
+        }
+        ctx.flush();
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) {
+        if (pendingWrites.isEmpty()) {
+            ctx.close(promise);
+        } else {
+            closePromises.add(promise);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (releaseTask != null) {
+            releaseTask.cancel(false);
+            releaseTask = null;
+        }
+        while (!pendingWrites.isEmpty()) {
+            PendingWrite pendingWrite = pendingWrites.remove();
+            ReferenceCountUtil.safeRelease(pendingWrite.msg);
+            pendingWrite.promise.tryFailure(new ClosedChannelException());
+        }
+        flushRequested = false;
+        for (ChannelPromise closePromise : closePromises) {
+            ctx.close(closePromise);
+        }
+        closePromises.clear();
+        super.channelInactive(ctx);
+    }
+}
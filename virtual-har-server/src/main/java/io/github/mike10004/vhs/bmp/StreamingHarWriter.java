@@ -0,0 +1,97 @@
+package io.github.mike10004.vhs.bmp;
+
+import com.browserup.harreader.model.HarEntry;
+import com.browserup.harreader.model.HarLog;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writer of a HAR file whose entries are written one at a time as they are
+ * evicted from a {@link BoundedHarEntryList}. The log's version and creator are
+ * written when the file is opened, and its pages when the file is finished.
+ */
+class StreamingHarWriter {
+
+    /**
+     * Number of entries held in memory before the oldest is written.
+     */
+    static final int DEFAULT_WINDOW_SIZE = 64;
+
+    private static final Logger log = LoggerFactory.getLogger(StreamingHarWriter.class);
+
+    private final ObjectMapper mapper;
+    private final JsonGenerator generator;
+    private final HarLog harLog;
+    private boolean finished;
+
+    private StreamingHarWriter(ObjectMapper mapper, JsonGenerator generator, HarLog harLog) {
+        this.mapper = mapper;
+        this.generator = generator;
+        this.harLog = harLog;
+    }
+
+    public static StreamingHarWriter open(Path outputFile, HarLog harLog) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        JsonGenerator generator = mapper.getFactory().createGenerator(Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8));
+        try {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("log");
+            generator.writeStringField("version", harLog.getVersion());
+            generator.writeFieldName("creator");
+            mapper.writeValue(generator, harLog.getCreator());
+            generator.writeArrayFieldStart("entries");
+        } catch (IOException | RuntimeException e) {
+            generator.close();
+            throw e;
+        }
+        return new StreamingHarWriter(mapper, generator, harLog);
+    }
+
+    /**
+     * Writes an entry. Failure is logged rather than thrown, because entries
+     * are written on the proxy's event loops.
+     * @param entry the entry
+     */
+    public synchronized void write(HarEntry entry) {
+        if (finished) {
+            log.debug("HAR file already finished; discarding entry");
+            return;
+        }
+        try {
+            mapper.writeValue(generator, entry);
+        } catch (IOException e) {
+            log.warn("failed to write HAR entry", e);
+        }
+    }
+
+    /**
+     * Writes the remaining entries and the pages, and closes the file.
+     * @param entries the list whose entries remain to be written
+     * @throws IOException if writing fails
+     */
+    public void finish(BoundedHarEntryList entries) throws IOException {
+        entries.evictAll(); // outside this lock, because the list invokes write() while holding its own
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            try {
+                generator.writeEndArray();
+                generator.writeFieldName("pages");
+                mapper.writeValue(generator, harLog.getPages());
+                generator.writeEndObject();
+                generator.writeEndObject();
+            } finally {
+                generator.close();
+            }
+        }
+    }
+}
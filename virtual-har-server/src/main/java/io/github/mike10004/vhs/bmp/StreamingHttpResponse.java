@@ -0,0 +1,65 @@
+package io.github.mike10004.vhs.bmp;
+
+import io.github.mike10004.vhs.HttpRespondable;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Response whose body is not part of the message but is sent afterwards
+ * as a sequence of content chunks read from a respondable.
+ * The response is marked keep-alive so that the proxy does not close the
+ * connection after writing the headers; if the respondable's headers asked for
+ * the connection to be closed, it is closed after the last chunk instead.
+ * @see ChunkedBodyWriter
+ */
+class StreamingHttpResponse extends DefaultHttpResponse {
+
+    private final HttpRespondable body;
+    private final boolean closeAfterBody;
+
+    /**
+     * Constructs an instance. Headers must be set before the response is sent.
+     * @param version protocol version
+     * @param status response status
+     * @param body respondable that supplies the body
+     * @param closeAfterBody true if the connection is to be closed after the body is sent
+     */
+    public StreamingHttpResponse(HttpVersion version, HttpResponseStatus status, HttpRespondable body, boolean closeAfterBody) {
+        super(version, status);
+        this.body = requireNonNull(body);
+        this.closeAfterBody = closeAfterBody;
+    }
+
+    public InputStream openBodyStream() throws IOException {
+        return body.openBodyStream();
+    }
+
+    public boolean isCloseAfterBody() {
+        return closeAfterBody;
+    }
+
+    /**
+     * Creates a response that contains the whole body, for use where the body
+     * cannot be streamed.
+     * @return a new full response
+     * @throws IOException if reading the body fails
+     */
+    public FullHttpResponse toFullResponse() throws IOException {
+        FullHttpResponse full = new DefaultFullHttpResponse(protocolVersion(), status(), Unpooled.wrappedBuffer(body.viewBody()));
+        full.headers().set(headers());
+        HttpUtil.setTransferEncodingChunked(full, false);
+        HttpUtil.setContentLength(full, full.content().readableBytes());
+        HttpUtil.setKeepAlive(full, !closeAfterBody);
+        return full;
+    }
+}
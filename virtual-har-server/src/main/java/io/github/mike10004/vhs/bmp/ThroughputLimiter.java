@@ -0,0 +1,74 @@
+package io.github.mike10004.vhs.bmp;
+
+import io.github.mike10004.vhs.harbridge.RecordedTiming;
+
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Interface of a service that decides how fast each response is written to
+ * the client, in order to simulate the bandwidth of the servers whose
+ * responses are replayed. The limit applies to the connection on which the
+ * response is sent until the next response on that connection. Writes that
+ * exceed it are held on the connection's event loop, so no thread is blocked.
+ * @see BrowsermobVhsConfig#throughputLimiter
+ */
+public interface ThroughputLimiter {
+
+    /**
+     * Limiter that does not limit any response.
+     */
+    ThroughputLimiter UNLIMITED = (request, response) -> 0;
+
+    /**
+     * Gets the throughput limit of a response.
+     * @param request the request
+     * @param response the response that is to be sent
+     * @return the limit in bytes per second; zero or negative means no limit
+     */
+    long getBytesPerSecond(RequestCapture request, ResponseCapture response);
+
+    /**
+     * Returns a limiter that does not limit any response.
+     * @return the limiter
+     */
+    static ThroughputLimiter none() {
+        return UNLIMITED;
+    }
+
+    /**
+     * Returns a limiter that limits every response to the same throughput.
+     * @param bytesPerSecond the limit in bytes per second
+     * @return a limiter
+     */
+    static ThroughputLimiter fixed(long bytesPerSecond) {
+        checkArgument(bytesPerSecond > 0, "limit must be positive: %s", bytesPerSecond);
+        return (request, response) -> bytesPerSecond;
+    }
+
+    /**
+     * Returns a limiter that limits each response to the throughput at which
+     * its body would be transferred in the {@code receive} time recorded in the
+     * HAR entry that matched its request. Responses whose bodies are empty or
+     * of unknown length are not limited.
+     * @param fallback limiter used for responses with no recorded {@code receive} timing
+     * @return a limiter
+     * @see ResponseCapture#recordedTiming
+     */
+    static ThroughputLimiter recorded(ThroughputLimiter fallback) {
+        requireNonNull(fallback, "fallback");
+        return (request, response) -> {
+            @Nullable RecordedTiming timing = response.recordedTiming;
+            if (timing == null || timing.receiveMillis <= 0) {
+                return fallback.getBytesPerSecond(request, response);
+            }
+            long bodyLength = response.getBodyLength();
+            if (bodyLength <= 0) {
+                return 0;
+            }
+            return Math.max(1, bodyLength * 1000 / timing.receiveMillis);
+        };
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.mike10004.vhs.bmp;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket that meters bytes at a rate. Rather than keeping a count of
+ * tokens, the bucket keeps the time at which the bytes taken so far will have
+ * been sent at its rate. Bytes may be taken only once that time has come, and
+ * taking them advances it. This is equivalent to a token bucket that holds
+ * no more tokens than one write needs, so traffic bursts above the rate by at
+ * most the size of one write; callers that need a smooth rate must split what
+ * they send into small writes. Instances are thread-safe, so one bucket can
+ * meter the writes of many channels.
+ */
+class TokenBucket {
+
+    private final AtomicLong nextFreeNanos;
+    private volatile long bytesPerSecond;
+
+    /**
+     * Constructs an instance.
+     * @param bytesPerSecond the rate; zero means bytes are not metered
+     */
+    public TokenBucket(long bytesPerSecond) {
+        nextFreeNanos = new AtomicLong(System.nanoTime());
+        setRate(bytesPerSecond);
+    }
+
+    /**
+     * Sets the rate. Bytes already taken are not affected.
+     * @param bytesPerSecond the rate; zero means bytes are not metered
+     */
+    public void setRate(long bytesPerSecond) {
+        this.bytesPerSecond = Math.max(0, bytesPerSecond);
+    }
+
+    /**
+     * Gets the rate.
+     * @return the rate; zero means bytes are not metered
+     */
+    public long getRate() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Gets how long it is until bytes may be taken, without taking any.
+     * @param nowNanos the current value of {@link System#nanoTime()}
+     * @return the wait in nanoseconds; zero if bytes may be taken now
+     */
+    public long getWaitNanos(long nowNanos) {
+        if (bytesPerSecond <= 0) {
+            return 0;
+        }
+        return Math.max(0, nextFreeNanos.get() - nowNanos);
+    }
+
+    /**
+     * Takes some bytes if the bytes taken earlier have been sent at the rate.
+     * @param numBytes the number of bytes
+     * @param nowNanos the current value of {@link System#nanoTime()}
+     * @return zero if the bytes were taken; otherwise the time in nanoseconds
+     * to wait before trying again
+     */
+    public long tryTake(long numBytes, long nowNanos) {
+        long rate = bytesPerSecond;
+        if (rate <= 0 || numBytes <= 0) {
+            return 0;
+        }
+        long durationNanos = (long) (numBytes * (double) TimeUnit.SECONDS.toNanos(1) / rate);
+        while (true) {
+            long nextFree = nextFreeNanos.get();
+            if (nextFree - nowNanos > 0) {
+                return nextFree - nowNanos;
+            }
+            if (nextFreeNanos.compareAndSet(nextFree, nowNanos + durationNanos)) {
+                return 0;
+            }
+        }
+    }
+}
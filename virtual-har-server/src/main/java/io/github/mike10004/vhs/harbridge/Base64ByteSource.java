@@ -1,9 +1,8 @@
 package io.github.mike10004.vhs.harbridge;
 
-import com.google.common.io.BaseEncoding;
 import com.google.common.io.ByteSource;
-import com.google.common.io.CharSource;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -17,14 +16,24 @@ class Base64ByteSource extends ByteSource {
     private final long decodedLength;
     @SuppressWarnings("OptionalUsedAsFieldOrParameterType")
     private final com.google.common.base.Optional<Long> sizeIfKnown;
-    private final ByteSource decodingSource;
 
     protected Base64ByteSource(String base64Data) {
         this.base64Data = requireNonNull(base64Data);
         int unpaddedLength = unpaddedLength(base64Data); // in case of extra padding
         this.decodedLength = unpaddedLength * 6 / 8; // each char represents 6 bits; round down because of padding
         this.sizeIfKnown = com.google.common.base.Optional.of(decodedLength);
-        decodingSource = BaseEncoding.base64().decodingSource(CharSource.wrap(base64Data));
+    }
+
+    /**
+     * Decodes the data. The decoded bytes are not retained; retention is up to
+     * the {@link DecodedContentCache}, which keeps them within its budget.
+     */
+    private byte[] decode() throws IOException {
+        try {
+            return Base64Codec.decode(base64Data);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("invalid base-64 data", e);
+        }
     }
 
     static int unpaddedLength(String base64Data) {
@@ -39,7 +48,12 @@ class Base64ByteSource extends ByteSource {
 
     @Override
     public InputStream openStream() throws IOException {
-        return decodingSource.openStream();
+        return new ByteArrayInputStream(decode());
+    }
+
+    @Override
+    public byte[] read() throws IOException {
+        return decode();
     }
 
     @Override
@@ -0,0 +1,111 @@
+package io.github.mike10004.vhs.harbridge;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+
+/**
+ * Static utility methods that classify and decode base-64 text in a single
+ * linear scan. These replace a backtracking regular expression, which is slow
+ * for multi-megabyte text and may overflow the stack.
+ */
+final class Base64Codec {
+
+    private static final char PAD_CHAR = '=';
+    private static final int INVALID = -1;
+    private static final int[] DECODE_TABLE = buildDecodeTable();
+
+    private Base64Codec() {}
+
+    private static int[] buildDecodeTable() {
+        int[] table = new int[128];
+        Arrays.fill(table, INVALID);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            table[alphabet.charAt(i)] = i;
+        }
+        return table;
+    }
+
+    private static int valueOf(char ch) {
+        return ch < DECODE_TABLE.length ? DECODE_TABLE[ch] : INVALID;
+    }
+
+    /**
+     * Checks whether text is canonical, padded base-64: a nonempty sequence of
+     * characters from the base-64 alphabet whose length is a multiple of four,
+     * where only the last one or two characters may be padding. A single line
+     * terminator at the end of the text is ignored.
+     * @param text the text
+     * @return true iff the text is canonical base-64
+     */
+    public static boolean isCanonical(@Nullable CharSequence text) {
+        if (text == null) {
+            return false;
+        }
+        int length = lengthWithoutFinalLineTerminator(text);
+        if (length == 0 || length % 4 != 0) {
+            return false;
+        }
+        int dataLength = length;
+        if (text.charAt(length - 1) == PAD_CHAR) {
+            dataLength--;
+            if (text.charAt(length - 2) == PAD_CHAR) {
+                dataLength--;
+            }
+        }
+        for (int i = 0; i < dataLength; i++) {
+            if (valueOf(text.charAt(i)) == INVALID) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes base-64 text in one pass. Trailing padding is optional, as it is
+     * for {@link com.google.common.io.BaseEncoding#base64()}.
+     * @param text the text
+     * @return the decoded bytes
+     * @throws IllegalArgumentException if the text is not valid base-64
+     */
+    public static byte[] decode(CharSequence text) {
+        int length = text.length();
+        while (length > 0 && text.charAt(length - 1) == PAD_CHAR) {
+            length--;
+        }
+        if (length % 4 == 1) {
+            throw new IllegalArgumentException("invalid base-64 length " + text.length());
+        }
+        byte[] decoded = new byte[length / 4 * 3 + Math.max(0, length % 4 - 1)];
+        int out = 0;
+        int buffer = 0;
+        int bits = 0;
+        for (int i = 0; i < length; i++) {
+            int value = valueOf(text.charAt(i));
+            if (value == INVALID) {
+                throw new IllegalArgumentException("invalid base-64 character at index " + i);
+            }
+            buffer = (buffer << 6) | value;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                decoded[out++] = (byte) (buffer >> bits);
+            }
+        }
+        return decoded;
+    }
+
+    private static int lengthWithoutFinalLineTerminator(CharSequence text) {
+        int length = text.length();
+        if (length > 0) {
+            char last = text.charAt(length - 1);
+            if (last == '\n' && length > 1 && text.charAt(length - 2) == '\r') {
+                return length - 2;
+            }
+            if (last == '\n' || last == '\r' || last == '\u0085' || last == '\u2028' || last == '\u2029') {
+                return length - 1;
+            }
+        }
+        return length;
+    }
+}
@@ -0,0 +1,158 @@
+package io.github.mike10004.vhs.harbridge;
+
+import com.google.common.base.Optional;
+import com.google.common.io.ByteSource;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Byte source that supplies the content of an in-memory buffer and can provide
+ * a read-only view of that buffer, so that consumers can use the bytes without
+ * copying them.
+ */
+public final class ByteBufferSource extends ByteSource {
+
+    private final ByteBuffer buffer;
+
+    private ByteBufferSource(ByteBuffer buffer) {
+        this.buffer = requireNonNull(buffer);
+    }
+
+    /**
+     * Creates a source that supplies the bytes of an array. The array is not copied,
+     * so it must not be modified afterwards.
+     * @param bytes the bytes
+     * @return a new source
+     */
+    public static ByteBufferSource wrap(byte[] bytes) {
+        return wrap(ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Creates a source that supplies the remaining bytes of a buffer. The buffer is not
+     * copied, so its content must not be modified afterwards.
+     * @param buffer the buffer
+     * @return a new source
+     */
+    public static ByteBufferSource wrap(ByteBuffer buffer) {
+        return new ByteBufferSource(buffer.slice().asReadOnlyBuffer());
+    }
+
+    /**
+     * Gets a read-only view of the bytes of a source without copying them, if
+     * the source holds its bytes in memory.
+     * @param source the source
+     * @return a buffer whose remaining bytes are the content of the source, or null
+     * if the bytes would have to be read into a new array
+     * @throws IOException if the source must decode its bytes and decoding fails
+     */
+    @Nullable
+    public static ByteBuffer viewIfInMemory(ByteSource source) throws IOException {
+        if (source instanceof DecodedContentCache.ResidentSource) {
+            source = ((DecodedContentCache.ResidentSource) source).resolve();
+        }
+        if (source instanceof ByteBufferSource) {
+            return ((ByteBufferSource) source).asByteBuffer();
+        }
+        return null;
+    }
+
+    /**
+     * Gets a read-only view of the bytes.
+     * @return a buffer whose remaining bytes are the content of this source
+     */
+    public ByteBuffer asByteBuffer() {
+        return buffer.duplicate();
+    }
+
+    @Override
+    public InputStream openStream() {
+        return new ByteBufferInputStream(asByteBuffer());
+    }
+
+    @Override
+    public long size() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public Optional<Long> sizeIfKnown() {
+        return Optional.of((long) buffer.remaining());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return !buffer.hasRemaining();
+    }
+
+    @Override
+    public byte[] read() {
+        byte[] bytes = new byte[buffer.remaining()];
+        asByteBuffer().get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public long copyTo(OutputStream output) throws IOException {
+        WritableByteChannel channel = Channels.newChannel(output);
+        ByteBuffer view = asByteBuffer();
+        long count = view.remaining();
+        while (view.hasRemaining()) {
+            channel.write(view);
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "ByteBufferSource{size=" + buffer.remaining() + "}";
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        public ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            ((Buffer) buffer).position(buffer.position() + skipped); // cast for compatibility with Java 8 runtime
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -7,7 +7,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 
-class ContentTypes {
+public class ContentTypes {
 
     private static final Logger log = LoggerFactory.getLogger(ContentTypes.class);
 
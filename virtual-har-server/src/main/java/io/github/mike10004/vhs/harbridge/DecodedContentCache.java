@@ -0,0 +1,301 @@
+package io.github.mike10004.vhs.harbridge;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.google.common.math.LongMath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Cache of response content that has been decoded from its HAR representation.
+ * For each key, the content is translated once, which includes deciding whether
+ * the recorded content encoding can be decoded, and that verdict is retained for
+ * as long as the key is reachable. In addition, decoded bytes are kept resident
+ * as long as their total size stays within a budget, so that repeated serves of
+ * the same content do not decode base-64 data or decompress it again. When the
+ * budget is exceeded, the least recently used content is evicted, and it is
+ * decoded again from its HAR representation the next time it is read.
+ * Content that is larger than the whole budget, or cannot be decoded, is
+ * decoded lazily on each serve, as it would be without a cache.
+ *
+ * <p>Nothing is decoded when content is translated; the decoded bytes are read
+ * the first time the content is read or its size is needed. Content whose size
+ * is known in advance to exceed the budget is never read into memory. Other
+ * content is read up to one byte more than the budget, and is deemed too
+ * large as soon as that limit is passed, so that learning that a body does not
+ * fit never holds more than the budget on the heap.
+ *
+ * <p>The content returned for a key does not itself hold the decoded bytes; it
+ * looks them up each time it is read, so callers may retain it for as long as
+ * they like without defeating the budget.
+ *
+ * <p>Keys are compared by identity and held weakly; they are normally the HAR
+ * objects from which the content was translated.
+ */
+public final class DecodedContentCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DecodedContentCache.class);
+
+    private final long maxDecodedBytes;
+    private final Cache<Object, Verdict> verdicts;
+    private final Cache<Verdict, ByteBufferSource> resident;
+    private final AtomicLong residentBytes;
+    private final LongAdder hitCount, missCount, evictionCount;
+
+    private DecodedContentCache(long maxDecodedBytes) {
+        checkArgument(maxDecodedBytes >= 0, "budget must be nonnegative: %s", maxDecodedBytes);
+        this.maxDecodedBytes = maxDecodedBytes;
+        residentBytes = new AtomicLong();
+        hitCount = new LongAdder();
+        missCount = new LongAdder();
+        evictionCount = new LongAdder();
+        verdicts = CacheBuilder.newBuilder()
+                .weakKeys()
+                .build();
+        // a single segment, so that eviction is least-recently-used across the whole budget
+        resident = CacheBuilder.newBuilder()
+                .weakKeys()
+                .concurrencyLevel(1)
+                .maximumWeight(maxDecodedBytes)
+                .weigher((Verdict verdict, ByteBufferSource bytes) -> (int) Math.min(Integer.MAX_VALUE, bytes.size()))
+                .removalListener(this::residentRemoved)
+                .build();
+    }
+
+    /**
+     * Creates a new cache instance.
+     * @param maxDecodedBytes maximum total size of decoded content kept resident;
+     *                        if zero, only the decoding verdicts are retained
+     * @return a new cache
+     */
+    public static DecodedContentCache create(long maxDecodedBytes) {
+        return new DecodedContentCache(maxDecodedBytes);
+    }
+
+    /**
+     * Gets the decoded content for a key, translating it if necessary.
+     * @param key the key
+     * @param translator supplier of the lazily-decoding content
+     * @return the content
+     */
+    public TypedContent get(Object key, Supplier<? extends TypedContent> translator) {
+        requireNonNull(key, "key");
+        Verdict verdict;
+        try {
+            verdict = verdicts.get(key, () -> new Verdict(translator.get()));
+        } catch (ExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        }
+        if (verdict.ineligible) {
+            return verdict.lazy;
+        }
+        return verdict.content;
+    }
+
+    /**
+     * Gets the source of the decoded bytes for some content, decoding them
+     * again if they are not resident.
+     */
+    private ByteSource resolve(Verdict verdict) {
+        @Nullable ByteBufferSource bytes = resident.getIfPresent(verdict);
+        if (bytes != null) {
+            hitCount.increment();
+            return bytes;
+        }
+        missCount.increment();
+        if (verdict.ineligible) {
+            return verdict.lazy.asByteSource();
+        }
+        bytes = materialize(verdict);
+        if (bytes == null) {
+            return verdict.lazy.asByteSource();
+        }
+        residentBytes.addAndGet(bytes.size());
+        resident.put(verdict, bytes);
+        return bytes;
+    }
+
+    @Nullable
+    private ByteBufferSource materialize(Verdict verdict) {
+        byte[] bytes;
+        try (InputStream in = verdict.lazy.asByteSource().openStream()) {
+            bytes = ByteStreams.toByteArray(ByteStreams.limit(in, LongMath.saturatedAdd(maxDecodedBytes, 1)));
+        } catch (IOException e) {
+            log.debug("content not cached because decoding failed: {}", e.toString());
+            verdict.ineligible = true;
+            return null;
+        }
+        if (bytes.length > maxDecodedBytes) {
+            verdict.ineligible = true;
+            return null;
+        }
+        verdict.decodedSize = bytes.length;
+        return ByteBufferSource.wrap(bytes);
+    }
+
+    private void residentRemoved(RemovalNotification<Verdict, ByteBufferSource> notification) {
+        @Nullable ByteBufferSource bytes = notification.getValue();
+        if (bytes != null) {
+            residentBytes.addAndGet(-bytes.size());
+        }
+        if (notification.wasEvicted()) {
+            evictionCount.increment();
+        }
+    }
+
+    /**
+     * Gets the total size of the decoded content currently resident.
+     * @return the size in bytes
+     */
+    public long getDecodedBytes() {
+        return residentBytes.get();
+    }
+
+    /**
+     * Gets a snapshot of this cache's statistics.
+     * @return the statistics
+     */
+    public Stats getStats() {
+        return new Stats(hitCount.sum(), missCount.sum(), evictionCount.sum(), residentBytes.get(), maxDecodedBytes);
+    }
+
+    /**
+     * Statistics describing how well the budget fits the content being served.
+     * A read of content is a hit if its decoded bytes were resident and a miss
+     * if they had to be decoded.
+     */
+    public static final class Stats {
+
+        public final long hitCount;
+        public final long missCount;
+
+        /**
+         * Number of times decoded content was evicted to stay within the budget.
+         */
+        public final long evictionCount;
+
+        /**
+         * Total size of the decoded content resident at the time of the snapshot.
+         */
+        public final long residentBytes;
+
+        public final long maxResidentBytes;
+
+        private Stats(long hitCount, long missCount, long evictionCount, long residentBytes, long maxResidentBytes) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.evictionCount = evictionCount;
+            this.residentBytes = residentBytes;
+            this.maxResidentBytes = maxResidentBytes;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("hitCount", hitCount)
+                    .add("missCount", missCount)
+                    .add("evictionCount", evictionCount)
+                    .add("residentBytes", residentBytes)
+                    .add("maxResidentBytes", maxResidentBytes)
+                    .toString();
+        }
+    }
+
+    /**
+     * Translated content and whether its decoded form is ineligible for retention.
+     */
+    private class Verdict {
+
+        public final TypedContent lazy;
+        public final TypedContent content;
+        public volatile boolean ineligible;
+
+        /**
+         * Size of the decoded content, or -1 if it is not yet known.
+         */
+        public volatile long decodedSize;
+
+        public Verdict(TypedContent lazy) {
+            this.lazy = requireNonNull(lazy);
+            content = TypedContent.identity(new ResidentSource(this), lazy.getContentType());
+            Optional<Long> knownSize = lazy.asByteSource().sizeIfKnown();
+            decodedSize = knownSize.or(-1L);
+            ineligible = decodedSize > maxDecodedBytes;
+        }
+    }
+
+    /**
+     * Source of decoded content that looks up the resident bytes on each read.
+     */
+    class ResidentSource extends ByteSource {
+
+        private final Verdict verdict;
+
+        private ResidentSource(Verdict verdict) {
+            this.verdict = verdict;
+        }
+
+        ByteSource resolve() {
+            return DecodedContentCache.this.resolve(verdict);
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return resolve().openStream();
+        }
+
+        @Override
+        public long size() throws IOException {
+            long size = verdict.decodedSize;
+            if (size < 0) {
+                ByteSource resolved = resolve();
+                size = verdict.decodedSize;
+                if (size < 0) {
+                    size = resolved.size();
+                    verdict.decodedSize = size;
+                }
+            }
+            return size;
+        }
+
+        @Override
+        public Optional<Long> sizeIfKnown() {
+            long size = verdict.decodedSize;
+            return size < 0 ? Optional.absent() : Optional.of(size);
+        }
+
+        @Override
+        public byte[] read() throws IOException {
+            return resolve().read();
+        }
+
+        @Override
+        public long copyTo(OutputStream output) throws IOException {
+            return resolve().copyTo(output);
+        }
+
+        @Override
+        public String toString() {
+            return "ResidentSource{size=" + verdict.decodedSize + "}";
+        }
+    }
+}
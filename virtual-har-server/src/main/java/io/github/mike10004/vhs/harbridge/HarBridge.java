@@ -62,7 +62,9 @@ public interface HarBridge<E> {
     int getResponseStatus(E entry);
 
     /**
-     * Gets an object representing the HAR response data.
+     * Gets an object representing the HAR response data. When the encoding strategy is
+     * {@link HarResponseEncoding#unencoded()}, the data returned must not depend on the
+     * request, because callers may compute it once per entry and reuse it.
      * @param request the request
      * @param entry the HAR entry
      * @param encodingStrategy encoding strategy
@@ -71,4 +73,26 @@ public interface HarBridge<E> {
      */
     HarResponseData getResponseData(ParsedRequest request, E entry, HarResponseEncoding encodingStrategy) throws IOException;
 
+    /**
+     * Gets the timings recorded for an entry. The default implementation returns null.
+     * @param entry the HAR entry
+     * @return the timings, or null if none were recorded
+     */
+    @Nullable
+    default RecordedTiming getRecordedTiming(E entry) {
+        return null;
+    }
+
+    /**
+     * Gets the namespace of the HAR file an entry was loaded from, which
+     * identifies where the entry came from when a session serves entries
+     * from several files. The default implementation returns null.
+     * @param entry the HAR entry
+     * @return the namespace, or null if the entry has none
+     */
+    @Nullable
+    default String getNamespace(E entry) {
+        return null;
+    }
+
 }
@@ -21,7 +21,6 @@ import java.nio.charset.CharsetEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.function.Consumer;
-import java.util.regex.Pattern;
 
 import static java.util.Objects.requireNonNull;
 
@@ -34,14 +33,10 @@ public class Hars {
 
     static final MediaType CONTENT_TYPE_DEFAULT_VALUE = MediaType.OCTET_STREAM;
 
-    // TODO maybe allow line breaks within base-64 strings
-    private static final Pattern BASE_64_PATTERN = Pattern.compile("^([A-Za-z0-9+/]{4})*([A-Za-z0-9+/]{4}|[A-Za-z0-9+/]{3}=|[A-Za-z0-9+/]{2}==)$");
-
     private static final Charset DEFAULT_WWW_FORM_DATA_CHARSET = StandardCharsets.UTF_8;
 
-    // https://stackoverflow.com/a/8571649/2657036
     private static boolean isValidBase64Encoding(String text) {
-        return text != null && BASE_64_PATTERN.matcher(text).find();
+        return Base64Codec.isCanonical(text);
     }
 
     /**
@@ -152,17 +147,30 @@ public class Hars {
     @VisibleForTesting
     static ByteSource decodingSource(String base64Data, @Nullable String contentEncodingHeaderValue, @Nullable String harContentEncodingFieldValue, @Nullable Long bodySize, @Nullable Long contentSize, Consumer<? extends Boolean> readabilityTestResultConsumer) {
         Base64ByteSource textAsByteSource = base64DecodingSource(base64Data);
+        return decodingSource(textAsByteSource, contentEncodingHeaderValue);
+    }
+
+    /**
+     * Gets a source of the decompressed bytes of captured response data. Some HAR
+     * producers capture data as it was compressed in transit; if the content-encoding
+     * header names a compression and the data can be decompressed accordingly, the
+     * returned source decompresses it, and otherwise the data are returned as is.
+     * @param data the captured data
+     * @param contentEncodingHeaderValue value of HTTP content-encoding header in response
+     * @return a byte source supplying decoded data
+     */
+    public static ByteSource decodingSource(ByteSource data, @Nullable String contentEncodingHeaderValue) {
         if (contentEncodingHeaderValue != null) {
             List<String> contentEncodings = HttpContentCodecs.parseEncodings(contentEncodingHeaderValue);
             boolean anyNonIdentity = contentEncodings.stream().anyMatch(encoding -> !HttpContentCodecs.CONTENT_ENCODING_IDENTITY.equalsIgnoreCase(encoding));
             if (anyNonIdentity) {
-                ByteSource decodingSource = wrap(textAsByteSource, contentEncodings);
+                ByteSource decodingSource = wrap(data, contentEncodings);
                 if (isReadable(decodingSource, 16)) {
                     return decodingSource;
                 }
             }
         }
-        return textAsByteSource;
+        return data;
     }
 
     @SuppressWarnings("SameParameterValue")
@@ -1,6 +1,9 @@
 package io.github.mike10004.vhs.harbridge;
 
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Multimap;
 import com.google.common.io.ByteSource;
 import org.apache.commons.lang3.StringUtils;
@@ -59,6 +62,42 @@ public abstract class ParsedRequest {
         return new MemoryRequest(method, url, query, indexedHeaders, body);
     }
 
+    /**
+     * Creates an instance whose header and query strings are interned. This is
+     * intended for requests that are retained for a long time, such as those parsed
+     * from HAR entries, where the same header names, header values, and query
+     * parameters repeat across many requests. Equal strings and equal query
+     * parameter values are then shared among all such requests.
+     * @param method request method
+     * @param url request URL
+     * @param query query parameters
+     * @param indexedHeaders request headers
+     * @param body request body
+     * @return a new instance
+     * @see #inMemory(HttpMethod, URI, Multimap, Multimap, byte[])
+     */
+    public static ParsedRequest compact(HttpMethod method, URI url, @Nullable Multimap<String, Optional<String>> query, Multimap<String, String> indexedHeaders, @Nullable byte[] body) {
+        return new MemoryRequest(method, url, query == null ? null : internQuery(query), internHeaders(indexedHeaders), body);
+    }
+
+    private static final Interner<String> stringInterner = Interners.newWeakInterner();
+    private static final Interner<Optional<String>> queryValueInterner = Interners.newWeakInterner();
+
+    private static ImmutableMultimap<String, String> internHeaders(Multimap<String, String> headers) {
+        ImmutableListMultimap.Builder<String, String> b = ImmutableListMultimap.builder();
+        headers.entries().forEach(header -> b.put(stringInterner.intern(header.getKey()), stringInterner.intern(header.getValue())));
+        return b.build();
+    }
+
+    private static ImmutableMultimap<String, Optional<String>> internQuery(Multimap<String, Optional<String>> query) {
+        ImmutableListMultimap.Builder<String, Optional<String>> b = ImmutableListMultimap.builder();
+        query.entries().forEach(param -> {
+            Optional<String> value = param.getValue().map(stringInterner::intern);
+            b.put(stringInterner.intern(param.getKey()), value.isPresent() ? queryValueInterner.intern(value) : value);
+        });
+        return b.build();
+    }
+
     static class MemoryRequest extends ParsedRequest {
 
         private final ByteSource bodySource;
@@ -67,7 +106,7 @@ public abstract class ParsedRequest {
         public MemoryRequest(HttpMethod method, URI url, @Nullable Multimap<String, Optional<String>> query, Multimap<String, String> indexedHeaders, @Nullable byte[] body) {
             super(method, url, query, indexedHeaders);
             if (bodyPresent = (body != null)) {
-                bodySource = ByteSource.wrap(Arrays.copyOf(body, body.length));
+                bodySource = body.length == 0 ? ByteSource.empty() : ByteSource.wrap(Arrays.copyOf(body, body.length));
             } else {
                 bodySource = ByteSource.empty();
             }
@@ -0,0 +1,31 @@
+package io.github.mike10004.vhs.harbridge;
+
+/**
+ * Value class that holds the timings recorded for a HAR entry. Only the
+ * {@code wait} and {@code receive} phases are kept; the others describe
+ * connection setup, which replay does not simulate.
+ */
+public final class RecordedTiming {
+
+    /**
+     * Time spent waiting for the first byte of the response, in milliseconds,
+     * or a negative value if not recorded.
+     */
+    public final long waitMillis;
+
+    /**
+     * Time spent receiving the response, in milliseconds, or a negative value
+     * if not recorded.
+     */
+    public final long receiveMillis;
+
+    public RecordedTiming(long waitMillis, long receiveMillis) {
+        this.waitMillis = waitMillis;
+        this.receiveMillis = receiveMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordedTiming{wait=" + waitMillis + ", receive=" + receiveMillis + "}";
+    }
+}
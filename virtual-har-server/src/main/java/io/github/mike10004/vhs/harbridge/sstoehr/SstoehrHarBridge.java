@@ -1,6 +1,5 @@
 package io.github.mike10004.vhs.harbridge.sstoehr;
 
-import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
@@ -14,13 +13,16 @@ import com.browserup.harreader.model.HarPostData;
 import com.browserup.harreader.model.HarPostDataParam;
 import com.browserup.harreader.model.HarRequest;
 import com.browserup.harreader.model.HarResponse;
+import com.browserup.harreader.model.HarTiming;
 import com.browserup.harreader.model.HttpMethod;
+import io.github.mike10004.vhs.harbridge.DecodedContentCache;
 import io.github.mike10004.vhs.harbridge.HarBridge;
 import io.github.mike10004.vhs.harbridge.HarResponseData;
 import io.github.mike10004.vhs.harbridge.HarResponseEncoding;
 import io.github.mike10004.vhs.harbridge.Hars;
 import io.github.mike10004.vhs.harbridge.HttpContentCodecs;
 import io.github.mike10004.vhs.harbridge.ParsedRequest;
+import io.github.mike10004.vhs.harbridge.RecordedTiming;
 import io.github.mike10004.vhs.harbridge.TypedContent;
 import io.github.mike10004.vhs.repackaged.org.apache.http.NameValuePair;
 import org.slf4j.Logger;
@@ -46,14 +48,34 @@ public class SstoehrHarBridge implements HarBridge<HarEntry> {
 
     public static final Charset DEFAULT_EX_MACHINA_CHARSET = StandardCharsets.UTF_8;
 
+    /**
+     * Name of the custom entry field that holds the namespace of the HAR file
+     * an entry was loaded from.
+     * @see #getNamespace(HarEntry)
+     */
+    public static final String NAMESPACE_FIELD = "_namespace";
+
     private final Charset exMachinaCharset;
+    @Nullable
+    private final DecodedContentCache contentCache;
 
     public SstoehrHarBridge() {
         this(DEFAULT_EX_MACHINA_CHARSET);
     }
 
     public SstoehrHarBridge(Charset exMachinaCharset) {
+        this(exMachinaCharset, null);
+    }
+
+    /**
+     * Constructs an instance that decodes response content at most once per HAR content
+     * object, subject to the cache's memory budget.
+     * @param exMachinaCharset charset applied to response text whose content type does not specify one
+     * @param contentCache cache of decoded response content; if null, content is decoded on each request
+     */
+    public SstoehrHarBridge(Charset exMachinaCharset, @Nullable DecodedContentCache contentCache) {
         this.exMachinaCharset = requireNonNull(exMachinaCharset);
+        this.contentCache = contentCache;
     }
 
     @Override
@@ -157,13 +179,27 @@ public class SstoehrHarBridge implements HarBridge<HarEntry> {
         return ImmutableList.of();
     }
 
-    @VisibleForTesting
-    TypedContent getResponseBody(HarEntry entry) throws IOException {
+    /**
+     * Gets the decoded response body of an entry. Subclasses may override this
+     * to supply the body of entries whose content is stored outside the HAR
+     * content object.
+     * @param entry the entry
+     * @return the body and its content type
+     * @throws IOException on I/O error
+     */
+    protected TypedContent getResponseBody(HarEntry entry) throws IOException {
         HarResponse rsp = entry.getResponse();
         if (rsp == null) {
             return TypedContent.identity(ByteSource.empty(), MediaType.OCTET_STREAM);
         }
         HarContent content = requireNonNull(rsp.getContent(), "response.content");
+        if (contentCache != null) {
+            return contentCache.get(content, () -> translateResponseContent(rsp, content));
+        }
+        return translateResponseContent(rsp, content);
+    }
+
+    private TypedContent translateResponseContent(HarResponse rsp, HarContent content) {
         @Nullable Long harContentSize = nullIfNegative(content.getSize());
         @Nullable Long bodySize = nullIfNegative(rsp.getBodySize());
         List<HarHeader> headers = MoreObjects.firstNonNull(rsp.getHeaders(), Collections.emptyList());
@@ -187,4 +223,26 @@ public class SstoehrHarBridge implements HarBridge<HarEntry> {
         log.info("response not present in entry; returning 500 as status");
         return 500;
     }
+
+    /**
+     * Gets the namespace of an entry from its {@link #NAMESPACE_FIELD custom field}.
+     * @param entry the HAR entry
+     * @return the namespace, or null if the field is absent
+     */
+    @Nullable
+    @Override
+    public String getNamespace(HarEntry entry) {
+        @Nullable Object namespace = entry.getAdditional() == null ? null : entry.getAdditional().get(NAMESPACE_FIELD);
+        return namespace == null ? null : namespace.toString();
+    }
+
+    @Nullable
+    @Override
+    public RecordedTiming getRecordedTiming(HarEntry entry) {
+        @Nullable HarTiming timings = entry.getTimings();
+        if (timings == null) {
+            return null;
+        }
+        return new RecordedTiming(timings.getWait(), timings.getReceive());
+    }
 }
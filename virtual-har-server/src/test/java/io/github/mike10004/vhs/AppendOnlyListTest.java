@@ -0,0 +1,54 @@
+package io.github.mike10004.vhs;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class AppendOnlyListTest {
+
+    @Test
+    public void append() {
+        AppendOnlyList<Integer> list = AppendOnlyList.copyOf(Collections.emptyList());
+        List<Integer> expected = new ArrayList<>();
+        List<AppendOnlyList<Integer>> versions = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            list = list.append(Arrays.asList(i, -i));
+            versions.add(list);
+            expected.add(i);
+            expected.add(-i);
+        }
+        assertEquals("elements", expected, list);
+        for (int i = 0; i < versions.size(); i++) {
+            assertEquals("version " + i, expected.subList(0, (i + 1) * 2), versions.get(i));
+        }
+    }
+
+    @Test
+    public void append_branch() {
+        AppendOnlyList<String> base = AppendOnlyList.copyOf(Arrays.asList("a", "b"));
+        AppendOnlyList<String> left = base.append(Arrays.asList("c"));
+        AppendOnlyList<String> right = base.append(Arrays.asList("x", "y"));
+        assertEquals("base", Arrays.asList("a", "b"), base);
+        assertEquals("left", Arrays.asList("a", "b", "c"), left);
+        assertEquals("right", Arrays.asList("a", "b", "x", "y"), right);
+        assertEquals("right appended", Arrays.asList("a", "b", "x", "y", "z"), right.append(Arrays.asList("z")));
+        assertEquals("left appended", Arrays.asList("a", "b", "c", "d"), left.append(Arrays.asList("d")));
+    }
+
+    @Test
+    public void copyOf_appendOnlyList() {
+        AppendOnlyList<String> list = AppendOnlyList.copyOf(Arrays.asList("a"));
+        assertSame(list, AppendOnlyList.copyOf(list));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void unmodifiable() {
+        AppendOnlyList.copyOf(Arrays.asList("a")).add("b");
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.mike10004.vhs;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.net.HttpHeaders;
+import com.google.common.net.MediaType;
+import io.github.mike10004.vhs.HeuristicEntryMatcher.ParsedEntry;
+import io.github.mike10004.vhs.harbridge.ParsedRequest;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class EntryDeduplicatorTest {
+
+    private static final String POLL_URL = "http://example.com/poll";
+
+    @Test
+    public void deduplicate_collapsesRun() throws Exception {
+        List<ParsedEntry> entries = Arrays.asList(
+                createEntry(POLL_URL, "waiting"),
+                createEntry(POLL_URL, "waiting"),
+                createEntry("http://example.com/other", "other"),
+                createEntry(POLL_URL, "waiting"),
+                createEntry(POLL_URL, "done"));
+        List<ParsedEntry> deduplicated = new EntryDeduplicator().deduplicate(entries);
+        assertEquals("multiplicities", Arrays.asList(3, 1, 1), deduplicated.stream().map(e -> e.multiplicity).collect(Collectors.toList()));
+        assertEquals("bodies", Arrays.asList("waiting", "other", "done"), readBodies(deduplicated));
+    }
+
+    @Test
+    public void deduplicate_keepsNonAdjacentDuplicates() throws Exception {
+        List<ParsedEntry> entries = Arrays.asList(
+                createEntry(POLL_URL, "waiting"),
+                createEntry(POLL_URL, "done"),
+                createEntry(POLL_URL, "waiting"));
+        List<ParsedEntry> deduplicated = new EntryDeduplicator().deduplicate(entries);
+        assertEquals("bodies", Arrays.asList("waiting", "done", "waiting"), readBodies(deduplicated));
+    }
+
+    @Test
+    public void stateful_sameResponsesAsWithoutDeduplication() throws Exception {
+        List<ParsedEntry> entries = Arrays.asList(
+                createEntry(POLL_URL, "waiting"),
+                createEntry(POLL_URL, "waiting"),
+                createEntry(POLL_URL, "waiting"),
+                createEntry(POLL_URL, "done"));
+        List<ParsedEntry> deduplicated = new EntryDeduplicator().deduplicate(entries);
+        assertEquals("num deduplicated entries", 2, deduplicated.size());
+        List<String> expected = replay(new StatefulHeuristicEntryMatcher(new BasicHeuristic(), BasicHeuristic.DEFAULT_THRESHOLD_EXCLUSIVE, entries), 6);
+        List<String> actual = replay(new StatefulHeuristicEntryMatcher(new BasicHeuristic(), BasicHeuristic.DEFAULT_THRESHOLD_EXCLUSIVE, deduplicated), 6);
+        assertEquals("responses", Arrays.asList("waiting", "waiting", "waiting", "done", "waiting", "waiting"), expected);
+        assertEquals("responses with deduplication", expected, actual);
+    }
+
+    private static List<String> replay(EntryMatcher<ReplaySessionState> matcher, int numRequests) throws Exception {
+        ReplaySessionState state = ReplaySessionState.countingUrlMethodPairs();
+        List<String> responses = new ArrayList<>();
+        for (int i = 0; i < numRequests; i++) {
+            ParsedRequest request = Tests.createRequest("GET", POLL_URL);
+            state.register(request);
+            HttpRespondable response = matcher.findTopEntry(state, request);
+            assertNotNull("response", response);
+            responses.add(Tests.readAsString(response));
+        }
+        return responses;
+    }
+
+    private static List<String> readBodies(List<ParsedEntry> entries) throws Exception {
+        List<String> bodies = new ArrayList<>();
+        for (ParsedEntry entry : entries) {
+            bodies.add(Tests.readAsString(entry.responseCreator.createRespondable(entry.request)));
+        }
+        return bodies;
+    }
+
+    private static ParsedEntry createEntry(String url, String bodyText) {
+        ParsedRequest request = Tests.createRequest("GET", url);
+        MediaType contentType = MediaType.PLAIN_TEXT_UTF_8;
+        HttpRespondable response = HttpRespondable.inMemory(200, ImmutableMultimap.of(HttpHeaders.CONTENT_TYPE, contentType.toString()), contentType, bodyText.getBytes(contentType.charset().get()));
+        return new ParsedEntry(request, request_ -> response);
+    }
+}
@@ -21,6 +21,7 @@ import javax.annotation.Nullable;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
@@ -44,6 +45,50 @@ public class HarBridgeEntryParserTest {
         Assume.assumeTrue("not yet implemented", false);
     }
 
+    @Test
+    public void parseResponse_reusesTemplate() throws Exception {
+        FakeHarBridge bridge = new FakeHarBridge();
+        HarBridgeEntryParser<FakeHarEntry> parser = HarBridgeEntryParser.withPlainEncoder(bridge);
+        FakeHarEntry entry = createResponseEntry("hello");
+        ParsedRequest request = parser.parseRequest(entry);
+        HttpRespondable first = parser.parseResponse(request, entry);
+        HttpRespondable second = parser.parseResponse(request, entry);
+        assertSame("respondable", first, second);
+        assertEquals("num response data computations", 1, bridge.responseDataCount);
+        assertEquals("status", 200, second.getStatus());
+        assertEquals("content length", ImmutableList.of("5"), second.streamHeaders()
+                .filter(h -> HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(h.getKey()))
+                .map(Map.Entry::getValue)
+                .collect(ImmutableList.toImmutableList()));
+    }
+
+    @Test
+    public void parseResponse_encodingAppliedPerRequest() throws Exception {
+        FakeHarBridge bridge = new FakeHarBridge();
+        HarResponseEncoderFactory<FakeHarEntry> encoderFactory = (request, entry) -> {
+            return unencoded -> unencoded.transformer()
+                    .headers(headers -> Stream.concat(headers, Stream.of(new SimpleImmutableEntry<>("X-Request-Url", request.url.toString()))))
+                    .transform();
+        };
+        HarBridgeEntryParser<FakeHarEntry> parser = new HarBridgeEntryParser<>(bridge, encoderFactory);
+        FakeHarEntry entry = createResponseEntry("hello");
+        for (String url : new String[]{"http://www.example.com/a", "http://www.example.com/b"}) {
+            HttpRespondable respondable = parser.parseResponse(Tests.createRequest("GET", url), entry);
+            assertEquals("header", ImmutableList.of(url), respondable.streamHeaders()
+                    .filter(h -> "X-Request-Url".equals(h.getKey()))
+                    .map(Map.Entry::getValue)
+                    .collect(ImmutableList.toImmutableList()));
+        }
+        assertEquals("num response data computations", 1, bridge.responseDataCount);
+    }
+
+    private static FakeHarEntry createResponseEntry(String body) {
+        MediaType contentType = MediaType.PLAIN_TEXT_UTF_8;
+        return new FakeHarEntry("GET", "http://www.example.com/", null, null, 200,
+                ImmutableList.of(new SimpleImmutableEntry<>(HttpHeaders.CONTENT_TYPE, contentType.toString())),
+                body.getBytes(StandardCharsets.UTF_8), contentType);
+    }
+
     @Test
     public void constructRespondable_replaceContentLengthHeaderValue() throws Exception {
         String data = "hello, world";
@@ -117,6 +162,8 @@ public class HarBridgeEntryParserTest {
 
     private static class FakeHarBridge implements HarBridge<FakeHarEntry> {
 
+        public int responseDataCount;
+
         @Override
         public String getRequestMethod(FakeHarEntry entry) {
             return entry.getRequestMethod();
@@ -145,6 +192,7 @@ public class HarBridgeEntryParserTest {
 
         @Override
         public HarResponseData getResponseData(ParsedRequest request, FakeHarEntry entry, HarResponseEncoding encoder) throws IOException {
+            responseDataCount++;
             return HarResponseData.of(entry.getResponseHeaders(), entry.responseContentType, ByteSource.wrap(entry.getResponseBody() == null ? new byte[0] : entry.getResponseBody()));
         }
     }
@@ -0,0 +1,49 @@
+package io.github.mike10004.vhs;
+
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HarFileWatcherTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void notifiesOnChange() throws Exception {
+        File harFile = temporaryFolder.newFile("watched.har");
+        File otherFile = temporaryFolder.newFile("other.har");
+        Semaphore changes = new Semaphore(0);
+        try (HarFileWatcher ignore = HarFileWatcher.start(harFile.toPath(), Duration.ofMillis(50), changes::release)) {
+            Files.asCharSink(otherFile, StandardCharsets.UTF_8).write("{}");
+            assertFalse("notified of change to other file", changes.tryAcquire(1, TimeUnit.SECONDS));
+            Files.asCharSink(harFile, StandardCharsets.UTF_8).write("{}");
+            assertTrue("notified of change", changes.tryAcquire(30, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void notifiesOnChangeToAnyFile() throws Exception {
+        File harFile = temporaryFolder.newFile("watched.har");
+        File otherHarFile = temporaryFolder.newFolder("other").toPath().resolve("also-watched.har").toFile();
+        Files.asCharSink(otherHarFile, StandardCharsets.UTF_8).write("{}");
+        Semaphore changes = new Semaphore(0);
+        try (HarFileWatcher ignore = HarFileWatcher.start(Arrays.asList(harFile.toPath(), otherHarFile.toPath()), Duration.ofMillis(50), changes::release)) {
+            Files.asCharSink(otherHarFile, StandardCharsets.UTF_8).write("{\"log\": {}}");
+            assertTrue("notified of change to file in other directory", changes.tryAcquire(30, TimeUnit.SECONDS));
+            Files.asCharSink(harFile, StandardCharsets.UTF_8).write("{}");
+            assertTrue("notified of change", changes.tryAcquire(30, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package io.github.mike10004.vhs;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.net.HttpHeaders;
+import com.google.common.net.MediaType;
+import io.github.mike10004.vhs.harbridge.ParsedRequest;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LoadingEntryMatcherTest {
+
+    private static final List<String> URLS = Arrays.asList("http://example.com/a", "http://example.org/b");
+
+    @Test
+    public void findTopEntry_waitsUntilLoaded() throws Exception {
+        CountDownLatch sourceLatch = new CountDownLatch(1);
+        LoadingEntryMatcher<Object> matcher = new LoadingEntryMatcher<>(10, TimeUnit.SECONDS);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> {
+                matcher.load(consumer -> {
+                    try {
+                        sourceLatch.await();
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    URLS.forEach(consumer);
+                }, new UrlEntryParser(), createFactory());
+            });
+            assertFalse("ready before entries read", matcher.isReady());
+            Future<HttpRespondable> response = executor.submit(() -> matcher.findTopEntry(null, Tests.createRequest("GET", "http://example.org/b")));
+            sourceLatch.countDown();
+            HttpRespondable respondable = response.get(5, TimeUnit.SECONDS);
+            assertNotNull("response", respondable);
+            assertEquals("body", "http://example.org/b", Tests.readAsString(respondable));
+            assertTrue("loaded", matcher.awaitLoaded(5, TimeUnit.SECONDS));
+            assertTrue("ready", matcher.isReady());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void whenReady_completesWhenLoaded() throws Exception {
+        LoadingEntryMatcher<Object> matcher = new LoadingEntryMatcher<>(10, TimeUnit.SECONDS);
+        ParsedRequest request = Tests.createRequest("GET", "http://example.com/a");
+        CompletableFuture<?> readiness = matcher.whenReady(request);
+        assertFalse("ready before loaded", readiness.isDone());
+        matcher.load(consumer -> URLS.forEach(consumer), new UrlEntryParser(), createFactory());
+        readiness.get(5, TimeUnit.SECONDS);
+        assertTrue("ready after loaded", matcher.whenReady(request).isDone());
+        assertNotNull("response", matcher.findTopEntry(null, request));
+    }
+
+    @Test
+    public void whenReady_completesAtTimeout() throws Exception {
+        LoadingEntryMatcher<Object> matcher = new LoadingEntryMatcher<>(50, TimeUnit.MILLISECONDS);
+        ParsedRequest request = Tests.createRequest("GET", "http://example.com/a");
+        matcher.whenReady(request).get(5, TimeUnit.SECONDS);
+        assertFalse("loaded", matcher.isReady());
+        assertNull("response", matcher.findTopEntry(null, request));
+    }
+
+    @Test
+    public void load_extendsMatcherInBatches() throws Exception {
+        LoadingEntryMatcher<Object> matcher = new LoadingEntryMatcher<>(10, TimeUnit.SECONDS);
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < LoadingEntryMatcher.BATCH_SIZE * 2 + 1; i++) {
+            urls.add("http://example.com/" + i);
+            urls.add("http://example.org/" + i);
+        }
+        matcher.load(consumer -> urls.forEach(consumer), new UrlEntryParser(), createFactory());
+        for (String url : Arrays.asList("http://example.com/0", "http://example.org/" + LoadingEntryMatcher.BATCH_SIZE, "http://example.com/" + LoadingEntryMatcher.BATCH_SIZE * 2)) {
+            HttpRespondable respondable = matcher.findTopEntry(null, Tests.createRequest("GET", url));
+            assertNotNull(url, respondable);
+            assertEquals("body", url, Tests.readAsString(respondable));
+        }
+    }
+
+    @Test
+    public void findTopEntry_timeout() throws Exception {
+        LoadingEntryMatcher<Object> matcher = new LoadingEntryMatcher<>(50, TimeUnit.MILLISECONDS);
+        assertNull("response while never loaded", matcher.findTopEntry(null, Tests.createRequest("GET", "http://example.com/a")));
+    }
+
+    @Test
+    public void findTopEntry_unknownHost() throws Exception {
+        LoadingEntryMatcher<Object> matcher = new LoadingEntryMatcher<>(10, TimeUnit.SECONDS);
+        matcher.load(consumer -> URLS.forEach(consumer), new UrlEntryParser(), createFactory());
+        assertNull("response for unknown host", matcher.findTopEntry(null, Tests.createRequest("GET", "http://example.net/a")));
+        assertNotNull("response for known host", matcher.findTopEntry(null, Tests.createRequest("GET", "http://example.com/a")));
+    }
+
+    @Test
+    public void load_failure() throws Exception {
+        IOException failure = new IOException("purposeful failure");
+        LoadingEntryMatcher<Object> matcher = new LoadingEntryMatcher<>(10, TimeUnit.SECONDS);
+        matcher.load(consumer -> {
+            consumer.accept(URLS.get(0));
+            throw failure;
+        }, new UrlEntryParser(), createFactory());
+        assertTrue("loaded", matcher.awaitLoaded(0, TimeUnit.SECONDS));
+        assertFalse("ready", matcher.isReady());
+        assertSame("failure", failure, matcher.getLoadFailure());
+        assertNull("response", matcher.findTopEntry(null, Tests.createRequest("GET", "http://example.com/a")));
+    }
+
+    private static EntryMatcherFactory<Object> createFactory() {
+        return HeuristicEntryMatcher.factory(new BasicHeuristic(), BasicHeuristic.DEFAULT_THRESHOLD_EXCLUSIVE);
+    }
+
+    /**
+     * Parser for entries that are URLs; the response body is the URL.
+     */
+    private static class UrlEntryParser implements EntryParser<String> {
+
+        @Override
+        public ParsedRequest parseRequest(String harEntry) {
+            return Tests.createRequest("GET", harEntry);
+        }
+
+        @Override
+        public HttpRespondable parseResponse(ParsedRequest request, String harEntry) {
+            MediaType contentType = MediaType.PLAIN_TEXT_UTF_8;
+            return HttpRespondable.inMemory(200, ImmutableMultimap.of(HttpHeaders.CONTENT_TYPE, contentType.toString()), contentType, harEntry.getBytes(contentType.charset().get()));
+        }
+    }
+}
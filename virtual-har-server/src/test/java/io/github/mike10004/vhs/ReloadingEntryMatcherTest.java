@@ -0,0 +1,47 @@
+package io.github.mike10004.vhs;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.net.MediaType;
+import io.github.mike10004.vhs.harbridge.ParsedRequest;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReloadingEntryMatcherTest {
+
+    @Test
+    public void reload() throws Exception {
+        ReloadingEntryMatcher<Object> matcher = new ReloadingEntryMatcher<>(constant("first"), current -> constant("second"));
+        ParsedRequest request = Tests.createRequest("GET", "http://example.com/");
+        assertEquals("before reload", "first", readBody(matcher, request));
+        assertTrue("reloaded", matcher.reload());
+        assertEquals("after reload", "second", readBody(matcher, request));
+    }
+
+    @Test
+    public void reload_failureRetainsCurrent() throws Exception {
+        ReloadingEntryMatcher<Object> matcher = new ReloadingEntryMatcher<>(constant("first"), current -> {
+            throw new IOException("purposeful failure");
+        });
+        ParsedRequest request = Tests.createRequest("GET", "http://example.com/");
+        assertFalse("reloaded", matcher.reload());
+        assertEquals("after failed reload", "first", readBody(matcher, request));
+    }
+
+    private static String readBody(EntryMatcher<Object> matcher, ParsedRequest request) throws IOException {
+        HttpRespondable response = matcher.findTopEntry(null, request);
+        assertNotNull("response", response);
+        return Tests.readAsString(response);
+    }
+
+    private static EntryMatcher<Object> constant(String bodyText) {
+        HttpRespondable response = HttpRespondable.inMemory(200, ImmutableMultimap.of(), MediaType.PLAIN_TEXT_UTF_8, bodyText.getBytes(StandardCharsets.UTF_8));
+        return (state, request) -> response;
+    }
+}
@@ -1,15 +1,18 @@
 package io.github.mike10004.vhs;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMultimap;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Files;
 import com.google.common.io.Resources;
+import com.google.common.net.MediaType;
 import com.browserup.harreader.HarReader;
 import com.browserup.harreader.model.HarEntry;
 import io.github.mike10004.vhs.bmp.BmpResponseManufacturer;
 import io.github.mike10004.vhs.bmp.BrowsermobVhsConfig;
 import io.github.mike10004.vhs.bmp.BrowsermobVirtualHarServer;
 import io.github.mike10004.vhs.bmp.HarReplayManufacturer;
+import io.github.mike10004.vhs.harbridge.ParsedRequest;
 import io.github.mike10004.vhs.harbridge.sstoehr.SstoehrHarBridge;
 import org.junit.Rule;
 import org.junit.Test;
@@ -26,6 +29,7 @@ import java.util.List;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 
 public class StatefulHeuristicEntryMatcherTest {
 
@@ -46,6 +50,68 @@ public class StatefulHeuristicEntryMatcherTest {
         assertEquals("responses", Arrays.asList("first", "first", "first"), responses);
     }
 
+    @Test
+    public void appendEntries() throws Exception {
+        IncrementalEntryMatcherFactory<ReplaySessionState> factory = (IncrementalEntryMatcherFactory<ReplaySessionState>) StatefulHeuristicEntryMatcher.factory(new BasicHeuristic(), BasicHeuristic.DEFAULT_THRESHOLD_EXCLUSIVE);
+        List<String> bodies = Arrays.asList("first", "second", "third");
+        EntryParser<String> parser = new BodyEntryParser("http://example.com/poll");
+        EntryMatcher<ReplaySessionState> allAtOnce = factory.createEntryMatcher(bodies, parser);
+        EntryMatcher<ReplaySessionState> appended = factory.createEntryMatcher(bodies.subList(0, 1), parser);
+        appended = factory.appendEntries(appended, bodies.subList(1, 3), parser);
+        List<String> expected = replay(allAtOnce, "http://example.com/poll", 3);
+        assertEquals("responses", bodies, expected);
+        assertEquals("responses with appended entries", expected, replay(appended, "http://example.com/poll", 3));
+    }
+
+    @Test
+    public void appendEntries_twiceToSameMatcher() throws Exception {
+        IncrementalEntryMatcherFactory<ReplaySessionState> factory = (IncrementalEntryMatcherFactory<ReplaySessionState>) StatefulHeuristicEntryMatcher.factory(new BasicHeuristic(), BasicHeuristic.DEFAULT_THRESHOLD_EXCLUSIVE);
+        EntryParser<String> parser = new BodyEntryParser("http://example.com/poll");
+        EntryMatcher<ReplaySessionState> base = factory.createEntryMatcher(Arrays.asList("first"), parser);
+        EntryMatcher<ReplaySessionState> left = factory.appendEntries(base, Arrays.asList("second", "third"), parser);
+        EntryMatcher<ReplaySessionState> right = factory.appendEntries(base, Arrays.asList("2nd", "3rd"), parser);
+        assertEquals("base", Arrays.asList("first"), replay(base, "http://example.com/poll", 1));
+        assertEquals("left", Arrays.asList("first", "second", "third"), replay(left, "http://example.com/poll", 3));
+        assertEquals("right", Arrays.asList("first", "2nd", "3rd"), replay(right, "http://example.com/poll", 3));
+        EntryMatcher<ReplaySessionState> rightAgain = factory.appendEntries(right, Arrays.asList("4th"), parser);
+        assertEquals("right appended", Arrays.asList("first", "2nd", "3rd", "4th"), replay(rightAgain, "http://example.com/poll", 4));
+    }
+
+    private static List<String> replay(EntryMatcher<ReplaySessionState> matcher, String url, int numRequests) throws Exception {
+        ReplaySessionState state = ReplaySessionState.countingUrlMethodPairs();
+        List<String> responses = new ArrayList<>();
+        for (int i = 0; i < numRequests; i++) {
+            ParsedRequest request = Tests.createRequest("GET", url);
+            state.register(request);
+            HttpRespondable response = matcher.findTopEntry(state, request);
+            assertNotNull("response", response);
+            responses.add(Tests.readAsString(response));
+        }
+        return responses;
+    }
+
+    /**
+     * Parser for entries that are response bodies for a single URL.
+     */
+    private static class BodyEntryParser implements EntryParser<String> {
+
+        private final String url;
+
+        public BodyEntryParser(String url) {
+            this.url = url;
+        }
+
+        @Override
+        public ParsedRequest parseRequest(String harEntry) {
+            return Tests.createRequest("GET", url);
+        }
+
+        @Override
+        public HttpRespondable parseResponse(ParsedRequest request, String harEntry) {
+            return HttpRespondable.inMemory(200, ImmutableMultimap.of(), MediaType.PLAIN_TEXT_UTF_8, harEntry.getBytes(UTF_8));
+        }
+    }
+
     private List<String> testEntryMatcher(EntryMatcherFactory<? super ReplaySessionState> entryMatcherFactory) throws Exception {
         File harFile = temporaryFolder.newFile();
         Resources.asByteSource(getClass().getResource("/multiple-requests-same-url.json")).copyTo(Files.asByteSink(harFile));
@@ -0,0 +1,138 @@
+package io.github.mike10004.vhs.bmp;
+
+import io.github.mike10004.vhs.Tests;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.util.ReferenceCountUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BandwidthShaperTest {
+
+    @Test
+    public void create_unlimited() {
+        assertNull("no shaper without limits", BandwidthShaper.create(0, ThroughputLimiter.none()));
+    }
+
+    @Test
+    public void shape() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        BandwidthShaper shaper = BandwidthShaper.create(0, (request, response) -> response.getBodyLength() > 0 ? 10000 : 0);
+        shaper.shape(channel, request(), response(0));
+        assertNull("no handler until a response is limited", channel.pipeline().get(BandwidthShaper.HANDLER_NAME));
+        shaper.shape(channel, request(), response(1000));
+        assertNotNull("handler", channel.pipeline().get(BandwidthShaper.HANDLER_NAME));
+        ChannelFuture future = channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[1000]));
+        assertEquals("first slice sent", 500, readOutboundBytes(channel));
+        assertFalse("rest held", future.isDone());
+        Thread.sleep(100);
+        channel.runScheduledPendingTasks();
+        assertTrue("released after 50ms", future.isSuccess());
+        assertEquals("second slice sent", 500, readOutboundBytes(channel));
+        Thread.sleep(100);
+        shaper.shape(channel, request(), response(0));
+        channel.writeAndFlush(Unpooled.wrappedBuffer(new byte[1000]));
+        assertEquals("not held after limit lifted", 1000, readOutboundBytes(channel));
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void shape_bytesArriveOverTime() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        BandwidthShaper shaper = BandwidthShaper.create(0, ThroughputLimiter.fixed(10000));
+        ResponseCapture response = response(2000);
+        shaper.shape(channel, request(), response);
+        long start = System.nanoTime();
+        ChannelFuture future = channel.writeAndFlush(response.response);
+        List<Object> outbound = new ArrayList<>();
+        List<Integer> totals = new ArrayList<>();
+        int total = 0;
+        while (!future.isDone()) {
+            Thread.sleep(10);
+            channel.runScheduledPendingTasks();
+            Object msg;
+            while ((msg = channel.readOutbound()) != null) {
+                outbound.add(msg);
+                total += (int) ShapingWriteHandler.sizeOf(msg);
+            }
+            totals.add(total);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("success", future.isSuccess());
+        assertEquals("total", 2000, total);
+        assertTrue("elapsed " + elapsedMillis + "ms", elapsedMillis >= 140);
+        assertTrue("partial totals observed: " + totals, totals.stream().filter(t -> t > 0 && t < 2000).distinct().count() >= 2);
+        assertTrue("head first", outbound.get(0) instanceof HttpResponse && !(outbound.get(0) instanceof HttpContent));
+        assertTrue("content last", outbound.get(outbound.size() - 1) instanceof LastHttpContent);
+        outbound.forEach(ReferenceCountUtil::release);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void shape_global() throws Exception {
+        BandwidthShaper shaper = BandwidthShaper.create(10000, ThroughputLimiter.none());
+        EmbeddedChannel channel1 = new EmbeddedChannel(), channel2 = new EmbeddedChannel();
+        DelayingWriteHandler.delay(channel1, 0);
+        shaper.shape(channel1, request(), response(500));
+        shaper.shape(channel2, request(), response(500));
+        List<String> names = channel1.pipeline().names().stream().filter(name -> name.startsWith("vhs-")).collect(Collectors.toList());
+        assertEquals("shaping closer to the socket than delaying", BandwidthShaper.HANDLER_NAME, names.get(0));
+        channel1.runScheduledPendingTasks();
+        long start = System.nanoTime();
+        ChannelFuture future1 = channel1.writeAndFlush(Unpooled.wrappedBuffer(new byte[1000]));
+        ChannelFuture future2 = channel2.writeAndFlush(Unpooled.wrappedBuffer(new byte[1000]));
+        long elapsed1 = -1;
+        while (!future2.isDone()) {
+            Thread.sleep(10);
+            channel1.runScheduledPendingTasks();
+            channel2.runScheduledPendingTasks();
+            if (elapsed1 < 0 && future1.isDone()) {
+                elapsed1 = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            }
+        }
+        long elapsed2 = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("first write released", future1.isSuccess());
+        assertTrue("second write released", future2.isSuccess());
+        assertTrue("channels share 10000 bytes/s; elapsed " + elapsed2 + "ms", elapsed2 >= 140);
+        assertTrue("first write sent before second: " + elapsed1 + "ms vs " + elapsed2 + "ms", elapsed1 >= 0 && elapsed1 < elapsed2);
+        channel1.finishAndReleaseAll();
+        channel2.finishAndReleaseAll();
+    }
+
+    private static int readOutboundBytes(EmbeddedChannel channel) {
+        int total = 0;
+        Object msg;
+        while ((msg = channel.readOutbound()) != null) {
+            total += (int) ShapingWriteHandler.sizeOf(msg);
+            ReferenceCountUtil.release(msg);
+        }
+        return total;
+    }
+
+    private static RequestCapture request() {
+        return RequestCapture.of(HttpVersion.HTTP_1_1, Tests.createRequest("GET", "http://example.com/"));
+    }
+
+    private static ResponseCapture response(int bodyLength) {
+        DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        response.content().writeZero(bodyLength);
+        return ResponseCapture.matched(response);
+    }
+}
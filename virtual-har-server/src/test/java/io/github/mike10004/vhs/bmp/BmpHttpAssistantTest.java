@@ -0,0 +1,44 @@
+package io.github.mike10004.vhs.bmp;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.net.MediaType;
+import io.github.mike10004.vhs.HttpRespondable;
+import io.github.mike10004.vhs.Tests;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Test;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BmpHttpAssistantTest {
+
+    private static final byte[] BODY = "0123456789".getBytes(US_ASCII);
+
+    @Test
+    public void transformRespondable_streamingKeepAlive() throws Exception {
+        StreamingHttpResponse response = transformStreaming(ImmutableMultimap.of());
+        assertFalse("close after body", response.isCloseAfterBody());
+        assertTrue("keep-alive", HttpUtil.isKeepAlive(response));
+    }
+
+    @Test
+    public void transformRespondable_streamingConnectionClose() throws Exception {
+        StreamingHttpResponse response = transformStreaming(ImmutableMultimap.of("Connection", "close"));
+        assertTrue("close after body", response.isCloseAfterBody());
+        assertFalse("keep-alive", HttpUtil.isKeepAlive(response));
+        assertEquals("connection header", "close", response.headers().get(HttpHeaderNames.CONNECTION));
+    }
+
+    private static StreamingHttpResponse transformStreaming(ImmutableMultimap<String, String> headers) throws Exception {
+        HttpRespondable respondable = HttpRespondable.inMemory(200, headers, MediaType.OCTET_STREAM, BODY);
+        RequestCapture request = RequestCapture.of(HttpVersion.HTTP_1_1, Tests.createRequest("GET", "http://example.com/"));
+        HttpResponse response = new BmpHttpAssistant(null, BODY.length - 1).transformRespondable(request, respondable);
+        assertTrue("streaming", response instanceof StreamingHttpResponse);
+        return (StreamingHttpResponse) response;
+    }
+}
@@ -1,5 +1,6 @@
 package io.github.mike10004.vhs.bmp;
 
+import com.google.common.base.Strings;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
@@ -15,10 +16,13 @@ import com.browserup.harreader.model.HarResponse;
 import com.browserup.harreader.model.HttpMethod;
 import io.github.mike10004.vhs.BasicHeuristic;
 import io.github.mike10004.vhs.EntryMatcherFactory;
+import io.github.mike10004.vhs.HarBridgeEntryParser;
 import io.github.mike10004.vhs.HeuristicEntryMatcher;
+import io.github.mike10004.vhs.ReplaySessionState;
 import io.github.mike10004.vhs.VirtualHarServer;
 import io.github.mike10004.vhs.VirtualHarServerControl;
 import io.github.mike10004.vhs.bmp.ResponseManufacturingFiltersSource.PassthruPredicate;
+import io.github.mike10004.vhs.harbridge.sstoehr.SstoehrHarBridge;
 import io.github.mike10004.vhs.testsupport.VhsTests;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.HttpRequest;
@@ -37,6 +41,7 @@ import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.security.KeyStore;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -218,4 +223,40 @@ public class BrowsermobVirtualHarServerTest extends BrowsermobVirtualHarServerTe
         System.out.format("expecting %s, actual = %s%n", HEX_BYTES, BaseEncoding.base16().encode(actual));
         assertArrayEquals("response data", bytes, actual);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void streamingLargeBody() throws Exception {
+        String text = Strings.repeat("0123456789abcdef", 16 * 1024);
+        String url = "http://www.example.com/large";
+        HarRequest request = BmpTests.buildHarRequest(HttpMethod.GET, url, ImmutableList.of());
+        MediaType contentType = MediaType.PLAIN_TEXT_UTF_8;
+        HarContent responseContent = BmpTests.buildHarContent(text, contentType);
+        List<HarHeader> responseHeaders = BmpTests.buildHarHeaders(HttpHeaders.CONTENT_TYPE, contentType.toString());
+        HarEntry entry = BmpTests.buildHarEntry(request, BmpTests.buildHarResponse(200, responseHeaders, responseContent));
+        EntryMatcherFactory<ReplaySessionState> entryMatcherFactory = HeuristicEntryMatcher.factory(new BasicHeuristic(), BasicHeuristic.DEFAULT_THRESHOLD_EXCLUSIVE);
+        HarReplayManufacturer responseManufacturer = new HarReplayManufacturer(
+                entryMatcherFactory.createEntryMatcher(ImmutableList.of(entry), HarBridgeEntryParser.withPlainEncoder(new SstoehrHarBridge())),
+                Collections.emptyList(), new BmpHttpAssistant(null, 1024), ReplaySessionState::countingUrlMethodPairs);
+        BrowsermobVhsConfig config = BrowsermobVhsConfig.builder(responseManufacturer)
+                .scratchDirProvider(ScratchDirProvider.under(temporaryFolder.getRoot().toPath()))
+                .build();
+        VirtualHarServer server = new BrowsermobVirtualHarServer(config);
+        Multimap<URI, byte[]> responses;
+        List<String> transferEncodings = new ArrayList<>();
+        try (VirtualHarServerControl ctrl = server.start()) {
+            ApacheRawClient<byte[]> client = new ApacheRawClient<byte[]>() {
+                @Override
+                protected byte[] transform(URI requestUrl, org.apache.http.HttpResponse response) throws IOException {
+                    Arrays.stream(response.getHeaders(HttpHeaders.TRANSFER_ENCODING)).forEach(h -> transferEncodings.add(h.getValue()));
+                    return EntityUtils.toByteArray(response.getEntity());
+                }
+            };
+            responses = client.collectResponses(Arrays.asList(URI.create(url), URI.create(url)), ctrl.getSocketAddress());
+        }
+        assertEquals("num responses", 2, responses.size());
+        assertEquals("transfer encodings", Arrays.asList("chunked", "chunked"), transferEncodings);
+        for (byte[] actual : responses.values()) {
+            assertEquals("response text", text, new String(actual, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.mike10004.vhs.bmp;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.net.MediaType;
+import io.github.mike10004.vhs.HttpRespondable;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChunkedBodyWriterTest {
+
+    private static final byte[] BODY = "0123456789".getBytes(US_ASCII);
+
+    @Test
+    public void start() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ChunkedBodyWriter.start(channel, createResponse(false), 4);
+        List<Object> written = readOutbound(channel);
+        assertEquals("num messages", 4, written.size());
+        assertTrue("last", written.get(3) instanceof LastHttpContent);
+        assertArrayEquals("body", BODY, concatenate(written));
+        assertTrue("open", channel.isOpen());
+    }
+
+    @Test
+    public void start_closeAfterBody() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        ChunkedBodyWriter.start(channel, createResponse(true), 64);
+        assertArrayEquals("body", BODY, concatenate(readOutbound(channel)));
+        assertFalse("open", channel.isOpen());
+    }
+
+    @Test
+    public void start_readsOnExecutor() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        AtomicInteger reads = new AtomicInteger();
+        Executor readingExecutor = task -> {
+            reads.incrementAndGet();
+            task.run();
+        };
+        ChunkedBodyWriter.start(channel, createResponse(false), 4, readingExecutor);
+        assertArrayEquals("body", BODY, concatenate(readOutbound(channel)));
+        assertEquals("reads on executor", 4, reads.get());
+    }
+
+    @Test
+    public void start_executorRejects() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        Executor readingExecutor = task -> {
+            throw new RejectedExecutionException();
+        };
+        ChunkedBodyWriter.start(channel, createResponse(false), 4, readingExecutor);
+        assertArrayEquals("body", BODY, concatenate(readOutbound(channel)));
+    }
+
+    private static StreamingHttpResponse createResponse(boolean closeAfterBody) {
+        HttpRespondable respondable = HttpRespondable.inMemory(200, ImmutableMultimap.of(), MediaType.OCTET_STREAM, BODY);
+        return new StreamingHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, respondable, closeAfterBody);
+    }
+
+    private static List<Object> readOutbound(EmbeddedChannel channel) {
+        List<Object> messages = new ArrayList<>();
+        Object message;
+        while ((message = channel.readOutbound()) != null) {
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static byte[] concatenate(List<Object> contents) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (Object message : contents) {
+            ByteBuf content = ((HttpContent) message).content();
+            byte[] bytes = new byte[content.readableBytes()];
+            content.readBytes(bytes);
+            baos.write(bytes, 0, bytes.length);
+            content.release();
+        }
+        return baos.toByteArray();
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.mike10004.vhs.bmp;
+
+import com.google.common.net.HttpHeaders;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DeferredResponseHandlerTest {
+
+    @Test
+    public void resolve() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        DeferredResponseHandler handler = DeferredResponseHandler.install(channel);
+        DeferredResponseHandler.Placeholder placeholder = new DeferredResponseHandler.Placeholder(HttpVersion.HTTP_1_1);
+        HttpUtil.setKeepAlive(placeholder, false);
+        placeholder.headers().add(HttpHeaders.VIA, "1.1 proxy");
+        ChannelFuture placeholderFuture = channel.writeAndFlush(placeholder);
+        ChannelFuture trailerFuture = channel.writeAndFlush("trailer");
+        channel.pipeline().close();
+        assertNull("held", channel.readOutbound());
+        assertFalse("write pending", placeholderFuture.isDone());
+        assertTrue("open while held", channel.isOpen());
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_FOUND);
+        handler.resolve(placeholder, response);
+        assertSame("response written in place of placeholder", response, channel.readOutbound());
+        assertEquals("then trailer", "trailer", channel.readOutbound());
+        assertTrue("placeholder write succeeded", placeholderFuture.isSuccess());
+        assertTrue("trailer write succeeded", trailerFuture.isSuccess());
+        assertFalse("keep-alive copied", HttpUtil.isKeepAlive(response));
+        assertEquals("via copied", "1.1 proxy", response.headers().get(HttpHeaders.VIA));
+        assertFalse("closed after release", channel.isOpen());
+    }
+
+    @Test
+    public void resolve_outOfOrder() {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        DeferredResponseHandler handler = DeferredResponseHandler.install(channel);
+        DeferredResponseHandler.Placeholder first = new DeferredResponseHandler.Placeholder(HttpVersion.HTTP_1_1);
+        DeferredResponseHandler.Placeholder second = new DeferredResponseHandler.Placeholder(HttpVersion.HTTP_1_1);
+        channel.writeAndFlush(first);
+        channel.writeAndFlush(second);
+        FullHttpResponse secondResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        handler.resolve(second, secondResponse);
+        assertNull("held until first is resolved", channel.readOutbound());
+        FullHttpResponse firstResponse = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        handler.resolve(first, firstResponse);
+        assertSame("first", firstResponse, channel.readOutbound());
+        assertSame("second", secondResponse, channel.readOutbound());
+        channel.writeAndFlush("c");
+        assertEquals("not held after release", "c", channel.readOutbound());
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.mike10004.vhs.bmp;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DelayingWriteHandlerTest {
+
+    @Test
+    public void delay() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        DelayingWriteHandler.delay(channel, 100);
+        ChannelFuture writeFuture = channel.writeAndFlush("a");
+        channel.runPendingTasks();
+        assertNull("held", channel.readOutbound());
+        assertFalse("write pending", writeFuture.isDone());
+        Thread.sleep(150);
+        channel.runScheduledPendingTasks();
+        assertEquals("released", "a", channel.readOutbound());
+        assertTrue("write succeeded", writeFuture.isSuccess());
+        channel.writeAndFlush("b");
+        assertEquals("not held after release", "b", channel.readOutbound());
+    }
+
+    @Test
+    public void delay_extended() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        DelayingWriteHandler.delay(channel, 50);
+        DelayingWriteHandler.delay(channel, 250);
+        assertNotNull("handler installed once", channel.pipeline().get(DelayingWriteHandler.NAME));
+        channel.writeAndFlush("a");
+        Thread.sleep(100);
+        channel.runScheduledPendingTasks();
+        assertNull("still held", channel.readOutbound());
+        Thread.sleep(200);
+        channel.runScheduledPendingTasks();
+        assertEquals("released", "a", channel.readOutbound());
+    }
+
+    @Test
+    public void delay_close() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel();
+        DelayingWriteHandler.delay(channel, 50);
+        channel.writeAndFlush("a");
+        channel.pipeline().close(); // EmbeddedChannel.close() would cancel the scheduled release
+        assertTrue("open while held", channel.isOpen());
+        Thread.sleep(100);
+        channel.runScheduledPendingTasks();
+        assertEquals("released", "a", channel.readOutbound());
+        assertFalse("closed after release", channel.isOpen());
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.mike10004.vhs.bmp;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.net.MediaType;
+import io.github.mike10004.vhs.HttpRespondable;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+public class EncodedResponseCacheTest {
+
+    @Test
+    public void get_admittedOnSecondServe() throws Exception {
+        EncodedResponseCache cache = new EncodedResponseCache(1024);
+        HttpRespondable respondable = createRespondable("hello");
+        AtomicInteger encodings = new AtomicInteger();
+        assertNull("first serve", cache.get(respondable, HttpVersion.HTTP_1_1, () -> encode(respondable, encodings)));
+        FullHttpResponse second = cache.get(respondable, HttpVersion.HTTP_1_1, () -> encode(respondable, encodings));
+        FullHttpResponse third = cache.get(respondable, HttpVersion.HTTP_1_0, () -> encode(respondable, encodings));
+        assertNotNull("second serve", second);
+        assertNotNull("third serve", third);
+        assertEquals("encodings", 1, encodings.get());
+        assertNotSame("duplicates", second, third);
+        assertEquals("body", "hello", second.content().toString(UTF_8));
+        assertEquals("body of third", "hello", third.content().toString(UTF_8));
+        assertEquals("version", HttpVersion.HTTP_1_0, third.protocolVersion());
+        second.release();
+        third.release();
+        FullHttpResponse fourth = cache.get(respondable, HttpVersion.HTTP_1_1, () -> encode(respondable, encodings));
+        assertNotNull("fourth serve", fourth);
+        assertEquals("body after release of earlier duplicates", "hello", fourth.content().toString(UTF_8));
+    }
+
+    @Test
+    public void get_bounded() throws Exception {
+        EncodedResponseCache cache = new EncodedResponseCache(4);
+        HttpRespondable respondable = createRespondable("hello");
+        AtomicInteger encodings = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            cache.get(respondable, HttpVersion.HTTP_1_1, () -> encode(respondable, encodings));
+        }
+        assertEquals("encodings", 2, encodings.get());
+        assertEquals("size", 0, cache.size());
+    }
+
+    private static HttpRespondable createRespondable(String body) {
+        return HttpRespondable.inMemory(200, ImmutableMultimap.of(), MediaType.PLAIN_TEXT_UTF_8, body.getBytes(UTF_8));
+    }
+
+    private static FullHttpResponse encode(HttpRespondable respondable, AtomicInteger counter) throws Exception {
+        counter.incrementAndGet();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        respondable.writeBody(baos);
+        return new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.valueOf(respondable.getStatus()), Unpooled.wrappedBuffer(baos.toByteArray()));
+    }
+}
@@ -0,0 +1,100 @@
+package io.github.mike10004.vhs.bmp;
+
+import com.browserup.bup.BrowserUpProxy;
+import com.browserup.bup.BrowserUpProxyServer;
+import com.browserup.bup.proxy.CaptureType;
+import com.browserup.harreader.HarReader;
+import com.browserup.harreader.model.Har;
+import com.browserup.harreader.model.HarEntry;
+import com.browserup.harreader.model.HarRequest;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HarCaptureTest {
+
+    private static final Set<CaptureType> CAPTURE_TYPES = EnumSet.allOf(CaptureType.class);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void disabled() throws Exception {
+        BrowserUpProxy proxy = new BrowserUpProxyServer();
+        HarCapture.disabled().configure(proxy, CAPTURE_TYPES).close();
+        assertNull("har", proxy.getHar());
+    }
+
+    @Test
+    public void bounded() throws Exception {
+        BrowserUpProxy proxy = new BrowserUpProxyServer();
+        try (Closeable ignore = HarCapture.bounded(2).configure(proxy, CAPTURE_TYPES)) {
+            List<HarEntry> entries = proxy.getHar().getLog().getEntries();
+            for (int i = 0; i < 3; i++) {
+                entries.add(newEntry(i));
+            }
+            assertEquals("num entries", 2, entries.size());
+            assertEquals("oldest retained", "http://example.com/1", entries.get(0).getRequest().getUrl());
+        }
+    }
+
+    @Test
+    public void bounded_iterateWhileAdding() throws Exception {
+        BrowserUpProxy proxy = new BrowserUpProxyServer();
+        try (Closeable ignore = HarCapture.bounded(3).configure(proxy, CAPTURE_TYPES)) {
+            List<HarEntry> entries = proxy.getHar().getLog().getEntries();
+            for (int i = 0; i < 5; i++) {
+                entries.add(newEntry(i));
+            }
+            List<String> urls = new ArrayList<>();
+            for (HarEntry entry : entries) {
+                urls.add(entry.getRequest().getUrl());
+                entries.add(newEntry(urls.size() + 10));
+            }
+            assertEquals("urls", Arrays.asList("http://example.com/2", "http://example.com/3", "http://example.com/4"), urls);
+            assertEquals("num entries", 3, entries.size());
+        }
+    }
+
+    @Test
+    public void streaming() throws Exception {
+        File outputFile = temporaryFolder.newFile("captured.har");
+        BrowserUpProxy proxy = new BrowserUpProxyServer();
+        int numEntries = StreamingHarWriter.DEFAULT_WINDOW_SIZE + 10;
+        try (Closeable ignore = HarCapture.streaming(outputFile.toPath()).configure(proxy, CAPTURE_TYPES)) {
+            List<HarEntry> entries = proxy.getHar().getLog().getEntries();
+            for (int i = 0; i < numEntries; i++) {
+                entries.add(newEntry(i));
+            }
+            assertEquals("num entries in memory", StreamingHarWriter.DEFAULT_WINDOW_SIZE, entries.size());
+        }
+        Har har = new HarReader().readFromFile(outputFile);
+        List<HarEntry> written = har.getLog().getEntries();
+        assertEquals("num entries written", numEntries, written.size());
+        for (int i = 0; i < numEntries; i++) {
+            assertEquals("url", "http://example.com/" + i, written.get(i).getRequest().getUrl());
+        }
+        assertEquals("pages", proxy.getHar().getLog().getPages().size(), har.getLog().getPages().size());
+    }
+
+    private static HarEntry newEntry(int index) {
+        HarEntry entry = new HarEntry();
+        entry.setStartedDateTime(new Date());
+        HarRequest request = new HarRequest();
+        request.setUrl("http://example.com/" + index);
+        entry.setRequest(request);
+        return entry;
+    }
+}
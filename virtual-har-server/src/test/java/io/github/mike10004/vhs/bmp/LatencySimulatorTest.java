@@ -0,0 +1,53 @@
+package io.github.mike10004.vhs.bmp;
+
+import com.google.common.collect.ImmutableMap;
+import io.github.mike10004.vhs.Tests;
+import io.github.mike10004.vhs.harbridge.RecordedTiming;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencySimulatorTest {
+
+    @Test
+    public void fixed() {
+        assertEquals(0, LatencySimulator.none().getDelayMillis(request("http://example.com/"), null));
+        assertEquals(150, LatencySimulator.fixed(Duration.ofMillis(150)).getDelayMillis(request("http://example.com/"), null));
+    }
+
+    @Test
+    public void uniform() {
+        LatencySimulator simulator = LatencySimulator.uniform(Duration.ofMillis(10), Duration.ofMillis(20));
+        for (int i = 0; i < 100; i++) {
+            long delay = simulator.getDelayMillis(request("http://example.com/"), null);
+            assertTrue("in range: " + delay, delay >= 10 && delay <= 20);
+        }
+    }
+
+    @Test
+    public void byHost() {
+        LatencySimulator simulator = LatencySimulator.byHost(ImmutableMap.of("Slow.example.com", LatencySimulator.fixed(Duration.ofSeconds(1))), LatencySimulator.fixed(Duration.ofMillis(5)));
+        assertEquals("matching host", 1000, simulator.getDelayMillis(request("https://slow.example.com/page"), null));
+        assertEquals("other host", 5, simulator.getDelayMillis(request("https://fast.example.com/page"), null));
+    }
+
+    @Test
+    public void recorded() {
+        LatencySimulator simulator = LatencySimulator.recorded(LatencySimulator.fixed(Duration.ofMillis(5)));
+        RequestCapture request = request("http://example.com/");
+        DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+        assertEquals("recorded", 250, simulator.getDelayMillis(request, ResponseCapture.matched(response, new RecordedTiming(250, 10))));
+        assertEquals("not recorded", 5, simulator.getDelayMillis(request, ResponseCapture.matched(response, new RecordedTiming(-1, 10))));
+        assertEquals("no timing", 5, simulator.getDelayMillis(request, ResponseCapture.unmatched(response)));
+    }
+
+    private static RequestCapture request(String url) {
+        return RequestCapture.of(HttpVersion.HTTP_1_1, Tests.createRequest("GET", url));
+    }
+}
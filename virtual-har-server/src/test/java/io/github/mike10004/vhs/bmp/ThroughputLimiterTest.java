@@ -0,0 +1,26 @@
+package io.github.mike10004.vhs.bmp;
+
+import io.github.mike10004.vhs.Tests;
+import io.github.mike10004.vhs.harbridge.RecordedTiming;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ThroughputLimiterTest {
+
+    @Test
+    public void recorded() {
+        ThroughputLimiter limiter = ThroughputLimiter.recorded(ThroughputLimiter.fixed(100));
+        RequestCapture request = RequestCapture.of(HttpVersion.HTTP_1_1, Tests.createRequest("GET", "http://example.com/"));
+        DefaultFullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer(new byte[4000]));
+        DefaultFullHttpResponse empty = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NO_CONTENT);
+        assertEquals("recorded", 8000, limiter.getBytesPerSecond(request, ResponseCapture.matched(response, new RecordedTiming(1, 500))));
+        assertEquals("empty body", 0, limiter.getBytesPerSecond(request, ResponseCapture.matched(empty, new RecordedTiming(1, 500))));
+        assertEquals("not recorded", 100, limiter.getBytesPerSecond(request, ResponseCapture.matched(response, new RecordedTiming(1, -1))));
+        assertEquals("no timing", 100, limiter.getBytesPerSecond(request, ResponseCapture.unmatched(response)));
+    }
+}
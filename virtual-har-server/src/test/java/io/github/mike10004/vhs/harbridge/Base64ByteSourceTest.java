@@ -2,8 +2,12 @@ package io.github.mike10004.vhs.harbridge;
 
 import com.google.common.io.BaseEncoding;
 import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
 import static org.junit.Assert.*;
 
 public class Base64ByteSourceTest {
@@ -17,4 +21,27 @@ public class Base64ByteSourceTest {
             assertEquals(String.format("base64 length %d", base64Data.length()), n, decodingSource.size());
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * The source itself does not retain decoded bytes, so each read returns a
+     * new array. Decoding once per content is the job of the cache; see
+     * {@link DecodedContentCacheTest#get_decodesOnce()}.
+     */
+    @Test
+    public void read_returnsIndependentArrays() throws Exception {
+        byte[] bytes = "hello, world".getBytes(StandardCharsets.US_ASCII);
+        ByteSource decodingSource = Base64ByteSource.wrap(BaseEncoding.base64().encode(bytes));
+        byte[] first = decodingSource.read();
+        assertArrayEquals("first read", bytes, first);
+        byte[] second = decodingSource.read();
+        assertNotSame("each read decodes a new array", first, second);
+        first[0] = 'j';
+        assertArrayEquals("second read unaffected by changes to first", bytes, second);
+        assertArrayEquals("stream", bytes, ByteStreams.toByteArray(decodingSource.openStream()));
+    }
+
+    @Test(expected = IOException.class)
+    public void openStream_invalid() throws Exception {
+        Base64ByteSource.wrap("AB.D").openStream();
+    }
+}
@@ -0,0 +1,63 @@
+package io.github.mike10004.vhs.harbridge;
+
+import com.google.common.base.Strings;
+import com.google.common.io.BaseEncoding;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class Base64CodecTest {
+
+    // the pattern formerly used to classify text
+    private static final Pattern BASE_64_PATTERN = Pattern.compile("^([A-Za-z0-9+/]{4})*([A-Za-z0-9+/]{4}|[A-Za-z0-9+/]{3}=|[A-Za-z0-9+/]{2}==)$");
+
+    @Test
+    public void isCanonical_agreesWithPattern() throws Exception {
+        List<String> inputs = Arrays.asList("", "A", "AB", "ABC", "ABCD", "ABC=", "AB==", "A===", "====", "ABCD\n", "ABCD\r\n", "ABCD\n\n",
+                "AB=C", "ABCDE", "ABCDEF==", "ab+/", "ab-_", "{\"a\": 1}", "hello world", "ABCD ", " ABCD", "AB=\n");
+        for (String input : inputs) {
+            assertEquals("classification of \"" + input + "\"", BASE_64_PATTERN.matcher(input).find(), Base64Codec.isCanonical(input));
+        }
+        Random random = new Random(12345);
+        for (int n = 0; n < 64; n++) {
+            byte[] bytes = new byte[n];
+            random.nextBytes(bytes);
+            String encoded = BaseEncoding.base64().encode(bytes);
+            assertEquals("classification of \"" + encoded + "\"", BASE_64_PATTERN.matcher(encoded).find(), Base64Codec.isCanonical(encoded));
+        }
+    }
+
+    @Test
+    public void isCanonical_largeInput() throws Exception {
+        String text = Strings.repeat("ABCD", 4 * 1024 * 1024);
+        assertTrue("large input", Base64Codec.isCanonical(text));
+        assertFalse("large input with bad char", Base64Codec.isCanonical(text + "AB.="));
+    }
+
+    @Test
+    public void decode() throws Exception {
+        Random random = new Random(12345);
+        for (int n = 0; n < 64; n++) {
+            byte[] bytes = new byte[n];
+            random.nextBytes(bytes);
+            String encoded = BaseEncoding.base64().encode(bytes);
+            assertArrayEquals("decoded " + encoded, bytes, Base64Codec.decode(encoded));
+            assertArrayEquals("decoded without padding " + encoded, bytes, Base64Codec.decode(BaseEncoding.base64().omitPadding().encode(bytes)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_invalidCharacter() throws Exception {
+        Base64Codec.decode("AB.D");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decode_invalidLength() throws Exception {
+        Base64Codec.decode("ABCDE");
+    }
+}
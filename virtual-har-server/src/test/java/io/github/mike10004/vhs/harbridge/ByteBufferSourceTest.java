@@ -0,0 +1,52 @@
+package io.github.mike10004.vhs.harbridge;
+
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ByteBufferSourceTest {
+
+    private static final byte[] BYTES = "abcdefghij".getBytes(US_ASCII);
+
+    @Test
+    public void readAndStream() throws Exception {
+        ByteBufferSource source = ByteBufferSource.wrap(BYTES);
+        assertEquals("size", BYTES.length, source.size());
+        assertEquals("sizeIfKnown", Long.valueOf(BYTES.length), source.sizeIfKnown().orNull());
+        assertArrayEquals("read", BYTES, source.read());
+        try (InputStream in = source.openStream()) {
+            assertEquals("skip", 2, in.skip(2));
+            assertEquals("read single", 'c', in.read());
+            assertArrayEquals("rest", "defghij".getBytes(US_ASCII), ByteStreams.toByteArray(in));
+            assertEquals("eof", -1, in.read());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals("copied", BYTES.length, source.copyTo(out));
+        assertArrayEquals("copy", BYTES, out.toByteArray());
+    }
+
+    @Test
+    public void wrap_remainingBytesOnly() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(BYTES);
+        buffer.position(3);
+        ByteBufferSource source = ByteBufferSource.wrap(buffer);
+        assertArrayEquals("read", "defghij".getBytes(US_ASCII), source.read());
+        assertEquals("view position", 0, source.asByteBuffer().position());
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void asByteBuffer_readOnly() throws Exception {
+        ByteBuffer view = ByteBufferSource.wrap(BYTES).asByteBuffer();
+        assertTrue("read-only", view.isReadOnly());
+        view.put(0, (byte) 'z');
+    }
+}
@@ -0,0 +1,166 @@
+package io.github.mike10004.vhs.harbridge;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.io.ByteSource;
+import com.google.common.io.CountingInputStream;
+import com.google.common.net.MediaType;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class DecodedContentCacheTest {
+
+    private static final byte[] BODY = "hello, world; hello, world; hello, world".getBytes(UTF_8);
+
+    @Test
+    public void get_decodesOnce() throws Exception {
+        DecodedContentCache cache = DecodedContentCache.create(1024);
+        Object key = new Object();
+        AtomicInteger translations = new AtomicInteger(), decodings = new AtomicInteger();
+        String base64 = BaseEncoding.base64().encode(HttpContentCodecs.getCodec(HttpContentCodecs.CONTENT_ENCODING_GZIP).compress(BODY));
+        for (int i = 0; i < 3; i++) {
+            TypedContent content = cache.get(key, () -> {
+                translations.incrementAndGet();
+                ByteSource source = Hars.decodingSource(base64, HttpContentCodecs.CONTENT_ENCODING_GZIP, "base64", null, null);
+                return TypedContent.identity(new CountingByteSource(source, decodings), MediaType.PLAIN_TEXT_UTF_8);
+            });
+            assertArrayEquals("body", BODY, content.asByteSource().read());
+            assertEquals("content type", MediaType.PLAIN_TEXT_UTF_8, content.getContentType());
+        }
+        assertEquals("translations", 1, translations.get());
+        assertEquals("decodings", 1, decodings.get());
+        assertEquals("decoded bytes", BODY.length, cache.getDecodedBytes());
+    }
+
+    @Test
+    public void get_overBudget() throws Exception {
+        DecodedContentCache cache = DecodedContentCache.create(BODY.length - 1);
+        Object key = new Object();
+        AtomicInteger translations = new AtomicInteger(), decodings = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            TypedContent content = cache.get(key, () -> {
+                translations.incrementAndGet();
+                return TypedContent.identity(new CountingByteSource(ByteSource.wrap(BODY), decodings), MediaType.PLAIN_TEXT_UTF_8);
+            });
+            assertArrayEquals("body", BODY, content.asByteSource().read());
+        }
+        assertEquals("translations", 1, translations.get());
+        assertEquals("decodings: one to measure, then one per serve", 4, decodings.get());
+        assertEquals("decoded bytes", 0, cache.getDecodedBytes());
+    }
+
+    @Test
+    public void get_evictsLeastRecentlyUsed() throws Exception {
+        DecodedContentCache cache = DecodedContentCache.create(BODY.length * 2);
+        Object[] keys = {new Object(), new Object(), new Object()};
+        AtomicInteger decodings = new AtomicInteger();
+        TypedContent[] contents = new TypedContent[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            contents[i] = cache.get(keys[i], () -> TypedContent.identity(new CountingByteSource(ByteSource.wrap(BODY), decodings), MediaType.PLAIN_TEXT_UTF_8));
+        }
+        assertEquals("decodings on translation", 0, decodings.get());
+        for (TypedContent content : contents) {
+            assertArrayEquals("body", BODY, content.asByteSource().read());
+        }
+        assertEquals("decodings", 3, decodings.get());
+        assertEquals("decoded bytes", BODY.length * 2, cache.getDecodedBytes());
+        assertArrayEquals("most recent", BODY, contents[2].asByteSource().read());
+        assertEquals("decodings after hit", 3, decodings.get());
+        assertArrayEquals("evicted", BODY, contents[0].asByteSource().read());
+        assertEquals("decodings after re-materialization", 4, decodings.get());
+        assertEquals("size", BODY.length, contents[1].asByteSource().size());
+        DecodedContentCache.Stats stats = cache.getStats();
+        assertEquals("hits", 1, stats.hitCount);
+        assertEquals("misses", 4, stats.missCount);
+        assertEquals("evictions", 2, stats.evictionCount);
+        assertEquals("resident", BODY.length * 2, stats.residentBytes);
+    }
+
+    @Test
+    public void get_decodingFails() throws Exception {
+        DecodedContentCache cache = DecodedContentCache.create(1024);
+        Object key = new Object();
+        ByteSource broken = new ByteSource() {
+            @Override
+            public InputStream openStream() throws IOException {
+                throw new IOException("purposeful failure");
+            }
+        };
+        TypedContent lazy = TypedContent.identity(broken, MediaType.OCTET_STREAM);
+        TypedContent content = cache.get(key, () -> lazy);
+        try {
+            content.asByteSource().read();
+            fail("should have thrown");
+        } catch (IOException expected) {
+        }
+        assertEquals("content on second get", lazy, cache.get(key, () -> {
+            throw new AssertionError("translated again");
+        }));
+    }
+
+    @Test
+    public void get_knownSizeOverBudget() throws Exception {
+        DecodedContentCache cache = DecodedContentCache.create(BODY.length - 1);
+        Object key = new Object();
+        AtomicInteger decodings = new AtomicInteger();
+        ByteSource sized = new CountingByteSource(ByteSource.wrap(BODY), decodings) {
+            @Override
+            public com.google.common.base.Optional<Long> sizeIfKnown() {
+                return com.google.common.base.Optional.of((long) BODY.length);
+            }
+        };
+        for (int i = 0; i < 3; i++) {
+            TypedContent content = cache.get(key, () -> TypedContent.identity(sized, MediaType.PLAIN_TEXT_UTF_8));
+            assertEquals("size", BODY.length, content.asByteSource().size());
+            assertArrayEquals("body", BODY, content.asByteSource().read());
+        }
+        assertEquals("decodings: one per serve, none to measure", 3, decodings.get());
+        assertEquals("misses", 0, cache.getStats().missCount);
+    }
+
+    @Test
+    public void get_unknownSizeOverBudget_readsAtMostBudget() throws Exception {
+        int budget = 16;
+        DecodedContentCache cache = DecodedContentCache.create(budget);
+        byte[] large = new byte[budget * 1024];
+        List<CountingInputStream> streams = new ArrayList<>();
+        ByteSource metered = new ByteSource() {
+            @Override
+            public InputStream openStream() throws IOException {
+                CountingInputStream stream = new CountingInputStream(ByteSource.wrap(large).openStream());
+                streams.add(stream);
+                return stream;
+            }
+        };
+        TypedContent content = cache.get(new Object(), () -> TypedContent.identity(metered, MediaType.OCTET_STREAM));
+        assertEquals("size", large.length, content.asByteSource().size());
+        assertEquals("bytes read to measure", budget + 1, streams.get(0).getCount());
+        assertEquals("decoded bytes", 0, cache.getDecodedBytes());
+    }
+
+    private static class CountingByteSource extends ByteSource {
+
+        private final ByteSource delegate;
+        private final AtomicInteger counter;
+
+        public CountingByteSource(ByteSource delegate, AtomicInteger counter) {
+            this.delegate = delegate;
+            this.counter = counter;
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            counter.incrementAndGet();
+            return delegate.openStream();
+        }
+    }
+}
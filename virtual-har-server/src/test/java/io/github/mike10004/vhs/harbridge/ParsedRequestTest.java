@@ -0,0 +1,45 @@
+package io.github.mike10004.vhs.harbridge;
+
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.io.ByteStreams;
+import org.junit.Test;
+
+import java.net.URI;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ParsedRequestTest {
+
+    @Test
+    public void compact_sharesEqualStrings() throws Exception {
+        ParsedRequest first = createCompact("text/html");
+        ParsedRequest second = createCompact("text/html");
+        assertSame("header name", first.indexedHeaders.keySet().iterator().next(), second.indexedHeaders.keySet().iterator().next());
+        assertSame("header value", first.indexedHeaders.values().iterator().next(), second.indexedHeaders.values().iterator().next());
+        assertSame("query value", first.query.values().iterator().next(), second.query.values().iterator().next());
+        assertEquals("headers", ImmutableMultimap.of("Accept", "text/html"), first.indexedHeaders);
+        assertEquals("query", ImmutableMultimap.of("q", Optional.of("search")), first.query);
+    }
+
+    @Test
+    public void compact_body() throws Exception {
+        byte[] body = "a=b".getBytes(US_ASCII);
+        ParsedRequest request = ParsedRequest.compact(HttpMethod.POST, URI.create("http://example.com/"), null, ImmutableMultimap.of(), body);
+        body[0] = 'z';
+        assertArrayEquals("body", "a=b".getBytes(US_ASCII), ByteStreams.toByteArray(request.openBodyStream()));
+        ParsedRequest empty = ParsedRequest.compact(HttpMethod.POST, URI.create("http://example.com/"), null, ImmutableMultimap.of(), new byte[0]);
+        assertTrue("body present", empty.isBodyPresent());
+    }
+
+    private static ParsedRequest createCompact(String accept) {
+        // new String instances so that sharing is due to interning, not constant pooling
+        return ParsedRequest.compact(HttpMethod.GET, URI.create("http://example.com/?q=search"),
+                ImmutableMultimap.of(new String("q"), Optional.of(new String("search"))),
+                ImmutableMultimap.of(new String("Accept"), new String(accept)), null);
+    }
+}